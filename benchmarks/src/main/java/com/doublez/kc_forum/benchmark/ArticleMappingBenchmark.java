@@ -0,0 +1,119 @@
+package com.doublez.kc_forum.benchmark;
+
+import com.doublez.kc_forum.common.config.RedisConfig;
+import com.doublez.kc_forum.common.pojo.response.ArticleReplyMetaCacheDTO;
+import com.doublez.kc_forum.model.Article;
+import com.doublez.kc_forum.service.impl.ArticleHashMapper;
+import com.doublez.kc_forum.service.impl.CacheHashCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文章/回复元数据 Redis Hash 到对象的转换。
+ * <p>
+ * Redis 用内存替身代替：Hash 的每个值先经过与 redisTemplate 相同的 Jackson 序列化器写成字节，
+ * 基准测试中再反序列化，得到与 HGETALL 返回值一致的 Map。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArticleMappingBenchmark {
+
+    private Jackson2JsonRedisSerializer<Object> hashValueSerializer;
+    // 与 Spring Boot 自动配置的 ObjectMapper 一致（服务中注入的就是它）
+    private ObjectMapper objectMapper;
+    private Map<String, byte[]> articleHashBytes;
+    // HGETALL 以 RedisSerializer.byteArray() 读取时的原始结果，字段名与值均为 byte[]
+    private Map<byte[], byte[]> articleRawHash;
+    private CacheHashCodec cacheHashCodec;
+    private Map<Object, Object> articleHash;
+    private Map<Object, Object> replyHash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hashValueSerializer = new Jackson2JsonRedisSerializer<>(RedisConfig.redisObjectMapper(), Object.class);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        Map<String, Object> article = new LinkedHashMap<>();
+        article.put("id", 1024L);
+        article.put("boardId", 3L);
+        article.put("userId", 77L);
+        article.put("title", "基准测试用的文章标题");
+        article.put("isTop", (byte) 0);
+        article.put("createTime", LocalDateTime.of(2025, 5, 1, 12, 30, 15));
+        article.put("updateTime", LocalDateTime.of(2025, 5, 2, 8, 0, 0));
+        article.put("replyCount", 42);
+        article.put("likeCount", 128);
+        article.put("visitCount", 4096);
+        articleHashBytes = new LinkedHashMap<>();
+        article.forEach((field, value) -> articleHashBytes.put(field, hashValueSerializer.serialize(value)));
+        articleHash = deserialize(articleHashBytes);
+        articleRawHash = new LinkedHashMap<>();
+        articleHashBytes.forEach((field, value) -> articleRawHash.put(field.getBytes(StandardCharsets.UTF_8), value));
+        cacheHashCodec = new CacheHashCodec(false, hashValueSerializer, objectMapper);
+
+        Map<String, Object> reply = new LinkedHashMap<>();
+        reply.put("id", 2048L);
+        reply.put("articleId", 1024L);
+        reply.put("postUserId", 77L);
+        reply.put("replyId", 0L);
+        reply.put("replyUserId", 88L);
+        reply.put("content", "基准测试用的回复内容，长度与真实回复相近。".repeat(4));
+        reply.put("likeCount", 5);
+        reply.put("childrenCount", 2);
+        reply.put("createTime", LocalDateTime.of(2025, 5, 1, 13, 0, 0));
+        Map<String, byte[]> replyHashBytes = new LinkedHashMap<>();
+        reply.forEach((field, value) -> replyHashBytes.put(field, hashValueSerializer.serialize(value)));
+        replyHash = deserialize(replyHashBytes);
+    }
+
+    private Map<Object, Object> deserialize(Map<String, byte[]> hashBytes) {
+        Map<Object, Object> hash = new HashMap<>(hashBytes.size() * 2);
+        hashBytes.forEach((field, value) -> hash.put(field, hashValueSerializer.deserialize(value)));
+        return hash;
+    }
+
+    /**
+     * HGETALL 结果的值反序列化（redisTemplate 的 hashValueSerializer）
+     */
+    @Benchmark
+    public Map<Object, Object> hashValueDeserialize() {
+        return deserialize(articleHashBytes);
+    }
+
+    /**
+     * 文章列表：ArticleServiceImpl 中逐字段手动转换
+     */
+    @Benchmark
+    public Article mapToArticle() {
+        return ArticleHashMapper.mapToArticle(articleHash, objectMapper);
+    }
+
+    /**
+     * 文章详情：getArticleDetailById 中的 CacheHashCodec.decodeArticle（legacy 格式，含值的反序列化）
+     */
+    @Benchmark
+    public Article decodeArticle() {
+        return cacheHashCodec.decodeArticle(articleRawHash);
+    }
+
+    /**
+     * 回复：getArticleReplyFromRedis 中的 objectMapper.convertValue
+     */
+    @Benchmark
+    public ArticleReplyMetaCacheDTO convertReplyMeta() {
+        return objectMapper.convertValue(replyHash, ArticleReplyMetaCacheDTO.class);
+    }
+}
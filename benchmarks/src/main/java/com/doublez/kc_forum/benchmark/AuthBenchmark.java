@@ -0,0 +1,69 @@
+package com.doublez.kc_forum.benchmark;
+
+import com.doublez.kc_forum.common.pojo.AuthenticatedPrincipal;
+import com.doublez.kc_forum.common.utiles.JwtUtil;
+import com.doublez.kc_forum.common.utiles.SecurityUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Encoders;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个登录态请求都会经过的 Token 解析，以及登录时的密码校验。
+ * <p>
+ * perRequestBefore 复现原来一次请求的认证开销：认证拦截器、主动刷新拦截器、Controller 各解析一次，每次都新建解析器；
+ * perRequestAfter 是现在的开销：认证拦截器调用一次 authenticate（命中已校验缓存），之后只读 request attribute。
+ * parseToken 是缓存未命中时的开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthBenchmark {
+
+    private static final String PASSWORD = "kc_forum_benchmark_password";
+
+    private String secret;
+    private String token;
+    private String storedPassword;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] secretBytes = new byte[32];
+        new SecureRandom().nextBytes(secretBytes);
+        secret = Encoders.BASE64.encode(secretBytes);
+        JwtUtil.init(secret, 3600_000, 10_000);
+        token = JwtUtil.genToken(Map.of(JwtUtil.USER_ID, 77L, JwtUtil.EMAIL, "bench@kc-forum.com"));
+        storedPassword = SecurityUtil.encrypt(PASSWORD);
+    }
+
+    @Benchmark
+    public Claims parseToken() {
+        return JwtUtil.parseToken(token);
+    }
+
+    @Benchmark
+    public Claims perRequestBefore() {
+        Claims claims = null;
+        for (int i = 0; i < 3; i++) {
+            claims = Jwts.parserBuilder().setSigningKey(secret).build().parseClaimsJws(token).getBody();
+        }
+        return claims;
+    }
+
+    @Benchmark
+    public AuthenticatedPrincipal perRequestAfter() {
+        return JwtUtil.authenticate(token);
+    }
+
+    @Benchmark
+    public Boolean checkPassword() {
+        return SecurityUtil.checkPassword(PASSWORD, storedPassword);
+    }
+}
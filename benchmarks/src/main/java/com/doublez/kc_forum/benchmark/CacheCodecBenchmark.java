@@ -0,0 +1,98 @@
+package com.doublez.kc_forum.benchmark;
+
+import com.doublez.kc_forum.common.config.RedisConfig;
+import com.doublez.kc_forum.common.pojo.response.ArticleReplyMetaCacheDTO;
+import com.doublez.kc_forum.model.Article;
+import com.doublez.kc_forum.service.impl.CacheHashCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文章/回复元数据 Hash 的两种缓存格式：legacy（每字段 Jackson 编码）对比 binary（不变字段打包为一个 _b 字段）。
+ * <p>
+ * 编码得到 HMSET 的原始字节，解码输入与 HGETALL 以 byteArray 读取的结果一致。
+ * 每条记录在 Redis 中的字段名+值字节数在初始化时打印（不含 Redis 自身的 Hash 开销）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheCodecBenchmark {
+
+    @Param({"legacy", "binary"})
+    public String codec;
+
+    private CacheHashCodec cacheHashCodec;
+    private Article article;
+    private ArticleReplyMetaCacheDTO reply;
+    private Map<byte[], byte[]> articleHash;
+    private Map<byte[], byte[]> replyHash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Jackson2JsonRedisSerializer<Object> hashValueSerializer = new Jackson2JsonRedisSerializer<>(RedisConfig.redisObjectMapper(), Object.class);
+        // 与 Spring Boot 自动配置的 ObjectMapper 一致（服务中注入的就是它）
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        cacheHashCodec = new CacheHashCodec("binary".equals(codec), hashValueSerializer, objectMapper);
+
+        article = new Article();
+        article.setId(1024L);
+        article.setBoardId(3L);
+        article.setUserId(77L);
+        article.setTitle("基准测试用的文章标题");
+        article.setIsTop((byte) 0);
+        article.setCreateTime(LocalDateTime.of(2025, 5, 1, 12, 30, 15));
+        article.setUpdateTime(LocalDateTime.of(2025, 5, 2, 8, 0, 0));
+        article.setReplyCount(42);
+        article.setLikeCount(128);
+        article.setVisitCount(4096);
+
+        reply = new ArticleReplyMetaCacheDTO();
+        reply.setId(2048L);
+        reply.setArticleId(1024L);
+        reply.setPostUserId(77L);
+        reply.setReplyId(0L);
+        reply.setReplyUserId(88L);
+        reply.setContent("基准测试用的回复内容，长度与真实回复相近。".repeat(4));
+        reply.setLikeCount(5);
+        reply.setChildrenCount(2);
+        reply.setCreateTime(LocalDateTime.of(2025, 5, 1, 13, 0, 0));
+
+        articleHash = cacheHashCodec.encodeArticle(article);
+        replyHash = cacheHashCodec.encodeReply(reply);
+        System.out.printf("%n[%s] 文章 Hash: %d 个字段, %d 字节; 回复 Hash: %d 个字段, %d 字节%n",
+                codec, articleHash.size(), size(articleHash), replyHash.size(), size(replyHash));
+    }
+
+    private static int size(Map<byte[], byte[]> hash) {
+        return hash.entrySet().stream().mapToInt(entry -> entry.getKey().length + entry.getValue().length).sum();
+    }
+
+    @Benchmark
+    public Map<byte[], byte[]> encodeArticle() {
+        return cacheHashCodec.encodeArticle(article);
+    }
+
+    @Benchmark
+    public Article decodeArticle() {
+        return cacheHashCodec.decodeArticle(articleHash);
+    }
+
+    @Benchmark
+    public Map<byte[], byte[]> encodeReply() {
+        return cacheHashCodec.encodeReply(reply);
+    }
+
+    @Benchmark
+    public ArticleReplyMetaCacheDTO decodeReply() {
+        return cacheHashCodec.decodeReply(replyHash);
+    }
+}
@@ -0,0 +1,62 @@
+package com.doublez.kc_forum.benchmark;
+
+import com.doublez.kc_forum.common.pojo.response.ArticleReplyMetaCacheDTO;
+import com.doublez.kc_forum.common.utiles.AssertUtil;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.model.ArticleReply;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通用工具方法：反射属性拷贝与 Redis Key 拼接
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommonUtilBenchmark {
+
+    private ArticleReply reply;
+    private long id = 1_000_000L;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        reply = new ArticleReply();
+        reply.setId(2048L);
+        reply.setArticleId(1024L);
+        reply.setPostUserId(77L);
+        reply.setReplyId(0L);
+        reply.setReplyUserId(88L);
+        reply.setContent("基准测试用的回复内容");
+        reply.setLikeCount(5);
+        reply.setChildrenCount(2);
+        reply.setState((byte) 0);
+        reply.setDeleteState((byte) 0);
+        reply.setCreateTime(LocalDateTime.of(2025, 5, 1, 13, 0, 0));
+        reply.setUpdateTime(LocalDateTime.of(2025, 5, 1, 13, 0, 0));
+    }
+
+    @Benchmark
+    public ArticleReplyMetaCacheDTO copyProperties() {
+        return AssertUtil.copyProperties(reply, ArticleReplyMetaCacheDTO.class);
+    }
+
+    /**
+     * 一次文章详情/列表请求中最常用的几个 Key
+     */
+    @Benchmark
+    public void redisKeys(Blackhole blackhole) {
+        Long current = id++;
+        blackhole.consume(RedisKeyUtil.getArticleKey(current));
+        blackhole.consume(RedisKeyUtil.getArticleContentKey(current));
+        blackhole.consume(RedisKeyUtil.getBoardArticlesZSetKey(current));
+        blackhole.consume(RedisKeyUtil.getArticleReplyKey(current));
+        blackhole.consume(RedisKeyUtil.getRepliesChildrenZsetKey(current));
+        blackhole.consume(RedisKeyUtil.getUserLikesTargetSetKey("article", current));
+    }
+}
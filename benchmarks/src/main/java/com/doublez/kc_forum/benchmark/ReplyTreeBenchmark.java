@@ -0,0 +1,136 @@
+package com.doublez.kc_forum.benchmark;
+
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.common.utiles.ReplyTreeCodec;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.StringCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回复子树结构加载：逐层遍历子回复ZSET 对比 物化视图。
+ * <p>
+ * 两种方式都只加载结构（回复id与父子关系），不含回复内容Hash，后者两种方式都需要同样的一次 pipeline。
+ * 树的形状：根回复下每个节点 fanout 个子回复，共 depth 层。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplyTreeBenchmark {
+
+    private static final long ARTICLE_ID = 900_000_001L;
+    private static final long ROOT_REPLY_ID = 900_000_001L;
+
+    @Param({"3", "10"})
+    private int fanout;
+    @Param({"2", "4"})
+    private int depth;
+
+    private RedisClient client;
+    private StatefulRedisConnection<String, String> stringConnection;
+    private StatefulRedisConnection<byte[], byte[]> byteConnection;
+    private final List<String> seededKeys = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = RedisClient.create(System.getProperty("redis.uri", "redis://localhost:6379/15"));
+        stringConnection = client.connect(StringCodec.UTF8);
+        byteConnection = client.connect(ByteArrayCodec.INSTANCE);
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (!seededKeys.isEmpty()) {
+            stringConnection.sync().del(seededKeys.toArray(new String[0]));
+        }
+        stringConnection.close();
+        byteConnection.close();
+        client.shutdown();
+    }
+
+    private void seed() {
+        Map<Long, Long> parentById = new LinkedHashMap<>();
+        long nextId = ROOT_REPLY_ID + 1;
+        List<Long> level = List.of(ROOT_REPLY_ID);
+        parentById.put(ROOT_REPLY_ID, ReplyTreeCodec.TOP_LEVEL_PARENT);
+        for (int d = 0; d < depth; d++) {
+            List<Long> next = new ArrayList<>();
+            for (Long parentId : level) {
+                String key = RedisKeyUtil.getRepliesChildrenZsetKey(parentId);
+                seededKeys.add(key);
+                for (int i = 0; i < fanout; i++) {
+                    long childId = nextId++;
+                    stringConnection.sync().zadd(key, (double) childId, String.valueOf(childId));
+                    parentById.put(childId, parentId);
+                    next.add(childId);
+                }
+            }
+            level = next;
+        }
+        String treeKey = RedisKeyUtil.getArticleReplyTreeKey(ARTICLE_ID);
+        seededKeys.add(treeKey);
+        byteConnection.sync().set(bytes(treeKey), ReplyTreeCodec.encodeSnapshot(parentById));
+    }
+
+    /**
+     * 现有方式：每层一次 pipeline，对当前层每个节点 ZREVRANGE
+     */
+    @Benchmark
+    public void zsetLevelWalk(Blackhole blackhole) {
+        RedisAsyncCommands<String, String> async = stringConnection.async();
+        List<String> level = List.of(String.valueOf(ROOT_REPLY_ID));
+        int nodes = 0;
+        while (!level.isEmpty()) {
+            List<RedisFuture<List<String>>> futures = new ArrayList<>(level.size());
+            stringConnection.setAutoFlushCommands(false);
+            for (String id : level) {
+                futures.add(async.zrevrange(RedisKeyUtil.getRepliesChildrenZsetKey(Long.parseLong(id)), 0, -1));
+            }
+            stringConnection.flushCommands();
+            stringConnection.setAutoFlushCommands(true);
+            LettuceFutures.awaitAll(Duration.ofSeconds(5), futures.toArray(new RedisFuture[0]));
+            List<String> next = new ArrayList<>();
+            for (RedisFuture<List<String>> future : futures) {
+                next.addAll(future.toCompletableFuture().join());
+            }
+            nodes += next.size();
+            level = next;
+        }
+        blackhole.consume(nodes);
+    }
+
+    /**
+     * 物化视图：一次 GET，内存中解码并展开
+     */
+    @Benchmark
+    public void materializedGet(Blackhole blackhole) {
+        byte[] blob = byteConnection.sync().get(bytes(RedisKeyUtil.getArticleReplyTreeKey(ARTICLE_ID)));
+        Map<Long, List<Long>> children = ReplyTreeCodec.decode(blob).childrenByParent();
+        Deque<Long> queue = new ArrayDeque<>(List.of(ROOT_REPLY_ID));
+        int nodes = 0;
+        while (!queue.isEmpty()) {
+            List<Long> childIds = children.getOrDefault(queue.poll(), List.of());
+            nodes += childIds.size();
+            queue.addAll(childIds);
+        }
+        blackhole.consume(nodes);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
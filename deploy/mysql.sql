@@ -89,6 +89,7 @@ create table article
     title        varchar(100)                       not null comment '标题',
     content      text                               not null comment '正文内容',
     visit_count  int      default 0                 null comment '访问次数',
+    unique_visit_count int default 0                null comment '独立访客数（只在独立访客模式下累加，新访客才会写入）',
     reply_count  int      default 0                 null comment '回复数量',
     like_count   int      default 0                 null comment '点赞数量',
     is_top       tinyint  default 0                 null comment '置顶标记',
@@ -106,6 +107,9 @@ create table article
 create index board_id
     on article (board_id);
 
+create index board_id_create_time
+    on article (board_id, delete_state, create_time);
+
 create index user_id
     on article (user_id);
 
@@ -156,6 +160,9 @@ create index article_id
 create index post_user_id
     on article_reply (post_user_id);
 
+create index reply_id
+    on article_reply (reply_id);
+
 create table likes
 (
     id          bigint auto_increment
@@ -170,6 +177,9 @@ create table likes
         foreign key (user_id) references user (id)
 );
 
+create index target_type_target_id
+    on likes (target_type, target_id);
+
 create table message
 (
     id              bigint auto_increment
@@ -177,7 +187,7 @@ create table message
     post_user_id    bigint                             not null,
     receive_user_id bigint                             not null,
     content         varchar(500)                       not null,
-    state           tinyint  default 0                 not null comment '状态 0未读 1已读 2已回复',
+    state           tinyint  default 0                 not null comment '状态 0未读 1已读 2已回复（已由 message_read_cursor 代替，不再维护）',
     delete_state    tinyint  default 0                 not null comment '删除状态',
     create_time     datetime default CURRENT_TIMESTAMP not null,
     update_time     datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP,
@@ -194,6 +204,28 @@ create index post_user_id
 create index receive_user_id
     on message (receive_user_id);
 
+-- 会话历史的 keyset 分页，每个方向一次索引倒序扫描
+create index post_receive_time
+    on message (post_user_id, receive_user_id, create_time, id);
+
+-- 按已读游标统计未读数、查询对方发来的最后一条消息id
+create index receive_post_id
+    on message (receive_user_id, post_user_id, id);
+
+create table message_read_cursor
+(
+    user_id              bigint                             not null comment '读者',
+    contact_id           bigint                             not null comment '会话的对方',
+    last_read_message_id bigint                             not null comment '已读到的消息id，对方发来的id更大的消息为未读',
+    update_time          datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP,
+    primary key (user_id, contact_id)
+)
+    comment '站内信已读游标，每个会话一行';
+
+-- 已有数据迁移：打开会话会把该会话全部标记为已读，已读的消息总是最早的一段，取其中最大的id作为游标
+-- insert into message_read_cursor (user_id, contact_id, last_read_message_id)
+-- select receive_user_id, post_user_id, max(id) from message where state <> 0 group by receive_user_id, post_user_id;
+
 create table user_position
 (
     id            bigint auto_increment
@@ -56,6 +56,7 @@ public enum ResultCode {
 
     ERROR_MESSAGE_NOT_VALID(6001,"消息不合法", HttpStatus.BAD_REQUEST),
     FAILED_MESSAGE_INSERT(6001,"消息创建失败", HttpStatus.INTERNAL_SERVER_ERROR),
+    FAILED_MESSAGE_PUSH_UNAVAILABLE(6002,"消息推送暂不可用，请使用轮询", HttpStatus.SERVICE_UNAVAILABLE),
 
     FAILED_DELETE_IMAGE(7001,"删除图片失败", HttpStatus.INTERNAL_SERVER_ERROR),;
 
@@ -0,0 +1,204 @@
+package com.doublez.kc_forum.common.cache;
+
+import com.doublez.kc_forum.model.Article;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 文章元数据与板块分页的进程内一级缓存（L1），位于 Redis（L2）之前。
+ * <p>
+ * 缓存两类数据：
+ * <ul>
+ *     <li>article:{id} Hash 映射后的 {@link Article} 元数据</li>
+ *     <li>board ZSET 的分页切片（文章id列表 + 板块文章总数）</li>
+ * </ul>
+ * 多节点之间通过 Redis pub/sub 广播失效消息：
+ * 发帖/改帖/删帖立即广播；点赞、浏览等计数变化频率很高，先在本地合并，每秒广播一次。
+ * 消息格式为 "a:1,2,3"（文章）或 "b:5"（板块）。
+ */
+@Slf4j
+@Component
+public class ArticleLocalCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "cache:invalidate:article";
+    private static final String ARTICLE_MESSAGE_PREFIX = "a:";
+    private static final String BOARD_MESSAGE_PREFIX = "b:";
+    private static final String ID_SEPARATOR = ",";
+
+    /**
+     * 板块分页的缓存键，start/end 与 ZREVRANGE 的下标一致
+     */
+    public record BoardPageKey(Long boardId, long start, long end) {}
+
+    /**
+     * 板块分页切片：当前页的文章id（保持ZSET顺序）以及板块文章总数
+     */
+    public record BoardPage(List<Long> articleIds, long total) {}
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Cache<Long, Article> articleCache;
+    private final Cache<BoardPageKey, BoardPage> boardPageCache;
+    // 等待合并广播的计数类失效
+    private final Set<Long> pendingCounterInvalidations = ConcurrentHashMap.newKeySet();
+    // 一个广播周期内最多合并的文章数，超出后只失效本地，其他节点依赖TTL兜底
+    private final int maxPendingCounterInvalidations;
+
+    @Autowired
+    public ArticleLocalCache(StringRedisTemplate stringRedisTemplate,
+                             @Value("${kc.cache.l1.article.max-size:10000}") long articleMaxSize,
+                             @Value("${kc.cache.l1.article.ttl-ms:10000}") long articleTtlMs,
+                             @Value("${kc.cache.l1.board-page.max-size:2000}") long boardPageMaxSize,
+                             @Value("${kc.cache.l1.board-page.ttl-ms:5000}") long boardPageTtlMs,
+                             @Value("${kc.cache.l1.max-pending-counter-invalidations:10000}") int maxPendingCounterInvalidations) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.maxPendingCounterInvalidations = maxPendingCounterInvalidations;
+        this.articleCache = Caffeine.newBuilder()
+                .maximumSize(articleMaxSize)
+                .expireAfterWrite(Duration.ofMillis(articleTtlMs))
+                .recordStats()
+                .build();
+        this.boardPageCache = Caffeine.newBuilder()
+                .maximumSize(boardPageMaxSize)
+                .expireAfterWrite(Duration.ofMillis(boardPageTtlMs))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 批量读取文章元数据，只返回命中的部分
+     */
+    public Map<Long, Article> getArticles(Collection<Long> articleIds) {
+        return articleCache.getAllPresent(articleIds);
+    }
+
+    public void putArticle(Article article) {
+        if (article == null || article.getId() == null) return;
+        articleCache.put(article.getId(), article);
+    }
+
+    public BoardPage getBoardPage(Long boardId, long start, long end) {
+        return boardPageCache.getIfPresent(new BoardPageKey(boardId, start, end));
+    }
+
+    public void putBoardPage(Long boardId, long start, long end, BoardPage page) {
+        boardPageCache.put(new BoardPageKey(boardId, start, end), page);
+    }
+
+    /**
+     * 文章元数据发生结构性变化（发帖/改帖/删帖），本地立即失效并广播
+     */
+    public void invalidateArticle(Long articleId) {
+        if (articleId == null) return;
+        evictArticles(List.of(articleId));
+        publish(ARTICLE_MESSAGE_PREFIX + articleId);
+    }
+
+    /**
+     * 板块文章列表发生变化，本地立即失效该板块的所有分页并广播
+     */
+    public void invalidateBoard(Long boardId) {
+        if (boardId == null) return;
+        evictBoard(boardId);
+        publish(BOARD_MESSAGE_PREFIX + boardId);
+    }
+
+    /**
+     * 点赞/回复等计数发生变化，本地立即失效，广播延后合并发送。
+     * 浏览量变化太频繁，不走这里，由 L1 的短 TTL 兜底
+     */
+    public void invalidateArticleCounters(Long articleId) {
+        if (articleId == null) return;
+        articleCache.invalidate(articleId);
+        if (pendingCounterInvalidations.size() < maxPendingCounterInvalidations) {
+            pendingCounterInvalidations.add(articleId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${kc.cache.l1.counter-broadcast-ms:1000}")
+    public void flushCounterInvalidations() {
+        if (pendingCounterInvalidations.isEmpty()) return;
+        List<Long> ids = new ArrayList<>();
+        Iterator<Long> iterator = pendingCounterInvalidations.iterator();
+        while (iterator.hasNext()) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+        publish(ARTICLE_MESSAGE_PREFIX + ids.stream().map(String::valueOf).collect(Collectors.joining(ID_SEPARATOR)));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            if (body.startsWith(ARTICLE_MESSAGE_PREFIX)) {
+                List<Long> ids = Arrays.stream(body.substring(ARTICLE_MESSAGE_PREFIX.length()).split(ID_SEPARATOR))
+                        .map(Long::parseLong)
+                        .toList();
+                evictArticles(ids);
+            } else if (body.startsWith(BOARD_MESSAGE_PREFIX)) {
+                evictBoard(Long.parseLong(body.substring(BOARD_MESSAGE_PREFIX.length())));
+            } else {
+                log.warn("未知的L1缓存失效消息: {}", body);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("L1缓存失效消息格式错误: {}", body, e);
+        }
+    }
+
+    public CacheStats articleStats() {
+        return articleCache.stats();
+    }
+
+    public CacheStats boardPageStats() {
+        return boardPageCache.stats();
+    }
+
+    public Cache<Long, Article> articleCache() {
+        return articleCache;
+    }
+
+    public Cache<BoardPageKey, BoardPage> boardPageCache() {
+        return boardPageCache;
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void logStats() {
+        CacheStats articleStats = articleCache.stats();
+        CacheStats pageStats = boardPageCache.stats();
+        log.info("L1缓存统计 article: hit={}, miss={}, eviction={}, hitRate={}; boardPage: hit={}, miss={}, eviction={}, hitRate={}",
+                articleStats.hitCount(), articleStats.missCount(), articleStats.evictionCount(), String.format("%.3f", articleStats.hitRate()),
+                pageStats.hitCount(), pageStats.missCount(), pageStats.evictionCount(), String.format("%.3f", pageStats.hitRate()));
+    }
+
+    private void evictArticles(Collection<Long> articleIds) {
+        articleCache.invalidateAll(articleIds);
+    }
+
+    private void evictBoard(Long boardId) {
+        boardPageCache.asMap().keySet().removeIf(key -> boardId.equals(key.boardId()));
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (Exception e) {
+            // 广播失败时其他节点依赖TTL兜底
+            log.error("广播L1缓存失效消息失败: {}", message, e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.doublez.kc_forum.common.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 按 key 合并并发的缓存未命中加载（single-flight）。
+ * <p>
+ * 同一个 key 同时只有一个调用方真正回源（MySQL），其余调用方等待同一个 future 的结果，
+ * 避免热点 key 过期瞬间的击穿。等待超时后调用方自行回源，保证不会因为领头者卡住而全部阻塞。
+ * <p>
+ * 每个命名空间单独统计回源次数与被合并的请求数。
+ */
+@Slf4j
+@Component
+public class SingleFlight {
+
+    public static final String NS_ARTICLE_DETAIL = "article:detail";
+    public static final String NS_TOP_REPLIES = "reply:top";
+    public static final String NS_USER = "user";
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> loadCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> coalescedCounters = new ConcurrentHashMap<>();
+    private final long waitTimeoutMs;
+
+    public SingleFlight(@Value("${kc.single-flight.wait-timeout-ms:3000}") long waitTimeoutMs) {
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+    /**
+     * 加载单个 key，loader 可以返回 null（例如数据不存在）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(String namespace, Object key, Supplier<T> loader) {
+        String flightKey = namespace + ":" + key;
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, future);
+        if (existing != null) {
+            counter(coalescedCounters, namespace).increment();
+            return (T) await(existing, flightKey, loader);
+        }
+        counter(loadCounters, namespace).increment();
+        try {
+            T value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, future);
+        }
+    }
+
+    /**
+     * 批量加载：本次调用负责其他人没有在加载的 key（一次批量回源），
+     * 对正在被其他调用方加载的 key 则等待其结果。返回结果中不包含值为 null 的 key。
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> loadAll(String namespace, Collection<K> keys, Function<List<K>, Map<K, V>> batchLoader) {
+        Map<K, CompletableFuture<Object>> owned = new LinkedHashMap<>();
+        Map<K, CompletableFuture<Object>> joined = new LinkedHashMap<>();
+        for (K key : keys) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(namespace + ":" + key, future);
+            if (existing == null) {
+                owned.put(key, future);
+            } else {
+                joined.put(key, existing);
+            }
+        }
+
+        Map<K, V> result = new HashMap<>();
+        // 先完成自己负责的部分再等待别人，避免相互等待
+        if (!owned.isEmpty()) {
+            counter(loadCounters, namespace).increment();
+            try {
+                Map<K, V> loaded = batchLoader.apply(new ArrayList<>(owned.keySet()));
+                owned.forEach((key, future) -> {
+                    V value = loaded == null ? null : loaded.get(key);
+                    future.complete(value);
+                    if (value != null) result.put(key, value);
+                });
+            } catch (RuntimeException | Error e) {
+                owned.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach((key, future) -> inFlight.remove(namespace + ":" + key, future));
+            }
+        }
+
+        if (!joined.isEmpty()) {
+            counter(coalescedCounters, namespace).add(joined.size());
+            List<K> timedOut = new ArrayList<>();
+            joined.forEach((key, future) -> {
+                try {
+                    V value = (V) unwrap(future, namespace + ":" + key);
+                    if (value != null) result.put(key, value);
+                } catch (TimeoutException e) {
+                    timedOut.add(key);
+                }
+            });
+            if (!timedOut.isEmpty()) {
+                log.warn("single-flight 等待超时，自行回源, namespace:{}, keys:{}", namespace, timedOut);
+                Map<K, V> loaded = batchLoader.apply(timedOut);
+                if (loaded != null) {
+                    loaded.forEach((key, value) -> { if (value != null) result.put(key, value); });
+                }
+            }
+        }
+        return result;
+    }
+
+    public long loadCount(String namespace) {
+        LongAdder adder = loadCounters.get(namespace);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public long coalescedCount(String namespace) {
+        LongAdder adder = coalescedCounters.get(namespace);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public Set<String> namespaces() {
+        Set<String> namespaces = new HashSet<>(loadCounters.keySet());
+        namespaces.addAll(coalescedCounters.keySet());
+        return namespaces;
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void logStats() {
+        for (String namespace : namespaces()) {
+            log.info("single-flight 统计 namespace:{}, 回源次数:{}, 被合并请求数:{}",
+                    namespace, loadCount(namespace), coalescedCount(namespace));
+        }
+    }
+
+    private Object await(CompletableFuture<Object> future, String flightKey, Supplier<?> loader) {
+        try {
+            return unwrap(future, flightKey);
+        } catch (TimeoutException e) {
+            log.warn("single-flight 等待超时，自行回源, key:{}", flightKey);
+            return loader.get();
+        }
+    }
+
+    private Object unwrap(CompletableFuture<Object> future, String flightKey) throws TimeoutException {
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException("single-flight 加载失败, key:" + flightKey, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("single-flight 等待被中断, key:" + flightKey, e);
+        }
+    }
+
+    private static LongAdder counter(ConcurrentHashMap<String, LongAdder> counters, String namespace) {
+        return counters.computeIfAbsent(namespace, k -> new LongAdder());
+    }
+}
@@ -0,0 +1,59 @@
+package com.doublez.kc_forum.common.concurrent;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * 按下游资源（数据库连接池、Redis 连接）限制并发的信号量。
+ * <p>
+ * 线程池模式下并发由线程数间接限制；虚拟线程模式下线程不再稀缺，改由这里的许可数直接对应下游连接数，
+ * 多出来的任务在虚拟线程上阻塞等待许可，而不是被线程池拒绝。
+ * 占用的许可数与等待许可的耗时计入 kc.resource.permits.used / kc.resource.permit.wait。
+ */
+public class ResourceLimiter {
+
+    private final String name;
+    private final int permits;
+    private final Semaphore semaphore;
+    private final ForumMetrics metrics;
+
+    public ResourceLimiter(String name, int permits, ForumMetrics metrics) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("许可数必须大于0: " + name);
+        }
+        this.name = name;
+        this.permits = permits;
+        this.semaphore = new Semaphore(permits, true);
+        this.metrics = metrics;
+        metrics.bindResourceLimiter(this);
+    }
+
+    /**
+     * 包装任务：执行前获取一个许可，执行后释放，可直接作为 TaskDecorator 使用
+     */
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            long start = System.nanoTime();
+            semaphore.acquireUninterruptibly();
+            metrics.recordPermitWait(name, System.nanoTime() - start);
+            try {
+                task.run();
+            } finally {
+                semaphore.release();
+            }
+        };
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int permits() {
+        return permits;
+    }
+
+    public int inUse() {
+        return permits - semaphore.availablePermits();
+    }
+}
@@ -1,38 +1,104 @@
 package com.doublez.kc_forum.common.config;
 
+import com.doublez.kc_forum.common.concurrent.ResourceLimiter;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
+/**
+ * 异步执行器，两种模式：
+ * <ul>
+ *     <li>线程池（默认）：线程数、队列长度等由 Spring Boot 自动以 executor.* 指标暴露（name 标签为 Bean 名称），
+ *     被拒绝的任务额外计入 kc.executor.rejected，仍按默认的 AbortPolicy 抛出异常</li>
+ *     <li>虚拟线程（kc.async.virtual-threads，需要 Java 21）：每个任务一个虚拟线程，不再有队列与拒绝</li>
+ * </ul>
+ * 两种模式下任务都先获取对应下游资源的许可（{@link ResourceLimiter}），许可数与数据库连接池、Redis 连接数对应
+ */
+@Slf4j
 @Configuration
 @EnableAsync(proxyTargetClass=true)
 public class AsyncConfig {
     public static final String DB_PERSISTENCE_EXECUTOR = "dbPersistenceExecutor";
     public static final String REDIS_PERSISTENCE_EXECUTOR = "redisPersistenceExecutor";
+    public static final String MESSAGE_PUSH_EXECUTOR = "messagePushExecutor";
+
+    @Value("${kc.async.virtual-threads:${spring.threads.virtual.enabled:false}}")
+    private boolean virtualThreads;
+    // 默认与 Druid 的 max-active 一致，调小可以给请求线程预留连接
+    @Value("${kc.async.db-permits:${spring.datasource.druid.max-active:8}}")
+    private int dbPermits;
+    @Value("${kc.async.redis-permits:${spring.data.redis.lettuce.pool.max-active:8}}")
+    private int redisPermits;
 
     @Bean(DB_PERSISTENCE_EXECUTOR)
-    public Executor dbPersistenceExecutor() {
+    public Executor dbPersistenceExecutor(ForumMetrics metrics) {
+        return createExecutor(DB_PERSISTENCE_EXECUTOR, "DbPersist-", new ResourceLimiter(DB_PERSISTENCE_EXECUTOR, dbPermits, metrics), metrics);
+    }
+
+    @Bean(REDIS_PERSISTENCE_EXECUTOR)
+    public Executor redisPersistenceExecutor(ForumMetrics metrics) {
+        return createExecutor(REDIS_PERSISTENCE_EXECUTOR, "RedisPersist-", new ResourceLimiter(REDIS_PERSISTENCE_EXECUTOR, redisPermits, metrics), metrics);
+    }
+
+    /**
+     * 站内信推送的写出线程，慢连接只阻塞这里，不阻塞 Redis 监听线程。不涉及数据库/Redis，不做许可限流
+     */
+    @Bean(MESSAGE_PUSH_EXECUTOR)
+    public Executor messagePushExecutor(ForumMetrics metrics) {
+        if (useVirtualThreads()) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("MessagePush-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(500);
-        executor.setThreadNamePrefix("DbPersist-");
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("MessagePush-");
+        executor.setRejectedExecutionHandler(countingAbortPolicy(MESSAGE_PUSH_EXECUTOR, metrics));
         executor.initialize();
         return executor;
     }
 
-    @Bean(REDIS_PERSISTENCE_EXECUTOR)
-    public Executor redisPersistenceExecutor() {
+    private Executor createExecutor(String executorName, String threadNamePrefix, ResourceLimiter limiter, ForumMetrics metrics) {
+        if (useVirtualThreads()) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(limiter::wrap);
+            log.info("异步执行器 {} 使用虚拟线程, 许可数:{}", executorName, limiter.permits());
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
         executor.setQueueCapacity(500);
-        executor.setThreadNamePrefix("RedisPersist-");
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setTaskDecorator(limiter::wrap);
+        executor.setRejectedExecutionHandler(countingAbortPolicy(executorName, metrics));
         executor.initialize();
         return executor;
     }
+
+    private boolean useVirtualThreads() {
+        if (!virtualThreads) return false;
+        if (Runtime.version().feature() >= 21) return true;
+        log.warn("当前 Java 版本 {} 不支持虚拟线程，异步执行器继续使用线程池", Runtime.version().feature());
+        return false;
+    }
+
+    private static RejectedExecutionHandler countingAbortPolicy(String executorName, ForumMetrics metrics) {
+        RejectedExecutionHandler abortPolicy = new ThreadPoolExecutor.AbortPolicy();
+        return (task, executor) -> {
+            metrics.recordExecutorRejected(executorName);
+            abortPolicy.rejectedExecution(task, executor);
+        };
+    }
 }
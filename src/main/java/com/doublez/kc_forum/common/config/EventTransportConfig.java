@@ -0,0 +1,32 @@
+package com.doublez.kc_forum.common.config;
+
+import com.doublez.kc_forum.common.mq.EventTransport;
+import com.doublez.kc_forum.common.mq.RabbitEventTransport;
+import com.doublez.kc_forum.common.mq.RedisStreamEventTransport;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@Configuration
+public class EventTransportConfig {
+
+    /**
+     * 按 kc.event.transport 选择事件传输通道，选择 redis-stream 时 RabbitMQ 监听容器不会启动
+     */
+    @Bean
+    public EventTransport eventTransport(@Value("${kc.event.transport:rabbitmq}") String transport,
+                                         RabbitTemplate rabbitTemplate,
+                                         StringRedisTemplate stringRedisTemplate,
+                                         MessageConverter jsonMessageConverter,
+                                         @Value("${kc.outbox.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+                                         @Value("${kc.event.redis-stream.max-len:1000000}") long maxLen) {
+        return switch (transport) {
+            case EventTransport.RABBITMQ -> new RabbitEventTransport(rabbitTemplate, confirmTimeoutMs);
+            case EventTransport.REDIS_STREAM -> new RedisStreamEventTransport(stringRedisTemplate, jsonMessageConverter, maxLen);
+            default -> throw new IllegalStateException("不支持的事件传输通道 kc.event.transport: " + transport);
+        };
+    }
+}
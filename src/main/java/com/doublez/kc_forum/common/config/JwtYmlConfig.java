@@ -11,7 +11,8 @@ import org.springframework.context.annotation.Configuration;
 public class JwtYmlConfig {
 
     public JwtYmlConfig(@Value("${jwt.secret}") String secret,
-                          @Value("${jwt.access-token.expiration-ms}") Integer expirationMs) {
+                          @Value("${jwt.access-token.expiration-ms}") Integer expirationMs,
+                          @Value("${kc.auth.token-cache.max-size:10000}") int tokenCacheSize) {
         // 通过构造函数注入并初始化 ，因为字段是final
         // 这种情况下，secret 和 expirationMs 字段可以是 final
 
@@ -24,7 +25,7 @@ public class JwtYmlConfig {
             log.error("JWT expiration is not configured. Cannot initialize JwtUtil.");
             throw new IllegalStateException("JWT expiration ('jwt.access-token.expiration-ms') is missing in configuration.");
         }
-        JwtUtil.init(secret, expirationMs);
+        JwtUtil.init(secret, expirationMs, tokenCacheSize);
     }
 
 }
\ No newline at end of file
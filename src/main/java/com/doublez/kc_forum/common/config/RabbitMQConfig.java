@@ -1,10 +1,14 @@
 package com.doublez.kc_forum.common.config;
 
+import com.doublez.kc_forum.common.mq.EventTransport;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -16,6 +20,10 @@ public class RabbitMQConfig {
     public static final String VIEW_QUEUE_NAME = "forum.view.persistence.queue";
     public static final String LIKE_ROUTING_KEY = "event.like";
     public static final String VIEW_ROUTING_KEY = "event.view";
+    public static final String LIKE_BATCH_CONTAINER_FACTORY = "likeBatchContainerFactory";
+    public static final String VIEW_BATCH_CONTAINER_FACTORY = "viewBatchContainerFactory";
+    // 只有 kc.event.transport=rabbitmq 时才启动监听容器
+    public static final String LISTENER_AUTO_STARTUP = "#{'${kc.event.transport:rabbitmq}' == '" + EventTransport.RABBITMQ + "'}";
 
     @Bean
     public DirectExchange forumEventExchange() {
@@ -53,4 +61,49 @@ public class RabbitMQConfig {
         rabbitTemplate.setMessageConverter(jsonMessageConverter());
         return rabbitTemplate;
     }
+
+    /**
+     * 点赞事件的批量消费容器：攒够 batchSize 条，或者 receiveTimeout 毫秒内没有新消息时交付一批，
+     * 由消费者手动 basicAck(multiple=true) 整批确认
+     */
+    @Bean(LIKE_BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory likeBatchContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                          ConnectionFactory connectionFactory,
+                                                                          @Value("${kc.mq.like.batch-size:200}") int batchSize,
+                                                                          @Value("${kc.mq.like.batch-timeout-ms:200}") long batchTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchTimeoutMs);
+        // 预取数量至少要能装下一整批
+        factory.setPrefetchCount(batchSize);
+        return factory;
+    }
+
+    /**
+     * 浏览事件的批量消费容器：手动ACK，消息在浏览量落库提交后才确认，
+     * 预取数量需要容纳若干个等待落库的批次
+     */
+    @Bean(VIEW_BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory viewBatchContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                          ConnectionFactory connectionFactory,
+                                                                          @Value("${kc.mq.view.batch-size:500}") int batchSize,
+                                                                          @Value("${kc.mq.view.batch-timeout-ms:200}") long batchTimeoutMs,
+                                                                          @Value("${kc.mq.view.concurrency:1}") int concurrency) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchTimeoutMs);
+        factory.setPrefetchCount(batchSize * 4);
+        factory.setConcurrentConsumers(concurrency);
+        return factory;
+    }
 }
@@ -1,5 +1,7 @@
 package com.doublez.kc_forum.common.config;
 
+import com.doublez.kc_forum.common.cache.ArticleLocalCache;
+import com.doublez.kc_forum.service.impl.MessagePushService;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
@@ -14,6 +16,8 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -40,11 +44,79 @@ public class RedisConfig {
     }
 
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
-        RedisTemplate<String, Object> template = new RedisTemplate<>();
-        template.setConnectionFactory(connectionFactory);
+    public RedisScript<Long> boardZsetAddScript() {
+        return RedisScript.of(new ClassPathResource("scripts/board_zset_add.lua"), Long.class);
+    }
 
-        // 1. 先创建和配置 ObjectMapper
+    @Bean
+    public RedisScript<Long> boardZsetPublishScript() {
+        return RedisScript.of(new ClassPathResource("scripts/board_zset_publish.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> leaseRenewScript() {
+        return RedisScript.of(new ClassPathResource("scripts/lease_renew.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> leaseReleaseScript() {
+        return RedisScript.of(new ClassPathResource("scripts/lease_release.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> replyTreeAppendScript() {
+        return RedisScript.of(new ClassPathResource("scripts/reply_tree_append.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<List> counterDirtyPopScript() {
+        return RedisScript.of(new ClassPathResource("scripts/counter_dirty_pop.lua"), List.class);
+    }
+
+    @Bean
+    public RedisScript<Long> counterRepairScript() {
+        return RedisScript.of(new ClassPathResource("scripts/counter_repair.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> counterIncrCachedScript() {
+        return RedisScript.of(new ClassPathResource("scripts/counter_incr_cached.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> hotRankIncrScript() {
+        return RedisScript.of(new ClassPathResource("scripts/hot_rank_incr.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> refreshTokenIssueScript() {
+        return RedisScript.of(new ClassPathResource("scripts/refresh_token_issue.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<List> refreshTokenRotateScript() {
+        return RedisScript.of(new ClassPathResource("scripts/refresh_token_rotate.lua"), List.class);
+    }
+
+    @Bean
+    public RedisScript<Long> conversationMessageScript() {
+        return RedisScript.of(new ClassPathResource("scripts/conversation_message.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> conversationReadScript() {
+        return RedisScript.of(new ClassPathResource("scripts/conversation_read.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> conversationRebuildScript() {
+        return RedisScript.of(new ClassPathResource("scripts/conversation_rebuild.lua"), Long.class);
+    }
+
+    /**
+     * redisTemplate 值序列化使用的 ObjectMapper（带类型信息），单独暴露给基准测试构造相同的序列化器
+     */
+    public static ObjectMapper redisObjectMapper() {
         ObjectMapper om = new ObjectMapper();
         om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
         // JdkSubTypeValidator.instance 替代 LaissezFaireSubTypeValidator.instance (如果 spring-boot 版本 >= 2.5.x 且 jackson 版本支持)
@@ -52,6 +124,16 @@ public class RedisConfig {
         om.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
         om.registerModule(new JavaTimeModule()); // 支持 Java 8 日期时间
         om.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS); // 日期不序列化为时间戳
+        return om;
+    }
+
+    @Bean
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+
+        // 1. 先创建和配置 ObjectMapper
+        ObjectMapper om = redisObjectMapper();
 
         // 2. 在构造 Jackson2JsonRedisSerializer 时传入 ObjectMapper
         Jackson2JsonRedisSerializer<Object> jacksonSeial = new Jackson2JsonRedisSerializer<>(om, Object.class);
@@ -70,4 +152,18 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
+
+    /**
+     * Redis pub/sub 监听容器，用于接收各节点广播的L1缓存失效消息与站内信推送
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       ArticleLocalCache articleLocalCache,
+                                                                       MessagePushService messagePushService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(articleLocalCache, new ChannelTopic(ArticleLocalCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(messagePushService, new ChannelTopic(MessagePushService.PUSH_CHANNEL));
+        return container;
+    }
 }
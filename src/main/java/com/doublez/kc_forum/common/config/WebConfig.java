@@ -1,17 +1,21 @@
 package com.doublez.kc_forum.common.config;
 
+import com.doublez.kc_forum.common.interceptor.CurrentUserArgumentResolver;
 import com.doublez.kc_forum.common.interceptor.Interceptor;
 import com.doublez.kc_forum.common.interceptor.ProactiveTokenRefreshInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.multipart.MultipartResolver;
 import org.springframework.web.multipart.support.StandardServletMultipartResolver;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
@@ -27,6 +31,9 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private ProactiveTokenRefreshInterceptor proactiveRefreshInterceptor; // 注入主动刷新拦截器
 
+    @Autowired
+    private CurrentUserArgumentResolver currentUserArgumentResolver; // @CurrentUser 参数解析
+
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
@@ -44,6 +51,8 @@ public class WebConfig implements WebMvcConfigurer {
                         // --- Swagger/OpenAPI ---
                         "/v3/api-docs/**",              // OpenAPI v3 JSON/YAML 定义
                         "/swagger-ui/**",               // Swagger UI 页面及资源
+                        // --- 监控 ---
+                        "/actuator/**",                 // 健康检查与 Prometheus 指标
                         // --- 静态资源 ---
                         "/avatars/**",                  // 头像资源
                         "/articles/**",                 // 文章资源 (如果公开)
@@ -69,6 +78,8 @@ public class WebConfig implements WebMvcConfigurer {
                         // --- Swagger/OpenAPI ---
                         "/v3/api-docs/**",              // OpenAPI v3 JSON/YAML 定义
                         "/swagger-ui/**",               // Swagger UI 页面及资源
+                        // --- 监控 ---
+                        "/actuator/**",                 // 健康检查与 Prometheus 指标
                         // --- 静态资源 ---
                         "/avatars/**",                  // 头像资源
                         "/articles/**",                 // 文章资源 (如果公开)
@@ -78,6 +89,10 @@ public class WebConfig implements WebMvcConfigurer {
                 .order(2); // !! 设置执行顺序为 2 (在认证之后) !!
     }
 
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(currentUserArgumentResolver);
+    }
 
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
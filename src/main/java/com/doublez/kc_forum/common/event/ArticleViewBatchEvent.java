@@ -0,0 +1,20 @@
+package com.doublez.kc_forum.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * 一个聚合周期内的浏览量增量，由 ViewCountAggregator 发送
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArticleViewBatchEvent implements Serializable {
+    private Map<Long, Long> counts; // 文章id -> 浏览次数
+    private Map<Long, Long> uniqueCounts; // 文章id -> 新增独立访客数，只在独立访客模式下有值
+    private Long timestamp;
+}
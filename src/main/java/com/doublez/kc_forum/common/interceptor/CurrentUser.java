@@ -0,0 +1,16 @@
+package com.doublez.kc_forum.common.interceptor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注 Controller 参数为当前登录用户，由 {@link CurrentUserArgumentResolver} 从认证拦截器放入的登录信息中解析。
+ * <p>
+ * 参数类型为 {@code Long} 时注入用户id，为 {@link com.doublez.kc_forum.common.pojo.AuthenticatedPrincipal} 时注入完整的登录信息。
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUser {
+}
@@ -0,0 +1,32 @@
+package com.doublez.kc_forum.common.interceptor;
+
+import com.doublez.kc_forum.common.pojo.AuthenticatedPrincipal;
+import com.doublez.kc_forum.common.utiles.JwtUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * 解析 {@link CurrentUser} 参数。登录信息由认证拦截器放入 request attribute，
+ * 这里只是读取；没有经过拦截器的请求才会从请求头校验 Token（见 {@link JwtUtil#getPrincipal}）。
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && (Long.class == parameter.getParameterType() || AuthenticatedPrincipal.class == parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        return Long.class == parameter.getParameterType() ? JwtUtil.getUserId(request) : JwtUtil.getPrincipal(request);
+    }
+}
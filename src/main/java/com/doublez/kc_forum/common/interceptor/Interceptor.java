@@ -3,11 +3,12 @@ package com.doublez.kc_forum.common.interceptor;
 
 import com.doublez.kc_forum.common.Result;
 import com.doublez.kc_forum.common.ResultCode;
+import com.doublez.kc_forum.common.pojo.AuthenticatedPrincipal;
 import com.doublez.kc_forum.common.utiles.JwtUtil;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -41,6 +42,10 @@ public class Interceptor implements HandlerInterceptor {
         if ("OPTIONS".equals(request.getMethod())) {
             return true;
         }
+        // 异步请求（SSE 推送）结束时的 ASYNC 分发沿用首次请求的认证结果，连接期间 Token 过期不应再返回 401
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
 //        log.info("认证头是：{}",request.getHeader("Authorization"));
         String authorizationHeader = request.getHeader("Authorization");
         if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
@@ -51,18 +56,15 @@ public class Interceptor implements HandlerInterceptor {
         String token = authorizationHeader.substring(7);
 
         try {
-            Claims claims = JwtUtil.parseToken(token); // 尝试解析 Token
+            AuthenticatedPrincipal principal = JwtUtil.authenticate(token); // 尝试校验 Token（命中已校验缓存时不再验签）
 
-            if (claims != null) {
-                // !! 关键改动：Token 有效，将 Claims 存入 request attribute !!
-                // 使用 ProactiveTokenRefreshInterceptor 中定义的常量作为 Key
-                request.setAttribute(ProactiveTokenRefreshInterceptor.CLAIMS_ATTRIBUTE, claims);
-                log.debug("Token 验证通过. User ID: {}", claims.get("Id"));
-                // 可选: 也可以单独存 UserID 等常用信息
-                // request.setAttribute("userId", Long.valueOf(claims.get("Id").toString()));
+            if (principal != null) {
+                // Token 有效，登录信息存入 request attribute，后续拦截器与 @CurrentUser 参数直接读取，不再重复解析
+                request.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, principal);
+                log.debug("Token 验证通过. User ID: {}", principal.userId());
                 return true; // 放行请求
             } else {
-                // parseToken 返回 null，表示 Token 无效（非过期原因）
+                // authenticate 返回 null，表示 Token 无效（非过期原因）
                 log.warn("认证失败: Token 无效 (非过期). URI: {}", request.getRequestURI());
                 setUnauthorizedResponse(response, "令牌无效，请重新登录");
                 return false;
@@ -1,7 +1,7 @@
 package com.doublez.kc_forum.common.interceptor;
 
+import com.doublez.kc_forum.common.pojo.AuthenticatedPrincipal;
 import com.doublez.kc_forum.common.utiles.JwtUtil;
-import io.jsonwebtoken.Claims;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -11,7 +11,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,14 +22,11 @@ public class ProactiveTokenRefreshInterceptor implements HandlerInterceptor {
     @Value("${jwt.proactive-refresh.threshold-ms}")
     private long proactiveRefreshThresholdMs;
 
-    // 定义存储原始 Claims 的请求属性名称
-    public static final String CLAIMS_ATTRIBUTE = "Authorization";
     // 定义传递新 Access Token 的响应头名称
     public static final String NEW_ACCESS_TOKEN_ATTRIBUTE = "NewAccessToken";
 
     /**
-     * 在 preHandle 中，如果 Token 验证通过 (未过期且有效)，
-     * 将解析出的 Claims 存入 request attribute，供 postHandle 使用。
+     * 认证拦截器验证通过 (未过期且有效) 后，会将登录信息存入 request attribute，这里直接读取，不再解析 Token。
      * 注意：这个 preHandle 应该在原来的认证拦截器 之后 执行，
      *
      * 检查 Access Token 是否接近过期，如果是，生成新 Token 并放入响应头。
@@ -47,32 +43,28 @@ public class ProactiveTokenRefreshInterceptor implements HandlerInterceptor {
 
         // 检查是否配置了有效的刷新阈值
         if (proactiveRefreshThresholdMs <= 0) {
-            return false; // 阈值无效或禁用，直接返回
+            return true; // 阈值无效或禁用，不做主动刷新，直接放行
         }
 
-        String authorizationHeader = request.getHeader("Authorization");
-        //获取token
-        String token = authorizationHeader.substring(7);
-        //获取Claims
-        Claims claims = JwtUtil.parseToken(token);
+        // 由认证拦截器放入
+        AuthenticatedPrincipal principal = (AuthenticatedPrincipal) request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
 
-        // 只有当 Claims 存在时才进行处理 (意味着 preHandle 验证通过且 Token 未过期)
-        if (claims != null) {
-            Date expiration = claims.getExpiration();
-            if (expiration != null) {
+        // 只有当登录信息存在时才进行处理 (意味着 preHandle 验证通过且 Token 未过期)
+        if (principal != null) {
+            if (principal.expiresAtMillis() != Long.MAX_VALUE) {
                 long now = System.currentTimeMillis();
-                long remainingMillis = expiration.getTime() - now;
+                long remainingMillis = principal.expiresAtMillis() - now;
 
                 // 判断剩余时间是否小于等于阈值，并且大于 0 (确保 Token 仍然有效)
                 if (remainingMillis > 0 && remainingMillis <= proactiveRefreshThresholdMs) {
                     //取出原token中的信息
-                    String email = String.valueOf(claims.get("email").toString());
+                    String email = principal.email();
                     try {
                         //放入载荷
                         Map<String,Object> accessTokenClaims  = new HashMap<>();
 
                         accessTokenClaims .put("email",email);
-                        accessTokenClaims .put("Id", Long.valueOf(claims.get("Id").toString()));
+                        accessTokenClaims .put("Id", principal.userId());
                         //构建新的token
                         String newAccessToken = JwtUtil.genToken(accessTokenClaims);
 
@@ -87,7 +79,7 @@ public class ProactiveTokenRefreshInterceptor implements HandlerInterceptor {
                     }
                 }
             } else {
-                log.warn("在 preHandle 中获取到的 Claims 没有过期时间，无法进行主动刷新判断。");
+                log.warn("在 preHandle 中获取到的 Token 没有过期时间，无法进行主动刷新判断。");
             }
         }
         return true; // 默认放行，让 postHandle 处理
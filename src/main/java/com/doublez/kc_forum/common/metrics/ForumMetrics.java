@@ -0,0 +1,161 @@
+package com.doublez.kc_forum.common.metrics;
+
+import com.doublez.kc_forum.common.concurrent.ResourceLimiter;
+import com.doublez.kc_forum.common.outbox.OutboxLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 热点路径的业务指标，统一在这里定义名称与标签，经 /actuator/prometheus 暴露。
+ * <p>
+ * 接口耗时由 Spring Boot 自带的 http.server.requests 记录，线程池队列长度由 executor.* 记录，
+ * 这里只补充它们覆盖不到的部分：
+ * <ul>
+ *     <li>kc.redis.pipeline.commands / kc.redis.pipeline.latency：每次 pipeline 的命令数与耗时，按操作区分</li>
+ *     <li>kc.cache.l2.requests：Redis 缓存按 Key 类型（见 RedisKeyUtil.FAMILY_*）统计命中/未命中</li>
+ *     <li>kc.cache.backfill：缓存回填微批中被合并（同一 Key 重复回填）与因队列已满被丢弃的回填数</li>
+ *     <li>kc.executor.rejected：异步线程池拒绝的任务数</li>
+ *     <li>kc.resource.permits.used / kc.resource.permits.limit / kc.resource.permit.wait：异步任务按下游资源限流时占用的许可数、许可总数与等待许可的耗时</li>
+ *     <li>kc.mq.publish.latency / kc.mq.consume.lag：MQ 发送耗时与事件从产生到被消费的延迟，按队列区分</li>
+ *     <li>kc.outbox.backlog.bytes / kc.outbox.appends / kc.outbox.syncs：本地发件箱待投递字节数、追加次数与 fsync 次数（两者之比即组提交的平均批大小）</li>
+ *     <li>kc.visit.aggregate.dropped：浏览量本地聚合因缓冲区满或下游故障丢弃的浏览数，按阶段区分</li>
+ *     <li>kc.counter.drift：计数对账发现的偏差（存储值 - 真实值的绝对值），按目标类型、字段与存储（db/redis）区分</li>
+ *     <li>kc.message.push.connections / kc.message.push.dropped：本节点的站内信推送连接数，以及因连接数上限、队列写满或推送线程拒绝而断开的连接数</li>
+ * </ul>
+ */
+@Component
+public class ForumMetrics {
+
+    public static final String PIPELINE_ARTICLE_CARDS = "article_cards";
+    public static final String PIPELINE_REPLY_META = "reply_meta";
+    public static final String PIPELINE_REPLY_TREE_LEVEL = "reply_tree_level";
+    public static final String PIPELINE_USER = "user";
+    public static final String PIPELINE_VIEW_COUNT = "view_count";
+    public static final String PIPELINE_COUNTER_FLUSH = "counter_flush";
+    public static final String PIPELINE_CACHE_BACKFILL = "cache_backfill";
+    public static final String PIPELINE_HOT_RANKING = "hot_ranking";
+    public static final String PIPELINE_CONVERSATION = "conversation";
+
+    public static final String QUEUE_LIKE = "like";
+    public static final String QUEUE_VIEW = "view";
+
+    private final MeterRegistry registry;
+
+    public ForumMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 执行并记录一次 pipeline
+     * @param commands pipeline 中的命令数
+     */
+    public <T> T recordPipeline(String operation, int commands, Supplier<T> pipeline) {
+        DistributionSummary.builder("kc.redis.pipeline.commands")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(commands);
+        return Timer.builder("kc.redis.pipeline.latency")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(pipeline);
+    }
+
+    public void recordCacheLookup(String family, int hits, int misses) {
+        if (hits > 0) cacheCounter(family, "hit").increment(hits);
+        if (misses > 0) cacheCounter(family, "miss").increment(misses);
+    }
+
+    /**
+     * @param result coalesced（同一 Key 在窗口内重复回填被合并）/ dropped（待写表已满）
+     */
+    public void recordCacheBackfill(String result, int count) {
+        Counter.builder("kc.cache.backfill").tag("result", result).register(registry).increment(count);
+    }
+
+    public void recordExecutorRejected(String executor) {
+        Counter.builder("kc.executor.rejected").tag("name", executor).register(registry).increment();
+    }
+
+    public void bindResourceLimiter(ResourceLimiter limiter) {
+        Gauge.builder("kc.resource.permits.used", limiter, ResourceLimiter::inUse).tag("name", limiter.name()).register(registry);
+        Gauge.builder("kc.resource.permits.limit", limiter, ResourceLimiter::permits).tag("name", limiter.name()).register(registry);
+    }
+
+    public void recordPermitWait(String name, long waitNanos) {
+        Timer.builder("kc.resource.permit.wait")
+                .tag("name", name)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param stage buffer（缓冲区已满）/ redis / publish（MQ 持续发送失败）
+     */
+    public void recordViewsDropped(String stage, long views) {
+        Counter.builder("kc.visit.aggregate.dropped").tag("stage", stage).register(registry).increment(views);
+    }
+
+    /**
+     * @param drift 存储值 - 真实值，正数表示多计
+     */
+    public void recordCounterDrift(String targetType, String field, String store, long drift) {
+        DistributionSummary.builder("kc.counter.drift")
+                .tag("type", targetType)
+                .tag("field", field)
+                .tag("store", store)
+                .tag("direction", drift > 0 ? "over" : "under")
+                .register(registry)
+                .record(Math.abs(drift));
+    }
+
+    public void bindOutbox(OutboxLog outboxLog) {
+        Gauge.builder("kc.outbox.backlog.bytes", outboxLog, OutboxLog::backlogBytes).register(registry);
+        FunctionCounter.builder("kc.outbox.appends", outboxLog, OutboxLog::appendCount).register(registry);
+        FunctionCounter.builder("kc.outbox.syncs", outboxLog, OutboxLog::syncCount).register(registry);
+    }
+
+    public void bindMessagePush(AtomicInteger connections) {
+        Gauge.builder("kc.message.push.connections", connections, AtomicInteger::get).register(registry);
+    }
+
+    /**
+     * @param reason limit（连接数已达上限）/ queue_full（客户端读得太慢）/ rejected（推送线程拒绝）
+     */
+    public void recordPushDropped(String reason) {
+        Counter.builder("kc.message.push.dropped").tag("reason", reason).register(registry).increment();
+    }
+
+    public void recordPublish(String queue, Runnable publish) {
+        Timer.builder("kc.mq.publish.latency").tag("queue", queue).register(registry).record(publish);
+    }
+
+    /**
+     * @param eventTimestampMs 事件产生时间（事件中的 timestamp 字段）
+     */
+    public void recordConsumeLag(String queue, long eventTimestampMs) {
+        Timer.builder("kc.mq.consume.lag")
+                .tag("queue", queue)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(Math.max(0, System.currentTimeMillis() - eventTimestampMs), TimeUnit.MILLISECONDS);
+    }
+
+    private Counter cacheCounter(String family, String result) {
+        return Counter.builder("kc.cache.l2.requests")
+                .tag("family", family)
+                .tag("result", result)
+                .register(registry);
+    }
+}
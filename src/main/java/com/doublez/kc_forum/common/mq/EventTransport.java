@@ -0,0 +1,53 @@
+package com.doublez.kc_forum.common.mq;
+
+import com.doublez.kc_forum.common.outbox.OutboxRecord;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+
+import java.util.List;
+
+/**
+ * 持久化事件（点赞/浏览）的传输通道，由 kc.event.transport 选择：
+ * rabbitmq（默认）或 redis-stream（不需要部署 RabbitMQ）。
+ * <p>
+ * 两种实现使用相同的消息格式：Jackson2JsonMessageConverter 序列化的 JSON 消息体 + __TypeId__ 类型，
+ * 消费端统一转换成 {@link Message} 后交给 {@link ForumEventConsumer} 处理。
+ */
+public interface EventTransport {
+
+    String RABBITMQ = "rabbitmq";
+    String REDIS_STREAM = "redis-stream";
+
+    /**
+     * 发送单个事件
+     * @param routingKey RabbitMQConfig.*_ROUTING_KEY，Redis Streams 下同时决定 Stream 的 Key
+     */
+    void send(String routingKey, Object event);
+
+    /**
+     * 发送一批已序列化的事件，正常返回表示整批已被 Broker/Redis 接收，失败时抛出异常
+     */
+    void sendBatch(List<OutboxRecord> records);
+
+    /**
+     * 检查 {@link #sendBatch} 能否保证投递（例如 RabbitMQ 需要开启发布确认），不满足时抛出 IllegalStateException
+     */
+    default void verifyBatchDelivery() {
+    }
+
+    static Message toMessage(String typeId, byte[] body) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setContentEncoding("UTF-8");
+        if (typeId != null) {
+            properties.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, typeId);
+        }
+        return new Message(body, properties);
+    }
+
+    static String typeId(Message message) {
+        Object typeId = message.getMessageProperties().getHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME);
+        return typeId == null ? null : typeId.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package com.doublez.kc_forum.common.mq;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.outbox.EventOutbox;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 论坛事件的统一发送入口：开启本地发件箱时写入发件箱，由中继异步投递；否则直接经 {@link EventTransport} 发送
+ */
+@Component
+public class ForumEventPublisher {
+
+    @Autowired
+    private EventTransport eventTransport;
+    @Autowired
+    private EventOutbox eventOutbox;
+    @Autowired
+    private ForumMetrics metrics;
+
+    /**
+     * @param queue 指标中的队列名（ForumMetrics.QUEUE_*）
+     */
+    public void publish(String queue, String routingKey, Object event) {
+        if (eventOutbox.isEnabled()) {
+            metrics.recordPublish(queue, () -> eventOutbox.append(routingKey, event));
+        } else {
+            metrics.recordPublish(queue, () -> eventTransport.send(routingKey, event));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.doublez.kc_forum.common.mq;
+
+import com.doublez.kc_forum.common.config.RabbitMQConfig;
+import com.doublez.kc_forum.common.outbox.OutboxRecord;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.List;
+
+/**
+ * 基于 RabbitMQ 的事件传输，批量发送在同一个 channel 上完成并只等待一次发布确认
+ */
+public class RabbitEventTransport implements EventTransport {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final long confirmTimeoutMs;
+
+    public RabbitEventTransport(RabbitTemplate rabbitTemplate, long confirmTimeoutMs) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+    }
+
+    @Override
+    public void send(String routingKey, Object event) {
+        rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_NAME, routingKey, event);
+    }
+
+    @Override
+    public void sendBatch(List<OutboxRecord> records) {
+        rabbitTemplate.invoke(operations -> {
+            for (OutboxRecord record : records) {
+                operations.send(RabbitMQConfig.EXCHANGE_NAME, record.routingKey(),
+                        EventTransport.toMessage(record.typeId(), record.body()));
+            }
+            operations.waitForConfirmsOrDie(confirmTimeoutMs);
+            return null;
+        });
+    }
+
+    @Override
+    public void verifyBatchDelivery() {
+        if (!rabbitTemplate.getConnectionFactory().isSimplePublisherConfirms()) {
+            throw new IllegalStateException("kc.outbox.enabled=true 需要配置 spring.rabbitmq.publisher-confirm-type=simple");
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.doublez.kc_forum.common.mq;
+
+import com.doublez.kc_forum.common.config.RabbitMQConfig;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * kc.event.transport=redis-stream 时的事件消费端，对应 RabbitMQ 下 {@link ForumEventConsumer} 的两个监听器。
+ * <p>
+ * 每个 Stream 一个后台线程，以消费组方式 XREADGROUP 一次读取 batch-size 条，交给 {@link ForumEventConsumer} 处理：
+ * 点赞事件落库提交后立即 XACK 整批，浏览事件在下一次浏览量落库提交后再 XACK。
+ * <p>
+ * 处理失败的条目留在 PEL 中不确认；后台线程定期用 XPENDING 找出空闲超过 claim-idle-ms 的条目
+ * （包括已下线节点和本节点失败的批次），XCLAIM 到自己名下重新处理。启动时先处理自己名下遗留的条目。
+ */
+@Slf4j
+@Component
+public class RedisStreamEventConsumer {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ForumEventConsumer forumEventConsumer;
+
+    @Value("${kc.event.transport:rabbitmq}")
+    private String transport;
+    @Value("${kc.event.redis-stream.group:kc-forum-persistence}")
+    private String group;
+    @Value("${kc.event.redis-stream.consumer:}")
+    private String consumerName;
+    @Value("${kc.event.redis-stream.batch-size:200}")
+    private int batchSize;
+    @Value("${kc.event.redis-stream.block-ms:2000}")
+    private long blockMs;
+    @Value("${kc.event.redis-stream.claim-idle-ms:60000}")
+    private long claimIdleMs;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!EventTransport.REDIS_STREAM.equals(transport)) return;
+        if (consumerName == null || consumerName.isBlank()) {
+            consumerName = defaultConsumerName();
+        }
+        running = true;
+        startWorker(RabbitMQConfig.LIKE_ROUTING_KEY, this::handleLikeRecords);
+        startWorker(RabbitMQConfig.VIEW_ROUTING_KEY, this::handleViewRecords);
+        log.info("Redis Streams 事件消费已启动, 消费组:{}, 消费者:{}", group, consumerName);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private interface RecordHandler {
+        void handle(String stream, List<MapRecord<String, Object, Object>> records);
+    }
+
+    private void startWorker(String routingKey, RecordHandler handler) {
+        String stream = RedisKeyUtil.getEventStreamKey(routingKey);
+        Thread worker = new Thread(() -> consumeLoop(stream, handler), "stream-consumer-" + routingKey);
+        worker.setDaemon(true);
+        workers.add(worker);
+        worker.start();
+    }
+
+    private void consumeLoop(String stream, RecordHandler handler) {
+        StreamOperations<String, Object, Object> operations = stringRedisTemplate.opsForStream();
+        Consumer consumer = Consumer.from(group, consumerName);
+        boolean groupReady = false;
+        // 启动时先读自己名下已投递未确认的条目，游标逐批前移；读完后只读新条目
+        String pendingCursor = "0";
+        long lastClaimAt = System.currentTimeMillis();
+        while (running) {
+            try {
+                if (!groupReady) {
+                    createGroup(operations, stream);
+                    groupReady = true;
+                }
+                if (System.currentTimeMillis() - lastClaimAt >= claimIdleMs) {
+                    lastClaimAt = System.currentTimeMillis();
+                    List<MapRecord<String, Object, Object>> claimed = claimIdle(operations, stream);
+                    if (!claimed.isEmpty()) {
+                        handler.handle(stream, claimed);
+                    }
+                }
+                ReadOffset offset = pendingCursor != null ? ReadOffset.from(pendingCursor) : ReadOffset.lastConsumed();
+                StreamReadOptions options = pendingCursor != null
+                        ? StreamReadOptions.empty().count(batchSize)
+                        : StreamReadOptions.empty().count(batchSize).block(Duration.ofMillis(blockMs));
+                List<MapRecord<String, Object, Object>> records = operations.read(consumer, options, StreamOffset.create(stream, offset));
+                if (records == null || records.isEmpty()) {
+                    pendingCursor = null;
+                    continue;
+                }
+                if (pendingCursor != null) {
+                    pendingCursor = records.get(records.size() - 1).getId().getValue();
+                }
+                handler.handle(stream, records);
+            } catch (Exception e) {
+                if (!running) return;
+                log.error("Redis Streams 事件消费异常, stream:{}", stream, e);
+                sleepQuietly(1000);
+            }
+        }
+    }
+
+    /**
+     * 点赞事件：落库提交后一次 XACK 整批，失败时不确认，等待空闲超时后被重新认领
+     */
+    void handleLikeRecords(String stream, List<MapRecord<String, Object, Object>> records) {
+        try {
+            forumEventConsumer.persistLikeMessages(toMessages(records));
+        } catch (Exception e) {
+            log.error("点赞事件批量处理失败，等待重新认领, stream:{}, 条数:{}", stream, records.size(), e);
+            return;
+        }
+        acknowledge(stream, records);
+    }
+
+    /**
+     * 浏览事件：交给浏览量聚合，落库提交后再 XACK
+     */
+    void handleViewRecords(String stream, List<MapRecord<String, Object, Object>> records) {
+        forumEventConsumer.enqueueViewMessages(toMessages(records), new StreamAcknowledger(stream, records));
+    }
+
+    private final class StreamAcknowledger implements ForumEventConsumer.BatchAcknowledger {
+        private final String stream;
+        private final List<MapRecord<String, Object, Object>> records;
+
+        private StreamAcknowledger(String stream, List<MapRecord<String, Object, Object>> records) {
+            this.stream = stream;
+            this.records = records;
+        }
+
+        @Override
+        public void ack() {
+            acknowledge(stream, records);
+        }
+
+        @Override
+        public void nack() {
+            // 不确认，条目留在 PEL 中，空闲超过 claim-idle-ms 后重新认领
+        }
+
+        @Override
+        public String toString() {
+            return "stream:" + stream + ", 条数:" + records.size();
+        }
+    }
+
+    private void acknowledge(String stream, List<MapRecord<String, Object, Object>> records) {
+        RecordId[] ids = records.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+        stringRedisTemplate.opsForStream().acknowledge(stream, group, ids);
+    }
+
+    private List<MapRecord<String, Object, Object>> claimIdle(StreamOperations<String, Object, Object> operations, String stream) {
+        RecordId[] idle = operations.pending(stream, group, Range.unbounded(), batchSize).stream()
+                .filter(message -> message.getElapsedTimeSinceLastDelivery().toMillis() >= claimIdleMs)
+                .map(PendingMessage::getId)
+                .toArray(RecordId[]::new);
+        if (idle.length == 0) return List.of();
+        List<MapRecord<String, Object, Object>> claimed = operations.claim(stream, group, consumerName, Duration.ofMillis(claimIdleMs), idle);
+        log.warn("重新认领空闲的事件, stream:{}, 条数:{}", stream, claimed.size());
+        return claimed;
+    }
+
+    private void createGroup(StreamOperations<String, Object, Object> operations, String stream) {
+        try {
+            operations.createGroup(stream, ReadOffset.from("0"), group);
+        } catch (RedisSystemException e) {
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                // 消费组已存在
+                if (t.getMessage() != null && t.getMessage().contains("BUSYGROUP")) return;
+            }
+            throw e;
+        }
+    }
+
+    static List<Message> toMessages(List<MapRecord<String, Object, Object>> records) {
+        List<Message> messages = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Object type = record.getValue().get(RedisStreamEventTransport.FIELD_TYPE);
+            Object body = record.getValue().get(RedisStreamEventTransport.FIELD_BODY);
+            messages.add(EventTransport.toMessage(type == null ? null : type.toString(),
+                    body == null ? new byte[0] : body.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        return messages;
+    }
+
+    private static String defaultConsumerName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "consumer-" + ProcessHandle.current().pid();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.doublez.kc_forum.common.mq;
+
+import com.doublez.kc_forum.common.outbox.OutboxRecord;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 Redis Streams 的事件传输：每个路由键一个 Stream（见 {@link RedisKeyUtil#getEventStreamKey}），
+ * XADD 时按 MAXLEN ~ 近似裁剪，批量发送在一个 pipeline 中完成。
+ * <p>
+ * 注意裁剪只看长度不看消费进度，max-len 需要大于消费端可能积压的条数。
+ */
+public class RedisStreamEventTransport implements EventTransport {
+
+    public static final String FIELD_TYPE = "type";
+    public static final String FIELD_BODY = "body";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MessageConverter jsonMessageConverter;
+    private final RedisStreamCommands.XAddOptions addOptions;
+
+    public RedisStreamEventTransport(StringRedisTemplate stringRedisTemplate, MessageConverter jsonMessageConverter, long maxLen) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.jsonMessageConverter = jsonMessageConverter;
+        this.addOptions = RedisStreamCommands.XAddOptions.maxlen(maxLen).approximateTrimming(true);
+    }
+
+    @Override
+    public void send(String routingKey, Object event) {
+        Message message = jsonMessageConverter.toMessage(event, new MessageProperties());
+        MapRecord<byte[], byte[], byte[]> record = toRecord(routingKey, EventTransport.typeId(message), message.getBody());
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.streamCommands().xAdd(record, addOptions));
+    }
+
+    @Override
+    public void sendBatch(List<OutboxRecord> records) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (OutboxRecord record : records) {
+                connection.streamCommands().xAdd(toRecord(record.routingKey(), record.typeId(), record.body()), addOptions);
+            }
+            return null;
+        });
+    }
+
+    private static MapRecord<byte[], byte[], byte[]> toRecord(String routingKey, String typeId, byte[] body) {
+        Map<byte[], byte[]> fields = new HashMap<>(4);
+        if (typeId != null) {
+            fields.put(FIELD_TYPE.getBytes(StandardCharsets.UTF_8), typeId.getBytes(StandardCharsets.UTF_8));
+        }
+        fields.put(FIELD_BODY.getBytes(StandardCharsets.UTF_8), body);
+        return MapRecord.create(RedisKeyUtil.getEventStreamKey(routingKey).getBytes(StandardCharsets.UTF_8), fields);
+    }
+}
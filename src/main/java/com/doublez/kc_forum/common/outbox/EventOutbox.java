@@ -0,0 +1,126 @@
+package com.doublez.kc_forum.common.outbox;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.mq.EventTransport;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 点赞/浏览事件的本地发件箱。
+ * <p>
+ * 开启后业务线程只把事件追加到本地日志（{@link OutboxLog}，组提交 fsync）即返回，不再等待与 Broker 的往返；
+ * 后台中继按批读取日志交给 {@link EventTransport#sendBatch}（RabbitMQ 下在同一个 channel 上发送整批消息并 waitForConfirmsOrDie），
+ * 整批被接收后才推进检查点。进程崩溃或 Broker 不可用时，未确认的事件在下一次中继或重启后重新投递，
+ * 保证 Redis 中已生效的点赞最终会落库（至少一次投递，与消费端失败重回队列的语义一致）。
+ * 中继运行在自己的线程上：等待确认最多阻塞 confirm-timeout-ms，不占用其他定时任务的调度线程。
+ * <p>
+ * 使用 RabbitMQ 时需要在连接工厂上开启 publisher-confirm-type: simple，否则启动失败。
+ */
+@Slf4j
+@Component
+public class EventOutbox {
+
+    @Autowired
+    private EventTransport eventTransport;
+    @Autowired
+    private MessageConverter jsonMessageConverter;
+    @Autowired
+    private ForumMetrics metrics;
+
+    @Value("${kc.outbox.enabled:false}")
+    private boolean enabled;
+    @Value("${kc.outbox.dir:./data/outbox}")
+    private String dir;
+    @Value("${kc.outbox.segment-size-bytes:67108864}")
+    private int segmentSize;
+    @Value("${kc.outbox.relay-batch-size:500}")
+    private int relayBatchSize;
+    @Value("${kc.outbox.relay-interval-ms:50}")
+    private long relayIntervalMs;
+
+    private OutboxLog outboxLog;
+    private ScheduledExecutorService relayScheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+        eventTransport.verifyBatchDelivery();
+        outboxLog = new OutboxLog(Path.of(dir), segmentSize);
+        metrics.bindOutbox(outboxLog);
+        relayScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        relayScheduler.scheduleWithFixedDelay(this::relaySafely, relayIntervalMs, relayIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("本地发件箱已开启, 目录:{}, 段大小:{}", dir, segmentSize);
+    }
+
+    public boolean isEnabled() {
+        return outboxLog != null;
+    }
+
+    /**
+     * 把事件写入本地日志，返回时已落盘
+     */
+    public void append(String routingKey, Object event) {
+        Message message = jsonMessageConverter.toMessage(event, new MessageProperties());
+        outboxLog.append(routingKey, EventTransport.typeId(message), message.getBody());
+    }
+
+    private void relaySafely() {
+        try {
+            relay();
+        } catch (Exception e) {
+            // 异常抛出后 ScheduledExecutorService 不会再调度，这里吞掉等下一轮
+            log.error("发件箱中继异常, 检查点:{}", outboxLog.checkpoint(), e);
+        }
+    }
+
+    /**
+     * 把已落盘的事件投递出去，失败时保留检查点等待下一次调度重试
+     */
+    void relay() {
+        if (outboxLog == null) return;
+        for (;;) {
+            List<OutboxRecord> records = outboxLog.read(outboxLog.checkpoint(), relayBatchSize);
+            if (records.isEmpty()) return;
+            try {
+                eventTransport.sendBatch(records);
+            } catch (Exception e) {
+                log.warn("发件箱事件投递失败，等待下次重试, 记录数:{}, 检查点:{}", records.size(), outboxLog.checkpoint(), e);
+                return;
+            }
+            outboxLog.commit(records.get(records.size() - 1).nextOffset());
+            log.debug("发件箱已投递事件, 记录数:{}", records.size());
+            if (records.size() < relayBatchSize) return;
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (outboxLog == null) return;
+        relayScheduler.shutdown();
+        // 等正在进行的一批投递结束，避免与下面最后一次中继重复发送
+        if (!relayScheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+            // 中继线程仍在读取日志，不关闭日志；事件追加时已落盘，重启后从检查点继续投递
+            log.warn("发件箱中继未能在关闭前结束，剩余事件在重启后投递");
+            return;
+        }
+        relay();
+        outboxLog.close();
+    }
+}
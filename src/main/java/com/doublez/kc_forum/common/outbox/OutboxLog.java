@@ -0,0 +1,350 @@
+package com.doublez.kc_forum.common.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写的本地消息日志，由若干个固定大小、内存映射的段文件组成。
+ * <p>
+ * 记录格式：[int 长度][int CRC32][short 路由键长度][路由键][short 类型长度][类型][消息体]，长度不含8字节头；
+ * 长度为 -1 表示本段结束，下一条记录在下一个段的开头；长度为 0 表示后面还没有写入。
+ * 偏移量 = 段序号 * 段大小 + 段内位置，段文件以段序号命名。
+ * <p>
+ * 组提交：{@link #append} 写入映射内存后等待落盘，第一个拿到同步锁的线程把当时已写入的全部内容 force 一次，
+ * 排在它后面的线程发现自己的记录已经被覆盖就直接返回，因此并发写入时一次 fsync 覆盖一批记录。
+ * <p>
+ * 检查点文件记录已投递到 MQ 的偏移量，打开日志时从检查点开始校验记录，
+ * 遇到 CRC 不匹配的半条记录即视为日志末尾，并把该段剩余部分清零。
+ */
+@Slf4j
+public class OutboxLog implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final int END_OF_SEGMENT = -1;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path dir;
+    private final int segmentSize;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+
+    // 以下字段由 appendLock 保护
+    private Segment active;
+    private int writePosition;
+
+    private volatile long durableOffset;
+    private volatile long checkpoint;
+    private volatile long appendCount;
+    private volatile long syncCount;
+
+    private record Segment(long index, FileChannel channel, MappedByteBuffer buffer) {}
+
+    public OutboxLog(Path dir, int segmentSize) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("段大小不能小于1024字节: " + segmentSize);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(dir);
+            recover();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("打开本地消息日志失败: " + dir, e);
+        }
+    }
+
+    /**
+     * 追加一条记录，返回时记录已经落盘
+     * @return 该记录之后的偏移量
+     */
+    public long append(String routingKey, String typeId, byte[] body) {
+        byte[] key = routingKey.getBytes(StandardCharsets.UTF_8);
+        byte[] type = typeId == null ? new byte[0] : typeId.getBytes(StandardCharsets.UTF_8);
+        int contentLength = 2 + key.length + 2 + type.length + body.length;
+        int recordLength = HEADER_BYTES + contentLength;
+        // 每段末尾保留4字节给段结束标记
+        if (recordLength > segmentSize - 4) {
+            throw new IllegalArgumentException("消息过大, 字节数:" + recordLength + ", 段大小:" + segmentSize);
+        }
+        ByteBuffer content = ByteBuffer.allocate(contentLength);
+        content.putShort((short) key.length).put(key).putShort((short) type.length).put(type).put(body);
+        byte[] contentBytes = content.array();
+        CRC32 crc = new CRC32();
+        crc.update(contentBytes);
+
+        long endOffset;
+        synchronized (appendLock) {
+            if (writePosition + recordLength > segmentSize - 4) {
+                active.buffer().putInt(writePosition, END_OF_SEGMENT);
+                active = openSegment(active.index() + 1);
+                writePosition = 0;
+            }
+            MappedByteBuffer buffer = active.buffer();
+            buffer.put(writePosition + HEADER_BYTES, contentBytes);
+            buffer.putInt(writePosition + 4, (int) crc.getValue());
+            buffer.putInt(writePosition, contentLength);
+            writePosition += recordLength;
+            endOffset = offset(active.index(), writePosition);
+            appendCount++;
+        }
+        awaitDurable(endOffset);
+        return endOffset;
+    }
+
+    /**
+     * 从指定偏移量开始读取已落盘的记录
+     */
+    public List<OutboxRecord> read(long fromOffset, int maxRecords) {
+        List<OutboxRecord> records = new ArrayList<>();
+        long limit = durableOffset;
+        long index = fromOffset / segmentSize;
+        int position = (int) (fromOffset % segmentSize);
+        while (records.size() < maxRecords && offset(index, position) < limit) {
+            Segment segment = segment(index);
+            if (segment == null) break;
+            int length = segment.buffer().getInt(position);
+            if (length == END_OF_SEGMENT) {
+                index++;
+                position = 0;
+                continue;
+            }
+            if (length <= 0) break;
+            byte[] content = new byte[length];
+            segment.buffer().get(position + HEADER_BYTES, content);
+            position += HEADER_BYTES + length;
+            records.add(decode(content, offset(index, position)));
+        }
+        return records;
+    }
+
+    /**
+     * 持久化检查点，并删除检查点之前的段文件
+     */
+    public void commit(long offset) {
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, offset));
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入检查点失败", e);
+        }
+        try {
+            Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入检查点失败", e);
+        }
+        checkpoint = offset;
+        deleteSegmentsBefore(offset / segmentSize);
+    }
+
+    public long checkpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * 已落盘但尚未投递的字节数（包含段末尾的空洞，仅用于监控）
+     */
+    public long backlogBytes() {
+        return Math.max(0, durableOffset - checkpoint);
+    }
+
+    public long appendCount() {
+        return appendCount;
+    }
+
+    public long syncCount() {
+        return syncCount;
+    }
+
+    @Override
+    public void close() {
+        synchronized (appendLock) {
+            synchronized (segments) {
+                for (Segment segment : segments.values()) {
+                    try {
+                        segment.buffer().force();
+                        segment.channel().close();
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("关闭本地消息日志段失败, 段:{}", segment.index(), e);
+                    }
+                }
+                segments.clear();
+            }
+        }
+    }
+
+    private void awaitDurable(long offset) {
+        if (durableOffset >= offset) return;
+        synchronized (syncLock) {
+            if (durableOffset >= offset) return;
+            long target;
+            long activeIndex;
+            synchronized (appendLock) {
+                target = offset(active.index(), writePosition);
+                activeIndex = active.index();
+            }
+            long durable = durableOffset;
+            for (long index = durable / segmentSize; index <= activeIndex; index++) {
+                Segment segment = segment(index);
+                if (segment == null) continue;
+                int from = index == durable / segmentSize ? (int) (durable % segmentSize) : 0;
+                int to = index == activeIndex ? (int) (target % segmentSize) : segmentSize;
+                if (to > from) {
+                    segment.buffer().force(from, to - from);
+                }
+            }
+            durableOffset = target;
+            syncCount++;
+        }
+    }
+
+    private void recover() throws IOException {
+        Path checkpointFile = dir.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpointFile)) {
+            checkpoint = ByteBuffer.wrap(Files.readAllBytes(checkpointFile)).getLong();
+        }
+        long firstIndex = checkpoint / segmentSize;
+        List<Long> indexes;
+        try (Stream<Path> files = Files.list(dir)) {
+            indexes = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        for (Long index : indexes) {
+            if (index < firstIndex) {
+                Files.deleteIfExists(segmentPath(index));
+            } else {
+                openSegment(index);
+            }
+        }
+        if (segments.isEmpty()) {
+            openSegment(firstIndex);
+        }
+
+        // 从检查点开始逐段校验，最后一段的有效末尾即为写入位置
+        long recovered = 0;
+        for (Map.Entry<Long, Segment> entry : segments.entrySet()) {
+            Segment segment = entry.getValue();
+            int position = segment.index() == firstIndex ? (int) (checkpoint % segmentSize) : 0;
+            int end = scan(segment, position);
+            active = segment;
+            writePosition = end;
+            if (segment != segments.lastEntry().getValue() && segment.buffer().getInt(end) != END_OF_SEGMENT) {
+                log.warn("本地消息日志段损坏，跳过剩余部分, 段:{}, 位置:{}", segment.index(), end);
+                segment.buffer().putInt(end, END_OF_SEGMENT);
+            }
+            recovered += end - position;
+        }
+        // 清除末尾可能残留的半条记录，避免之后的追加与旧数据拼出一条"有效"记录
+        MappedByteBuffer buffer = active.buffer();
+        for (int i = writePosition; i < segmentSize; i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        buffer.force();
+        durableOffset = offset(active.index(), writePosition);
+        if (recovered > 0) {
+            log.info("本地消息日志恢复完成, 检查点:{}, 待投递字节数:{}", checkpoint, durableOffset - checkpoint);
+        }
+    }
+
+    /**
+     * @return 从 position 开始最后一条有效记录之后的位置
+     */
+    private int scan(Segment segment, int position) {
+        MappedByteBuffer buffer = segment.buffer();
+        CRC32 crc = new CRC32();
+        while (position + HEADER_BYTES <= segmentSize - 4) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > segmentSize - 4) break;
+            byte[] content = new byte[length];
+            buffer.get(position + HEADER_BYTES, content);
+            crc.reset();
+            crc.update(content);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) break;
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private Segment openSegment(long index) {
+        try {
+            FileChannel channel = FileChannel.open(segmentPath(index),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(index, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+            synchronized (segments) {
+                segments.put(index, segment);
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建本地消息日志段失败, 段:" + index, e);
+        }
+    }
+
+    private Segment segment(long index) {
+        synchronized (segments) {
+            return segments.get(index);
+        }
+    }
+
+    private void deleteSegmentsBefore(long index) {
+        List<Segment> removed = new ArrayList<>();
+        synchronized (segments) {
+            Map<Long, Segment> head = segments.headMap(index);
+            removed.addAll(head.values());
+            head.clear();
+        }
+        for (Segment segment : removed) {
+            try {
+                segment.channel().close();
+                Files.deleteIfExists(segmentPath(segment.index()));
+            } catch (IOException e) {
+                log.warn("删除已投递的本地消息日志段失败, 段:{}", segment.index(), e);
+            }
+        }
+    }
+
+    private OutboxRecord decode(byte[] content, long nextOffset) {
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        byte[] key = new byte[buffer.getShort()];
+        buffer.get(key);
+        byte[] type = new byte[buffer.getShort()];
+        buffer.get(type);
+        byte[] body = new byte[buffer.remaining()];
+        buffer.get(body);
+        return new OutboxRecord(new String(key, StandardCharsets.UTF_8),
+                type.length == 0 ? null : new String(type, StandardCharsets.UTF_8), body, nextOffset);
+    }
+
+    private Path segmentPath(long index) {
+        return dir.resolve(String.format("%020d%s", index, SEGMENT_SUFFIX));
+    }
+
+    private long offset(long index, int position) {
+        return index * segmentSize + position;
+    }
+}
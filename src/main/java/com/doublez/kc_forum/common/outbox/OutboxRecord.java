@@ -0,0 +1,11 @@
+package com.doublez.kc_forum.common.outbox;
+
+/**
+ * 本地消息日志中的一条记录
+ * @param routingKey 发送到 {@code RabbitMQConfig.EXCHANGE_NAME} 时使用的路由键
+ * @param typeId     消息体的类型（Jackson2JsonMessageConverter 的 __TypeId__ 头）
+ * @param body       JSON 消息体
+ * @param nextOffset 下一条记录的偏移量，该记录投递成功后以此推进检查点
+ */
+public record OutboxRecord(String routingKey, String typeId, byte[] body, long nextOffset) {
+}
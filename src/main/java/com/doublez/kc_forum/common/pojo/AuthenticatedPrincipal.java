@@ -0,0 +1,14 @@
+package com.doublez.kc_forum.common.pojo;
+
+/**
+ * 已通过校验的 Access Token 中的登录信息，由认证拦截器解析一次后放入 request attribute，
+ * 之后的拦截器与 Controller（{@code @CurrentUser}）直接读取，不再重复解析 Token。
+ *
+ * @param userId 用户id
+ * @param email 用户邮箱
+ * @param expiresAtMillis Token 过期时间（毫秒时间戳）
+ */
+public record AuthenticatedPrincipal(Long userId, String email, long expiresAtMillis) {
+
+    public static final String REQUEST_ATTRIBUTE = "kc.authenticatedPrincipal";
+}
@@ -0,0 +1,16 @@
+package com.doublez.kc_forum.common.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量更新计数字段时使用：目标id 以及该目标的净增量
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CounterDelta {
+    private Long id;
+    private Long delta;
+}
@@ -0,0 +1,16 @@
+package com.doublez.kc_forum.common.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 按目标聚合的计数结果：目标id 以及该目标的计数
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CounterValue {
+    private Long id;
+    private Long value;
+}
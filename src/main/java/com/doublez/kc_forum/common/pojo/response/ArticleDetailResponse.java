@@ -14,6 +14,8 @@ public class ArticleDetailResponse {
     private String title;
     private String content;
     private Integer visitCount;
+    //独立访客数（HyperLogLog估算），未开启独立访客模式时为null
+    private Long uniqueVisitCount;
     private Integer replyCount;
     private Integer likeCount;
     private LocalDateTime createTime;
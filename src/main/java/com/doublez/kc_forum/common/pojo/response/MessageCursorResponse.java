@@ -0,0 +1,14 @@
+package com.doublez.kc_forum.common.pojo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+@AllArgsConstructor
+@Data
+public class MessageCursorResponse {
+    //按时间倒序的一页消息
+    private List<MessageResponse> record;
+    //下一页（更早的消息）的游标，为null表示没有更多数据
+    private String nextCursor;
+}
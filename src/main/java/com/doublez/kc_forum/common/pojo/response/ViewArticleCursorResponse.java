@@ -0,0 +1,13 @@
+package com.doublez.kc_forum.common.pojo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+@AllArgsConstructor
+@Data
+public class ViewArticleCursorResponse {
+    private List<ArticleMetaCacheDTO> record;
+    //下一页的游标，为null表示没有更多数据
+    private String nextCursor;
+}
@@ -0,0 +1,203 @@
+package com.doublez.kc_forum.common.utiles;
+
+import com.doublez.kc_forum.common.pojo.response.ArticleReplyMetaCacheDTO;
+import com.doublez.kc_forum.model.Article;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * 文章/回复缓存记录的紧凑二进制格式，存放在 Hash 的 {@link #FIELD_BINARY} 字段中。
+ * <p>
+ * 只包含写入后不再单独修改的字段，计数（点赞、回复、浏览、子回复数）仍是 Hash 中的整数字段，继续用 HINCRBY 累加。
+ * 布局：版本(1字节) + 标志位(1字节) + 各字段，整数为 varint（时间为 zigzag 编码的 UTC 秒 + 纳秒），字符串为 varint 长度 + UTF-8：
+ * <ul>
+ *     <li>文章：id, boardId, userId, isTop(1字节), [createTime], [updateTime], [title]</li>
+ *     <li>回复：id, articleId, postUserId, replyId, replyUserId, [createTime], [content]</li>
+ * </ul>
+ * 方括号中的字段可以为空，由标志位标记是否存在。
+ */
+public final class CacheRecordCodec {
+
+    public static final String FIELD_BINARY = "_b";
+    public static final byte VERSION = 1;
+
+    private static final int FLAG_CREATE_TIME = 1;
+    private static final int FLAG_UPDATE_TIME = 1 << 1;
+    private static final int FLAG_TEXT = 1 << 2;
+
+    private CacheRecordCodec() {}
+
+    public static byte[] encodeArticle(Article article) {
+        byte[] title = article.getTitle() == null ? null : article.getTitle().getBytes(StandardCharsets.UTF_8);
+        Writer writer = new Writer(48 + (title == null ? 0 : title.length));
+        writer.writeByte(VERSION);
+        writer.writeByte(flags(article.getCreateTime(), article.getUpdateTime(), title));
+        writer.writeVarLong(article.getId());
+        writer.writeVarLong(article.getBoardId());
+        writer.writeVarLong(article.getUserId());
+        writer.writeByte(article.getIsTop() != null ? article.getIsTop() : 0);
+        writer.writeTime(article.getCreateTime());
+        writer.writeTime(article.getUpdateTime());
+        writer.writeBytes(title);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 解码到已有的文章对象，计数字段不受影响
+     * @throws IllegalArgumentException 版本不支持或数据不完整
+     */
+    public static Article decodeArticle(byte[] blob, Article article) {
+        Reader reader = new Reader(blob);
+        int flags = reader.readFlags();
+        article.setId(reader.readVarLong());
+        article.setBoardId(reader.readVarLong());
+        article.setUserId(reader.readVarLong());
+        article.setIsTop(reader.readByte());
+        article.setCreateTime((flags & FLAG_CREATE_TIME) != 0 ? reader.readTime() : null);
+        article.setUpdateTime((flags & FLAG_UPDATE_TIME) != 0 ? reader.readTime() : null);
+        article.setTitle((flags & FLAG_TEXT) != 0 ? reader.readString() : null);
+        return article;
+    }
+
+    /**
+     * 顶级回复的 replyId 为空时按 0 写入，与原来的 Hash 格式一致
+     */
+    public static byte[] encodeReply(ArticleReplyMetaCacheDTO reply) {
+        byte[] content = reply.getContent() == null ? null : reply.getContent().getBytes(StandardCharsets.UTF_8);
+        Writer writer = new Writer(48 + (content == null ? 0 : content.length));
+        writer.writeByte(VERSION);
+        writer.writeByte(flags(reply.getCreateTime(), null, content));
+        writer.writeVarLong(reply.getId());
+        writer.writeVarLong(reply.getArticleId());
+        writer.writeVarLong(reply.getPostUserId());
+        writer.writeVarLong(reply.getReplyId() != null ? reply.getReplyId() : 0L);
+        writer.writeVarLong(reply.getReplyUserId());
+        writer.writeTime(reply.getCreateTime());
+        writer.writeBytes(content);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 解码到已有的回复对象，计数字段不受影响
+     * @throws IllegalArgumentException 版本不支持或数据不完整
+     */
+    public static ArticleReplyMetaCacheDTO decodeReply(byte[] blob, ArticleReplyMetaCacheDTO reply) {
+        Reader reader = new Reader(blob);
+        int flags = reader.readFlags();
+        reply.setId(reader.readVarLong());
+        reply.setArticleId(reader.readVarLong());
+        reply.setPostUserId(reader.readVarLong());
+        reply.setReplyId(reader.readVarLong());
+        reply.setReplyUserId(reader.readVarLong());
+        reply.setCreateTime((flags & FLAG_CREATE_TIME) != 0 ? reader.readTime() : null);
+        reply.setContent((flags & FLAG_TEXT) != 0 ? reader.readString() : null);
+        return reply;
+    }
+
+    private static int flags(LocalDateTime createTime, LocalDateTime updateTime, byte[] text) {
+        return (createTime != null ? FLAG_CREATE_TIME : 0)
+                | (updateTime != null ? FLAG_UPDATE_TIME : 0)
+                | (text != null ? FLAG_TEXT : 0);
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        Writer(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeTime(LocalDateTime time) {
+            if (time == null) return;
+            long seconds = time.toEpochSecond(ZoneOffset.UTC);
+            writeVarLong((seconds << 1) ^ (seconds >> 63));
+            writeVarLong(time.getNano());
+        }
+
+        void writeBytes(byte[] bytes) {
+            if (bytes == null) return;
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void ensure(int size) {
+            if (position + size > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + size));
+            }
+        }
+
+        byte[] toByteArray() {
+            return position == buffer.length ? buffer : Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readFlags() {
+            byte version = readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("不支持的缓存记录版本: " + version);
+            }
+            return readByte();
+        }
+
+        byte readByte() {
+            if (position >= buffer.length) {
+                throw new IllegalArgumentException("缓存记录不完整");
+            }
+            return buffer[position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("varint 过长");
+        }
+
+        LocalDateTime readTime() {
+            long zigzag = readVarLong();
+            long seconds = (zigzag >>> 1) ^ -(zigzag & 1);
+            return LocalDateTime.ofEpochSecond(seconds, (int) readVarLong(), ZoneOffset.UTC);
+        }
+
+        String readString() {
+            long length = readVarLong();
+            if (length < 0 || length > buffer.length - position) {
+                throw new IllegalArgumentException("缓存记录不完整");
+            }
+            String value = new String(buffer, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+    }
+}
@@ -3,6 +3,10 @@ package com.doublez.kc_forum.common.utiles;
 import com.doublez.kc_forum.common.ResultCode;
 import com.doublez.kc_forum.common.exception.ApplicationException;
 import com.doublez.kc_forum.common.exception.BusinessException;
+import com.doublez.kc_forum.common.pojo.AuthenticatedPrincipal;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -11,10 +15,15 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class JwtUtil {
@@ -24,18 +33,33 @@ public class JwtUtil {
     private static Integer tokenExpirationMs;
 
     private static Key key;
+    // 解析器线程安全，随密钥一起创建，不再每次解析都重新构建
+    private static JwtParser parser;
+    // 已校验通过的 Token：SHA-256 摘要 -> 登录信息，条目在 Token 过期时失效；为 null 表示不缓存
+    private static Cache<ByteBuffer, AuthenticatedPrincipal> verifiedTokens;
 
     public static final String USER_ID = "Id";
     public static final String EMAIL = "email";
 
+    /**
+     * 初始化 JwtUtil 的静态配置，不缓存已校验的 Token。
+     *
+     * @param secret         JWT 密钥 (Base64 编码)
+     * @param expirationMs   Token 过期时间 (毫秒)
+     */
+    public static void init(String secret, Integer expirationMs) {
+        init(secret, expirationMs, 0);
+    }
+
     /**
      * 初始化 JwtUtil 的静态配置。
      * 此方法应在应用程序启动时由 Spring Bean 调用。
      *
      * @param secret         JWT 密钥 (Base64 编码)
      * @param expirationMs   Token 过期时间 (毫秒)
+     * @param tokenCacheSize 已校验 Token 缓存的最大条目数，0 表示不缓存
      */
-    public static void init(String secret, Integer expirationMs) {
+    public static void init(String secret, Integer expirationMs, int tokenCacheSize) {
         Objects.requireNonNull(secret, "JWT secret 未设置.");
         Objects.requireNonNull(expirationMs, "JWT expiration 未设置.");
 
@@ -49,7 +73,28 @@ public class JwtUtil {
         try {
             byte[] keyBytes = Decoders.BASE64.decode(mySecret);
             key = Keys.hmacShaKeyFor(keyBytes);
-            log.info("JwtUtil 初始化成功. Expiration: {}ms", tokenExpirationMs);
+            parser = Jwts.parserBuilder().setSigningKey(key).build();
+            // 更换密钥后旧缓存全部作废
+            verifiedTokens = tokenCacheSize > 0 ? Caffeine.newBuilder()
+                    .maximumSize(tokenCacheSize)
+                    .expireAfter(new Expiry<ByteBuffer, AuthenticatedPrincipal>() {
+                        @Override
+                        public long expireAfterCreate(ByteBuffer digest, AuthenticatedPrincipal principal, long currentTime) {
+                            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, principal.expiresAtMillis() - System.currentTimeMillis()));
+                        }
+
+                        @Override
+                        public long expireAfterUpdate(ByteBuffer digest, AuthenticatedPrincipal principal, long currentTime, long currentDuration) {
+                            return expireAfterCreate(digest, principal, currentTime);
+                        }
+
+                        @Override
+                        public long expireAfterRead(ByteBuffer digest, AuthenticatedPrincipal principal, long currentTime, long currentDuration) {
+                            return currentDuration;
+                        }
+                    })
+                    .build() : null;
+            log.info("JwtUtil 初始化成功. Expiration: {}ms, 已校验Token缓存: {}", tokenExpirationMs, tokenCacheSize);
         } catch (IllegalArgumentException e) {
             log.error("Failed to decode Base64 secret or create HMAC SHA key. Secret: [REDACTED]", e);
             // 抛出运行时异常，阻止应用在JWT配置错误时继续运行
@@ -94,7 +139,6 @@ public class JwtUtil {
             return null;
         }
 
-        JwtParser parser = Jwts.parserBuilder().setSigningKey(mySecret).build(); // 使用静态 signingKey
         try {
             return parser.parseClaimsJws(token).getBody();
         } catch (ExpiredJwtException e) {
@@ -115,28 +159,92 @@ public class JwtUtil {
     }
 
     /**
-     * 从请求头中获取当前用户id
-     * @param request
-     * @return
+     * 校验 Token 并取出登录信息。命中已校验缓存时跳过签名校验与 JSON 解析，
+     * 未命中时调用 {@link #parseToken(String)}，与其一样区分过期与其他无效情况。
+     *
+     * @param token 要校验的 JWT 字符串
+     * @return 登录信息，Token 无效时返回 null
+     * @throws ExpiredJwtException 如果令牌已过期
      */
-    public static Long getUserId(HttpServletRequest request) {
-        // 1. 从请求头中获取 Authorization Header
-        String authorizationHeader = request.getHeader("Authorization");
-        String token = authorizationHeader.substring(7);
+    public static AuthenticatedPrincipal authenticate(String token) throws ExpiredJwtException {
+        if (!StringUtils.hasLength(token)) {
+            log.warn("尝试校验的 Token 为空或 null");
+            return null;
+        }
+        Cache<ByteBuffer, AuthenticatedPrincipal> cache = verifiedTokens;
+        ByteBuffer digest = null;
+        if (cache != null) {
+            digest = digest(token);
+            AuthenticatedPrincipal cached = cache.getIfPresent(digest);
+            // 条目按过期时间淘汰，这里再比较一次，避免淘汰前的短暂窗口
+            if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+                return cached;
+            }
+        }
+        Claims claims = parseToken(token);
+        if (claims == null) {
+            return null;
+        }
+        AuthenticatedPrincipal principal = toPrincipal(claims);
+        if (cache != null && principal != null && claims.getExpiration() != null) {
+            cache.put(digest, principal);
+        }
+        return principal;
+    }
 
-        // 2. 验证 JWT 并解析 Token (Interceptor 已经验证过 Token，这里只需要解析)
-        Claims claims = JwtUtil.parseToken(token);
+    /**
+     * 当前请求的登录信息：优先取认证拦截器放入的 request attribute，
+     * 不经过拦截器的请求（例如刷新 Token 接口）从 Authorization 请求头校验。
+     *
+     * @throws BusinessException 如果 Header 缺失或 Token 无效(非过期)
+     * @throws ExpiredJwtException 如果 Token 已过期
+     */
+    public static AuthenticatedPrincipal getPrincipal(HttpServletRequest request) throws ExpiredJwtException {
+        if (request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE) instanceof AuthenticatedPrincipal principal) {
+            return principal;
+        }
+        final String authorizationHeader = request.getHeader("Authorization");
+        final String bearerPrefix = "Bearer ";
 
-        // 3. 从 claims 中获取用户 ID
-        Long userId = null;
-        if (claims != null && claims.containsKey(USER_ID)) {
-            try {
-                userId = Long.valueOf(claims.get(USER_ID).toString());
-            } catch (NumberFormatException e) {
-                // 处理 "id" 不是 Integer 类型的情况
-                throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE,"用户id不为long类型");
+        if (authorizationHeader == null || !authorizationHeader.startsWith(bearerPrefix)) {
+            log.warn("请求头 Authorization 缺失或格式错误");
+            // 返回更具体的错误码和消息
+            throw new BusinessException(ResultCode.FAILED_UNAUTHORIZED);
+        }
+
+        AuthenticatedPrincipal principal = authenticate(authorizationHeader.substring(bearerPrefix.length()));
+        if (principal == null) {
+            // 返回 null 表示非过期的其他解析错误
+            log.warn("Token 无效 (非过期错误)");
+            throw new BusinessException(ResultCode.FAILED_UNAUTHORIZED);
+        }
+        return principal;
+    }
+
+    /**
+     * 与 {@link #getPrincipal} 相同，但接受已过期的 Token。
+     * 只用于刷新接口处理旧格式的刷新令牌：旧令牌不包含用户信息，只能从 Access Token 中取得
+     * （jjwt 先验签再检查过期，过期异常中的 Claims 已经过签名校验）。
+     */
+    public static AuthenticatedPrincipal getPrincipalIgnoringExpiry(HttpServletRequest request) {
+        try {
+            return getPrincipal(request);
+        } catch (ExpiredJwtException e) {
+            AuthenticatedPrincipal principal = toPrincipal(e.getClaims());
+            if (principal == null) {
+                throw new BusinessException(ResultCode.FAILED_UNAUTHORIZED);
             }
+            return principal;
         }
+    }
+
+    /**
+     * 从请求中获取当前用户id
+     * @param request
+     * @return
+     */
+    public static Long getUserId(HttpServletRequest request) {
+        Long userId = getPrincipal(request).userId();
         if (userId == null) {
             // 处理用户 ID 为空的情况
             throw new BusinessException(ResultCode.FAILED_CHECK_USERID);
@@ -148,54 +256,42 @@ public class JwtUtil {
      * 从 HttpServletRequest 中获取用户 邮箱。
      *
      * @param request HttpServletRequest 对象
-     * @return 用户 ID (Long 类型)
-     * @throws ApplicationException 如果 Header 缺失、Token 解析失败(非过期)、ID 缺失或格式错误
-     * @throws ExpiredJwtException 如果 Token 已过期 (由 parseToken 抛出)
+     * @return 用户邮箱
+     * @throws ApplicationException 如果 Header 缺失、Token 解析失败(非过期)、邮箱缺失
+     * @throws ExpiredJwtException 如果 Token 已过期
      */
     public static String getUserEmail(HttpServletRequest request) throws ExpiredJwtException {
-        Claims claims = getClaims(request);
-        // 不需要捕捉 Exception，因为 parseToken 内部已处理
-
-        // 从 Claims 中获取用户 ID
-        Object emailObject = claims.get(EMAIL);
-        if (emailObject == null) {
-            log.error("Token Claims 中缺少 'email' 字段. Claims: {}", claims);
+        String email = getPrincipal(request).email();
+        if (email == null) {
+            log.error("Token Claims 中缺少 'email' 字段");
             throw new BusinessException(ResultCode.FAILED_CHECK_USERID,"没有获取到用户邮箱");
         }
-
-        try {
-            // 尝试转换为 Long
-            return String.valueOf(emailObject.toString());
-        } catch (NumberFormatException e) {
-            log.error("Token Claims 中的 'email' 字段格式非 Long: {}. Claims: {}", emailObject, claims);
-            throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
-        }
+        return email;
     }
 
-    private static Claims getClaims(HttpServletRequest request) throws ExpiredJwtException {
-        final String authorizationHeader = request.getHeader("Authorization");
-        final String bearerPrefix = "Bearer ";
-
-        if (authorizationHeader == null || !authorizationHeader.startsWith(bearerPrefix)) {
-            log.warn("请求头 Authorization 缺失或格式错误");
-            // 返回更具体的错误码和消息
-            throw new BusinessException(ResultCode.FAILED_UNAUTHORIZED);
+    private static AuthenticatedPrincipal toPrincipal(Claims claims) {
+        Long userId = null;
+        Object id = claims.get(USER_ID);
+        if (id != null) {
+            try {
+                userId = Long.valueOf(id.toString());
+            } catch (NumberFormatException e) {
+                log.error("Token Claims 中的 'Id' 字段格式非 Long: {}", id);
+                return null;
+            }
         }
+        Object email = claims.get(EMAIL);
+        Date expiration = claims.getExpiration();
+        return new AuthenticatedPrincipal(userId, email != null ? email.toString() : null,
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+    }
 
-        final String token = authorizationHeader.substring(bearerPrefix.length());
-
-        Claims claims;
+    private static ByteBuffer digest(String token) {
         try {
-            claims = JwtUtil.parseToken(token); // 调用可能抛出 ExpiredJwtException 的方法
-            if (claims == null) {
-                // parseToken 返回 null 表示非过期的其他解析错误
-                log.warn("Token 无效 (非过期错误)");
-                throw new BusinessException(ResultCode.FAILED_UNAUTHORIZED);
-            }
-        } catch (ExpiredJwtException e) {
-            log.warn("尝试从请求获取用户ID时 Token 已过期");
-            throw e; // 继续向上抛出过期异常
+            // MessageDigest 非线程安全，每次新建的开销远小于一次 HMAC 校验加 JSON 解析
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
         }
-        return claims;
     }
-}
\ No newline at end of file
+}
@@ -7,10 +7,14 @@ public class RedisKeyUtil {
     private static final String PREFIX_BOARD = "board";   // 板块前缀
     private static final String PREFIX_USER = "user";     // 用户前缀
     private static final String PREFIX_LIKES = "likes";   // 点赞相关前缀（用于点赞者集合）
+    private static final String PREFIX_STREAM = "stream";   // 事件 Stream 前缀
+    private static final String PREFIX_COUNTER_DIRTY = "counter:dirty"; // 计数脏集合前缀
+    private static final String PREFIX_MESSAGE = "msg";   // 站内信会话索引前缀
 
     // 文章相关
     private static final String FIELD_CONTENT = "content";      // 内容字段
     private static final String FIELD_LIKERS_SET = "likers"; // 点赞某文章的用户ID集合
+    private static final String FIELD_UNIQUE_VISITORS = "uv"; // 文章独立访客 HyperLogLog
 
     // 板块相关
     private static final String FIELD_ARTICLES_ZSET = "articles:zset"; // 板块下的文章ID集合 (ZSET)，保持不变
@@ -19,6 +23,15 @@ public class RedisKeyUtil {
     private static final String TOP_REPLIES = "top_replies:zset";
     private static final String PREFIX_PARENT_REPLY = "reply";
     private static final String CHILDREN_REPLY = "children:zset";
+
+    // 缓存Key的类型，作为命中率指标 kc.cache.l2.requests 的 family 标签
+    public static final String FAMILY_ARTICLE = "article";
+    public static final String FAMILY_ARTICLE_DETAIL = "article_detail";
+    public static final String FAMILY_BOARD_ARTICLES = "board_articles";
+    public static final String FAMILY_TOP_REPLIES = "top_replies";
+    public static final String FAMILY_REPLY = "reply";
+    public static final String FAMILY_REPLY_CHILDREN = "reply_children";
+    public static final String FAMILY_USER = "user";
     /**
      * 存储所有文章元数据和计数的 Hash 的 Key。
      * 例如: article:101 -> HASH {id:101, title:"..", likeCount:10, ...}
@@ -69,10 +82,42 @@ public class RedisKeyUtil {
         return PREFIX_BOARD + SPLIT + FIELD_ARTICLES_ZSET + SPLIT + boardId;
     }
 
+    /**
+     * 正在重建中的板块文章 ZSET，重建完成后 RENAME 为 getBoardArticlesZSetKey。
+     * 例如: board:articles:zset:5:building
+     */
+    public static String getBoardArticlesZSetBuildingKey(Long boardId) {
+        return getBoardArticlesZSetKey(boardId) + SPLIT + "building";
+    }
+
+    /**
+     * 板块文章 ZSET 的重建租约，同一时间只有一个节点重建。
+     * 例如: board:articles:rebuild:lease:5 -> token
+     */
+    public static String getBoardArticlesRebuildLeaseKey(Long boardId) {
+        return PREFIX_BOARD + SPLIT + "articles:rebuild:lease" + SPLIT + boardId;
+    }
+
+    /**
+     * 板块热门文章 ZSET（按纪元分Key，分数为指数衰减的热度，见 HotArticleRanking）。
+     * 例如: board:articles:hot:5:6789
+     */
+    public static String getBoardArticlesHotZSetKey(Long boardId, long epoch) {
+        return PREFIX_BOARD + SPLIT + "articles:hot" + SPLIT + boardId + SPLIT + epoch;
+    }
+
     public static String getUserResponseKey(Long userId) {
         return PREFIX_USER + SPLIT + userId;
     }
 
+    /**
+     * 文章回复树的物化视图（紧凑二进制，见 ReplyTreeCodec）。
+     * 例如: article:reply_tree:101 -> [replyId, parentId]...
+     */
+    public static String getArticleReplyTreeKey(Long articleId) {
+        return PREFIX_ARTICLE + SPLIT + "reply_tree" + SPLIT + articleId;
+    }
+
     public static String getArticleTopRepliesZsetKey(Long articleId) {
         return PREFIX_ARTICLE + SPLIT + TOP_REPLIES + SPLIT + articleId;
     }
@@ -85,4 +130,76 @@ public class RedisKeyUtil {
     public static String getArticleReplyKey(Long repliesId) {
         return PREFIX_PARENT_REPLY + SPLIT + repliesId;
     }
-}
\ No newline at end of file
+
+    /**
+     * 文章独立访客的 HyperLogLog 的 Key。
+     * 例如: article:uv:101 -> HLL{userId1, userId2}
+     */
+    public static String getArticleUniqueVisitorKey(Long articleId) {
+        return PREFIX_ARTICLE + SPLIT + FIELD_UNIQUE_VISITORS + SPLIT + articleId;
+    }
+
+    /**
+     * kc.event.transport=redis-stream 时事件所在的 Stream 的 Key，按路由键区分。
+     * 例如: stream:event.like
+     */
+    public static String getEventStreamKey(String routingKey) {
+        return PREFIX_STREAM + SPLIT + routingKey;
+    }
+
+    /**
+     * 计数发生变化、等待与数据库对账的目标 (ZSET，score 为最后一次变更的毫秒时间戳)。
+     * 例如: counter:dirty:reconcile:article -> {101: 1700000000000}
+     */
+    public static String getCounterReconcileDirtyKey(String targetType) {
+        return PREFIX_COUNTER_DIRTY + SPLIT + "reconcile" + SPLIT + targetType;
+    }
+
+    /**
+     * kc.counter.write-behind 开启时，Redis 计数已变化、等待回写数据库的目标 (SET)。
+     * 例如: counter:dirty:flush:article -> {101, 102}
+     */
+    public static String getCounterFlushDirtyKey(String targetType) {
+        return PREFIX_COUNTER_DIRTY + SPLIT + "flush" + SPLIT + targetType;
+    }
+
+    /**
+     * 用户的刷新令牌家族 (HASH)，每个登录会话一个字段，值为 secret|过期时间戳|email。
+     * 例如: refreshtoken:family:7 -> {9f2c...: "3b1d...|1700000000000|a@b.com"}
+     */
+    public static String getRefreshTokenFamilyKey(Long userId) {
+        return "refreshtoken" + SPLIT + "family" + SPLIT + userId;
+    }
+
+    /**
+     * 用户的会话索引 (ZSET)，成员为联系人id，分数为最后一条消息的毫秒时间戳。
+     * 例如: msg:conv:7 -> {8: 1700000000000}
+     */
+    public static String getConversationZSetKey(Long userId) {
+        return PREFIX_MESSAGE + SPLIT + "conv" + SPLIT + userId;
+    }
+
+    /**
+     * 用户的会话索引是否可用：1 可用，building 正在从数据库重建，dirty 重建期间有新的变更（重建结果作废）。
+     * 例如: msg:conv:ready:7 -> "1"
+     */
+    public static String getConversationReadyKey(Long userId) {
+        return PREFIX_MESSAGE + SPLIT + "conv" + SPLIT + "ready" + SPLIT + userId;
+    }
+
+    /**
+     * 用户每个联系人的未读消息数 (HASH)，_total 字段为总未读数。
+     * 例如: msg:unread:7 -> {8: 2, _total: 2}
+     */
+    public static String getConversationUnreadKey(Long userId) {
+        return PREFIX_MESSAGE + SPLIT + "unread" + SPLIT + userId;
+    }
+
+    /**
+     * 两个用户之间最后一条消息的快照 (HASH)，两个用户id小的在前。
+     * 例如: msg:last:7:8 -> {id: 1001, content: "..", time: 1700000000000}
+     */
+    public static String getConversationLastMessageKey(Long userId, Long contactId) {
+        return PREFIX_MESSAGE + SPLIT + "last" + SPLIT + Math.min(userId, contactId) + SPLIT + Math.max(userId, contactId);
+    }
+}
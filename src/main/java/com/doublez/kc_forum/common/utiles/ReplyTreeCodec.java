@@ -0,0 +1,91 @@
+package com.doublez.kc_forum.common.utiles;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * 文章回复树的紧凑二进制格式（物化视图）。
+ * <p>
+ * 每条记录固定 16 字节：回复id(long) + 父回复id(long)，大端序，只追加不修改：
+ * <ul>
+ *     <li>父回复id >= 0：新增回复，0 表示顶级回复</li>
+ *     <li>父回复id == {@link #TOMBSTONE}：该回复已删除</li>
+ *     <li>(0, 0)：{@link #READY} 标记，全量快照已写入，之前可能存在的并发追加同样有效</li>
+ * </ul>
+ * 删除是终态：回复一旦出现墓碑，之后（例如并发构建写入的快照）的新增记录都被忽略。
+ */
+public final class ReplyTreeCodec {
+
+    public static final int ENTRY_BYTES = 16;
+    public static final long TOP_LEVEL_PARENT = 0L;
+    public static final long TOMBSTONE = -1L;
+    public static final byte[] READY = entry(0L, 0L);
+
+    private ReplyTreeCodec() {}
+
+    /**
+     * 解码结果
+     * @param parentById 存活回复 -> 父回复id
+     * @param ready 是否已写入全量快照
+     * @param entries 记录总数（不含READY标记）
+     * @param tombstones 删除记录数，用于判断是否需要重建压缩
+     */
+    public record Decoded(Map<Long, Long> parentById, boolean ready, int entries, int tombstones) {
+
+        /**
+         * 父回复id -> 子回复id列表，按id倒序（id自增，即最新的在前，与按创建时间倒序的ZSET一致）
+         */
+        public Map<Long, List<Long>> childrenByParent() {
+            Map<Long, List<Long>> children = new HashMap<>();
+            parentById.forEach((id, parent) -> children.computeIfAbsent(parent, k -> new ArrayList<>()).add(id));
+            children.values().forEach(list -> list.sort(Comparator.reverseOrder()));
+            return children;
+        }
+    }
+
+    public static byte[] entry(long replyId, long parentId) {
+        return ByteBuffer.allocate(ENTRY_BYTES).putLong(replyId).putLong(parentId).array();
+    }
+
+    public static byte[] tombstone(long replyId) {
+        return entry(replyId, TOMBSTONE);
+    }
+
+    /**
+     * 编码一份全量快照，并在末尾追加READY标记
+     * @param parentById 回复id -> 父回复id（顶级回复为0）
+     */
+    public static byte[] encodeSnapshot(Map<Long, Long> parentById) {
+        ByteBuffer buffer = ByteBuffer.allocate((parentById.size() + 1) * ENTRY_BYTES);
+        parentById.forEach((id, parent) -> buffer.putLong(id).putLong(parent));
+        buffer.put(READY);
+        return buffer.array();
+    }
+
+    public static Decoded decode(byte[] blob) {
+        Map<Long, Long> parentById = new HashMap<>();
+        Set<Long> deleted = new HashSet<>();
+        boolean ready = false;
+        int entries = 0;
+        int tombstones = 0;
+        ByteBuffer buffer = ByteBuffer.wrap(blob);
+        // 末尾不完整的记录直接忽略
+        while (buffer.remaining() >= ENTRY_BYTES) {
+            long id = buffer.getLong();
+            long parent = buffer.getLong();
+            if (id == 0L && parent == 0L) {
+                ready = true;
+                continue;
+            }
+            entries++;
+            if (parent == TOMBSTONE) {
+                tombstones++;
+                deleted.add(id);
+                parentById.remove(id);
+            } else if (!deleted.contains(id)) {
+                parentById.put(id, parent);
+            }
+        }
+        return new Decoded(parentById, ready, entries, tombstones);
+    }
+}
@@ -0,0 +1,24 @@
+package com.doublez.kc_forum.common.utiles;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionUtil {
+
+    /**
+     * 在当前事务提交后执行（按注册顺序），不在事务中时立即执行。
+     * 用于 Redis 索引、推送等不能回滚的副作用，避免事务回滚后留下脏数据
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -3,13 +3,14 @@ package com.doublez.kc_forum.controller;
 import com.doublez.kc_forum.common.Result;
 import com.doublez.kc_forum.common.ResultCode;
 import com.doublez.kc_forum.common.exception.BusinessException;
+import com.doublez.kc_forum.common.interceptor.CurrentUser;
 import com.doublez.kc_forum.common.pojo.request.ArticleAddRequest;
 import com.doublez.kc_forum.common.pojo.request.UpdateArticleRequest;
 import com.doublez.kc_forum.common.pojo.response.ArticleDetailResponse;
 import com.doublez.kc_forum.common.pojo.response.ArticleMetaCacheDTO;
+import com.doublez.kc_forum.common.pojo.response.ViewArticleCursorResponse;
 import com.doublez.kc_forum.common.pojo.response.ViewArticleResponse;
 import com.doublez.kc_forum.common.utiles.AuthUtils;
-import com.doublez.kc_forum.common.utiles.JwtUtil;
 import com.doublez.kc_forum.model.Article;
 import com.doublez.kc_forum.model.Board;
 import com.doublez.kc_forum.model.User;
@@ -20,7 +21,6 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -49,9 +49,8 @@ public class ArticleController {
     @PostMapping("/create")
     @Operation(summary = "创建帖子", description = "创建一个新的帖子")
     @ApiResponse(responseCode = "200", description = "成功")
-    public Result<Object> create(HttpServletRequest request, @RequestBody @Validated ArticleAddRequest articleAddRequest) {
+    public Result<Object> create(@CurrentUser Long userId, @RequestBody @Validated ArticleAddRequest articleAddRequest) {
         //需要判断用户是否被禁言
-        Long userId = JwtUtil.getUserId(request);
         User user = userService.selectUserInfoById(userId);
         AuthUtils.userBannedChecker(user);;
 
@@ -113,6 +112,43 @@ public class ArticleController {
         return articleService.getArticleCards(boardId,currentPage,pageSize);
     }
 
+    /**
+     * 分页获取板块下的热门帖子
+     * @param boardId 板块id
+     * @return ViewArticleResponse
+     */
+    @Operation(summary = "分页获取板块下的热门帖子", description = "按点赞、回复、浏览加权并随时间衰减的热度倒序")
+    @GetMapping("/getHotArticlesPageByBoardId")
+    public ViewArticleResponse getHotArticlesPageByBoardId(
+            @Parameter(description = "板块 ID") @RequestParam Long boardId,
+            @NotNull Integer currentPage,@NotNull Integer pageSize) {
+        if(boardId == null || boardId < 0 || currentPage == null || currentPage <= 0 || pageSize == null || pageSize <= 0){
+            log.warn("板块 {} 或分页参数 {}/{} 不合法",boardId,currentPage,pageSize);
+            throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
+        }
+        return articleService.getHotArticleCards(boardId,currentPage,pageSize);
+    }
+
+    /**
+     * 游标分页获取板块下的帖子，深分页的代价与第一页相同
+     * @param boardId 板块id
+     * @param cursor 上一页返回的 nextCursor，第一页不传
+     * @param pageSize 每页数量
+     * @return ViewArticleCursorResponse
+     */
+    @Operation(summary = "游标分页获取板块下的帖子", description = "按创建时间倒序，使用上一页返回的 nextCursor 获取下一页")
+    @GetMapping("/getArticlesCursorByBoardId")
+    public ViewArticleCursorResponse getArticlesCursorByBoardId(
+            @Parameter(description = "板块 ID") @RequestParam Long boardId,
+            @Parameter(description = "上一页返回的游标") @RequestParam(required = false) String cursor,
+            @NotNull Integer pageSize) {
+        if(boardId == null || boardId < 0 || pageSize == null || pageSize <= 0 || pageSize > 100){
+            log.warn("板块 {} 或分页大小 {} 不合法",boardId,pageSize);
+            throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
+        }
+        return articleService.getArticleCardsByCursor(boardId,cursor,pageSize);
+    }
+
 
     /**
      * 根据帖子id查询帖子详情
@@ -121,9 +157,8 @@ public class ArticleController {
      */
     @Operation(summary = "获取帖子详情", description = "根据帖子 ID 获取所有帖子详情")
     @GetMapping("/getArticleDetailById")
-    public ArticleDetailResponse getArticleDetailById(HttpServletRequest request, @Parameter(description = "帖子ID") Long articleId) {
+    public ArticleDetailResponse getArticleDetailById(@CurrentUser Long userId, @Parameter(description = "帖子ID") Long articleId) {
         if(articleId != null && articleId > 0){
-            Long userId = JwtUtil.getUserId(request);
             return articleService.getArticleDetailById(userId,articleId);
         }
         log.warn("传入参数有错，articleId:{}", articleId);
@@ -149,13 +184,12 @@ public class ArticleController {
     @PostMapping("/updateArticle")
     @Operation(summary = "根据帖子id，更新帖子",
             description = "通过request，获取当前用户id，进行鉴权和是否被禁言等判断，由前端传入updateArticleRequest对象，更新对应帖子信息")
-    public boolean updateArticle(HttpServletRequest request, @RequestBody @Validated UpdateArticleRequest updateArticleRequest) {
+    public boolean updateArticle(@CurrentUser Long userId, @RequestBody @Validated UpdateArticleRequest updateArticleRequest) {
         //简单判断
         if(updateArticleRequest.getId() < 1){
                 throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
         }
         //鉴权
-        Long userId = JwtUtil.getUserId(request);
         AuthUtils.userPermissionChecker(userId,updateArticleRequest.getId(),articleService::getUserId);
         //被禁言
         User user = userService.selectUserInfoById(userId);
@@ -167,13 +201,12 @@ public class ArticleController {
 
     @PostMapping("/deleteArticle")
     @Operation(summary = "根据帖子id，删除对应帖子")
-    public boolean deleteArticle(HttpServletRequest request,
+    public boolean deleteArticle(@CurrentUser Long userId,
                                  @Parameter(description = "帖子ID")@NotNull Long articleId,
                                  @Parameter(description = "板块ID")@NotNull Long boardId) {
         if(articleId == null || articleId <= 0 || boardId == null || boardId < 0){
             throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
         }
-        Long userId = JwtUtil.getUserId(request);
         //鉴权
         AuthUtils.userPermissionChecker(userId,articleId,articleService::getUserId);
 
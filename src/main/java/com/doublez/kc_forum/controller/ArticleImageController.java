@@ -2,13 +2,12 @@ package com.doublez.kc_forum.controller;
 
 import com.doublez.kc_forum.common.Result;
 import com.doublez.kc_forum.common.ResultCode;
+import com.doublez.kc_forum.common.interceptor.CurrentUser;
 import com.doublez.kc_forum.common.pojo.response.ImageUploadResponseDTO;
-import com.doublez.kc_forum.common.utiles.JwtUtil;
 import com.doublez.kc_forum.service.impl.ArticleImageServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -29,13 +28,11 @@ public class ArticleImageController {
     @PostMapping("/{articleId}/images")
     @Operation(summary = "上传文章图片", description = "为指定文章上传图片")
     public ImageUploadResponseDTO uploadImage(
-            HttpServletRequest request,
+            @CurrentUser Long userId,
             @PathVariable @Parameter(description = "文章ID") Long articleId,
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "displayOrder", required = false) Integer displayOrder) {
 
-        // 获取当前用户ID
-        Long userId = JwtUtil.getUserId(request);
         log.info("用户 {} 为文章 {} 上传图片", userId, articleId);
 
         // 调用服务上传图片
@@ -54,11 +51,9 @@ public class ArticleImageController {
     @DeleteMapping("/images/{imageId}")
     @Operation(summary = "删除文章图片", description = "删除指定的文章图片")
     public Result<Object> deleteImage(
-            HttpServletRequest request,
+            @CurrentUser Long userId,
             @PathVariable @Parameter(description = "图片ID") Long imageId) {
 
-        // 获取当前用户ID
-        Long userId = JwtUtil.getUserId(request);
         log.info("用户 {} 删除图片 {}", userId, imageId);
 
         boolean success = articleImageService.deleteImage(imageId);
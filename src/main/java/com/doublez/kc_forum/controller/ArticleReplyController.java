@@ -3,11 +3,11 @@ package com.doublez.kc_forum.controller;
 import com.doublez.kc_forum.common.Result;
 import com.doublez.kc_forum.common.ResultCode;
 import com.doublez.kc_forum.common.exception.BusinessException;
+import com.doublez.kc_forum.common.interceptor.CurrentUser;
 import com.doublez.kc_forum.common.pojo.request.ArticleReplyAddRequest;
 import com.doublez.kc_forum.common.pojo.response.ArticleReplyMetaCacheDTO;
 import com.doublez.kc_forum.common.pojo.response.ViewArticleReplyResponse;
 import com.doublez.kc_forum.common.utiles.AuthUtils;
-import com.doublez.kc_forum.common.utiles.JwtUtil;
 import com.doublez.kc_forum.mapper.ArticleMapper;
 import com.doublez.kc_forum.model.User;
 import com.doublez.kc_forum.service.impl.ArticleReplyServiceImpl;
@@ -15,7 +15,6 @@ import com.doublez.kc_forum.service.impl.UserServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -42,9 +41,8 @@ public class ArticleReplyController {
     @PostMapping("/createArticleReply")
     @Operation(summary = "创建回复帖子",
             description = "先通过传入HttpServletRequest，后端通过获取token来获取当前用户id，进行判断是否被禁言，然后通过ArticleReplyAddRequest传入的参数进行创建帖子")
-    public Result createArticleReply(HttpServletRequest request, @RequestBody @Validated ArticleReplyAddRequest articleReplyAddRequest) {
+    public Result createArticleReply(@CurrentUser Long userId, @RequestBody @Validated ArticleReplyAddRequest articleReplyAddRequest) {
         //被禁言
-        Long userId = JwtUtil.getUserId(request);
         User user = userService.selectUserInfoById(userId);
         AuthUtils.userBannedChecker(user);
         articleReplyAddRequest.setReplyUserId(userId);
@@ -69,11 +67,10 @@ public class ArticleReplyController {
 
     @PostMapping("/deleteArticleReply")
     @Operation(summary = "删除回复帖子")
-    public void deleteArticleReply(HttpServletRequest request,
+    public void deleteArticleReply(@CurrentUser Long userId,
                                    @NotNull @Parameter(name = "回复帖子id") Long articleReplyId,
                                    @NotNull @Parameter(name = "帖子id") Long articleId) {
         if(articleReplyId > 0) {
-            Long userId = JwtUtil.getUserId(request);
             if(articleReplyServiceImpl.deleteArticleReply(userId,articleReplyId,articleId) != 1){
                 log.error("帖子删除异常：{}", articleReplyId);
                 throw new BusinessException(ResultCode.FAILED_REPLY_DELETE);
@@ -3,22 +3,24 @@ package com.doublez.kc_forum.controller;
 import com.doublez.kc_forum.common.Result;
 import com.doublez.kc_forum.common.ResultCode;
 import com.doublez.kc_forum.common.exception.BusinessException;
+import com.doublez.kc_forum.common.interceptor.CurrentUser;
 import com.doublez.kc_forum.common.pojo.request.MessageRequest;
+import com.doublez.kc_forum.common.pojo.response.MessageCursorResponse;
 import com.doublez.kc_forum.common.pojo.response.MessageResponse;
 import com.doublez.kc_forum.common.pojo.response.RecentConversationsResponse;
-import com.doublez.kc_forum.common.utiles.JwtUtil;
 import com.doublez.kc_forum.model.Message;
+import com.doublez.kc_forum.service.impl.MessagePushService;
 import com.doublez.kc_forum.service.impl.MessageServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -32,10 +34,12 @@ public class MessageController {
     @Autowired
     private MessageServiceImpl messageService;
 
+    @Autowired
+    private MessagePushService messagePushService;
+
     @PostMapping("/send")
     @Operation(summary = "发送站内信")
-    public Result<?> sendMessage(@RequestBody @Valid MessageRequest messageRequest,HttpServletRequest request) {
-        Long userId = JwtUtil.getUserId(request);
+    public Result<?> sendMessage(@RequestBody @Valid MessageRequest messageRequest,@CurrentUser Long userId) {
         if(Objects.equals(userId, messageRequest.getReceiveUserId())){
             log.warn("不能给自己发送站内信, userId = {}",userId);
             throw new BusinessException(ResultCode.ERROR_MESSAGE_NOT_VALID);
@@ -53,22 +57,30 @@ public class MessageController {
 
     @GetMapping("/getUnreadCount")
     @Operation(summary = "当前用户未读消息数")
-    public Result<?> getUnreadCount(HttpServletRequest request) {
-        Long userId = JwtUtil.getUserId(request);
+    public Result<?> getUnreadCount(@CurrentUser Long userId) {
 
         long count = messageService.selectUnreadCount(userId);
         log.info("用户id:{} 有{}个未读消息",userId,count);
         return Result.success(count);
     }
 
+    @GetMapping("/subscribe")
+    @Operation(summary = "订阅站内信推送 (SSE)", description = "推送 message（新消息）与 unread（未读数）事件，返回 503 时客户端退回轮询")
+    public SseEmitter subscribe(@CurrentUser Long userId) {
+        if (!messagePushService.isEnabled()) {
+            throw new BusinessException(ResultCode.FAILED_MESSAGE_PUSH_UNAVAILABLE);
+        }
+        log.info("用户id:{} 订阅站内信推送", userId);
+        return messagePushService.subscribe(userId, messageService.selectUnreadCount(userId));
+    }
+
     @GetMapping("/getAllMessagesByUserId")
-    @Operation(summary = "获取当前两个用户的会话消息",description = "会获取双方的消息，并且postUserId为发送者")
+    @Operation(summary = "获取当前两个用户的会话消息",description = "会获取双方的全部消息，并且postUserId为发送者；长会话请使用 /message/history 分页")
     public List<MessageResponse> getAllMessagesByUserId(@NonNull @Parameter(description = "发送者的id") Long postUserId,
-                                                            HttpServletRequest request) {
+                                                            @CurrentUser Long receiveUserId) {
         if(postUserId < 0){
             throw new BusinessException(ResultCode.FAILED_USER_NOT_EXISTS);
         }
-        Long receiveUserId = JwtUtil.getUserId(request);
         List<Message> messages = messageService.selectAllMessageByPostUserID(receiveUserId, postUserId);
         List<MessageResponse> messageResponses = new ArrayList<>();
         for(Message message : messages){
@@ -80,9 +92,21 @@ public class MessageController {
         return messageResponses;
     }
 
+    @GetMapping("/history")
+    @Operation(summary = "游标分页获取会话消息", description = "按时间倒序，第一页会把对方发来的消息标记为已读")
+    public MessageCursorResponse getHistory(@NonNull @Parameter(description = "对方用户id") Long contactId,
+                                            @Parameter(description = "上一页返回的游标") @RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "20") Integer pageSize,
+                                            @CurrentUser Long userId) {
+        if (contactId <= 0 || pageSize <= 0 || pageSize > 100) {
+            log.warn("会话对方 {} 或分页大小 {} 不合法", contactId, pageSize);
+            throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
+        }
+        return messageService.getConversationByCursor(userId, contactId, cursor, pageSize);
+    }
+
     @GetMapping("/getRecentConversations")
-    public List<RecentConversationsResponse> getRecentConversations(HttpServletRequest request) {
-        Long userId = JwtUtil.getUserId(request);
+    public List<RecentConversationsResponse> getRecentConversations(@CurrentUser Long userId) {
         log.info("查询用户id:{}最近的信息",userId);
         return messageService.getRecentConversations(userId);
     }
@@ -4,6 +4,7 @@ import com.doublez.kc_forum.common.Result;
 import com.doublez.kc_forum.common.ResultCode;
 import com.doublez.kc_forum.common.exception.ApplicationException;
 import com.doublez.kc_forum.common.exception.BusinessException;
+import com.doublez.kc_forum.common.interceptor.CurrentUser;
 import com.doublez.kc_forum.common.utiles.JwtUtil;
 import com.doublez.kc_forum.service.impl.RefreshTokenService;
 import jakarta.servlet.http.Cookie;
@@ -16,7 +17,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Optional;
 
 @Slf4j
 @RestController
@@ -46,33 +47,31 @@ public class TokenController {
             throw new BusinessException(ResultCode.FAIL_REFRESH_TOKEN);
         }
 
-        // 1. 验证从 Cookie 获取的 Refresh Token 是否在 Redis 中有效
-        return refreshTokenService.validateRefreshToken(refreshTokenFromCookie) // validateRefreshToken 内部查询 Redis
-                .map(userCookie -> { // 如果有效，返回关联的用户名
-                    // --- Refresh Token 有效 ---
-                    log.info("Refresh Token 有效，用户: {}", userCookie);
-
-                    // --- 执行 Refresh Token Rotation ---
-                    // a. (可选但推荐) 从 Redis 删除旧的 Refresh Token
-                    refreshTokenService.deleteRefreshToken(refreshTokenFromCookie);
-
-                    // b. 生成新的 Refresh Token (随机字符串)
-                    String newRefreshTokenString = UUID.randomUUID().toString();
+        // 1. 校验并轮换 Refresh Token：新格式一次 Lua 脚本完成校验、作废与签发
+        Optional<RefreshTokenService.Rotation> rotation;
+        if (RefreshTokenService.isLegacy(refreshTokenFromCookie)) {
+            // 旧格式的令牌不包含用户信息，DEL 成功说明有效（并发请求只有一个能成功），用户从 Access Token 中取得，之后换成新格式
+            rotation = refreshTokenService.consumeLegacy(refreshTokenFromCookie)
+                    ? Optional.of(JwtUtil.getPrincipalIgnoringExpiry(request)).map(principal -> new RefreshTokenService.Rotation(
+                            principal.userId(), principal.email(), refreshTokenService.issue(principal.userId(), principal.email())))
+                    : Optional.empty();
+        } else {
+            rotation = refreshTokenService.rotate(refreshTokenFromCookie);
+        }
 
-                    // c. 存储新的 Refresh Token 到 Redis
-                    refreshTokenService.createRefreshToken(newRefreshTokenString);
-                    // !! 替换为你的 Redis 存储逻辑 !!
+        return rotation
+                .map(rotated -> { // 如果有效，返回新的令牌
+                    // --- Refresh Token 有效，已完成轮换 ---
+                    Long userId = rotated.userId();
 
-                    // d. 生成新的 Access Token (JWT)
-                    Long userId = JwtUtil.getUserId(request);
-                    String userEmail = JwtUtil.getUserEmail(request);
+                    // 2. 生成新的 Access Token (JWT)
                     Map<String, Object> newAccessTokenClaims = new HashMap<>();
-                    newAccessTokenClaims.put("Id", userId);
-                    newAccessTokenClaims.put("email", userEmail);
+                    newAccessTokenClaims.put(JwtUtil.USER_ID, userId);
+                    newAccessTokenClaims.put(JwtUtil.EMAIL, rotated.email());
                     String newAccessToken = JwtUtil.genToken(newAccessTokenClaims);
 
-                    // e. !! 设置新的 Refresh Token 到 HttpOnly Cookie !!
-                    Cookie newRefreshTokenCookie = new Cookie("refreshToken", newRefreshTokenString);
+                    // 3. !! 设置新的 Refresh Token 到 HttpOnly Cookie !!
+                    Cookie newRefreshTokenCookie = new Cookie("refreshToken", rotated.refreshToken());
 //                    newRefreshTokenCookie.setHttpOnly(true);
 //                    newRefreshTokenCookie.setSecure(true); // 生产环境 true
 //                    newRefreshTokenCookie.setPath("/api/token"); // 与登录时设置的路径一致
@@ -80,21 +79,36 @@ public class TokenController {
                     // ... 其他 Cookie 属性 (Domain, SameSite) ...
                     response.addCookie(newRefreshTokenCookie);
 
-                    // f. 返回新的 Access Token 到响应体
+                    // 4. 返回新的 Access Token 到响应体
                     log.info("成功刷新 Token，用户: {}", userId);
                     return new Result<>(newAccessToken); // 响应体只有 Access Token
                 })
-                // 2. 如果 validateRefreshToken 返回空 Optional，说明 Refresh Token 无效或已过期
+                // 如果返回空 Optional，说明 Refresh Token 无效、已过期或被重复使用
                 .orElseGet(() -> {
                     log.warn("无效或已过期的 Refresh Token (来自 Cookie): {}", refreshTokenFromCookie);
                     // 清除可能残留的无效 Cookie (可选但推荐)
-                    Cookie expiredCookie = new Cookie("refreshToken", null);
-                    expiredCookie.setHttpOnly(true);
-                    expiredCookie.setSecure(true);
-                    expiredCookie.setPath("/api/token");
-                    expiredCookie.setMaxAge(0); // 设置 MaxAge=0 使 Cookie 立即过期
-                    response.addCookie(expiredCookie);
+                    response.addCookie(expiredRefreshTokenCookie());
                     throw new BusinessException(ResultCode.FAILED_UNAUTHORIZED);
                 });
     }
-}
\ No newline at end of file
+
+    /**
+     * 退出所有设备：作废当前用户的所有刷新令牌。
+     * 已签发的 Access Token 不受影响，在过期（jwt.access-token.expiration-ms）后无法再刷新。
+     */
+    @PostMapping("/revokeAll")
+    public Result<?> revokeAll(@CurrentUser Long userId, HttpServletResponse response) {
+        refreshTokenService.revokeAll(userId);
+        response.addCookie(expiredRefreshTokenCookie());
+        return Result.success();
+    }
+
+    private Cookie expiredRefreshTokenCookie() {
+        Cookie expiredCookie = new Cookie("refreshToken", null);
+        expiredCookie.setHttpOnly(true);
+        expiredCookie.setSecure(true);
+        expiredCookie.setPath("/api/token");
+        expiredCookie.setMaxAge(0); // 设置 MaxAge=0 使 Cookie 立即过期
+        return expiredCookie;
+    }
+}
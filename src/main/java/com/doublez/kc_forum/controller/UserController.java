@@ -4,17 +4,16 @@ import com.doublez.kc_forum.common.Result;
 import com.doublez.kc_forum.common.ResultCode;
 import com.doublez.kc_forum.common.exception.BusinessException;
 import com.doublez.kc_forum.common.exception.SystemException;
+import com.doublez.kc_forum.common.interceptor.CurrentUser;
 import com.doublez.kc_forum.common.pojo.request.ModifyUerRequest;
 import com.doublez.kc_forum.common.pojo.request.RegisterRequest;
 import com.doublez.kc_forum.common.pojo.request.UserLoginRequest;
 import com.doublez.kc_forum.common.pojo.response.UserLoginResponse;
-import com.doublez.kc_forum.common.utiles.JwtUtil;
 import com.doublez.kc_forum.model.User;
 import com.doublez.kc_forum.service.impl.UserServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -38,9 +37,8 @@ public class UserController {
 
     @PostMapping("/uploadAvatar")
     @Operation(summary = "上传用户头像", description = "上传用户头像并更新用户信息的avatarUrl")
-    public Result<String> uploadAvatar(HttpServletRequest request, @Validated @RequestParam("file") MultipartFile file) {
+    public Result<String> uploadAvatar(@CurrentUser Long userId, @Validated @RequestParam("file") MultipartFile file) {
         // 获取当前用户id
-        Long userId = JwtUtil.getUserId(request);
         log.info("用户 {} 上传头像", userId);
 
         try {
@@ -85,10 +83,9 @@ public class UserController {
      */
     @Operation(summary = "获取用户信息",description = "可以选择是否传入参数，未穿入参数代表查询当前用户信息，否则查询对应用户信息")
     @GetMapping("/info")
-    public User getUserInfo(HttpServletRequest request, @RequestParam(value = "id", required = false) Long id) {
+    public User getUserInfo(@CurrentUser Long userId, @RequestParam(value = "id", required = false) Long id) {
         //如果id为空，获取当前用户信息
         if (id == null) {
-            Long userId = JwtUtil.getUserId(request);
             // 4. 根据用户 ID 查询用户信息
             return userService.selectUserInfoById(userId);
         } else {
@@ -101,9 +98,7 @@ public class UserController {
     }
     @PostMapping("/modifyInfo")
     @Operation(summary = "修改用户基本信息",description = "此方法可以修改的信息只有ModifyUerRequest类里面的信息")
-    public boolean  modifyInfo(HttpServletRequest request,@RequestBody @Validated ModifyUerRequest modifyUerRequest) {
-        //获取当前用户id
-        Long userId = JwtUtil.getUserId(request);
+    public boolean  modifyInfo(@CurrentUser Long userId,@RequestBody @Validated ModifyUerRequest modifyUerRequest) {
         User user = new User();
         //类型转化
         try {
@@ -118,15 +113,13 @@ public class UserController {
 
     @PostMapping("/modifyPassword")
     @Operation(summary = "修改用户密码")
-    public Result modifyInfoPassword(HttpServletRequest request, @Parameter(description = "密码") @NotBlank String password,
+    public Result modifyInfoPassword(@CurrentUser Long userId, @Parameter(description = "密码") @NotBlank String password,
                                      @Parameter(description = "重复密码")@NotBlank String repeatPassword) {
         //确认两次密码是否相等
         if(!password.equals(repeatPassword)) {
             log.warn(ResultCode.FAILED_TWO_PWD_NOT_SAME.toString());
             throw new BusinessException(ResultCode.FAILED_TWO_PWD_NOT_SAME);
         }
-        //获取当前用户id
-        Long userId = JwtUtil.getUserId(request);
 
         userService.modifyUserInfoPasswordById(password,userId);
         return Result.success();
@@ -134,10 +127,7 @@ public class UserController {
 
     @PostMapping("/modifyEmail")
     @Operation(summary = "修改用户邮箱")
-    public Result<?> modifyInfoEmail(HttpServletRequest request,@NotBlank @Email String email,@NotBlank String code) {
-
-        //获取当前用户id
-        Long userId = JwtUtil.getUserId(request);
+    public Result<?> modifyInfoEmail(@CurrentUser Long userId,@NotBlank @Email String email,@NotBlank String code) {
 
         userService.modifyUserInfoEmailById(email,userId,code);
         return Result.success();
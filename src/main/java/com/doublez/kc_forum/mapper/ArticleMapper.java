@@ -1,9 +1,66 @@
 package com.doublez.kc_forum.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.doublez.kc_forum.common.pojo.CounterDelta;
+import com.doublez.kc_forum.common.pojo.CounterValue;
 import com.doublez.kc_forum.model.Article;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface ArticleMapper extends BaseMapper<Article> {
+    /**
+     * 一条 UPDATE ... CASE 批量累加多篇文章的点赞数
+     * @param deltas 每篇文章的净增量，id 不可重复
+     */
+    int incrementLikeCountBatch(@Param("deltas") List<CounterDelta> deltas);
+
+    /**
+     * 一条 UPDATE ... CASE 批量累加多篇文章的浏览数
+     * @param deltas 每篇文章的净增量，id 不可重复
+     */
+    int incrementVisitCountBatch(@Param("deltas") List<CounterDelta> deltas);
+
+    /**
+     * 一条 UPDATE ... CASE 批量累加多篇文章的独立访客数
+     * @param deltas 每篇文章新增的独立访客数，id 不可重复
+     */
+    int incrementUniqueVisitCountBatch(@Param("deltas") List<CounterDelta> deltas);
+
+    /**
+     * 批量写入文章回复数的绝对值（计数 write-behind 回写）
+     * @param values 每篇文章的回复数，id 不可重复
+     */
+    int setReplyCountBatch(@Param("values") List<CounterValue> values);
+
+    /**
+     * 用 likes 表重新统计这批文章的 like_count（一条 UPDATE，统计与写入在同一语句中完成）
+     */
+    int recountLikeCount(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 用 article_reply 表重新统计这批文章未删除的回复数 reply_count
+     */
+    int recountReplyCount(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 板块文章 keyset 分页：查询 (create_time, id) 严格小于游标的文章id与创建时间，按创建时间、id 倒序
+     * @param createTime 游标的创建时间，为 null 时从最新的文章开始
+     * @param id 游标的文章id
+     */
+    List<Article> selectBoardArticleIdsBefore(@Param("boardId") Long boardId,
+                                              @Param("createTime") LocalDateTime createTime,
+                                              @Param("id") Long id,
+                                              @Param("limit") int limit);
+
+    /**
+     * 板块文章分页查询文章id，按创建时间、id 倒序，用于板块ZSET重建完成前的读请求
+     */
+    List<Long> selectBoardArticleIdPage(@Param("boardId") Long boardId,
+                                        @Param("offset") long offset,
+                                        @Param("limit") int limit);
 }
@@ -1,9 +1,46 @@
 package com.doublez.kc_forum.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.doublez.kc_forum.common.pojo.CounterDelta;
+import com.doublez.kc_forum.common.pojo.CounterValue;
 import com.doublez.kc_forum.model.ArticleReply;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface ArticleReplyMapper extends BaseMapper<ArticleReply> {
+    /**
+     * 一条 UPDATE ... CASE 批量累加多条回复的点赞数
+     * @param deltas 每条回复的净增量，id 不可重复
+     */
+    int incrementLikeCountBatch(@Param("deltas") List<CounterDelta> deltas);
+
+    /**
+     * 批量写入回复的子回复数绝对值（计数 write-behind 回写）
+     * @param values 每条回复的子回复数，id 不可重复
+     */
+    int setChildrenCountBatch(@Param("values") List<CounterValue> values);
+
+    /**
+     * 按文章聚合未删除的回复数，没有回复的文章不会出现在结果中
+     */
+    List<CounterValue> countRepliesByArticleIds(@Param("articleIds") Collection<Long> articleIds);
+
+    /**
+     * 按父回复聚合未删除的直接子回复数，没有子回复的回复不会出现在结果中
+     */
+    List<CounterValue> countChildrenByReplyIds(@Param("replyIds") Collection<Long> replyIds);
+
+    /**
+     * 用 likes 表重新统计这批回复的 like_count（一条 UPDATE，统计与写入在同一语句中完成）
+     */
+    int recountLikeCount(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 重新统计这批回复的 children_count
+     */
+    int recountChildrenCount(@Param("ids") Collection<Long> ids);
 }
@@ -1,9 +1,40 @@
 package com.doublez.kc_forum.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.doublez.kc_forum.common.pojo.CounterValue;
 import com.doublez.kc_forum.model.Likes;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface LikesMapper extends BaseMapper<Likes> {
+    /**
+     * 多行 INSERT IGNORE，已存在的 (user_id, target_id, target_type) 会被忽略
+     * @param likes 点赞记录
+     * @return 实际插入的行数
+     */
+    int insertIgnoreBatch(@Param("likes") List<Likes> likes);
+
+    /**
+     * 按 (user_id, target_id, target_type) 批量删除点赞记录
+     * @param likes 只需要 userId、targetId、targetType
+     * @return 实际删除的行数
+     */
+    int deleteBatch(@Param("likes") List<Likes> likes);
+
+    /**
+     * 查询其中已存在的点赞记录并加行锁（SELECT ... FOR UPDATE），需要在事务内调用
+     * @param likes 只需要 userId、targetId、targetType
+     * @return 已存在的记录，只包含 userId、targetId、targetType
+     */
+    List<Likes> selectExistingForUpdate(@Param("likes") List<Likes> likes);
+
+    /**
+     * 按目标聚合点赞数，没有点赞记录的目标不会出现在结果中
+     * @param targetIds 目标id，数量由调用方控制
+     */
+    List<CounterValue> countByTargets(@Param("targetType") String targetType, @Param("targetIds") Collection<Long> targetIds);
 }
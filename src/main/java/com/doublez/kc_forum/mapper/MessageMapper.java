@@ -4,7 +4,9 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.doublez.kc_forum.common.pojo.response.RecentConversationsResponse;
 import com.doublez.kc_forum.model.Message;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
@@ -15,4 +17,35 @@ public interface MessageMapper extends BaseMapper<Message> {
      * @return 最近会话列表
      */
     List<RecentConversationsResponse> getRecentConversations(Long currentUserId);
+
+    /**
+     * 会话历史 keyset 分页：查询两人之间 (create_time, id) 严格小于游标的消息，按创建时间、id 倒序
+     * @param createTime 游标的创建时间，为 null 时从最新的消息开始
+     * @param id 游标的消息id
+     */
+    List<Message> selectConversationBefore(@Param("userId") Long userId,
+                                           @Param("contactId") Long contactId,
+                                           @Param("createTime") LocalDateTime createTime,
+                                           @Param("id") Long id,
+                                           @Param("limit") int limit);
+
+    /**
+     * 用户在与 contactId 的会话中已读到的消息id，没有读过时返回 null
+     */
+    Long selectReadCursor(@Param("userId") Long userId, @Param("contactId") Long contactId);
+
+    /**
+     * contactId 发给用户的最后一条消息id，没有时返回 null
+     */
+    Long selectLastReceivedId(@Param("userId") Long userId, @Param("contactId") Long contactId);
+
+    /**
+     * 把已读游标前进到 messageId，游标已经更大时不变
+     */
+    int upsertReadCursor(@Param("userId") Long userId, @Param("contactId") Long contactId, @Param("messageId") Long messageId);
+
+    /**
+     * 用户所有会话的未读消息总数
+     */
+    Long countUnread(@Param("userId") Long userId);
 }
@@ -3,6 +3,7 @@ package com.doublez.kc_forum.service;
 import com.doublez.kc_forum.common.pojo.request.UpdateArticleRequest;
 import com.doublez.kc_forum.common.pojo.response.ArticleDetailResponse;
 import com.doublez.kc_forum.common.pojo.response.ArticleMetaCacheDTO;
+import com.doublez.kc_forum.common.pojo.response.ViewArticleCursorResponse;
 import com.doublez.kc_forum.common.pojo.response.ViewArticleResponse;
 import com.doublez.kc_forum.model.Article;
 import org.springframework.transaction.annotation.Transactional;
@@ -40,6 +41,24 @@ public interface IArticleService {
      * @return
      */
     public ViewArticleResponse getArticleCards(Long boardId, int currentPage, int pageSize);
+
+    /**
+     * 通过boardid分页查询其board下的热门article，按衰减后的热度倒序；未开启热门排行或排行为空时按创建时间倒序
+     * @param boardId
+     * @param currentPage
+     * @param pageSize
+     * @return
+     */
+    ViewArticleResponse getHotArticleCards(Long boardId, int currentPage, int pageSize);
+
+    /**
+     * 通过boardid游标分页查询其board下的article，按创建时间倒序
+     * @param boardId
+     * @param cursor 上一页返回的nextCursor，第一页为null
+     * @param pageSize
+     * @return
+     */
+    ViewArticleCursorResponse getArticleCardsByCursor(Long boardId, String cursor, int pageSize);
     /**
      * 根据id获取帖子详情
      * @param id
@@ -1,5 +1,6 @@
 package com.doublez.kc_forum.service;
 
+import com.doublez.kc_forum.common.pojo.response.MessageCursorResponse;
 import com.doublez.kc_forum.model.Message;
 
 import java.util.List;
@@ -19,4 +20,10 @@ public interface IMessageService {
     long selectUnreadCount(Long userId);
 
     List<Message> selectAllMessageByPostUserID(Long receiveUserId, Long postUserId);
+
+    /**
+     * 游标分页查询会话历史，按时间倒序
+     * @param cursor 上一页返回的 nextCursor，第一页传 null
+     */
+    MessageCursorResponse getConversationByCursor(Long userId, Long contactId, String cursor, int pageSize);
 }
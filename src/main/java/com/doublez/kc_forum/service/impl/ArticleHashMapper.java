@@ -0,0 +1,72 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.model.Article;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static com.doublez.kc_forum.service.impl.ArticleServiceImpl.*;
+
+/**
+ * 文章元数据 Redis Hash 与对象之间的转换，不依赖Spring容器，便于基准测试直接调用
+ */
+@Slf4j
+public final class ArticleHashMapper {
+
+    private ArticleHashMapper() {}
+
+    /**
+     * 文章列表使用：逐字段手动转换
+     * @param objectMapper 仅用于时间字段不是 LocalDateTime 时的兜底转换
+     */
+    public static Article mapToArticle(Map<Object, Object> hashEntries, ObjectMapper objectMapper) {
+        if (hashEntries == null || hashEntries.isEmpty()) {
+            return null;
+        }
+        Article article = new Article();
+        // 使用辅助方法安全地获取和转换值
+        article.setId(getNullableLong(hashEntries.get(FIELD_ID)));
+        article.setBoardId(getNullableLong(hashEntries.get(FIELD_BOARD_ID)));
+        article.setUserId(getNullableLong(hashEntries.get(FIELD_USER_ID)));
+        article.setTitle(getNullableString(hashEntries.get(FIELD_TITLE)));
+        article.setIsTop(getNullableByte(hashEntries.get(FIELD_IS_TOP)));
+        article.setCreateTime(getNullableTime(hashEntries.get(FIELD_CREATE_TIME), objectMapper, FIELD_CREATE_TIME));
+        article.setUpdateTime(getNullableTime(hashEntries.get(FIELD_UPDATE_TIME), objectMapper, FIELD_UPDATE_TIME));
+        article.setReplyCount(getNullableInteger(hashEntries.get(FIELD_REPLY_COUNT)));
+        article.setLikeCount(getNullableInteger(hashEntries.get(FIELD_LIKE_COUNT)));
+        article.setVisitCount(getNullableInteger(hashEntries.get(FIELD_VISIT_COUNT)));
+        return article;
+    }
+
+    // 安全转换的辅助方法
+    private static String getNullableString(Object obj) { return obj == null ? null : obj.toString(); }
+    private static Long getNullableLong(Object obj) {
+        if (obj == null) return null;
+        if (obj instanceof Long) return (Long) obj;
+        try { return Long.parseLong(obj.toString()); } catch (NumberFormatException e) { log.warn("无法将 '{}' 解析为 Long", obj); return null; }
+    }
+    private static Integer getNullableInteger(Object obj) {
+        if (obj == null) return null;
+        if (obj instanceof Integer) return (Integer) obj;
+        try { return Integer.parseInt(obj.toString()); } catch (NumberFormatException e) { log.warn("无法将 '{}' 解析为 Integer", obj); return null; }
+    }
+    private static Byte getNullableByte(Object obj) {
+        if (obj == null) return null;
+        if (obj instanceof Byte) return (Byte) obj;
+        try { return Byte.parseByte(obj.toString()); } catch (NumberFormatException e) { log.warn("无法将 '{}' 解析为 Byte", obj); return null; }
+    }
+    private static LocalDateTime getNullableTime(Object obj, ObjectMapper objectMapper, String field) {
+        // RedisTemplate中的Jackson应该能正确反序列化JavaTimeModule支持的类型
+        if (obj == null) return null;
+        if (obj instanceof LocalDateTime time) return time;
+        try {
+            // 可能是字符串或其他格式，尝试交给Jackson转换
+            return objectMapper.convertValue(obj, LocalDateTime.class);
+        } catch (Exception e) {
+            log.warn("无法将缓存中的{}解析为LocalDateTime: {}，类型: {}", field, obj, obj.getClass().getName(), e);
+            return null;
+        }
+    }
+}
@@ -3,8 +3,11 @@ package com.doublez.kc_forum.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.doublez.kc_forum.common.ResultCode;
+import com.doublez.kc_forum.common.cache.ArticleLocalCache;
+import com.doublez.kc_forum.common.cache.SingleFlight;
 import com.doublez.kc_forum.common.exception.BusinessException;
 import com.doublez.kc_forum.common.exception.SystemException;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
 import com.doublez.kc_forum.common.pojo.request.ArticleReplyAddRequest;
 import com.doublez.kc_forum.common.pojo.response.UserArticleResponse;
 import com.doublez.kc_forum.common.pojo.response.ArticleReplyMetaCacheDTO;
@@ -15,7 +18,6 @@ import com.doublez.kc_forum.mapper.ArticleReplyMapper;
 import com.doublez.kc_forum.model.Article;
 import com.doublez.kc_forum.model.ArticleReply;
 import com.doublez.kc_forum.service.IArticleReplyService;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +26,7 @@ import org.springframework.data.redis.core.BoundZSetOperations;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -54,7 +57,9 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
     @Autowired
-    private ObjectMapper objectMapper;
+    private CacheHashCodec cacheHashCodec;
+    @Autowired
+    private HotArticleRanking hotArticleRanking;
 
     @Autowired
     private RedisAsyncPopulationService redisAsync;
@@ -62,6 +67,27 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
     @Autowired
     private DBAsyncPopulationService dbAsync;
 
+    @Autowired
+    private ArticleLocalCache articleLocalCache;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private ReplyTreeLoader replyTreeLoader;
+
+    @Autowired
+    private MaterializedReplyTreeService materializedReplyTree;
+
+    @Autowired
+    private ForumMetrics metrics;
+
+    @Autowired
+    private CounterDirtyTracker counterDirtyTracker;
+
+    @Autowired
+    private CounterWriteBehind counterWriteBehind;
+
     // 定义一个常量作为空结果的占位符
     private static final String EMPTY_ARTICLE_REPLY_ID_PLACEHOLDER = "-1";
     // 定义空结果缓存的过期时间（15分钟）
@@ -81,6 +107,7 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
         //1. 判断帖子是否正常
         Article article = articleMapper.selectOne(new LambdaQueryWrapper<Article>()
                 .select(Article::getId, // 建议也查一下ID，方便日志记录
+                        Article::getBoardId,
                         Article::getReplyCount,
                         Article::getState,
                         Article::getDeleteState)
@@ -104,16 +131,22 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
             log.error("回复贴新增失败，article:{}",article.getId());
             throw new SystemException(ResultCode.FAILED_REPLY_CREATE);
         }
-        //异步更新帖子回复数量+1
-        dbAsync.updateArticleReplyCount(articleReplyAddRequest.getArticleId(),1);
+        //帖子回复数量+1：write-behind 开启且缓存存在时只累加redis，否则异步更新数据库
+        boolean replyCountCached = counterWriteBehind.incrementArticleReplyCount(articleReplyAddRequest.getArticleId(), 1);
+        if (!replyCountCached) {
+            dbAsync.updateArticleReplyCount(articleReplyAddRequest.getArticleId(),1);
+        }
         //3. 更新redis
         //3.1 判断是否为子回复
         if(articleReply.getReplyId() != null && articleReply.getReplyId() > 0) {
-            //1. 异步修改数据库 childrenCount数量
+            //1. childrenCount数量+1，同上
             Long replyId = articleReply.getReplyId();
-            dbAsync.updateReplyChildrenCountInDb(replyId,1);
+            boolean childrenCountCached = counterWriteBehind.incrementReplyChildrenCount(replyId, 1);
+            if (!childrenCountCached) {
+                dbAsync.updateReplyChildrenCountInDb(replyId,1);
+            }
             //2. 同步修改redis
-            updateReplyChildrenCountRedis(articleReply.getReplyId(),articleReply.getId(),articleReply.getCreateTime(),true);
+            updateReplyChildrenCountRedis(articleReply.getReplyId(),articleReply.getId(),articleReply.getCreateTime(),true,!childrenCountCached);
         }else {
             //为顶级回复
             //3.2 让reply的ZSET缓存失效
@@ -123,8 +156,18 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
                 log.info("reply ZSET缓存删除失败或者已经被删除,article:{},key:{}", articleReplyAddRequest.getArticleId(), key);
             }
         }
-        //3.3 更新redis中article中的回复数量
-        redisTemplate.opsForHash().put(RedisKeyUtil.getArticleKey(articleReply.getArticleId()), "replyCount", article.getReplyCount() + 1);
+        //3.3 追加到文章回复树的物化视图
+        materializedReplyTree.onReplyCreated(articleReply.getArticleId(), articleReply.getId(), articleReply.getReplyId());
+        //3.4 更新redis中article中的回复数量
+        if (!replyCountCached) {
+            redisTemplate.opsForHash().put(RedisKeyUtil.getArticleKey(articleReply.getArticleId()), "replyCount", article.getReplyCount() + 1);
+        }
+        articleLocalCache.invalidateArticleCounters(articleReply.getArticleId());
+        counterDirtyTracker.mark(CounterDirtyTracker.TYPE_ARTICLE, articleReply.getArticleId());
+        if (articleReply.getReplyId() != null && articleReply.getReplyId() > 0) {
+            counterDirtyTracker.mark(CounterDirtyTracker.TYPE_REPLY, articleReply.getReplyId());
+        }
+        hotArticleRanking.onReplyCreated(article.getBoardId(), articleReply.getArticleId());
 
         //打印日志
         log.info("回帖成功, 回帖id: {} 用户id：{} 帖子id: {}", articleReply.getId(), articleReply.getReplyUserId(), articleReply.getArticleId());
@@ -132,7 +175,10 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
 
 
 
-    private void updateReplyChildrenCountRedis(Long parentReplyId, Long childrenReplyId, LocalDateTime createTime,boolean isCreate) {
+    /**
+     * @param updateCount 是否同时修改父回复 Hash 中的 childrenCount（write-behind 已累加时为 false）
+     */
+    private void updateReplyChildrenCountRedis(Long parentReplyId, Long childrenReplyId, LocalDateTime createTime,boolean isCreate,boolean updateCount) {
         String repliesChildrenZsetKey = RedisKeyUtil.getRepliesChildrenZsetKey(parentReplyId);
         try {
             if(isCreate){
@@ -143,7 +189,9 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
                     throw new SystemException(ResultCode.FAILED_OPERATION_REDIS,"子回复缓存至redis失败");
                 }
                 //2. 更新 parentReplyId 的 childrenCount
-                redisTemplate.opsForHash().increment(RedisKeyUtil.getArticleReplyKey(parentReplyId),CHILDREN_FIELD , 1);
+                if (updateCount) {
+                    redisTemplate.opsForHash().increment(RedisKeyUtil.getArticleReplyKey(parentReplyId),CHILDREN_FIELD , 1);
+                }
             }else {
                 //1. 去除patent的replyZset中的缓存
                 Long remove = stringRedisTemplate.opsForZSet().remove(repliesChildrenZsetKey, childrenReplyId.toString());
@@ -152,7 +200,9 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
                     throw new SystemException(ResultCode.FAILED_OPERATION_REDIS,"子回复缓存至redis失败");
                 }
                 //1. 更新 parentReplyId 的 childrenCount
-                redisTemplate.opsForHash().increment(RedisKeyUtil.getArticleReplyKey(parentReplyId),CHILDREN_FIELD,-1);
+                if (updateCount) {
+                    redisTemplate.opsForHash().increment(RedisKeyUtil.getArticleReplyKey(parentReplyId),CHILDREN_FIELD,-1);
+                }
             }
         } catch (RedisSystemException e) {
             log.error("redis 删除失败,Key:{},parentReplyId:{},childrenReplyId:{},createTime:{},isCreate:{}"
@@ -171,6 +221,8 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
         BoundZSetOperations<String, String> zSetOps = stringRedisTemplate.boundZSetOps(articleTopRepliesZsetKey);
         Long totalCount = zSetOps.zCard();
         Set<String> topReplyIdStrings;
+        boolean zsetMissed = totalCount == null || totalCount == 0;
+        metrics.recordCacheLookup(RedisKeyUtil.FAMILY_TOP_REPLIES, zsetMissed ? 0 : 1, zsetMissed ? 1 : 0);
         //1.2 判空
         if (totalCount == null || totalCount == 0) {
             log.warn("文章 {} 的顶级回复缓存未命中，从数据库加载.", articleId);
@@ -209,7 +261,7 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
         List<ArticleReplyMetaCacheDTO> resultList = new ArrayList<>();
 
         List<Long> topReplyIdInOrder = topReplyIdStrings.stream().map(Long::parseLong).toList();
-        getArticleReplyFromRedis(resultList,topReplyIdInOrder,true);
+        getArticleReplyFromRedis(resultList,topReplyIdInOrder);
 
         //去重+ 填写用户字段
         setReplyUserAndCache(resultList);
@@ -235,6 +287,12 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
     }
 
     private List<ArticleReply> loadAndCacheTopRepliesFromDB(Long articleId,String ArticleTopRepliesZsetKey) {
+        // 同一文章的并发未命中只回源一次
+        return singleFlight.load(SingleFlight.NS_TOP_REPLIES, articleId,
+                () -> doLoadAndCacheTopRepliesFromDB(articleId, ArticleTopRepliesZsetKey));
+    }
+
+    private List<ArticleReply> doLoadAndCacheTopRepliesFromDB(Long articleId,String ArticleTopRepliesZsetKey) {
         List<ArticleReply> dbTopReplies = articleReplyMapper.selectList(new LambdaQueryWrapper<ArticleReply>()
                 .eq(ArticleReply::getArticleId, articleId)
                 .and(qw -> qw.isNull(ArticleReply::getReplyId).or().eq(ArticleReply::getReplyId, 0L))
@@ -259,15 +317,16 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
      * @param resultList
      * @param ReplyIdInOrder
      */
-    private void getArticleReplyFromRedis(List<ArticleReplyMetaCacheDTO> resultList,List<Long> ReplyIdInOrder,boolean isTopReplies) {
-        List<Object> rawHshObjectList  = redisTemplate.executePipelined(
+    private void getArticleReplyFromRedis(List<ArticleReplyMetaCacheDTO> resultList,List<Long> ReplyIdInOrder) {
+        List<Object> rawHshObjectList  = metrics.recordPipeline(ForumMetrics.PIPELINE_REPLY_META, ReplyIdInOrder.size(),
+                () -> redisTemplate.executePipelined(
                 (RedisCallback<Object>) connection -> {
                     for (Long replyId : ReplyIdInOrder) { // 按照有序ID列表的顺序请求
                         String repliesMetaKey = RedisKeyUtil.getArticleReplyKey(replyId);
                         connection.hashCommands().hGetAll(repliesMetaKey.getBytes(StandardCharsets.UTF_8));
                     }
                     return null;
-        });
+        }, RedisSerializer.byteArray())); // 保持原始字节，由 cacheHashCodec 按写入格式解码
         //最后的结果
         Map<Long,ArticleReplyMetaCacheDTO> foundRepliesMap = new HashMap<>();
         List<Long> missedReplyIds = new ArrayList<>();
@@ -277,8 +336,8 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
             Object rawHashObject = (rawHshObjectList != null && i < rawHshObjectList.size()) ? rawHshObjectList.get(i) : null;
 
             if(rawHashObject != null) {
-                ArticleReplyMetaCacheDTO reply = objectMapper.convertValue(rawHashObject, ArticleReplyMetaCacheDTO.class);
-                if (reply.getId() != null) {
+                ArticleReplyMetaCacheDTO reply = cacheHashCodec.decodeReply(rawHashObject);
+                if (reply != null) {
                     foundRepliesMap.put(currentId, reply); // 存入map，键是ID
                 } else {
                     log.warn("文章回复数据从Redis Hash映射失败 (或映射结果ID为null), articleId: {}", currentId);
@@ -286,6 +345,7 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
                 }
             }
         }
+        metrics.recordCacheLookup(RedisKeyUtil.FAMILY_REPLY, foundRepliesMap.size(), ReplyIdInOrder.size() - foundRepliesMap.size());
         // 5. 从数据库批量获取未命中的文章回复并回填缓存
         if (!missedReplyIds.isEmpty()) {
             log.info("文章回复缓存未命中，将从数据库查询，ID列表: {}", missedReplyIds);
@@ -309,75 +369,32 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
             ArticleReplyMetaCacheDTO reply = foundRepliesMap.get(replyId);
             if (reply != null) {
                 resultList.add(reply);
-                //如果子回复还有子回复，直接递归查询
-                if(!isTopReplies && reply.getChildrenCount() > 0){
-                    List<ArticleReplyMetaCacheDTO> childrenReplyByReplyId = getChildrenReplyByReplyId(reply.getId(), 0, 100);
-                    resultList.addAll(childrenReplyByReplyId);
-                }
             } else {
                 log.warn("ReplyIdInOrder中的回复ID: {} 未在缓存或数据库中找到，将跳过。", replyId);
             }
         }
     }
 
+    /**
+     * 分页获取父回复的子回复，并一次性带出每个子回复下的整棵子树（按层批量加载，受深度/节点数预算约束）
+     * @return 先序排列的扁平列表，每个回复后面紧跟它的后代；没有子回复时返回null
+     */
     @Override
     public List<ArticleReplyMetaCacheDTO> getChildrenReplyByReplyId(Long replyId,Integer currentPage, Integer pageSize) {
-        String ChildrenKey = RedisKeyUtil.getRepliesChildrenZsetKey(replyId);
         long start = (long) (currentPage - 1) * pageSize;
         long end = start + pageSize - 1;
 
-        //获取zset中的childrenReplyId
-        Set<String> keys = stringRedisTemplate.opsForZSet().reverseRange(ChildrenKey, start, end);
-        if(keys == null || keys.isEmpty()){
-            log.info("在ZSET {} 中未找到父回复 {} 第 {} 页的回复贴，从数据库中加载", ChildrenKey, replyId, currentPage);
-            //查询数据库
-            List<ArticleReply> dbChildrenReplies = loadAndCacheChildrenRepliesFromDB(replyId);
-            //为空直接返回
-            if(dbChildrenReplies == null) return null;
-
-            //1.2.2 存在,类型转化
-            List<ArticleReplyMetaCacheDTO> records = new ArrayList<>();
-            for (ArticleReply articleReply : dbChildrenReplies) {
-                if(articleReply.getChildrenCount() > 0){
-                    List<ArticleReplyMetaCacheDTO> childrenReplyByReplyId = getChildrenReplyByReplyId(articleReply.getId(), 0, 100);
-                    records.addAll(childrenReplyByReplyId);
-                }
-                records.add(copyProperties(articleReply,ArticleReplyMetaCacheDTO.class));
-            }
-            setReplyUserAndCache(records);
-            //返回
-            return records;
+        List<ArticleReplyMetaCacheDTO> resultList = replyTreeLoader.loadSubtree(replyId, start, end);
+        if(resultList.isEmpty()){
+            log.info("父回复 {} 第 {} 页没有子回复", replyId, currentPage);
+            return null;
         }
-        //todo 缓存穿透
-        List<ArticleReplyMetaCacheDTO> resultList = new ArrayList<>();
-        List<Long> childrenReplyIdsInOrder = keys.stream().map(Long::parseLong).toList();
-
-        getArticleReplyFromRedis(resultList, childrenReplyIdsInOrder,false);
-
-        //去重+ 填写用户字段
+        //去重+ 填写用户字段，整棵子树只查询一次用户
         setReplyUserAndCache(resultList);
-        //返回
-        log.info("查询子回复贴成功,replyId:{}",replyId);
+        log.info("查询子回复贴成功,replyId:{},回复数:{}",replyId,resultList.size());
         return resultList;
     }
 
-    private List<ArticleReply> loadAndCacheChildrenRepliesFromDB(Long replyId) {
-        List<ArticleReply> dbChildrenReplies = articleReplyMapper.selectList(new LambdaQueryWrapper<ArticleReply>()
-                .eq(ArticleReply::getReplyId, replyId)
-                .eq(ArticleReply::getDeleteState, 0)
-                .orderByDesc(ArticleReply::getCreateTime));
-
-        //todo缓存穿透
-        //缓存回复元数据
-        redisAsync.cacheArticleReplyList(dbChildrenReplies.stream().map(a -> copyProperties(a, ArticleReplyMetaCacheDTO.class)).toList());
-        //缓存回复zset
-        //先判空
-        if(dbChildrenReplies.isEmpty()) return null;
-        redisAsync.replyZsetFromDBToRedis(RedisKeyUtil.getRepliesChildrenZsetKey(replyId), dbChildrenReplies);
-        log.info("从数据库中加载子回复贴完成，replyId:{}",replyId);
-        return dbChildrenReplies;
-    }
-
 
     @Transactional
     @Override
@@ -393,8 +410,13 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
         }
         log.info("回复贴数据库删除, articleReplyId:{}",articleReplyId);
         //减少帖子数量
-        //异步更新帖子回复数量-1
-        dbAsync.updateArticleReplyCount(articleId,-1);
+        //帖子回复数量-1：write-behind 开启且缓存存在时只累加redis，否则异步更新数据库
+        if (!counterWriteBehind.incrementArticleReplyCount(articleId, -1)) {
+            dbAsync.updateArticleReplyCount(articleId,-1);
+        }
+        articleLocalCache.invalidateArticleCounters(articleId);
+        counterDirtyTracker.mark(CounterDirtyTracker.TYPE_ARTICLE, articleId);
+        materializedReplyTree.onReplyDeleted(articleId, articleReplyId);
         //2. 删除redis缓存
         //2.1 先判断是不是子回复
         ArticleReply partentReply = articleReplyMapper.selectOne(new LambdaQueryWrapper<ArticleReply>()
@@ -403,10 +425,14 @@ public class ArticleReplyServiceImpl implements IArticleReplyService{
         Long parentReplyId = partentReply.getReplyId();
         if(parentReplyId != null && parentReplyId > 0){
             //为子回复
-            //2.1.1 同步更新redis的值
-            updateReplyChildrenCountRedis(parentReplyId,articleReplyId,LocalDateTime.now(),false);
-            //2.1.2 异步更新数据库中顶级回复的ChildrenCount，-1
-            dbAsync.updateReplyChildrenCountInDb(parentReplyId,-1);
+            //2.1.1 同步更新redis的值，write-behind 开启且缓存存在时由回写任务更新数据库
+            boolean childrenCountCached = counterWriteBehind.incrementReplyChildrenCount(parentReplyId, -1);
+            updateReplyChildrenCountRedis(parentReplyId,articleReplyId,LocalDateTime.now(),false,!childrenCountCached);
+            counterDirtyTracker.mark(CounterDirtyTracker.TYPE_REPLY, parentReplyId);
+            //2.1.2 否则异步更新数据库中顶级回复的ChildrenCount，-1
+            if (!childrenCountCached) {
+                dbAsync.updateReplyChildrenCountInDb(parentReplyId,-1);
+            }
         }else {
             //为顶级回复
             //2.2 删除顶级回复zset中的缓存
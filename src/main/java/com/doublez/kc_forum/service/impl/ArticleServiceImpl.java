@@ -3,16 +3,19 @@ package com.doublez.kc_forum.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.doublez.kc_forum.common.ResultCode;
-import com.doublez.kc_forum.common.config.RabbitMQConfig;
-import com.doublez.kc_forum.common.event.ArticleViewEvent;
+import com.doublez.kc_forum.common.cache.ArticleLocalCache;
+import com.doublez.kc_forum.common.cache.SingleFlight;
 import com.doublez.kc_forum.common.exception.BusinessException;
 import com.doublez.kc_forum.common.exception.SystemException;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
 import com.doublez.kc_forum.common.pojo.request.UpdateArticleRequest;
 import com.doublez.kc_forum.common.pojo.response.ArticleDetailResponse;
 import com.doublez.kc_forum.common.pojo.response.ArticleMetaCacheDTO;
 import com.doublez.kc_forum.common.pojo.response.UserArticleResponse;
+import com.doublez.kc_forum.common.pojo.response.ViewArticleCursorResponse;
 import com.doublez.kc_forum.common.pojo.response.ViewArticleResponse;
 import com.doublez.kc_forum.common.utiles.AssertUtil;
+import com.doublez.kc_forum.common.utiles.CacheRecordCodec;
 import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
 import com.doublez.kc_forum.mapper.ArticleMapper;
 import com.doublez.kc_forum.model.Article;
@@ -25,11 +28,13 @@ import com.doublez.kc_forum.service.IUserService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
@@ -72,7 +77,27 @@ public class ArticleServiceImpl implements IArticleService {
     private DBAsyncPopulationService dbAsync;
 
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private ArticleLocalCache articleLocalCache;
+
+    @Autowired
+    private CacheHashCodec cacheHashCodec;
+
+    @Autowired
+    private HotArticleRanking hotArticleRanking;
+
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private ArticleVisitService articleVisitService;
+    @Autowired
+    private BoardZsetRebuildService boardZsetRebuildService;
+    @Autowired
+    private CounterWriteBehind counterWriteBehind;
+    @Autowired
+    private ForumMetrics metrics;
+    @Autowired
+    @Qualifier("boardZsetAddScript")
+    private RedisScript<Long> boardZsetAddScript;
 
     // 定义Hash字段名称常量
     public static final String FIELD_ID = "id";
@@ -87,9 +112,9 @@ public class ArticleServiceImpl implements IArticleService {
     public static final String FIELD_VISIT_COUNT = "visitCount";
 
     // 定义一个常量作为空结果的占位符
-    private static final String EMPTY_ARTICLE_ID_PLACEHOLDER = "-1";
+    static final String EMPTY_ARTICLE_ID_PLACEHOLDER = "-1";
     // 定义空结果缓存的过期时间（15分钟）
-    private static final long EMPTY_CACHE_TTL_MINUTES = 15;
+    static final long EMPTY_CACHE_TTL_MINUTES = 15;
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
@@ -97,9 +122,9 @@ public class ArticleServiceImpl implements IArticleService {
     public Long getUserId(Long articleId) {
         //查询redis
         String articleKey = RedisKeyUtil.getArticleKey(articleId);
-        Object userIdObj = redisTemplate.opsForHash().get(articleKey, FIELD_USER_ID);
-        if (userIdObj != null) {
-            return Long.parseLong(userIdObj.toString());
+        Article cached = cacheHashCodec.decodeArticle(readArticleHash(articleKey));
+        if (cached != null && cached.getUserId() != null) {
+            return cached.getUserId();
         }
         // Redis未命中，查询数据库
         Article article = articleMapper.selectOne(new LambdaQueryWrapper<Article>().select(Article::getUserId)
@@ -112,6 +137,14 @@ public class ArticleServiceImpl implements IArticleService {
         return article.getUserId();
     }
 
+    /**
+     * HGETALL 文章元数据，保持原始字节交给 {@link CacheHashCodec} 解码
+     */
+    private Map<byte[], byte[]> readArticleHash(String articleKey) {
+        return redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection ->
+                connection.hashCommands().hGetAll(articleKey.getBytes(StandardCharsets.UTF_8)));
+    }
+
     @Transactional
     @Override
     public void createArticle(Article article) {
@@ -129,7 +162,8 @@ public class ArticleServiceImpl implements IArticleService {
         article.setReplyCount(0);
         article.setState((byte)0);
         article.setDeleteState((byte)0);
-        article.setCreateTime(LocalDateTime.now());
+        //时间精确到秒，与数据库中保存的一致，ZSET 分数与游标都使用同一个时间
+        article.setCreateTime(LocalDateTime.now().withNano(0));
 
         //插入article
         int articleRow  = articleMapper.insert(article);
@@ -148,11 +182,15 @@ public class ArticleServiceImpl implements IArticleService {
         cacheArticle(article);
 
         // 4. 将文章ID添加到板块的有序集合 (ZSET) 中
-        String boardArticlesZSetKey = RedisKeyUtil.getBoardArticlesZSetKey(article.getBoardId());
         // 使用创建时间作为分数，以便按时间顺序排列 (如果使用reverseRange，则最新在前)
-        // 或者，如果你更喜欢基于ID的排序并且你的ZSET查询逻辑与之匹配，也可以使用 article.getId()
-        //todo ZoneOffset是什么？
-        stringRedisTemplate.opsForZSet().add(boardArticlesZSetKey, article.getId().toString(), (double) article.getCreateTime().toEpochSecond(ZoneOffset.UTC));
+        // 只更新已存在的ZSET（以及正在重建的ZSET），缓存缺失时交给重建流程，避免产生残缺的ZSET
+        stringRedisTemplate.execute(boardZsetAddScript,
+                List.of(RedisKeyUtil.getBoardArticlesZSetKey(article.getBoardId()), RedisKeyUtil.getBoardArticlesZSetBuildingKey(article.getBoardId())),
+                String.valueOf(article.getCreateTime().toEpochSecond(ZoneOffset.UTC)), article.getId().toString(), EMPTY_ARTICLE_ID_PLACEHOLDER);
+        // 5. 板块列表发生变化，失效各节点的L1分页缓存
+        articleLocalCache.invalidateBoard(article.getBoardId());
+        // 6. 新帖进入板块热门排行
+        hotArticleRanking.onArticleCreated(article.getBoardId(), article.getId());
 
         //打印日志
         log.info("发帖成功, 帖子id: {}, 用户id：{} ,板块id:{} " ,article.getId() ,article.getUserId(),article.getBoardId());
@@ -162,22 +200,11 @@ public class ArticleServiceImpl implements IArticleService {
     private void cacheArticle(Article article) {
         if (article == null || article.getId() == null) return;
 
-        String articleKey = RedisKeyUtil.getArticleKey(article.getId());
-        Map<String, Object> articleMap = new HashMap<>();
-        // 注意：在Hash中将ID等数字类型存储为字符串，以保持一致性或避免某些客户端的潜在问题
-        articleMap.put(FIELD_ID, article.getId().toString());
-        articleMap.put(FIELD_BOARD_ID, article.getBoardId().toString());
-        articleMap.put(FIELD_USER_ID, article.getUserId().toString());
-        articleMap.put(FIELD_TITLE, article.getTitle());
-        articleMap.put(FIELD_IS_TOP, article.getIsTop() != null ? article.getIsTop().toString() : "0");
-        // 使用ISO-8601格式的日期时间字符串，RedisTemplate中的Jackson应该能正确处理JavaTimeModule
-        articleMap.put(FIELD_CREATE_TIME, article.getCreateTime()); // Jackson会序列化
-        articleMap.put(FIELD_UPDATE_TIME, article.getUpdateTime()); // Jackson会序列化
-        articleMap.put(FIELD_REPLY_COUNT, article.getReplyCount() != null ? article.getReplyCount() : 0);
-        articleMap.put(FIELD_LIKE_COUNT, article.getLikeCount() != null ? article.getLikeCount() : 0);
-        articleMap.put(FIELD_VISIT_COUNT, article.getVisitCount() != null ? article.getVisitCount() : 0);
-
-        redisTemplate.opsForHash().putAll(articleKey, articleMap); // 存入Hash
+        Map<byte[], byte[]> articleHash = cacheHashCodec.encodeArticle(article);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hMSet(RedisKeyUtil.getArticleKey(article.getId()).getBytes(StandardCharsets.UTF_8), articleHash); // 存入Hash
+            return null;
+        });
 
         // 单独缓存文章内容
         if (StringUtils.hasText(article.getContent())) {
@@ -191,137 +218,249 @@ public class ArticleServiceImpl implements IArticleService {
      * @param hashEntries 从Redis获取的Hash条目Map
      * @return 转换后的Article对象，如果输入为空或转换失败则为null
      */
-    private Article mapToArticle(Map<Object, Object> hashEntries) {
-        if (hashEntries == null || hashEntries.isEmpty()) {
-            return null;
+    public ViewArticleResponse getArticleCards(Long boardId, int currentPage, int pageSize) {
+
+        String boardArticlesZSetKey = RedisKeyUtil.getBoardArticlesZSetKey(boardId);
+        long start = (long) (currentPage - 1) * pageSize; // ZSETs are 0-indexed
+        long end = start + pageSize - 1;
+        //0. 先查L1分页缓存，命中则跳过 ZCARD/ZREVRANGE
+        ArticleLocalCache.BoardPage cachedPage = articleLocalCache.getBoardPage(boardId, start, end);
+        if (cachedPage != null && cachedPage.articleIds().isEmpty()) {
+            return new ViewArticleResponse(null, 0L);
         }
-        Article article = new Article();
-        // 使用辅助方法安全地获取和转换值
-        article.setId(getNullableLong(hashEntries.get(FIELD_ID)));
-        article.setBoardId(getNullableLong(hashEntries.get(FIELD_BOARD_ID)));
-        article.setUserId(getNullableLong(hashEntries.get(FIELD_USER_ID)));
-        article.setTitle(getNullableString(hashEntries.get(FIELD_TITLE)));
-        article.setIsTop(getNullableByte(hashEntries.get(FIELD_IS_TOP)));
-
-        // RedisTemplate中的Jackson应该能正确反序列化JavaTimeModule支持的类型
-        Object createTimeObj = hashEntries.get(FIELD_CREATE_TIME);
-        if (createTimeObj instanceof LocalDateTime) { // Jackson可能直接反序列化为LocalDateTime
-            article.setCreateTime((LocalDateTime) createTimeObj);
-        } else if (createTimeObj != null) { // 可能是字符串或其他格式
-            try {
-                // 尝试将其作为ISO字符串解析，或根据你的存储格式调整
-                article.setCreateTime(objectMapper.convertValue(createTimeObj, LocalDateTime.class));
-            } catch (Exception e) {
-                log.warn("无法将缓存中的createTime解析为LocalDateTime: {}，类型: {}", createTimeObj, createTimeObj.getClass().getName(), e);
+        //1. 查询 articles id
+        Long count;
+        List<Long> articleIdsInOrder;// 存储文章id
+        if (cachedPage != null) {
+            count = cachedPage.total();
+            articleIdsInOrder = cachedPage.articleIds();
+        } else {
+            count = stringRedisTemplate.opsForZSet().zCard(boardArticlesZSetKey);
+            boolean zsetMissed = count == null || count == 0;
+            metrics.recordCacheLookup(RedisKeyUtil.FAMILY_BOARD_ARTICLES, zsetMissed ? 0 : 1, zsetMissed ? 1 : 0);
+            if (zsetMissed) {
+                log.debug("board中没有缓存文章数据，后台重建ZSET，本次从数据库分页查询，board:{}",boardId);
+                // 为空，由一个节点在后台分块重建，重建完成前直接查询数据库的当前页
+                boardZsetRebuildService.triggerRebuild(boardId);
+                articleIdsInOrder = articleMapper.selectBoardArticleIdPage(boardId, start, pageSize);
+                if (articleIdsInOrder.isEmpty()) {
+                    // 当前页没有数据，也可能board不存在；空板块的占位符由重建流程写入
+                    return new ViewArticleResponse(null, 0L);
+                }
+                // 总数使用板块表维护的发帖数，避免 COUNT(*)
+                Board board = boardServiceImpl.selectOneBoardById(boardId);
+                count = board != null && board.getArticleCount() != null ? board.getArticleCount() : (long) articleIdsInOrder.size();
+            } else {
+                //不为空 从redis中查询
+                Set<String> articleIdStrings = stringRedisTemplate.opsForZSet().reverseRange(boardArticlesZSetKey, start, end);
+                //判断是否是缓存空结果的占位符
+                if (articleIdStrings != null && articleIdStrings.size() == 1 && articleIdStrings.contains(EMPTY_ARTICLE_ID_PLACEHOLDER)) {
+                    log.info("从ZSET {} 中获取到缓存穿透占位符，板块 {} 无文章", boardArticlesZSetKey, boardId);
+                    articleLocalCache.putBoardPage(boardId, start, end, new ArticleLocalCache.BoardPage(List.of(), 0L));
+                    return new ViewArticleResponse(null, 0L); // 返回空结果
+                }
+
+                if (CollectionUtils.isEmpty(articleIdStrings)) {
+                    log.info("在ZSET {} 中未找到板块 {} 第 {} 页的文章ID", boardArticlesZSetKey, boardId, currentPage);
+                    articleLocalCache.putBoardPage(boardId, start, end, new ArticleLocalCache.BoardPage(List.of(), count));
+                    return new ViewArticleResponse(null, 0L);
+                }
+                //这个 articleIds 列表保持了从ZSET获取的顺序，这是最终结果的顺序依据
+                articleIdsInOrder = articleIdStrings.stream().map(Long::parseLong).toList();
+                articleLocalCache.putBoardPage(boardId, start, end, new ArticleLocalCache.BoardPage(articleIdsInOrder, count));
             }
         }
+        List<ArticleMetaCacheDTO> responseList = assembleArticleCards(articleIdsInOrder);
+        if (responseList == null) {
+            return new ViewArticleResponse(null, 0L);
+        }
+        return new ViewArticleResponse(responseList, count);
+    }
+
+    @Override
+    public ViewArticleResponse getHotArticleCards(Long boardId, int currentPage, int pageSize) {
+        if (!hotArticleRanking.isEnabled()) {
+            return getArticleCards(boardId, currentPage, pageSize);
+        }
+        long start = (long) (currentPage - 1) * pageSize;
+        HotArticleRanking.HotPage page = hotArticleRanking.page(boardId, start, start + pageSize - 1);
+        if (page.total() == 0) {
+            // 板块还没有任何热度（新板块或长时间无活动），按时间倒序返回
+            log.debug("板块 {} 热门排行为空，返回最新帖子", boardId);
+            return getArticleCards(boardId, currentPage, pageSize);
+        }
+        if (page.articleIds().isEmpty()) {
+            return new ViewArticleResponse(null, page.total());
+        }
+        List<ArticleMetaCacheDTO> responseList = assembleArticleCards(page.articleIds());
+        if (responseList == null) {
+            return new ViewArticleResponse(null, page.total());
+        }
+        return new ViewArticleResponse(responseList, page.total());
+    }
+
+    /**
+     * 板块文章列表的游标，对应 ZSET 中的 (score, member)，格式为 "{创建时间epoch秒}_{文章id}"
+     */
+    record BoardCursor(long createEpochSecond, long articleId) {
 
-        Object updateTimeObj = hashEntries.get(FIELD_UPDATE_TIME);
-        if (updateTimeObj instanceof LocalDateTime) {
-            article.setUpdateTime((LocalDateTime) updateTimeObj);
-        } else if (updateTimeObj != null) {
+        private static final String SEPARATOR = "_";
+
+        static BoardCursor parse(String cursor) {
+            if (!StringUtils.hasText(cursor)) return null;
+            String[] parts = cursor.split(SEPARATOR);
+            if (parts.length != 2) {
+                throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
+            }
             try {
-                article.setUpdateTime(objectMapper.convertValue(updateTimeObj, LocalDateTime.class));
-            } catch (Exception e) {
-                log.warn("无法将缓存中的updateTime解析为LocalDateTime: {}，类型: {}", updateTimeObj, updateTimeObj.getClass().getName(), e);
+                return new BoardCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            } catch (NumberFormatException e) {
+                throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
             }
         }
 
-        article.setReplyCount(getNullableInteger(hashEntries.get(FIELD_REPLY_COUNT)));
-        article.setLikeCount(getNullableInteger(hashEntries.get(FIELD_LIKE_COUNT)));
-        article.setVisitCount(getNullableInteger(hashEntries.get(FIELD_VISIT_COUNT)));
-        return article;
-    }
+        String encode() {
+            return createEpochSecond + SEPARATOR + articleId;
+        }
 
-    // 安全转换的辅助方法
-    private String getNullableString(Object obj) { return obj == null ? null : obj.toString(); }
-    private Long getNullableLong(Object obj) {
-        if (obj == null) return null;
-        if (obj instanceof Long) return (Long) obj;
-        try { return Long.parseLong(obj.toString()); } catch (NumberFormatException e) { log.warn("无法将 '{}' 解析为 Long", obj); return null; }
-    }
-    private Integer getNullableInteger(Object obj) {
-        if (obj == null) return null;
-        if (obj instanceof Integer) return (Integer) obj;
-        try { return Integer.parseInt(obj.toString()); } catch (NumberFormatException e) { log.warn("无法将 '{}' 解析为 Integer", obj); return null; }
-    }
-    private Byte getNullableByte(Object obj) {
-        if (obj == null) return null;
-        if (obj instanceof Byte) return (Byte) obj;
-        try { return Byte.parseByte(obj.toString()); } catch (NumberFormatException e) { log.warn("无法将 '{}' 解析为 Byte", obj); return null; }
+        LocalDateTime createTime() {
+            return LocalDateTime.ofEpochSecond(createEpochSecond, 0, ZoneOffset.UTC);
+        }
     }
 
-    public ViewArticleResponse getArticleCards(Long boardId, int currentPage, int pageSize) {
+    // 按 (创建时间, id) 倒序，与数据库 ORDER BY create_time DESC, id DESC 一致
+    private static final Comparator<BoardCursor> CURSOR_ORDER = Comparator
+            .comparingLong(BoardCursor::createEpochSecond)
+            .thenComparingLong(BoardCursor::articleId)
+            .reversed();
 
+    /**
+     * 游标分页查询板块文章，按 (创建时间, id) 倒序。
+     * <p>
+     * 缓存命中时使用 ZREVRANGEBYSCORE ... LIMIT，未命中时使用数据库的 keyset 查询，
+     * 任意深度的分页代价都与第一页相同，冷启动也不会加载整个板块。
+     * @param cursor 上一页返回的 nextCursor，第一页传 null
+     */
+    @Override
+    public ViewArticleCursorResponse getArticleCardsByCursor(Long boardId, String cursor, int pageSize) {
+        BoardCursor after = BoardCursor.parse(cursor);
         String boardArticlesZSetKey = RedisKeyUtil.getBoardArticlesZSetKey(boardId);
-        long start = (long) (currentPage - 1) * pageSize; // ZSETs are 0-indexed
-        long end = start + pageSize - 1;
-        //1. 查询 articles id
-        Long count = stringRedisTemplate.opsForZSet().zCard(boardArticlesZSetKey);
-        List<Long> articleIdsInOrder;// 存储文章id
-        if (count == null || count == 0) {
-            log.debug("board中没有缓存文章数据，尝试从数据库中获取，board:{}",boardId);
-            // 为空，尝试获取数据库
-            //todo 分页查询
-            List<Article> articlesFromDb = articleMapper.selectList(
-                    new LambdaQueryWrapper<Article>()
-                            .select(Article::getId, Article::getCreateTime)
-                            .eq(Article::getBoardId, boardId)
-                            .eq(Article::getDeleteState, 0));
-            if (articlesFromDb.isEmpty()) {
-                // 真的为空 直接返回，也可能board不存在
-                //进行缓存穿透
-                stringRedisTemplate.opsForZSet().add(boardArticlesZSetKey, EMPTY_ARTICLE_ID_PLACEHOLDER, 0.0);
-                stringRedisTemplate.expire(boardArticlesZSetKey, EMPTY_CACHE_TTL_MINUTES, TimeUnit.MINUTES);
-                log.info("板块 {} 无文章，已设置缓存穿透占位符 {}，TTL {} 分钟", boardId, EMPTY_ARTICLE_ID_PLACEHOLDER, EMPTY_CACHE_TTL_MINUTES);
-                return new ViewArticleResponse(null, 0L);
+
+        List<BoardCursor> page = loadCursorPageFromRedis(boardArticlesZSetKey, after, pageSize);
+        if (page == null) {
+            log.debug("board中没有缓存文章数据，后台重建ZSET，本次使用数据库游标查询，board:{}", boardId);
+            boardZsetRebuildService.triggerRebuild(boardId);
+            page = loadCursorPageFromDB(boardId, after, pageSize);
+        }
+        if (page.isEmpty()) {
+            return new ViewArticleCursorResponse(null, null);
+        }
+        // 多取了一条用于判断是否还有下一页
+        String nextCursor = null;
+        if (page.size() > pageSize) {
+            page = page.subList(0, pageSize);
+            nextCursor = page.get(pageSize - 1).encode();
+        }
+        List<ArticleMetaCacheDTO> records = assembleArticleCards(page.stream().map(BoardCursor::articleId).toList());
+        return new ViewArticleCursorResponse(records, nextCursor);
+    }
+
+    /**
+     * 从板块 ZSET 读取游标之后的一页（最多 pageSize + 1 条）
+     * @return ZSET 不存在时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private List<BoardCursor> loadCursorPageFromRedis(String boardArticlesZSetKey, BoardCursor after, int pageSize) {
+        // score 为整数秒，max 取 score - 1 即排除游标所在的那一秒，那一秒的其余文章单独查出后按 id 过滤
+        double max = after == null ? Double.POSITIVE_INFINITY : after.createEpochSecond() - 1;
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.opsForZSet().zCard(boardArticlesZSetKey);
+                ops.opsForZSet().reverseRangeByScoreWithScores(boardArticlesZSetKey, Double.NEGATIVE_INFINITY, max, 0, pageSize + 1);
+                if (after != null) {
+                    ops.opsForZSet().rangeByScore(boardArticlesZSetKey, after.createEpochSecond(), after.createEpochSecond());
+                }
+                return null;
             }
-            //设置count的值
-            count = (long) articlesFromDb.size();
-            // 异步回填到redis中
-            redisAsync.boardZsetFromDBToRedis(boardArticlesZSetKey, articlesFromDb);
-            //todo 这边不用再转了
-            articleIdsInOrder = articlesFromDb.stream().map(Article::getId).collect(Collectors.toList());
-        } else {
-            //不为空 从redis中查询
-            Set<String> articleIdStrings = stringRedisTemplate.opsForZSet().reverseRange(boardArticlesZSetKey, start, end);
-            //判断是否是缓存空结果的占位符
-            if (articleIdStrings != null && articleIdStrings.size() == 1 && articleIdStrings.contains(EMPTY_ARTICLE_ID_PLACEHOLDER)) {
-                log.info("从ZSET {} 中获取到缓存穿透占位符，板块 {} 无文章", boardArticlesZSetKey, boardId);
-                return new ViewArticleResponse(null, 0L); // 返回空结果
+        });
+        Long count = (Long) results.get(0);
+        if (count == null || count == 0) {
+            return null;
+        }
+        Set<ZSetOperations.TypedTuple<String>> range = (Set<ZSetOperations.TypedTuple<String>>) results.get(1);
+        Set<String> sameSecond = after == null ? Set.of() : (Set<String>) results.get(2);
+
+        Set<BoardCursor> candidates = new HashSet<>();
+        for (String member : sameSecond) {
+            if (EMPTY_ARTICLE_ID_PLACEHOLDER.equals(member)) continue;
+            long articleId = Long.parseLong(member);
+            if (articleId < after.articleId()) {
+                candidates.add(new BoardCursor(after.createEpochSecond(), articleId));
             }
-
-            if (CollectionUtils.isEmpty(articleIdStrings)) {
-                log.info("在ZSET {} 中未找到板块 {} 第 {} 页的文章ID", boardArticlesZSetKey, boardId, currentPage);
-                return new ViewArticleResponse(null, 0L);
+        }
+        long lowestScore = Long.MAX_VALUE;
+        for (ZSetOperations.TypedTuple<String> tuple : range) {
+            if (EMPTY_ARTICLE_ID_PLACEHOLDER.equals(tuple.getValue()) || tuple.getScore() == null) continue;
+            long score = tuple.getScore().longValue();
+            candidates.add(new BoardCursor(score, Long.parseLong(tuple.getValue())));
+            lowestScore = Math.min(lowestScore, score);
+        }
+        // 同分成员在 ZSET 中按字符串字典序排列，与 id 数值顺序不一定一致；
+        // 结果被 LIMIT 截断时，补齐最后一秒的全部成员后再按数值排序
+        if (range.size() > pageSize && lowestScore != Long.MAX_VALUE) {
+            Set<String> lastSecond = stringRedisTemplate.opsForZSet().rangeByScore(boardArticlesZSetKey, lowestScore, lowestScore);
+            if (lastSecond != null) {
+                for (String member : lastSecond) {
+                    candidates.add(new BoardCursor(lowestScore, Long.parseLong(member)));
+                }
             }
-            //这个 articleIds 列表保持了从ZSET获取的顺序，这是最终结果的顺序依据
-            articleIdsInOrder = articleIdStrings.stream().map(Long::parseLong).toList();
         }
+        return candidates.stream().sorted(CURSOR_ORDER).limit(pageSize + 1L).toList();
+    }
+
+    private List<BoardCursor> loadCursorPageFromDB(Long boardId, BoardCursor after, int pageSize) {
+        List<Article> articles = articleMapper.selectBoardArticleIdsBefore(boardId,
+                after == null ? null : after.createTime(),
+                after == null ? null : after.articleId(),
+                pageSize + 1);
+        return articles.stream()
+                .map(article -> new BoardCursor(article.getCreateTime().toEpochSecond(ZoneOffset.UTC), article.getId()))
+                .toList();
+    }
+
+    /**
+     * 按给定的文章id顺序组装文章卡片：L1 -> Redis Pipeline -> 数据库，并补充作者信息
+     * @return 有序的文章卡片；所有id都找不到有效文章时返回null
+     */
+    private List<ArticleMetaCacheDTO> assembleArticleCards(List<Long> articleIdsInOrder) {
         // 2. 准备一个Map来存储按ID索引的文章，以及一个列表来收集未命中的ID
-        Map<Long, Article> foundArticlesMap = new HashMap<>();
+        // L1 命中的文章直接放入map，只对未命中的部分访问Redis
+        Map<Long, Article> foundArticlesMap = new HashMap<>(articleLocalCache.getArticles(articleIdsInOrder));
+        List<Long> redisLookupIds = articleIdsInOrder.stream().filter(id -> !foundArticlesMap.containsKey(id)).toList();
         List<Long> missedArticleIds = new ArrayList<>();
 
         // 3. 使用Pipeline批量从Redis获取文章Hash
-        List<Object> articlesFromCachePipelined = redisTemplate.executePipelined(
+        List<Object> articlesFromCachePipelined = redisLookupIds.isEmpty() ? Collections.emptyList() : metrics.recordPipeline(
+                ForumMetrics.PIPELINE_ARTICLE_CARDS, redisLookupIds.size(), () -> redisTemplate.executePipelined(
                 (RedisCallback<Object>) connection -> {
-                    for (Long articleId : articleIdsInOrder) { // 按照有序ID列表的顺序请求
+                    for (Long articleId : redisLookupIds) { // 按照有序ID列表的顺序请求
                         String articleKey = RedisKeyUtil.getArticleKey(articleId);
                         connection.hashCommands().hGetAll(articleKey.getBytes(StandardCharsets.UTF_8));
                     }
                     return null;
-                });
+                }, RedisSerializer.byteArray())); // 保持原始字节，由 cacheHashCodec 按写入格式解码
         // 4. 处理Pipeline的结果，区分命中和未命中
-        for (int i = 0; i < articleIdsInOrder.size(); i++) {
-            Long currentId = articleIdsInOrder.get(i);
+        for (int i = 0; i < redisLookupIds.size(); i++) {
+            Long currentId = redisLookupIds.get(i);
             Object rawHashObject = (articlesFromCachePipelined != null && i < articlesFromCachePipelined.size()) ? articlesFromCachePipelined.get(i) : null;
 
             if (rawHashObject instanceof Map && !((Map<?, ?>) rawHashObject).isEmpty()) {
-                @SuppressWarnings("unchecked")
-                Map<Object, Object> rawHash = (Map<Object, Object>) rawHashObject;
-                Article article = mapToArticle(rawHash);
-                if (article != null && article.getId() != null) {
+                Article article = cacheHashCodec.decodeArticle(rawHashObject);
+                if (article != null) {
                     foundArticlesMap.put(currentId, article); // 存入map，键是ID
+                    articleLocalCache.putArticle(article);
                 } else {
                     log.warn("文章数据从Redis Hash映射失败 (或映射结果ID为null), articleId: {}", currentId);
                     missedArticleIds.add(currentId);
@@ -335,6 +474,7 @@ public class ArticleServiceImpl implements IArticleService {
                 missedArticleIds.add(currentId);
             }
         }
+        metrics.recordCacheLookup(RedisKeyUtil.FAMILY_ARTICLE, redisLookupIds.size() - missedArticleIds.size(), missedArticleIds.size());
         // 5. 从数据库批量获取未命中的文章并回填缓存
         if (!missedArticleIds.isEmpty()) {
             log.info("文章缓存未命中，将从数据库查询，ID列表: {}", missedArticleIds);
@@ -346,6 +486,7 @@ public class ArticleServiceImpl implements IArticleService {
             for (Article dbArticle : dbArticles) {
                 if (dbArticle != null && dbArticle.getId() != null) {
                     foundArticlesMap.put(dbArticle.getId(), dbArticle); // 将从DB获取的数据也放入map
+                    articleLocalCache.putArticle(dbArticle);
                     log.info("从数据库获取文章 {} 成功，开始回填缓存", dbArticle.getId());
                 }
             }
@@ -366,7 +507,7 @@ public class ArticleServiceImpl implements IArticleService {
         }
 
         if (finalOrderedArticles.isEmpty()) {
-            return new ViewArticleResponse(null, 0L);
+            return null;
         }
         // 7. 获取作者信息
         List<Long> authorIds = finalOrderedArticles.stream()
@@ -399,7 +540,7 @@ public class ArticleServiceImpl implements IArticleService {
             resp.setUser(userCache);
             responseList.add(resp);
         }
-        return new ViewArticleResponse(responseList, count);
+        return responseList;
     }
 
     @Override
@@ -476,48 +617,27 @@ public class ArticleServiceImpl implements IArticleService {
         }
 
         String articleMetaKey = RedisKeyUtil.getArticleKey(articleId);
-        Map<Object, Object> articleMetaMap = redisTemplate.opsForHash().entries(articleMetaKey);
+        Article cachedArticle = cacheHashCodec.decodeArticle(readArticleHash(articleMetaKey));
 
         //最后返回的结果
         ArticleDetailResponse articleDetailResponse = null;
         //2. 有一个为空就直接查数据库
-        if(content == null|| CollectionUtils.isEmpty(articleMetaMap)){
+        boolean detailMissed = content == null || cachedArticle == null;
+        metrics.recordCacheLookup(RedisKeyUtil.FAMILY_ARTICLE_DETAIL, detailMissed ? 0 : 1, detailMissed ? 1 : 0);
+        if(detailMissed){
             log.info("文章 {} 未缓存，查询数据库",articleId);
-            //2.1 查询数据库
-            Article article = articleMapper.selectOne(
-                    new LambdaQueryWrapper<Article>()
-                            .eq(Article::getId, articleId)
-                            .eq(Article::getDeleteState, 0).eq(Article::getState, 0));
-            //2.2 文章确实不存在，进行执行缓存穿透
+            //2.1 查询数据库，同一文章的并发未命中只回源一次
+            Article article = singleFlight.load(SingleFlight.NS_ARTICLE_DETAIL, articleId,
+                    () -> loadArticleDetailFromDB(articleId, articleContentKey));
+            //2.2 文章确实不存在
             if(article == null){
-                log.debug("查询到不存在的文章，进行缓存穿透设置 content:{},articleId:{},TTL:{} 分钟",EMPTY_CACHE_CONTENT,articleId,EMPTY_CACHE_TTL_MINUTES);
-                stringRedisTemplate.opsForValue().set(articleContentKey,EMPTY_CACHE_CONTENT,EMPTY_CACHE_TTL_MINUTES , TimeUnit.MINUTES);
                 throw new BusinessException(ResultCode.FAILED_ARTICLE_NOT_EXISTS);
             }
             articleDetailResponse = copyProperties(article, ArticleDetailResponse.class);
-            //2.2 异步存入缓存
-            redisAsync.cacheArticleList(List.of(article));
         }else{
             //3. 不为空，进行转化类型，获取 articleDetailResponse
-            Map<String,Object> stringKeyMap = new HashMap<>();
-
-            for (Map.Entry<Object, Object> entry : articleMetaMap.entrySet()) {
-                if (entry.getKey() instanceof String) {
-                    // 如果值也是 String，并且目标是 LocalDateTime，Jackson 会尝试用标准格式解析
-                    // 如果值已经是正确类型（例如，通过某种方式存入时就是 Long），则更好
-                    stringKeyMap.put((String) entry.getKey(), entry.getValue());
-                } else {
-                    // 处理非 String 类型的键，如果确定都是 String，可以简化
-                    stringKeyMap.put(String.valueOf(entry.getKey()), entry.getValue());
-                }
-                try {
-                    articleDetailResponse = objectMapper.convertValue(stringKeyMap,ArticleDetailResponse.class);
-                    articleDetailResponse.setContent(content);
-                } catch (Exception e) {
-                    log.error("stringKeyMap 转化至 ArticleDetailResponse 失败：{}",stringKeyMap,e);
-                    throw new SystemException(ResultCode.ERROR_REDIS_CHANGE);
-                }
-            }
+            articleDetailResponse = copyProperties(cachedArticle, ArticleDetailResponse.class);
+            articleDetailResponse.setContent(content);
         }
         //4. 获取用户
         String userJson = stringRedisTemplate.opsForValue().get(RedisKeyUtil.getUserResponseKey(articleDetailResponse.getUserId()));
@@ -544,13 +664,9 @@ public class ArticleServiceImpl implements IArticleService {
         if(userId.equals(articleDetailResponse.getUserId())){
             articleDetailResponse.setOwn(true);
         }
-        //异步增加redis访问数量
-        redisAsync.incrVisit(articleDetailResponse.getId());
-        //todo 异步增加数据库访问数量
-        // 发送浏览量更新事件到RabbitMQ
-        ArticleViewEvent event = new ArticleViewEvent(articleDetailResponse.getId(), System.currentTimeMillis());
-        rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_NAME, RabbitMQConfig.VIEW_ROUTING_KEY, event);
-        log.info("已发送浏览量更新事件到RabbitMQ: {}", event);
+        //增加redis访问数量并按周期批量落库（独立访客模式下新访客额外累加独立访客数）
+        //浏览量不失效 L1：热门文章每次浏览都失效会让 L1 形同虚设，列表中的浏览量在 L1 的 TTL 内允许滞后
+        articleDetailResponse.setUniqueVisitCount(articleVisitService.recordVisit(articleDetailResponse.getId(), userId));
         //更新返回给前端的帖子访问次数
         articleDetailResponse.setVisitCount(articleDetailResponse.getVisitCount()+1);
 
@@ -558,6 +674,25 @@ public class ArticleServiceImpl implements IArticleService {
         return articleDetailResponse;
     }
 
+    /**
+     * 从数据库加载文章详情并异步回填缓存，文章不存在时设置缓存穿透占位符
+     * @return 文章，不存在时返回null
+     */
+    private Article loadArticleDetailFromDB(Long articleId, String articleContentKey) {
+        Article article = articleMapper.selectOne(
+                new LambdaQueryWrapper<Article>()
+                        .eq(Article::getId, articleId)
+                        .eq(Article::getDeleteState, 0).eq(Article::getState, 0));
+        if(article == null){
+            log.debug("查询到不存在的文章，进行缓存穿透设置 content:{},articleId:{},TTL:{} 分钟",EMPTY_CACHE_CONTENT,articleId,EMPTY_CACHE_TTL_MINUTES);
+            stringRedisTemplate.opsForValue().set(articleContentKey,EMPTY_CACHE_CONTENT,EMPTY_CACHE_TTL_MINUTES , TimeUnit.MINUTES);
+            return null;
+        }
+        //异步存入缓存
+        redisAsync.cacheArticleList(List.of(article));
+        return article;
+    }
+
     @Override
     public List<ArticleMetaCacheDTO> getAllArticlesByUserId(Long userId) {
         //根据用户id查询
@@ -613,16 +748,26 @@ public class ArticleServiceImpl implements IArticleService {
         }
         log.info("帖子DB更新成功：articleId{}",updateArticleRequest.getId());
         //2. 更新redis
-        //2.1 只更新title和updateTime
-        Map<String, Object> updates = new HashMap<>();
-        updates.put(FIELD_TITLE, updateArticleRequest.getTitle());
-        updates.put(FIELD_UPDATE_TIME,now);
-        redisTemplate.opsForHash().putAll(RedisKeyUtil.getArticleKey(updateArticleRequest.getId()),updates);
+        String articleKey = RedisKeyUtil.getArticleKey(updateArticleRequest.getId());
+        if (cacheHashCodec.isBinary()) {
+            //2.1 二进制格式的记录包含title和updateTime，删除完整缓存的标记字段（_b，以及切换格式前留下的 legacy id），
+            //读取时视为未命中并回源重建；计数字段保留，回填时整体覆盖
+            redisTemplate.opsForHash().delete(articleKey, CacheRecordCodec.FIELD_BINARY, FIELD_ID);
+            //删除后回复数改为直接累加数据库，先把 Redis 中尚未回写的回复数写回，避免之后被旧值覆盖
+            counterWriteBehind.flushArticleReplyCounts(List.of(updateArticleRequest.getId()));
+        } else {
+            //2.1 legacy 格式只更新title和updateTime
+            Map<String, Object> updates = new HashMap<>();
+            updates.put(FIELD_TITLE, updateArticleRequest.getTitle());
+            updates.put(FIELD_UPDATE_TIME,now);
+            redisTemplate.opsForHash().putAll(articleKey,updates);
+        }
         //2.2 如果content存在那么删除，下次需要的时候再缓存
         Boolean delete = stringRedisTemplate.delete(RedisKeyUtil.getArticleContentKey(updateArticleRequest.getId()));
         if(!delete){
             log.error("从redis中删除文章 {} 内容失败",updateArticleRequest.getId());
         }
+        articleLocalCache.invalidateArticle(updateArticleRequest.getId());
         log.info("帖子 redis 更新成功，articleId:{}",updateArticleRequest.getId());
         return true;
     }
@@ -661,6 +806,9 @@ public class ArticleServiceImpl implements IArticleService {
             if(deleteInBoard == null || deleteInBoard != 1){
                 log.error("删除redis board中的article失败,articleId:{},boardId:{}",articleId,boardId);
             }
+            // 板块ZSET可能正在重建，同时从临时ZSET中移除
+            stringRedisTemplate.opsForZSet().remove(RedisKeyUtil.getBoardArticlesZSetBuildingKey(boardId),articleId.toString());
+            hotArticleRanking.remove(boardId, articleId);
         Boolean delete = redisTemplate.delete(RedisKeyUtil.getArticleKey(articleId));
         if(!delete){
                 log.error("删除redis articleMeta缓存失败,articleId:{}",articleId);
@@ -669,10 +817,13 @@ public class ArticleServiceImpl implements IArticleService {
             if(!delete){
                 log.error("删除redis articleMeta缓存失败,articleId:{}",articleId);
             }
+        stringRedisTemplate.delete(RedisKeyUtil.getArticleUniqueVisitorKey(articleId));
         } catch (Exception e) {
             log.error("删除文章redis缓存失败,articleId:{}",articleId,e);
             throw new SystemException(ResultCode.FAILED_ARTICLE_DELETE);
         }
+        articleLocalCache.invalidateArticle(articleId);
+        articleLocalCache.invalidateBoard(boardId);
         //打印日志
         log.info("删帖成功,帖子id: {} ,用户id：{}, 板块id:{}",article.getId(), article.getUserId() ,article.getBoardId());
         return true;
@@ -0,0 +1,72 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 文章浏览计数。
+ * <p>
+ * 默认模式下每次浏览都交给 {@link ViewCountAggregator} 本地聚合，周期性地批量增加 Redis 访问数并发送浏览事件落库。
+ * 开启 kc.visit.unique-mode 后，额外把 (文章, 用户) 记录到每篇文章的 HyperLogLog 中，作为独立访客数返回。
+ * 两个计数分开存放，缓存重建时不会互相覆盖：
+ * <ul>
+ *     <li>visitCount（Redis 与数据库）始终是原始浏览次数，重复访客也会计入，但只是一次本地累加，
+ *     每个聚合周期最多一条 MQ 消息、每篇文章一次 UPDATE，与浏览次数无关</li>
+ *     <li>独立访客数以 HyperLogLog 为准，PFADD 返回 1（基数变化，即新访客）时才交给聚合器，
+ *     落库到 unique_visit_count；重复访客不会产生独立访客数的 MQ 与数据库写入</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class ArticleVisitService {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ViewCountAggregator viewCountAggregator;
+
+    @Value("${kc.visit.unique-mode:false}")
+    private boolean uniqueMode;
+
+    /**
+     * 记录一次浏览
+     * @return 独立访客数（HyperLogLog 估算值，误差约 0.81%），未开启独立访客模式或 Redis 异常时返回 null
+     */
+    public Long recordVisit(Long articleId, Long userId) {
+        viewCountAggregator.recordView(articleId);
+        if (!uniqueMode || userId == null) {
+            return null;
+        }
+
+        String uvKey = RedisKeyUtil.getArticleUniqueVisitorKey(articleId);
+        List<Object> results;
+        try {
+            // PFADD + PFCOUNT 一次往返，PFADD 的返回值表示基数是否变化
+            results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hyperLogLogCommands().pfAdd(bytes(uvKey), bytes(String.valueOf(userId)));
+                connection.hyperLogLogCommands().pfCount(bytes(uvKey));
+                return null;
+            });
+        } catch (Exception e) {
+            // 浏览次数已经计入，这里只影响独立访客数的展示
+            log.error("记录独立访客失败, articleId:{}, userId:{}", articleId, userId, e);
+            return null;
+        }
+        if (Long.valueOf(1L).equals(results.get(0))) {
+            viewCountAggregator.recordUniqueVisitor(articleId);
+        }
+        return results.get(1) instanceof Long uniqueCount ? uniqueCount : null;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
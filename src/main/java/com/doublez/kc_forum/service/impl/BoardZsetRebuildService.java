@@ -0,0 +1,179 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.mapper.ArticleMapper;
+import com.doublez.kc_forum.model.Article;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.doublez.kc_forum.common.config.AsyncConfig.REDIS_PERSISTENCE_EXECUTOR;
+import static com.doublez.kc_forum.service.impl.ArticleServiceImpl.EMPTY_ARTICLE_ID_PLACEHOLDER;
+import static com.doublez.kc_forum.service.impl.ArticleServiceImpl.EMPTY_CACHE_TTL_MINUTES;
+
+/**
+ * 板块文章 ZSET 的增量重建。
+ * <p>
+ * 缓存缺失时不再一次性查出整个板块再做一个巨大的 ZADD，而是：
+ * <ol>
+ *     <li>通过 SET NX PX 抢占每个板块的重建租约，同一时间只有一个节点、一个线程重建</li>
+ *     <li>按 (create_time, id) 倒序的 keyset 分块读取文章id，每块一次 pipeline 写入 :building 临时ZSET，并续约</li>
+ *     <li>读取完毕后用 Lua 校验租约并 RENAME 原子替换正式的ZSET</li>
+ * </ol>
+ * 重建期间新发的帖子会同时写入 :building（见 board_zset_add.lua），不会因为扫描已经越过而丢失；
+ * 读请求在重建完成前直接由数据库分页查询提供。
+ */
+@Slf4j
+@Service
+public class BoardZsetRebuildService {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ArticleMapper articleMapper;
+    @Autowired
+    @Qualifier(REDIS_PERSISTENCE_EXECUTOR)
+    private Executor redisPersistenceExecutor;
+    @Autowired
+    @Qualifier("boardZsetPublishScript")
+    private RedisScript<Long> boardZsetPublishScript;
+    @Autowired
+    @Qualifier("leaseRenewScript")
+    private RedisScript<Long> leaseRenewScript;
+    @Autowired
+    @Qualifier("leaseReleaseScript")
+    private RedisScript<Long> leaseReleaseScript;
+
+    @Value("${kc.board-zset.rebuild.chunk-size:1000}")
+    private int chunkSize;
+    @Value("${kc.board-zset.rebuild.lease-ms:30000}")
+    private long leaseMs;
+
+    // 本节点正在重建的板块，避免并发未命中反复访问Redis抢租约
+    private final Set<Long> rebuildingBoards = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 触发板块ZSET重建，立即返回。已有节点在重建时不做任何事
+     * @return 本次是否真正发起了重建
+     */
+    public boolean triggerRebuild(Long boardId) {
+        if (!rebuildingBoards.add(boardId)) {
+            return false;
+        }
+        String leaseKey = RedisKeyUtil.getBoardArticlesRebuildLeaseKey(boardId);
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(leaseKey, token, leaseMs, TimeUnit.MILLISECONDS);
+            if (!Boolean.TRUE.equals(acquired)) {
+                rebuildingBoards.remove(boardId);
+                return false;
+            }
+        } catch (Exception e) {
+            rebuildingBoards.remove(boardId);
+            log.error("获取板块ZSET重建租约失败, boardId:{}", boardId, e);
+            return false;
+        }
+
+        try {
+            redisPersistenceExecutor.execute(() -> {
+                try {
+                    rebuild(boardId, token);
+                } catch (Exception e) {
+                    log.error("板块ZSET重建失败, boardId:{}", boardId, e);
+                } finally {
+                    releaseLease(leaseKey, token);
+                    rebuildingBoards.remove(boardId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("重建线程池已满，放弃本次板块ZSET重建, boardId:{}", boardId);
+            releaseLease(leaseKey, token);
+            rebuildingBoards.remove(boardId);
+            return false;
+        }
+    }
+
+    void rebuild(Long boardId, String token) {
+        String leaseKey = RedisKeyUtil.getBoardArticlesRebuildLeaseKey(boardId);
+        String buildingKey = RedisKeyUtil.getBoardArticlesZSetBuildingKey(boardId);
+        byte[] buildingKeyBytes = buildingKey.getBytes(StandardCharsets.UTF_8);
+        long start = System.currentTimeMillis();
+
+        // 先用占位符创建 :building，让重建期间的新帖能同步写入；占位符在发布时移除
+        stringRedisTemplate.delete(buildingKey);
+        stringRedisTemplate.opsForZSet().add(buildingKey, EMPTY_ARTICLE_ID_PLACEHOLDER, 0);
+        stringRedisTemplate.expire(buildingKey, leaseMs, TimeUnit.MILLISECONDS);
+
+        LocalDateTime lastCreateTime = null;
+        Long lastId = null;
+        long total = 0;
+        while (true) {
+            List<Article> chunk = articleMapper.selectBoardArticleIdsBefore(boardId, lastCreateTime, lastId, chunkSize);
+            if (chunk.isEmpty()) break;
+
+            Set<Tuple> tuples = new LinkedHashSet<>(chunk.size());
+            for (Article article : chunk) {
+                tuples.add(new DefaultTuple(article.getId().toString().getBytes(StandardCharsets.UTF_8),
+                        (double) article.getCreateTime().toEpochSecond(ZoneOffset.UTC)));
+            }
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.zSetCommands().zAdd(buildingKeyBytes, tuples);
+                connection.keyCommands().pExpire(buildingKeyBytes, leaseMs);
+                return null;
+            });
+            if (!renewLease(leaseKey, token)) {
+                log.warn("板块ZSET重建租约已丢失，放弃本次重建, boardId:{}", boardId);
+                return;
+            }
+
+            total += chunk.size();
+            Article last = chunk.get(chunk.size() - 1);
+            lastCreateTime = last.getCreateTime();
+            lastId = last.getId();
+            if (chunk.size() < chunkSize) break;
+        }
+
+        Long published = stringRedisTemplate.execute(boardZsetPublishScript,
+                List.of(leaseKey, buildingKey, RedisKeyUtil.getBoardArticlesZSetKey(boardId)),
+                token, EMPTY_ARTICLE_ID_PLACEHOLDER, String.valueOf(TimeUnit.MINUTES.toMillis(EMPTY_CACHE_TTL_MINUTES)));
+        if (Long.valueOf(1L).equals(published)) {
+            log.info("板块ZSET重建完成, boardId:{}, 文章数:{}, 耗时:{}ms", boardId, total, System.currentTimeMillis() - start);
+        } else {
+            log.warn("板块ZSET重建完成但租约已丢失，未发布, boardId:{}", boardId);
+        }
+    }
+
+    private boolean renewLease(String leaseKey, String token) {
+        Long renewed = stringRedisTemplate.execute(leaseRenewScript, List.of(leaseKey), token, String.valueOf(leaseMs));
+        return Long.valueOf(1L).equals(renewed);
+    }
+
+    private void releaseLease(String leaseKey, String token) {
+        try {
+            stringRedisTemplate.execute(leaseReleaseScript, List.of(leaseKey), token);
+        } catch (Exception e) {
+            // 释放失败时依赖租约过期
+            log.error("释放板块ZSET重建租约失败, key:{}", leaseKey, e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 缓存回填的微批队列。
+ * <p>
+ * 缓存未命中后的回填不再各自提交一个 @Async 任务，而是按 Redis Key 放入待写表：同一个 Key 在一个窗口内
+ * 多次回填只保留最后一次（计入 kc.cache.backfill{result=coalesced}）；第一条进入窗口的回填触发一次延迟 window-ms 的刷新，
+ * 刷新时按批（max-batch）取出，Hash 与 String 各一次 pipeline 写入。
+ * <p>
+ * 待写表最多 max-pending 个 Key，满了之后新 Key 直接丢弃（计入 kc.cache.backfill{result=dropped}），
+ * 回填只是优化，丢弃的 Key 下一次未命中会再次回填。
+ */
+@Slf4j
+@Component
+public class CacheBackfillBatcher {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ForumMetrics metrics;
+
+    @Value("${kc.cache.backfill.window-ms:5}")
+    private long windowMs;
+    @Value("${kc.cache.backfill.max-batch:500}")
+    private int maxBatch;
+    @Value("${kc.cache.backfill.max-pending:20000}")
+    private int maxPending;
+
+    /**
+     * 一个 Key 的回填内容：hash 不为空时写 Hash（已由 {@link CacheHashCodec} 编码的原始字节），否则写带过期时间的 String（stringRedisTemplate）
+     */
+    record Backfill(Map<byte[], byte[]> hash, String value, Duration ttl) {}
+
+    private final ConcurrentHashMap<String, Backfill> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void enqueueHash(String key, Map<byte[], byte[]> fields) {
+        enqueue(key, new Backfill(fields, null, null));
+    }
+
+    public void enqueueValue(String key, String value, Duration ttl) {
+        enqueue(key, new Backfill(null, value, ttl));
+    }
+
+    private void enqueue(String key, Backfill backfill) {
+        if (pending.size() >= maxPending && !pending.containsKey(key)) {
+            metrics.recordCacheBackfill("dropped", 1);
+            return;
+        }
+        if (pending.put(key, backfill) != null) {
+            metrics.recordCacheBackfill("coalesced", 1);
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) return;
+        try {
+            scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 应用关闭中，剩余的回填由 close 写入
+            flushScheduled.set(false);
+        }
+    }
+
+    /**
+     * 取出一批回填写入 Redis，还有剩余时立即安排下一次
+     */
+    void flush() {
+        flushScheduled.set(false);
+        Map<String, Backfill> hashes = new HashMap<>();
+        Map<String, Backfill> values = new HashMap<>();
+        Iterator<Map.Entry<String, Backfill>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && hashes.size() + values.size() < maxBatch) {
+            Map.Entry<String, Backfill> entry = iterator.next();
+            // remove(key, value) 失败说明刚被更新过，留给下一批写最新的值
+            if (!pending.remove(entry.getKey(), entry.getValue())) continue;
+            (entry.getValue().hash() != null ? hashes : values).put(entry.getKey(), entry.getValue());
+        }
+        try {
+            writeHashes(hashes);
+            writeValues(values);
+            log.debug("缓存回填完成, Hash:{}, String:{}", hashes.size(), values.size());
+        } catch (Exception e) {
+            log.error("缓存回填失败，丢弃本批, Hash:{}, String:{}", hashes.size(), values.size(), e);
+        } finally {
+            if (!pending.isEmpty()) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    private void writeHashes(Map<String, Backfill> hashes) {
+        if (hashes.isEmpty()) return;
+        metrics.recordPipeline(ForumMetrics.PIPELINE_CACHE_BACKFILL, hashes.size(), () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            hashes.forEach((key, backfill) -> connection.hashCommands().hMSet(key.getBytes(StandardCharsets.UTF_8), backfill.hash()));
+            return null;
+        }));
+    }
+
+    private void writeValues(Map<String, Backfill> values) {
+        if (values.isEmpty()) return;
+        metrics.recordPipeline(ForumMetrics.PIPELINE_CACHE_BACKFILL, values.size(), () -> stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                values.forEach((key, backfill) -> operations.opsForValue().set(key, backfill.value(), backfill.ttl()));
+                return null;
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+        while (!pending.isEmpty()) {
+            int before = pending.size();
+            flush();
+            if (pending.size() >= before) break;
+        }
+    }
+
+    int pendingSize() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,231 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.pojo.response.ArticleReplyMetaCacheDTO;
+import com.doublez.kc_forum.common.utiles.CacheRecordCodec;
+import com.doublez.kc_forum.model.Article;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.doublez.kc_forum.service.impl.ArticleServiceImpl.*;
+
+/**
+ * 文章/回复元数据 Hash 的编解码，读写都直接使用原始字节（调用方以 {@link RedisSerializer#byteArray()} 读取 HGETALL）。
+ * <p>
+ * 写入格式由 kc.cache.codec 决定：
+ * <ul>
+ *     <li>legacy（默认）：每个字段一个值，经 redisTemplate 的 Jackson 序列化器编码，与原来的格式一致</li>
+ *     <li>binary：不变的字段打包成一个 {@link CacheRecordCodec#FIELD_BINARY} 字段，计数仍是单独的整数字段</li>
+ * </ul>
+ * 读取同时兼容两种格式（存在 {@link CacheRecordCodec#FIELD_BINARY} 时按二进制解码），切换格式无需清理缓存，
+ * 旧格式的 Hash 过期或重新回填后自然替换。
+ */
+@Slf4j
+@Component
+public class CacheHashCodec {
+
+    private static final String REPLY_FIELD_ID = "id";
+    private static final String REPLY_FIELD_ARTICLE_ID = "articleId";
+    private static final String REPLY_FIELD_POST_USER_ID = "postUserId";
+    private static final String REPLY_FIELD_REPLY_ID = "replyId";
+    private static final String REPLY_FIELD_REPLY_USER_ID = "replyUserId";
+    private static final String REPLY_FIELD_CONTENT = "content";
+    private static final String REPLY_FIELD_CREATE_TIME = "createTime";
+    private static final String REPLY_FIELD_LIKE_COUNT = "likeCount";
+    private static final String REPLY_FIELD_CHILDREN_COUNT = "childrenCount";//该回复下直接子回复的数量
+
+    private static final byte[] BINARY_FIELD = bytes(CacheRecordCodec.FIELD_BINARY);
+    private static final byte[] ARTICLE_REPLY_COUNT = bytes(FIELD_REPLY_COUNT);
+    private static final byte[] ARTICLE_LIKE_COUNT = bytes(FIELD_LIKE_COUNT);
+    private static final byte[] ARTICLE_VISIT_COUNT = bytes(FIELD_VISIT_COUNT);
+    private static final byte[] REPLY_LIKE_COUNT = bytes(REPLY_FIELD_LIKE_COUNT);
+    private static final byte[] REPLY_CHILDREN_COUNT = bytes(REPLY_FIELD_CHILDREN_COUNT);
+
+    private final boolean binary;
+    private final RedisSerializer<Object> legacySerializer;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public CacheHashCodec(@Value("${kc.cache.codec:legacy}") String codec,
+                          RedisTemplate<String, Object> redisTemplate, ObjectMapper objectMapper) {
+        this("binary".equalsIgnoreCase(codec), redisTemplate.getHashValueSerializer(), objectMapper);
+        log.info("文章/回复缓存写入格式: {}", binary ? "binary" : "legacy");
+    }
+
+    /**
+     * @param legacySerializer 旧格式字段值的序列化器，即 redisTemplate 的 hashValueSerializer
+     */
+    @SuppressWarnings("unchecked")
+    public CacheHashCodec(boolean binary, RedisSerializer<?> legacySerializer, ObjectMapper objectMapper) {
+        this.binary = binary;
+        this.legacySerializer = (RedisSerializer<Object>) legacySerializer;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * 文章元数据与计数，可直接用于 HMSET（文章内容单独缓存）
+     */
+    public Map<byte[], byte[]> encodeArticle(Article article) {
+        Map<byte[], byte[]> hash = new LinkedHashMap<>();
+        if (binary) {
+            hash.put(BINARY_FIELD, CacheRecordCodec.encodeArticle(article));
+            hash.put(ARTICLE_REPLY_COUNT, counter(article.getReplyCount()));
+            hash.put(ARTICLE_LIKE_COUNT, counter(article.getLikeCount()));
+            hash.put(ARTICLE_VISIT_COUNT, counter(article.getVisitCount()));
+            return hash;
+        }
+        // 注意：在Hash中将ID等数字类型存储为字符串，以保持一致性或避免某些客户端的潜在问题
+        putLegacy(hash, FIELD_ID, article.getId().toString());
+        putLegacy(hash, FIELD_BOARD_ID, article.getBoardId().toString());
+        putLegacy(hash, FIELD_USER_ID, article.getUserId().toString());
+        putLegacy(hash, FIELD_TITLE, article.getTitle());
+        putLegacy(hash, FIELD_IS_TOP, article.getIsTop() != null ? article.getIsTop().toString() : "0");
+        putLegacy(hash, FIELD_CREATE_TIME, article.getCreateTime()); // Jackson会序列化
+        putLegacy(hash, FIELD_UPDATE_TIME, article.getUpdateTime()); // Jackson会序列化
+        putLegacy(hash, FIELD_REPLY_COUNT, article.getReplyCount() != null ? article.getReplyCount() : 0);
+        putLegacy(hash, FIELD_LIKE_COUNT, article.getLikeCount() != null ? article.getLikeCount() : 0);
+        putLegacy(hash, FIELD_VISIT_COUNT, article.getVisitCount() != null ? article.getVisitCount() : 0);
+        return hash;
+    }
+
+    public Map<byte[], byte[]> encodeReply(ArticleReplyMetaCacheDTO reply) {
+        Map<byte[], byte[]> hash = new LinkedHashMap<>();
+        if (binary) {
+            hash.put(BINARY_FIELD, CacheRecordCodec.encodeReply(reply));
+            hash.put(REPLY_LIKE_COUNT, counter(reply.getLikeCount()));
+            hash.put(REPLY_CHILDREN_COUNT, counter(reply.getChildrenCount()));
+            return hash;
+        }
+        putLegacy(hash, REPLY_FIELD_ID, reply.getId().toString());
+        putLegacy(hash, REPLY_FIELD_ARTICLE_ID, reply.getArticleId().toString());
+        putLegacy(hash, REPLY_FIELD_POST_USER_ID, reply.getPostUserId().toString());
+        putLegacy(hash, REPLY_FIELD_REPLY_ID, reply.getReplyId() != null ? reply.getReplyId().toString() : "0");
+        putLegacy(hash, REPLY_FIELD_REPLY_USER_ID, reply.getReplyUserId().toString());
+        putLegacy(hash, REPLY_FIELD_CONTENT, reply.getContent());
+        putLegacy(hash, REPLY_FIELD_LIKE_COUNT, reply.getLikeCount() != null ? reply.getLikeCount() : 0);
+        putLegacy(hash, REPLY_FIELD_CREATE_TIME, reply.getCreateTime()); // Jackson会序列化
+        putLegacy(hash, REPLY_FIELD_CHILDREN_COUNT, reply.getChildrenCount() != null ? reply.getChildrenCount() : 0);
+        return hash;
+    }
+
+    /**
+     * @param rawHash HGETALL 的原始结果（字段与值均为 byte[]）
+     * @return 缓存不存在或不完整（例如只有计数字段）时返回 null
+     */
+    public Article decodeArticle(Object rawHash) {
+        if (!(rawHash instanceof Map<?, ?> hash) || hash.isEmpty()) return null;
+        byte[] blob = null;
+        Integer replyCount = null, likeCount = null, visitCount = null;
+        for (Map.Entry<?, ?> entry : hash.entrySet()) {
+            byte[] field = (byte[]) entry.getKey();
+            if (Arrays.equals(field, BINARY_FIELD)) blob = (byte[]) entry.getValue();
+            else if (Arrays.equals(field, ARTICLE_REPLY_COUNT)) replyCount = parseCounter(entry.getValue());
+            else if (Arrays.equals(field, ARTICLE_LIKE_COUNT)) likeCount = parseCounter(entry.getValue());
+            else if (Arrays.equals(field, ARTICLE_VISIT_COUNT)) visitCount = parseCounter(entry.getValue());
+        }
+        if (blob == null) {
+            Article article = ArticleHashMapper.mapToArticle(deserializeLegacy(hash), objectMapper);
+            return article != null && article.getId() != null ? article : null;
+        }
+        Article article = new Article();
+        try {
+            CacheRecordCodec.decodeArticle(blob, article);
+        } catch (RuntimeException e) {
+            log.warn("文章缓存二进制记录解码失败", e);
+            return null;
+        }
+        article.setReplyCount(replyCount);
+        article.setLikeCount(likeCount);
+        article.setVisitCount(visitCount);
+        return article;
+    }
+
+    /**
+     * @param rawHash HGETALL 的原始结果（字段与值均为 byte[]）
+     * @return 缓存不存在或不完整时返回 null
+     */
+    public ArticleReplyMetaCacheDTO decodeReply(Object rawHash) {
+        if (!(rawHash instanceof Map<?, ?> hash) || hash.isEmpty()) return null;
+        byte[] blob = null;
+        Integer likeCount = null, childrenCount = null;
+        for (Map.Entry<?, ?> entry : hash.entrySet()) {
+            byte[] field = (byte[]) entry.getKey();
+            if (Arrays.equals(field, BINARY_FIELD)) blob = (byte[]) entry.getValue();
+            else if (Arrays.equals(field, REPLY_LIKE_COUNT)) likeCount = parseCounter(entry.getValue());
+            else if (Arrays.equals(field, REPLY_CHILDREN_COUNT)) childrenCount = parseCounter(entry.getValue());
+        }
+        if (blob == null) {
+            Map<Object, Object> fields = deserializeLegacy(hash);
+            try {
+                ArticleReplyMetaCacheDTO reply = objectMapper.convertValue(fields, ArticleReplyMetaCacheDTO.class);
+                return reply.getId() != null ? reply : null;
+            } catch (IllegalArgumentException e) {
+                log.warn("回复Hash映射失败: {}", fields, e);
+                return null;
+            }
+        }
+        ArticleReplyMetaCacheDTO reply = new ArticleReplyMetaCacheDTO();
+        try {
+            CacheRecordCodec.decodeReply(blob, reply);
+        } catch (RuntimeException e) {
+            log.warn("回复缓存二进制记录解码失败", e);
+            return null;
+        }
+        reply.setLikeCount(likeCount);
+        reply.setChildrenCount(childrenCount);
+        return reply;
+    }
+
+    private void putLegacy(Map<byte[], byte[]> hash, String field, Object value) {
+        hash.put(bytes(field), legacySerializer.serialize(value));
+    }
+
+    private Map<Object, Object> deserializeLegacy(Map<?, ?> hash) {
+        Map<Object, Object> fields = new HashMap<>(hash.size() * 2);
+        for (Map.Entry<?, ?> entry : hash.entrySet()) {
+            fields.put(new String((byte[]) entry.getKey(), StandardCharsets.UTF_8), legacySerializer.deserialize((byte[]) entry.getValue()));
+        }
+        return fields;
+    }
+
+    /**
+     * 计数以十进制字符串存储，与 HINCRBY 以及 Jackson 序列化整数的结果相同
+     */
+    private static byte[] counter(Integer value) {
+        return bytes(String.valueOf(value != null ? value : 0));
+    }
+
+    private static Integer parseCounter(Object raw) {
+        byte[] value = (byte[]) raw;
+        if (value == null || value.length == 0) return null;
+        int i = value[0] == '-' ? 1 : 0;
+        if (i == value.length) return null;
+        long result = 0;
+        for (; i < value.length; i++) {
+            int digit = value[i] - '0';
+            if (digit < 0 || digit > 9 || (result = result * 10 + digit) > Integer.MAX_VALUE) {
+                log.warn("无法将 '{}' 解析为计数", new String(value, StandardCharsets.UTF_8));
+                return null;
+            }
+        }
+        return (int) (value[0] == '-' ? -result : result);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
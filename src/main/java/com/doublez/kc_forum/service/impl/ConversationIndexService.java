@@ -0,0 +1,274 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.response.RecentConversationsResponse;
+import com.doublez.kc_forum.common.pojo.response.UserArticleResponse;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.common.utiles.TransactionUtil;
+import com.doublez.kc_forum.mapper.MessageMapper;
+import com.doublez.kc_forum.model.Message;
+import com.doublez.kc_forum.service.IUserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 站内信会话索引，代替每次轮询时的 COUNT(*) 与最近会话的 GROUP BY 查询：
+ * <ul>
+ *     <li>msg:conv:{userId}：联系人 ZSET，分数为最后一条消息时间</li>
+ *     <li>msg:unread:{userId}：每个联系人的未读数，_total 为总未读数</li>
+ *     <li>msg:last:{小id}:{大id}：两人最后一条消息的快照</li>
+ * </ul>
+ * 发送消息与已读在事务提交后由脚本增量维护。索引以 msg:conv:ready:{userId} 标记是否可用，
+ * 不可用（首次访问、过期、更新失败）时从数据库重建。每次重建把标记设为自己的 building:{token}，
+ * 重建期间的增量变更会把任何 building:* 标记改为 dirty，只有标记仍是自己的 token 时才写入重建结果，
+ * 否则作废，下次读取再重建，避免数据库快照覆盖更新的变更。
+ */
+@Slf4j
+@Component
+public class ConversationIndexService {
+
+    static final String FIELD_TOTAL = "_total";
+    static final String STATE_READY = "1";
+    // 重建中的标记前缀，后接本次重建的 token
+    static final String STATE_BUILDING_PREFIX = "building:";
+    // building/dirty 标记的存活时间，只需覆盖一次重建
+    private static final long REBUILD_LEASE_MS = 30_000L;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private MessageMapper messageMapper;
+    @Autowired
+    private IUserService userServiceImpl;
+    @Autowired
+    private ForumMetrics metrics;
+    @Autowired
+    @Qualifier("conversationMessageScript")
+    private RedisScript<Long> conversationMessageScript;
+    @Autowired
+    @Qualifier("conversationReadScript")
+    private RedisScript<Long> conversationReadScript;
+    @Autowired
+    @Qualifier("conversationRebuildScript")
+    private RedisScript<Long> conversationRebuildScript;
+
+    @Value("${kc.message.index.enabled:false}")
+    private boolean enabled;
+    // 索引过期后整体重建，作为增量维护出错时的兜底
+    @Value("${kc.message.index.ttl-hours:24}")
+    private long ttlHours;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 新消息写入后调用，事务提交后更新双方的索引
+     */
+    public void onMessageCreated(Message message) {
+        if (!enabled) return;
+        long time = toMillis(message.getCreateTime());
+        TransactionUtil.afterCommit(() -> {
+            try {
+                stringRedisTemplate.execute(conversationMessageScript, List.of(
+                                RedisKeyUtil.getConversationZSetKey(message.getPostUserId()),
+                                RedisKeyUtil.getConversationReadyKey(message.getPostUserId()),
+                                RedisKeyUtil.getConversationZSetKey(message.getReceiveUserId()),
+                                RedisKeyUtil.getConversationUnreadKey(message.getReceiveUserId()),
+                                RedisKeyUtil.getConversationReadyKey(message.getReceiveUserId()),
+                                RedisKeyUtil.getConversationLastMessageKey(message.getPostUserId(), message.getReceiveUserId())),
+                        message.getPostUserId().toString(), message.getReceiveUserId().toString(), message.getId().toString(),
+                        String.valueOf(time), message.getContent(), String.valueOf(ttlMillis()), String.valueOf(REBUILD_LEASE_MS));
+            } catch (Exception e) {
+                log.error("会话索引更新失败, 消息id:{}", message.getId(), e);
+                invalidate(message.getPostUserId(), message.getReceiveUserId());
+            }
+        });
+    }
+
+    /**
+     * 用户读取与某个联系人的消息后调用，事务提交后清零该联系人的未读数。
+     * 游标之后已经有计入索引的新消息时不能直接清零，脚本改为让索引失效，下次读取从数据库重建
+     * @param lastReadMessageId 前进后的已读游标
+     */
+    public void onConversationRead(Long userId, Long contactId, Long lastReadMessageId) {
+        if (!enabled) return;
+        TransactionUtil.afterCommit(() -> {
+            try {
+                stringRedisTemplate.execute(conversationReadScript, List.of(
+                                RedisKeyUtil.getConversationUnreadKey(userId), RedisKeyUtil.getConversationReadyKey(userId),
+                                RedisKeyUtil.getConversationLastMessageKey(userId, contactId)),
+                        contactId.toString(), lastReadMessageId.toString(), String.valueOf(REBUILD_LEASE_MS));
+            } catch (Exception e) {
+                log.error("会话索引已读更新失败, userId:{}, contactId:{}", userId, contactId, e);
+                invalidate(userId);
+            }
+        });
+    }
+
+    /**
+     * 总未读数，一次 pipeline 读取索引状态与 _total
+     */
+    public long unreadCount(Long userId) {
+        List<Object> results = metrics.recordPipeline(ForumMetrics.PIPELINE_CONVERSATION, 2,
+                () -> stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Object execute(RedisOperations operations) throws DataAccessException {
+                        operations.opsForValue().get(RedisKeyUtil.getConversationReadyKey(userId));
+                        operations.opsForHash().get(RedisKeyUtil.getConversationUnreadKey(userId), FIELD_TOTAL);
+                        return null;
+                    }
+                }));
+        if (!STATE_READY.equals(results.get(0))) {
+            return rebuild(userId).stream().mapToLong(conversation -> conversation.getUnreadCount() != null ? conversation.getUnreadCount() : 0).sum();
+        }
+        return results.get(1) != null ? Long.parseLong(results.get(1).toString()) : 0L;
+    }
+
+    /**
+     * 最近会话，按最后一条消息时间倒序。索引可用时只读 Redis：
+     * 一次 pipeline 读取状态、联系人与未读数，一次 pipeline 读取最后一条消息的快照，联系人信息来自用户缓存。
+     */
+    public List<RecentConversationsResponse> recentConversations(Long userId) {
+        List<Object> results = metrics.recordPipeline(ForumMetrics.PIPELINE_CONVERSATION, 3,
+                () -> stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Object execute(RedisOperations operations) throws DataAccessException {
+                        operations.opsForValue().get(RedisKeyUtil.getConversationReadyKey(userId));
+                        operations.opsForZSet().reverseRangeWithScores(RedisKeyUtil.getConversationZSetKey(userId), 0, -1);
+                        operations.opsForHash().entries(RedisKeyUtil.getConversationUnreadKey(userId));
+                        return null;
+                    }
+                }));
+        if (!STATE_READY.equals(results.get(0))) {
+            return rebuild(userId);
+        }
+        List<Long> contactIds = new ArrayList<>();
+        if (results.get(1) instanceof Collection<?> contacts) {
+            for (Object contact : contacts) {
+                contactIds.add(Long.valueOf(String.valueOf(((ZSetOperations.TypedTuple<?>) contact).getValue())));
+            }
+        }
+        if (contactIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<?, ?> unread = results.get(2) instanceof Map<?, ?> map ? map : Map.of();
+
+        List<Object> snapshots = metrics.recordPipeline(ForumMetrics.PIPELINE_CONVERSATION, contactIds.size(),
+                () -> stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Object execute(RedisOperations operations) throws DataAccessException {
+                        for (Long contactId : contactIds) {
+                            operations.opsForHash().entries(RedisKeyUtil.getConversationLastMessageKey(userId, contactId));
+                        }
+                        return null;
+                    }
+                }));
+        Map<Long, UserArticleResponse> users = userServiceImpl.fetchAndCacheUsers(contactIds);
+
+        List<RecentConversationsResponse> conversations = new ArrayList<>(contactIds.size());
+        for (int i = 0; i < contactIds.size(); i++) {
+            Long contactId = contactIds.get(i);
+            if (!(snapshots.get(i) instanceof Map<?, ?> last) || last.get("id") == null) {
+                // 快照已过期，整体重建
+                log.info("会话快照缺失, 重建会话索引, userId:{}, contactId:{}", userId, contactId);
+                invalidate(userId);
+                return rebuild(userId);
+            }
+            RecentConversationsResponse conversation = new RecentConversationsResponse();
+            conversation.setId(Long.valueOf(last.get("id").toString()));
+            conversation.setContactId(contactId);
+            conversation.setLastMessageContent((String) last.get("content"));
+            conversation.setLastMessageTimestamp(toLocalDateTime(Long.parseLong(last.get("time").toString())));
+            Object count = unread.get(contactId.toString());
+            conversation.setUnreadCount(count != null ? Integer.valueOf(count.toString()) : 0);
+            UserArticleResponse contact = users.get(contactId);
+            if (contact != null) {
+                conversation.setContactNickname(contact.getNickName());
+                conversation.setContactAvatar(contact.getAvatarUrl());
+            }
+            conversations.add(conversation);
+        }
+        return conversations;
+    }
+
+    /**
+     * 从数据库重建用户的会话索引，并直接返回数据库的结果。
+     * 重建期间如果有新的变更，或者标记已被之后开始的重建换成别的 token，脚本会放弃写入，索引保持不可用。
+     */
+    List<RecentConversationsResponse> rebuild(Long userId) {
+        String readyKey = RedisKeyUtil.getConversationReadyKey(userId);
+        String token = STATE_BUILDING_PREFIX + UUID.randomUUID();
+        stringRedisTemplate.opsForValue().set(readyKey, token, REBUILD_LEASE_MS, TimeUnit.MILLISECONDS);
+
+        // 同一时间的两条消息会让同一个联系人出现两次，保留id较大的
+        Map<Long, RecentConversationsResponse> byContact = new LinkedHashMap<>();
+        for (RecentConversationsResponse conversation : messageMapper.getRecentConversations(userId)) {
+            byContact.merge(conversation.getContactId(), conversation,
+                    (a, b) -> a.getId() >= b.getId() ? a : b);
+        }
+        List<RecentConversationsResponse> conversations = new ArrayList<>(byContact.values());
+
+        List<String> keys = new ArrayList<>(3 + conversations.size());
+        keys.add(RedisKeyUtil.getConversationZSetKey(userId));
+        keys.add(RedisKeyUtil.getConversationUnreadKey(userId));
+        keys.add(readyKey);
+        List<String> args = new ArrayList<>(2 + conversations.size() * 5);
+        args.add(String.valueOf(ttlMillis()));
+        args.add(token);
+        for (RecentConversationsResponse conversation : conversations) {
+            Long contactId = conversation.getContactId();
+            keys.add(RedisKeyUtil.getConversationLastMessageKey(userId, contactId));
+            args.add(contactId.toString());
+            args.add(String.valueOf(toMillis(conversation.getLastMessageTimestamp())));
+            args.add(String.valueOf(conversation.getUnreadCount() != null ? conversation.getUnreadCount() : 0));
+            args.add(conversation.getId().toString());
+            args.add(conversation.getLastMessageContent());
+        }
+        try {
+            Long rebuilt = stringRedisTemplate.execute(conversationRebuildScript, keys, args.toArray());
+            log.info("会话索引重建{}, userId:{}, 会话数:{}", Long.valueOf(1L).equals(rebuilt) ? "完成" : "期间有变更，已放弃", userId, conversations.size());
+        } catch (Exception e) {
+            log.error("会话索引重建失败, userId:{}", userId, e);
+        }
+        return conversations;
+    }
+
+    private void invalidate(Long... userIds) {
+        try {
+            stringRedisTemplate.delete(Arrays.stream(userIds).map(RedisKeyUtil::getConversationReadyKey).toList());
+        } catch (Exception e) {
+            log.error("会话索引失效失败，等待过期后重建, userIds:{}", Arrays.toString(userIds), e);
+        }
+    }
+
+    private long ttlMillis() {
+        return TimeUnit.HOURS.toMillis(ttlHours);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return (time != null ? time : LocalDateTime.now()).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,89 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录计数发生变化的文章/回复，供 {@link CounterReconciler} 只对这些目标对账，而不是扫描整个 Redis。
+ * <p>
+ * 业务线程只把目标id放进本地集合（同一目标在一个周期内只记一次）；后台每隔 mark-flush-ms
+ * 把集合一次 ZADD 到 counter:dirty:reconcile:{type}，score 为当前时间，重复变更只会刷新 score。
+ * 本地集合有上限，满了之后的标记直接丢弃——对账是兜底手段，漏掉的目标会在下一次变更时重新被标记。
+ */
+@Slf4j
+@Component
+public class CounterDirtyTracker {
+
+    public static final String TYPE_ARTICLE = "article";
+    public static final String TYPE_REPLY = "reply";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Map<String, Set<Long>> pending = Map.of(
+            TYPE_ARTICLE, ConcurrentHashMap.newKeySet(),
+            TYPE_REPLY, ConcurrentHashMap.newKeySet());
+    private final int maxPending;
+
+    public CounterDirtyTracker(@Value("${kc.counter.reconcile.max-pending-marks:20000}") int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * 标记目标的计数发生了变化
+     * @param targetType {@link #TYPE_ARTICLE} 或 {@link #TYPE_REPLY}，大小写不敏感
+     */
+    public void mark(String targetType, Long targetId) {
+        if (targetType == null || targetId == null) return;
+        Set<Long> ids = pending.get(targetType.toLowerCase());
+        if (ids == null || ids.size() >= maxPending) return;
+        ids.add(targetId);
+    }
+
+    public void markAll(String targetType, Collection<Long> targetIds) {
+        for (Long targetId : targetIds) {
+            mark(targetType, targetId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${kc.counter.reconcile.mark-flush-ms:1000}")
+    public void flush() {
+        pending.forEach(this::flush);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void flush(String targetType, Set<Long> ids) {
+        if (ids.isEmpty()) return;
+        double now = System.currentTimeMillis();
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+        Iterator<Long> iterator = ids.iterator();
+        while (iterator.hasNext()) {
+            tuples.add(new DefaultTypedTuple<>(iterator.next().toString(), now));
+            iterator.remove();
+        }
+        try {
+            stringRedisTemplate.opsForZSet().add(RedisKeyUtil.getCounterReconcileDirtyKey(targetType), tuples);
+        } catch (Exception e) {
+            log.warn("计数脏标记写入Redis失败，丢弃本周期标记, 类型:{}, 目标数:{}", targetType, tuples.size(), e);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.doublez.kc_forum.common.cache.ArticleLocalCache;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.CounterValue;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.mapper.ArticleMapper;
+import com.doublez.kc_forum.mapper.ArticleReplyMapper;
+import com.doublez.kc_forum.mapper.LikesMapper;
+import com.doublez.kc_forum.model.Article;
+import com.doublez.kc_forum.model.ArticleReply;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.doublez.kc_forum.service.impl.ArticleServiceImpl.FIELD_LIKE_COUNT;
+import static com.doublez.kc_forum.service.impl.ArticleServiceImpl.FIELD_REPLY_COUNT;
+import static com.doublez.kc_forum.service.impl.ArticleServiceImpl.FIELD_VISIT_COUNT;
+import static com.doublez.kc_forum.service.impl.CounterDirtyTracker.TYPE_ARTICLE;
+import static com.doublez.kc_forum.service.impl.CounterDirtyTracker.TYPE_REPLY;
+
+/**
+ * Redis 计数与 MySQL 计数的定期对账。
+ * <p>
+ * 点赞数、回复数在 Redis 中同步更新，数据库由 MQ 事件/异步任务更新，事件丢失或重复投递都会让两边逐渐偏离。
+ * 对账只处理 {@link CounterDirtyTracker} 标记过、且最后一次变更早于 quiet-ms 的目标（留出事件落库的时间），
+ * 每批 batch-size 个目标：
+ * <ol>
+ *     <li>用 likes / article_reply 表的 COUNT 作为真实值，与数据库计数列、Redis Hash 中的计数字段比较</li>
+ *     <li>数据库计数列有偏差的目标用一条 UPDATE ... JOIN 重新统计</li>
+ *     <li>Redis 有偏差的字段用 CAS 脚本修正（值在对账期间被改过就跳过），并失效 L1 缓存</li>
+ * </ol>
+ * 浏览数没有可以重新统计的来源，Redis 领先于数据库是正常的（增量尚未落库），只在 Redis 落后于数据库时以数据库为准。
+ * 偏差计入 kc.counter.drift；一批处理失败时把目标放回脏集合，下一轮重试。
+ */
+@Slf4j
+@Component
+public class CounterReconciler {
+
+    static final String STORE_DB = "db";
+    static final String STORE_REDIS = "redis";
+
+    private static final String REPLY_FIELD_LIKE_COUNT = "likeCount";
+    private static final String REPLY_FIELD_CHILDREN_COUNT = "childrenCount";
+    // 单批目标数上限，避免 IN 列表与 pipeline 过大
+    private static final int MAX_BATCH_SIZE = 5000;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ArticleMapper articleMapper;
+    @Autowired
+    private ArticleReplyMapper articleReplyMapper;
+    @Autowired
+    private LikesMapper likesMapper;
+    @Autowired
+    private ArticleLocalCache articleLocalCache;
+    @Autowired
+    private ForumMetrics metrics;
+    @Autowired
+    @Qualifier("counterDirtyPopScript")
+    private RedisScript<List> counterDirtyPopScript;
+    @Autowired
+    @Qualifier("counterRepairScript")
+    private RedisScript<Long> counterRepairScript;
+
+    @Value("${kc.counter.reconcile.enabled:false}")
+    private boolean enabled;
+    @Value("${kc.counter.reconcile.quiet-ms:300000}")
+    private long quietMs;
+    @Value("${kc.counter.reconcile.batch-size:500}")
+    private int batchSize;
+    @Value("${kc.counter.reconcile.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    /**
+     * Redis 中需要修正的一个计数字段
+     * @param expected 对账时读到的值，CAS 的比较值
+     */
+    private record Repair(Long targetId, String key, String field, String expected, long value) {}
+
+    @Scheduled(fixedDelayString = "${kc.counter.reconcile.interval-ms:60000}")
+    public void reconcile() {
+        if (!enabled) return;
+        reconcileType(TYPE_ARTICLE);
+        reconcileType(TYPE_REPLY);
+    }
+
+    /**
+     * @return 本轮检查的目标数
+     */
+    int reconcileType(String targetType) {
+        String dirtyKey = RedisKeyUtil.getCounterReconcileDirtyKey(targetType);
+        int limit = Math.min(batchSize, MAX_BATCH_SIZE);
+        long cutoff = System.currentTimeMillis() - quietMs;
+        int checked = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            List<Long> ids = popDirty(dirtyKey, cutoff, limit);
+            if (ids.isEmpty()) break;
+            try {
+                if (TYPE_ARTICLE.equals(targetType)) {
+                    reconcileArticles(ids);
+                } else {
+                    reconcileReplies(ids);
+                }
+            } catch (Exception e) {
+                log.error("计数对账失败，目标放回脏集合等待下一轮, 类型:{}, 目标数:{}", targetType, ids.size(), e);
+                requeue(dirtyKey, ids, cutoff);
+                break;
+            }
+            checked += ids.size();
+            if (ids.size() < limit) break;
+        }
+        if (checked > 0) {
+            log.info("计数对账完成, 类型:{}, 检查目标数:{}", targetType, checked);
+        }
+        return checked;
+    }
+
+    void reconcileArticles(List<Long> ids) {
+        Map<Long, Article> rows = articleMapper.selectList(new LambdaQueryWrapper<Article>()
+                        .select(Article::getId, Article::getLikeCount, Article::getReplyCount, Article::getVisitCount)
+                        .in(Article::getId, ids))
+                .stream().collect(Collectors.toMap(Article::getId, Function.identity()));
+        Map<Long, Long> likeCounts = toMap(likesMapper.countByTargets(TYPE_ARTICLE, ids));
+        Map<Long, Long> replyCounts = toMap(articleReplyMapper.countRepliesByArticleIds(ids));
+        List<String> keys = ids.stream().map(RedisKeyUtil::getArticleKey).toList();
+        List<List<String>> cached = readCounters(keys, FIELD_LIKE_COUNT, FIELD_REPLY_COUNT, FIELD_VISIT_COUNT);
+
+        Set<Long> likeDrift = new HashSet<>();
+        Set<Long> replyDrift = new HashSet<>();
+        List<Repair> repairs = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            Article row = rows.get(id);
+            if (row == null) continue;
+            long likeCount = likeCounts.getOrDefault(id, 0L);
+            long replyCount = replyCounts.getOrDefault(id, 0L);
+            if (checkDb(TYPE_ARTICLE, FIELD_LIKE_COUNT, row.getLikeCount(), likeCount)) likeDrift.add(id);
+            if (checkDb(TYPE_ARTICLE, FIELD_REPLY_COUNT, row.getReplyCount(), replyCount)) replyDrift.add(id);
+
+            List<String> values = cached.get(i);
+            checkRedis(repairs, TYPE_ARTICLE, id, keys.get(i), FIELD_LIKE_COUNT, values.get(0), likeCount);
+            checkRedis(repairs, TYPE_ARTICLE, id, keys.get(i), FIELD_REPLY_COUNT, values.get(1), replyCount);
+            Long cachedVisit = parse(values.get(2));
+            long visitCount = row.getVisitCount() == null ? 0 : row.getVisitCount();
+            if (cachedVisit != null && cachedVisit < visitCount) {
+                metrics.recordCounterDrift(TYPE_ARTICLE, FIELD_VISIT_COUNT, STORE_REDIS, cachedVisit - visitCount);
+                repairs.add(new Repair(id, keys.get(i), FIELD_VISIT_COUNT, values.get(2), visitCount));
+            }
+        }
+
+        if (!likeDrift.isEmpty()) articleMapper.recountLikeCount(likeDrift);
+        if (!replyDrift.isEmpty()) articleMapper.recountReplyCount(replyDrift);
+        Set<Long> repaired = applyRepairs(repairs);
+        repaired.forEach(articleLocalCache::invalidateArticleCounters);
+        logDrift(TYPE_ARTICLE, ids.size(), likeDrift.size() + replyDrift.size(), repairs.size(), repaired.size());
+    }
+
+    void reconcileReplies(List<Long> ids) {
+        Map<Long, ArticleReply> rows = articleReplyMapper.selectList(new LambdaQueryWrapper<ArticleReply>()
+                        .select(ArticleReply::getId, ArticleReply::getLikeCount, ArticleReply::getChildrenCount)
+                        .in(ArticleReply::getId, ids))
+                .stream().collect(Collectors.toMap(ArticleReply::getId, Function.identity()));
+        Map<Long, Long> likeCounts = toMap(likesMapper.countByTargets(TYPE_REPLY, ids));
+        Map<Long, Long> childrenCounts = toMap(articleReplyMapper.countChildrenByReplyIds(ids));
+        List<String> keys = ids.stream().map(RedisKeyUtil::getArticleReplyKey).toList();
+        List<List<String>> cached = readCounters(keys, REPLY_FIELD_LIKE_COUNT, REPLY_FIELD_CHILDREN_COUNT);
+
+        Set<Long> likeDrift = new HashSet<>();
+        Set<Long> childrenDrift = new HashSet<>();
+        List<Repair> repairs = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            ArticleReply row = rows.get(id);
+            if (row == null) continue;
+            long likeCount = likeCounts.getOrDefault(id, 0L);
+            long childrenCount = childrenCounts.getOrDefault(id, 0L);
+            if (checkDb(TYPE_REPLY, REPLY_FIELD_LIKE_COUNT, row.getLikeCount(), likeCount)) likeDrift.add(id);
+            if (checkDb(TYPE_REPLY, REPLY_FIELD_CHILDREN_COUNT, row.getChildrenCount(), childrenCount)) childrenDrift.add(id);
+
+            List<String> values = cached.get(i);
+            checkRedis(repairs, TYPE_REPLY, id, keys.get(i), REPLY_FIELD_LIKE_COUNT, values.get(0), likeCount);
+            checkRedis(repairs, TYPE_REPLY, id, keys.get(i), REPLY_FIELD_CHILDREN_COUNT, values.get(1), childrenCount);
+        }
+
+        if (!likeDrift.isEmpty()) articleReplyMapper.recountLikeCount(likeDrift);
+        if (!childrenDrift.isEmpty()) articleReplyMapper.recountChildrenCount(childrenDrift);
+        Set<Long> repaired = applyRepairs(repairs);
+        logDrift(TYPE_REPLY, ids.size(), likeDrift.size() + childrenDrift.size(), repairs.size(), repaired.size());
+    }
+
+    private boolean checkDb(String targetType, String field, Integer stored, long actual) {
+        long drift = (stored == null ? 0 : stored) - actual;
+        if (drift == 0) return false;
+        metrics.recordCounterDrift(targetType, field, STORE_DB, drift);
+        return true;
+    }
+
+    private void checkRedis(List<Repair> repairs, String targetType, Long id, String key, String field, String cached, long actual) {
+        // 没有缓存（未加载或已过期）或值无法解析时跳过，下一次加载会从数据库读取
+        Long value = parse(cached);
+        if (value == null || value == actual) return;
+        metrics.recordCounterDrift(targetType, field, STORE_REDIS, value - actual);
+        repairs.add(new Repair(id, key, field, cached, actual));
+    }
+
+    /**
+     * 一次 pipeline 读取所有目标的计数字段，Hash 不存在时对应字段均为 null
+     */
+    @SuppressWarnings("unchecked")
+    private List<List<String>> readCounters(List<String> keys, String... fields) {
+        byte[][] rawFields = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            rawFields[i] = bytes(fields[i]);
+        }
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.hashCommands().hMGet(bytes(key), rawFields);
+            }
+            return null;
+        });
+        List<List<String>> values = new ArrayList<>(keys.size());
+        for (Object result : results) {
+            values.add(result instanceof List<?> list ? (List<String>) list : Collections.nCopies(fields.length, null));
+        }
+        return values;
+    }
+
+    /**
+     * @return 实际修正了至少一个字段的目标id
+     */
+    private Set<Long> applyRepairs(List<Repair> repairs) {
+        if (repairs.isEmpty()) return Set.of();
+        byte[] script = bytes(counterRepairScript.getScriptAsString());
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Repair repair : repairs) {
+                connection.scriptingCommands().eval(script, ReturnType.INTEGER, 1, bytes(repair.key()),
+                        bytes(repair.field()), bytes(repair.expected()), bytes(String.valueOf(repair.value())));
+            }
+            return null;
+        });
+        Set<Long> repaired = new LinkedHashSet<>();
+        for (int i = 0; i < repairs.size(); i++) {
+            if (Long.valueOf(1L).equals(results.get(i))) {
+                repaired.add(repairs.get(i).targetId());
+            }
+        }
+        return repaired;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> popDirty(String dirtyKey, long cutoff, int limit) {
+        List<Object> ids = stringRedisTemplate.execute(counterDirtyPopScript, List.of(dirtyKey),
+                String.valueOf(cutoff), String.valueOf(limit));
+        if (ids == null || ids.isEmpty()) return List.of();
+        List<Long> result = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            result.add(Long.valueOf(id.toString()));
+        }
+        return result;
+    }
+
+    /**
+     * 放回时使用截止时间作为 score，下一轮不需要再等待静默期；已被重新标记的目标保留较新的 score
+     */
+    private void requeue(String dirtyKey, Collection<Long> ids, long cutoff) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = ids.stream()
+                .map(id -> (ZSetOperations.TypedTuple<String>) new DefaultTypedTuple<>(id.toString(), (double) cutoff))
+                .collect(Collectors.toSet());
+        try {
+            stringRedisTemplate.opsForZSet().addIfAbsent(dirtyKey, tuples);
+        } catch (Exception e) {
+            log.warn("计数脏标记放回失败, key:{}, 目标数:{}", dirtyKey, ids.size(), e);
+        }
+    }
+
+    private void logDrift(String targetType, int checked, int dbDrift, int redisDrift, int redisRepaired) {
+        if (dbDrift == 0 && redisDrift == 0) return;
+        log.warn("计数对账发现偏差, 类型:{}, 检查:{}, 数据库偏差字段:{}, Redis偏差字段:{}, Redis已修正目标:{}",
+                targetType, checked, dbDrift, redisDrift, redisRepaired);
+    }
+
+    private static Map<Long, Long> toMap(List<CounterValue> values) {
+        Map<Long, Long> map = new HashMap<>();
+        for (CounterValue value : values) {
+            map.put(value.getId(), value.getValue());
+        }
+        return map;
+    }
+
+    private static Long parse(String value) {
+        if (value == null) return null;
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
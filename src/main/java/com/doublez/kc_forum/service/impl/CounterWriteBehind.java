@@ -0,0 +1,257 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.CounterValue;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.mapper.ArticleMapper;
+import com.doublez.kc_forum.mapper.ArticleReplyMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.doublez.kc_forum.service.impl.ArticleServiceImpl.FIELD_REPLY_COUNT;
+import static com.doublez.kc_forum.service.impl.CounterDirtyTracker.TYPE_ARTICLE;
+import static com.doublez.kc_forum.service.impl.CounterDirtyTracker.TYPE_REPLY;
+
+/**
+ * 文章回复数、回复子回复数的 write-behind。
+ * <p>
+ * 默认每次回帖/删帖都会在数据库线程池上执行一条 UPDATE ... SET x = x + n，热门文章上是行锁竞争。
+ * 开启 kc.counter.write-behind.enabled 后，缓存存在的目标只在 Redis Hash 中累加（Redis 为计数的权威来源），
+ * 并把目标id加入 counter:dirty:flush:{type}；后台每隔 flush-interval-ms 按批 SPOP，
+ * 读取 Redis 中的绝对值后用一条多行 UPDATE 写回。同一目标在一个周期内的所有变更只产生一次写入。
+ * <p>
+ * 缓存不存在时 {@link #increment} 返回 false，调用方按原来的方式累加数据库；回写时缓存已被淘汰的目标
+ * 交给 {@link CounterReconciler} 按明细表重新统计，所以开启时必须同时开启对账，否则启动失败。
+ * <p>
+ * 用数据库中的值重建缓存（回填、修改文章后失效二进制记录）之前，先用 {@link #flushArticleReplyCounts} /
+ * {@link #flushReplyChildrenCounts} 立即回写这些目标，避免尚未回写的增量被数据库中的旧值覆盖。
+ */
+@Slf4j
+@Component
+public class CounterWriteBehind {
+
+    private static final String REPLY_FIELD_CHILDREN_COUNT = "childrenCount";
+    private static final int MAX_BATCH_SIZE = 5000;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ArticleMapper articleMapper;
+    @Autowired
+    private ArticleReplyMapper articleReplyMapper;
+    @Autowired
+    private CounterDirtyTracker counterDirtyTracker;
+    @Autowired
+    private ForumMetrics metrics;
+    @Autowired
+    @Qualifier("counterIncrCachedScript")
+    private RedisScript<Long> counterIncrCachedScript;
+
+    @Value("${kc.counter.write-behind.enabled:false}")
+    private boolean enabled;
+    @Value("${kc.counter.write-behind.batch-size:500}")
+    private int batchSize;
+    @Value("${kc.counter.reconcile.enabled:false}")
+    private boolean reconcileEnabled;
+
+    @PostConstruct
+    public void init() {
+        if (enabled && !reconcileEnabled) {
+            throw new IllegalStateException("kc.counter.write-behind.enabled 需要同时开启 kc.counter.reconcile.enabled，"
+                    + "回写前缓存被淘汰的目标只能由对账修复");
+        }
+    }
+
+    /**
+     * 文章回复数加减
+     * @return true 表示已在 Redis 中累加并等待回写，调用方不再更新数据库与缓存；false 表示调用方按原方式更新
+     */
+    public boolean incrementArticleReplyCount(Long articleId, int delta) {
+        return increment(TYPE_ARTICLE, RedisKeyUtil.getArticleKey(articleId), articleId, FIELD_REPLY_COUNT, delta);
+    }
+
+    /**
+     * 回复的子回复数加减，返回值同 {@link #incrementArticleReplyCount}
+     */
+    public boolean incrementReplyChildrenCount(Long replyId, int delta) {
+        return increment(TYPE_REPLY, RedisKeyUtil.getArticleReplyKey(replyId), replyId, REPLY_FIELD_CHILDREN_COUNT, delta);
+    }
+
+    private boolean increment(String targetType, String hashKey, Long targetId, String field, int delta) {
+        if (!enabled) return false;
+        try {
+            Long value = stringRedisTemplate.execute(counterIncrCachedScript,
+                    List.of(hashKey, RedisKeyUtil.getCounterFlushDirtyKey(targetType)),
+                    field, String.valueOf(delta), targetId.toString());
+            return value != null;
+        } catch (Exception e) {
+            log.warn("计数 write-behind 累加失败，改为直接更新数据库, key:{}, field:{}, delta:{}", hashKey, field, delta, e);
+            return false;
+        }
+    }
+
+    /**
+     * 立即回写这些文章尚未回写的回复数，在用数据库中的值重建缓存之前调用
+     * @return 回写时 Redis 中的值（目标id -> 回复数），重建缓存时应使用这些值而不是数据库中读到的旧值
+     */
+    public Map<Long, Long> flushArticleReplyCounts(Collection<Long> articleIds) {
+        return flushNow(TYPE_ARTICLE, FIELD_REPLY_COUNT, articleIds, RedisKeyUtil::getArticleKey, articleMapper::setReplyCountBatch);
+    }
+
+    /**
+     * 立即回写这些回复尚未回写的子回复数，返回值同 {@link #flushArticleReplyCounts}
+     */
+    public Map<Long, Long> flushReplyChildrenCounts(Collection<Long> replyIds) {
+        return flushNow(TYPE_REPLY, REPLY_FIELD_CHILDREN_COUNT, replyIds, RedisKeyUtil::getArticleReplyKey, articleReplyMapper::setChildrenCountBatch);
+    }
+
+    @Scheduled(fixedDelayString = "${kc.counter.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        if (!enabled) return;
+        flush(TYPE_ARTICLE, FIELD_REPLY_COUNT, RedisKeyUtil::getArticleKey, articleMapper::setReplyCountBatch);
+        flush(TYPE_REPLY, REPLY_FIELD_CHILDREN_COUNT, RedisKeyUtil::getArticleReplyKey, articleReplyMapper::setChildrenCountBatch);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void flush(String targetType, String field, Function<Long, String> hashKey, Consumer<List<CounterValue>> writer) {
+        String dirtyKey = RedisKeyUtil.getCounterFlushDirtyKey(targetType);
+        int limit = Math.min(batchSize, MAX_BATCH_SIZE);
+        for (;;) {
+            List<String> members = stringRedisTemplate.opsForSet().pop(dirtyKey, limit);
+            if (members == null || members.isEmpty()) return;
+            try {
+                writeBack(targetType, field, members, hashKey, writer);
+            } catch (Exception e) {
+                // 放回待回写集合，下一周期重试；期间的新变更同样会加入集合，回写的始终是最新的绝对值
+                log.error("计数回写失败，等待下一周期重试, 类型:{}, 目标数:{}", targetType, members.size(), e);
+                stringRedisTemplate.opsForSet().add(dirtyKey, members.toArray(String[]::new));
+                return;
+            }
+            if (members.size() < limit) return;
+        }
+    }
+
+    private Map<Long, Long> flushNow(String targetType, String field, Collection<Long> ids,
+                                     Function<Long, String> hashKey, Consumer<List<CounterValue>> writer) {
+        if (!enabled || ids.isEmpty()) return Map.of();
+        List<Long> targetIds = List.copyOf(new LinkedHashSet<>(ids));
+        byte[] dirtyKey = bytes(RedisKeyUtil.getCounterFlushDirtyKey(targetType));
+        List<Long> dirty = new ArrayList<>();
+        List<CounterValue> values;
+        try {
+            // SREM 成功的目标由这里负责回写，与定时回写的 SPOP 互斥
+            List<Object> removed = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long id : targetIds) {
+                    connection.setCommands().sRem(dirtyKey, bytes(id.toString()));
+                }
+                return null;
+            });
+            for (int i = 0; i < targetIds.size(); i++) {
+                if (Long.valueOf(1L).equals(removed.get(i))) {
+                    dirty.add(targetIds.get(i));
+                }
+            }
+            if (dirty.isEmpty()) return Map.of();
+            values = readCached(targetType, field, dirty, hashKey);
+        } catch (Exception e) {
+            log.error("重建缓存前回写计数失败, 类型:{}, 目标:{}", targetType, targetIds, e);
+            returnToDirtySet(targetType, dirty);
+            return Map.of();
+        }
+        try {
+            if (!values.isEmpty()) {
+                writer.accept(values);
+            }
+        } catch (Exception e) {
+            // 数据库写入失败时 Redis 中的值仍然有效，放回待回写集合，调用方照样用这些值重建缓存
+            log.error("重建缓存前回写计数失败，等待下一周期重试, 类型:{}, 目标数:{}", targetType, values.size(), e);
+            returnToDirtySet(targetType, values.stream().map(CounterValue::getId).toList());
+        }
+        Map<Long, Long> result = new HashMap<>();
+        values.forEach(value -> result.put(value.getId(), value.getValue()));
+        return result;
+    }
+
+    private void returnToDirtySet(String targetType, List<Long> ids) {
+        if (ids.isEmpty()) return;
+        try {
+            stringRedisTemplate.opsForSet().add(RedisKeyUtil.getCounterFlushDirtyKey(targetType),
+                    ids.stream().map(String::valueOf).toArray(String[]::new));
+        } catch (Exception e) {
+            log.error("放回待回写集合失败，交给对账处理, 类型:{}, 目标:{}", targetType, ids, e);
+            counterDirtyTracker.markAll(targetType, ids);
+        }
+    }
+
+    private void writeBack(String targetType, String field, List<String> members,
+                           Function<Long, String> hashKey, Consumer<List<CounterValue>> writer) {
+        List<Long> ids = members.stream().map(Long::valueOf).toList();
+        List<CounterValue> values = readCached(targetType, field, ids, hashKey);
+        if (!values.isEmpty()) {
+            writer.accept(values);
+        }
+        log.debug("计数回写完成, 类型:{}, 字段:{}, 目标数:{}", targetType, field, values.size());
+    }
+
+    /**
+     * 读取 Redis 中的计数，缓存已被淘汰的目标交给对账
+     */
+    private List<CounterValue> readCached(String targetType, String field, List<Long> ids, Function<Long, String> hashKey) {
+        byte[] rawField = bytes(field);
+        List<Object> cached = metrics.recordPipeline(ForumMetrics.PIPELINE_COUNTER_FLUSH, ids.size(),
+                () -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Long id : ids) {
+                        connection.hashCommands().hGet(bytes(hashKey.apply(id)), rawField);
+                    }
+                    return null;
+                }));
+
+        List<CounterValue> values = new ArrayList<>(ids.size());
+        List<Long> evicted = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Long value = parse(cached.get(i));
+            if (value == null) {
+                evicted.add(ids.get(i));
+            } else {
+                values.add(new CounterValue(ids.get(i), value));
+            }
+        }
+        if (!evicted.isEmpty()) {
+            // 回写前缓存已被淘汰，Redis 中的增量无从得知，交给对账按明细表重新统计
+            log.warn("计数回写时缓存已不存在，交给对账处理, 类型:{}, 目标数:{}", targetType, evicted.size());
+            counterDirtyTracker.markAll(targetType, evicted);
+        }
+        return values;
+    }
+
+    private static Long parse(Object value) {
+        if (value == null) return null;
+        try {
+            return Long.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
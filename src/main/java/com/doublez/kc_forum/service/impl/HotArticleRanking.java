@@ -0,0 +1,263 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.doublez.kc_forum.common.cache.ArticleLocalCache;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.CounterDelta;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.mapper.ArticleMapper;
+import com.doublez.kc_forum.model.Article;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 板块热门文章排行（board:articles:hot:{boardId}:{epoch}）。
+ * <p>
+ * 热度 = Σ 权重 × 2^(-距今时间 / 半衰期)，浏览、点赞、回复、发帖各有权重。为了不在每个周期重算所有文章，
+ * 分数相对于所在纪元的起点计算：事件在纪元内经过 t 毫秒时增量为 权重 × 2^(t / 半衰期)，同一纪元内的相对顺序与衰减后的热度一致，
+ * 旧分数不需要修改。进入新纪元后第一次更新时由脚本按固定系数整体缩放最近一个仍存在的旧纪元 ZSET
+ * （板块有几个纪元没有活动时按相差的纪元数缩放，最多回看 {@link #LOOKBACK_EPOCHS} 个纪元），每个板块每个纪元只缩放一次。
+ * ZSET 保留热度最高的 max-size + trim-margin 篇文章，只对外展示前 max-size 篇，
+ * 余量让新发的文章在积累热度期间不会被立即淘汰。
+ * <p>
+ * 浏览与点赞来自 ForumEventConsumer 落库后的批次，回复与发帖在写入时直接更新；
+ * 排行只是推荐用途，更新失败只记录日志，不影响事件的确认。
+ */
+@Slf4j
+@Component
+public class HotArticleRanking {
+
+    private static final long HOUR_MS = 3_600_000L;
+    // 向前查找旧纪元 ZSET 的个数，Key 的过期时间按此保留；再早的分数已衰减到 2^(-回看纪元数 × 纪元长度 / 半衰期) 以下
+    static final int LOOKBACK_EPOCHS = 3;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ArticleMapper articleMapper;
+    @Autowired
+    private ArticleLocalCache articleLocalCache;
+    @Autowired
+    private ForumMetrics metrics;
+    @Autowired
+    @Qualifier("hotRankIncrScript")
+    private RedisScript<Long> hotRankIncrScript;
+
+    @Value("${kc.hot.enabled:false}")
+    private boolean enabled;
+    @Value("${kc.hot.half-life-hours:24}")
+    private double halfLifeHours;
+    // 纪元长度，越长缩放越少，但纪元末尾的分数越大（2^(纪元长度/半衰期)），保持在几十倍以内即可
+    @Value("${kc.hot.epoch-hours:72}")
+    private long epochHours;
+    @Value("${kc.hot.max-size:1000}")
+    private int maxSize;
+    @Value("${kc.hot.trim-margin:1000}")
+    private int trimMargin;
+    @Value("${kc.hot.weight.view:1}")
+    private double viewWeight;
+    @Value("${kc.hot.weight.like:5}")
+    private double likeWeight;
+    @Value("${kc.hot.weight.reply:10}")
+    private double replyWeight;
+    @Value("${kc.hot.weight.post:20}")
+    private double postWeight;
+
+    /**
+     * 热门排行的一页
+     * @param articleIds 按热度倒序的文章id
+     * @param total 排行中可展示的文章数（最多 max-size）
+     */
+    public record HotPage(List<Long> articleIds, long total) {}
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void onArticleCreated(Long boardId, Long articleId) {
+        if (!enabled || boardId == null || articleId == null) return;
+        apply(Map.of(boardId, Map.of(articleId, postWeight)), System.currentTimeMillis());
+    }
+
+    public void onReplyCreated(Long boardId, Long articleId) {
+        if (!enabled || boardId == null || articleId == null) return;
+        apply(Map.of(boardId, Map.of(articleId, replyWeight)), System.currentTimeMillis());
+    }
+
+    /**
+     * 一批已落库的文章点赞净增量（取消点赞为负）
+     */
+    public void onLikes(List<CounterDelta> articleDeltas) {
+        if (!enabled || articleDeltas.isEmpty()) return;
+        Map<Long, Double> weights = new HashMap<>();
+        articleDeltas.forEach(delta -> weights.merge(delta.getId(), delta.getDelta() * likeWeight, Double::sum));
+        record(weights);
+    }
+
+    /**
+     * 一批已落库的浏览量，文章id -> 浏览次数
+     */
+    public void onViews(Map<Long, Long> counts) {
+        if (!enabled || counts.isEmpty()) return;
+        Map<Long, Double> weights = new HashMap<>();
+        counts.forEach((articleId, count) -> weights.put(articleId, count * viewWeight));
+        record(weights);
+    }
+
+    /**
+     * 删帖时从当前与之前各纪元的排行中移除
+     */
+    public void remove(Long boardId, Long articleId) {
+        if (!enabled) return;
+        List<String> keys = epochKeys(boardId, epochOf(System.currentTimeMillis()));
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                keys.forEach(key -> operations.opsForZSet().remove(key, articleId.toString()));
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 一次 pipeline 读取当前纪元的排行，当前纪元还没有更新时读取最近一个非空的旧纪元（顺序相同，只差缩放系数）。
+     * 只展示前 max-size 名，余量部分不对外
+     * @param start ZREVRANGE 起点
+     * @param end ZREVRANGE 终点（包含）
+     */
+    public HotPage page(Long boardId, long start, long end) {
+        List<String> keys = epochKeys(boardId, epochOf(System.currentTimeMillis()));
+        long last = Math.min(end, maxSize - 1L);
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (String key : keys) {
+                    operations.opsForZSet().zCard(key);
+                    if (start <= last) {
+                        operations.opsForZSet().reverseRange(key, start, last);
+                    }
+                }
+                return null;
+            }
+        });
+        int step = start <= last ? 2 : 1;
+        for (int offset = 0; offset < results.size(); offset += step) {
+            if (!(results.get(offset) instanceof Long count) || count == 0) continue;
+            List<Long> ids = new ArrayList<>();
+            if (step == 2 && results.get(offset + 1) instanceof Collection<?> members) {
+                for (Object member : members) {
+                    ids.add(Long.parseLong(member.toString()));
+                }
+            }
+            return new HotPage(ids, Math.min(count, maxSize));
+        }
+        return new HotPage(List.of(), 0L);
+    }
+
+    /**
+     * 按文章所在板块分组后更新；板块id优先从L1取，其余一次 IN 查询
+     */
+    private void record(Map<Long, Double> weightByArticle) {
+        try {
+            Map<Long, Long> boardByArticle = resolveBoards(weightByArticle.keySet());
+            Map<Long, Map<Long, Double>> byBoard = new HashMap<>();
+            weightByArticle.forEach((articleId, weight) -> {
+                Long boardId = boardByArticle.get(articleId);
+                if (boardId != null && weight != 0) {
+                    byBoard.computeIfAbsent(boardId, k -> new HashMap<>()).put(articleId, weight);
+                }
+            });
+            apply(byBoard, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("热门排行更新失败, 文章数:{}", weightByArticle.size(), e);
+        }
+    }
+
+    private Map<Long, Long> resolveBoards(Collection<Long> articleIds) {
+        Map<Long, Long> boardByArticle = new HashMap<>();
+        articleLocalCache.getArticles(articleIds).forEach((id, article) -> {
+            if (article.getBoardId() != null) boardByArticle.put(id, article.getBoardId());
+        });
+        List<Long> missed = articleIds.stream().filter(id -> !boardByArticle.containsKey(id)).toList();
+        if (!missed.isEmpty()) {
+            articleMapper.selectList(new LambdaQueryWrapper<Article>()
+                    .select(Article::getId, Article::getBoardId)
+                    .in(Article::getId, missed)
+                    .eq(Article::getDeleteState, 0))
+                    .forEach(article -> boardByArticle.put(article.getId(), article.getBoardId()));
+        }
+        return boardByArticle;
+    }
+
+    /**
+     * 每个板块一次脚本调用，所有板块在同一个 pipeline 中
+     * @param byBoard 板块id -> (文章id -> 加权增量)
+     */
+    void apply(Map<Long, Map<Long, Double>> byBoard, long nowMillis) {
+        if (byBoard.isEmpty()) return;
+        long epochMs = epochHours * HOUR_MS;
+        double halfLifeMs = halfLifeHours * HOUR_MS;
+        long epoch = nowMillis / epochMs;
+        double growth = Math.pow(2, (nowMillis - epoch * epochMs) / halfLifeMs);
+        byte[] rebase = bytes(String.valueOf(Math.pow(2, -epochMs / halfLifeMs)));
+        byte[] max = bytes(String.valueOf(maxSize + trimMargin));
+        // 旧纪元的 ZSET 要保留到回看范围结束，期间板块有更新时才能被缩放进新 Key
+        byte[] ttl = bytes(String.valueOf((LOOKBACK_EPOCHS + 1) * epochMs / 1000));
+        byte[] script = bytes(hotRankIncrScript.getScriptAsString());
+        try {
+            metrics.recordPipeline(ForumMetrics.PIPELINE_HOT_RANKING, byBoard.size(),
+                    () -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byBoard.forEach((boardId, weights) -> {
+                    List<String> keys = epochKeys(boardId, epoch);
+                    List<byte[]> keysAndArgs = new ArrayList<>(keys.size() + 3 + weights.size() * 2);
+                    keys.forEach(key -> keysAndArgs.add(bytes(key)));
+                    keysAndArgs.add(rebase);
+                    keysAndArgs.add(max);
+                    keysAndArgs.add(ttl);
+                    weights.forEach((articleId, weight) -> {
+                        keysAndArgs.add(bytes(articleId.toString()));
+                        keysAndArgs.add(bytes(String.valueOf(weight * growth)));
+                    });
+                    connection.scriptingCommands().eval(script, ReturnType.INTEGER, keys.size(), keysAndArgs.toArray(byte[][]::new));
+                });
+                return null;
+            }));
+        } catch (Exception e) {
+            log.error("热门排行更新失败, 板块数:{}", byBoard.size(), e);
+        }
+    }
+
+    /**
+     * 当前纪元及之前 {@link #LOOKBACK_EPOCHS} 个纪元的 Key，由近到远
+     */
+    private static List<String> epochKeys(Long boardId, long epoch) {
+        List<String> keys = new ArrayList<>(LOOKBACK_EPOCHS + 1);
+        for (int i = 0; i <= LOOKBACK_EPOCHS; i++) {
+            keys.add(RedisKeyUtil.getBoardArticlesHotZSetKey(boardId, epoch - i));
+        }
+        return keys;
+    }
+
+    private long epochOf(long nowMillis) {
+        return nowMillis / (epochHours * HOUR_MS);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
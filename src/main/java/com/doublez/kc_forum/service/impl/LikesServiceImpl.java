@@ -2,8 +2,11 @@ package com.doublez.kc_forum.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.doublez.kc_forum.common.ResultCode;
+import com.doublez.kc_forum.common.cache.ArticleLocalCache;
 import com.doublez.kc_forum.common.exception.BusinessException;
 import com.doublez.kc_forum.common.exception.SystemException;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.mq.ForumEventPublisher;
 import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
 import com.doublez.kc_forum.common.config.RabbitMQConfig;
 import com.doublez.kc_forum.common.event.ArticleLikeEvent;
@@ -11,7 +14,6 @@ import com.doublez.kc_forum.mapper.LikesMapper;
 import com.doublez.kc_forum.model.Likes;
 import com.doublez.kc_forum.service.ILikesService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -30,7 +32,9 @@ public class LikesServiceImpl implements ILikesService {
     private final RedisScript<List> likeScript; // 假设List中是Long类型
     private final RedisScript<List> unlikeScript; // 假设List中是Long类型
     private final StringRedisTemplate stringRedisTemplate;
-    private final RabbitTemplate rabbitTemplate;
+    private final ForumEventPublisher eventPublisher;
+    private final ArticleLocalCache articleLocalCache;
+    private final CounterDirtyTracker counterDirtyTracker;
 
     // 文章/回复 Hash中likeCount字段的名称 (统一管理)
     private static final String LIKE_COUNT_FIELD = "likeCount";
@@ -46,12 +50,16 @@ public class LikesServiceImpl implements ILikesService {
                             @Qualifier("likeScript") RedisScript<List> likeScript, // 确保Bean名称正确
                             @Qualifier("unlikeScript") RedisScript<List> unlikeScript, // 确保Bean名称正确
                             LikesMapper likesMapper,
-                            RabbitTemplate rabbitTemplate) {
+                            ForumEventPublisher eventPublisher,
+                            ArticleLocalCache articleLocalCache,
+                            CounterDirtyTracker counterDirtyTracker) {
         this.stringRedisTemplate = stringRedisTemplate;
         this.likeScript = likeScript;
         this.unlikeScript = unlikeScript;
         this.likesMapper = likesMapper;
-        this.rabbitTemplate = rabbitTemplate;
+        this.eventPublisher = eventPublisher;
+        this.articleLocalCache = articleLocalCache;
+        this.counterDirtyTracker = counterDirtyTracker;
     }
 
     /**
@@ -164,10 +172,16 @@ public class LikesServiceImpl implements ILikesService {
         log.info("用户 {} 成功对目标进行 {} 操作 {}:{}",
                 userId, operation, targetType, targetId);
 
-        // 发送消息到RabbitMQ
+        // 文章点赞数已变化，失效L1缓存
+        if (TARGET_TYPE_ARTICLE.equalsIgnoreCase(targetType)) {
+            articleLocalCache.invalidateArticleCounters(targetId);
+        }
+        counterDirtyTracker.mark(targetType, targetId);
+
+        // 发送点赞事件（开启本地发件箱时先落盘，由中继投递到RabbitMQ）
         ArticleLikeEvent event = new ArticleLikeEvent(userId, targetId, targetType, System.currentTimeMillis(), isLikeOperation);
-        rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_NAME, RabbitMQConfig.LIKE_ROUTING_KEY, event);
-        log.info("已发送点赞事件到RabbitMQ: {}", event);
+        eventPublisher.publish(ForumMetrics.QUEUE_LIKE, RabbitMQConfig.LIKE_ROUTING_KEY, event);
+        log.info("已发送点赞事件: {}", event);
     }
 
     /**
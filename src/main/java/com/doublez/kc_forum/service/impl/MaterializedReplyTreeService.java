@@ -0,0 +1,150 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.common.utiles.ReplyTreeCodec;
+import com.doublez.kc_forum.mapper.ArticleReplyMapper;
+import com.doublez.kc_forum.model.ArticleReply;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 每篇文章一份的回复树物化视图（见 {@link ReplyTreeCodec}）。
+ * <p>
+ * 读取时一次 GET 就拿到整篇文章的回复结构，调用方只需再批量获取需要展示的回复内容Hash，
+ * 不必逐层遍历子回复 ZSET。
+ * <p>
+ * 新增/删除回复时只在物化视图已存在时追加一条16字节记录（reply_tree_append.lua），
+ * 不存在时由下一次读取从数据库全量构建。墓碑过多时删除整个Key，下一次读取重新构建以压缩体积。
+ */
+@Slf4j
+@Service
+public class MaterializedReplyTreeService {
+
+    // 占位值的存活时间，只需覆盖一次全量构建；构建进程崩溃时占位很快过期，不会让读取长时间退回逐层遍历
+    private static final long REBUILD_LEASE_MS = 30_000L;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ArticleReplyMapper articleReplyMapper;
+    @Autowired
+    @Qualifier("replyTreeAppendScript")
+    private RedisScript<Long> replyTreeAppendScript;
+
+    @Value("${kc.reply.tree.materialized:false}")
+    private boolean enabled;
+    @Value("${kc.reply.tree.materialized-ttl-ms:3600000}")
+    private long ttlMs;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void onReplyCreated(Long articleId, Long replyId, Long parentReplyId) {
+        long parent = parentReplyId != null && parentReplyId > 0 ? parentReplyId : ReplyTreeCodec.TOP_LEVEL_PARENT;
+        append(articleId, ReplyTreeCodec.entry(replyId, parent));
+    }
+
+    public void onReplyDeleted(Long articleId, Long replyId) {
+        append(articleId, ReplyTreeCodec.tombstone(replyId));
+    }
+
+    /**
+     * 读取文章的回复树，缺失时从数据库构建
+     * @return 回复树；物化视图正在被其他请求构建或者Redis异常时返回null，调用方应退回逐层遍历
+     */
+    public ReplyTreeCodec.Decoded load(Long articleId) {
+        byte[] key = bytes(RedisKeyUtil.getArticleReplyTreeKey(articleId));
+        try {
+            byte[] blob = stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(key));
+            if (blob == null) {
+                return rebuild(articleId, key);
+            }
+            ReplyTreeCodec.Decoded tree = ReplyTreeCodec.decode(blob);
+            if (!tree.ready()) {
+                log.debug("回复树物化视图构建中, articleId:{}", articleId);
+                return null;
+            }
+            if (tree.tombstones() * 2 > tree.entries()) {
+                // 删除的记录已超过一半，丢弃后由下一次读取重建
+                log.info("回复树物化视图墓碑过多，删除后重建, articleId:{}, 记录数:{}, 墓碑数:{}",
+                        articleId, tree.entries(), tree.tombstones());
+                stringRedisTemplate.delete(RedisKeyUtil.getArticleReplyTreeKey(articleId));
+            }
+            return tree;
+        } catch (RuntimeException e) {
+            log.warn("读取回复树物化视图失败, articleId:{}", articleId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 用空值 SET NX 占位后全量构建：占位期间并发的新增/删除会先追加到占位值上，
+     * 快照之后再追加 READY 标记。删除是终态（墓碑优先于新增记录），因此快照与并发追加的先后顺序不影响结果。
+     * 占位只持有一个短租约，快照写入后再把过期时间延长到 materialized-ttl-ms。
+     */
+    private ReplyTreeCodec.Decoded rebuild(Long articleId, byte[] key) {
+        Boolean acquired = stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(key, new byte[0], Expiration.milliseconds(REBUILD_LEASE_MS), RedisStringCommands.SetOption.ifAbsent()));
+        if (!Boolean.TRUE.equals(acquired)) {
+            return null;
+        }
+        try {
+            List<ArticleReply> replies = articleReplyMapper.selectList(new LambdaQueryWrapper<ArticleReply>()
+                    .select(ArticleReply::getId, ArticleReply::getReplyId)
+                    .eq(ArticleReply::getArticleId, articleId)
+                    .eq(ArticleReply::getDeleteState, 0));
+            Map<Long, Long> parentById = new LinkedHashMap<>();
+            for (ArticleReply reply : replies) {
+                Long parent = reply.getReplyId();
+                parentById.put(reply.getId(), parent != null && parent > 0 ? parent : ReplyTreeCodec.TOP_LEVEL_PARENT);
+            }
+            append(key, ReplyTreeCodec.encodeSnapshot(parentById));
+            // 租约已过期时 Key 不存在，追加与续期都不会生效，下一次读取重新构建
+            stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.keyCommands().pExpire(key, ttlMs));
+            log.info("回复树物化视图构建完成, articleId:{}, 回复数:{}", articleId, parentById.size());
+            byte[] blob = stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(key));
+            return blob == null ? null : ReplyTreeCodec.decode(blob);
+        } catch (RuntimeException e) {
+            log.error("回复树物化视图构建失败, articleId:{}", articleId, e);
+            stringRedisTemplate.delete(RedisKeyUtil.getArticleReplyTreeKey(articleId));
+            return null;
+        }
+    }
+
+    private void append(Long articleId, byte[] entry) {
+        if (!enabled) return;
+        try {
+            append(bytes(RedisKeyUtil.getArticleReplyTreeKey(articleId)), entry);
+        } catch (RuntimeException e) {
+            // 追加失败会让物化视图与数据库不一致，直接删除让下一次读取重建
+            log.warn("回复树物化视图追加失败，删除后重建, articleId:{}", articleId, e);
+            stringRedisTemplate.delete(RedisKeyUtil.getArticleReplyTreeKey(articleId));
+        }
+    }
+
+    private void append(byte[] key, byte[] value) {
+        byte[] script = bytes(replyTreeAppendScript.getScriptAsString());
+        stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.scriptingCommands().eval(script, ReturnType.INTEGER, 1, key, value));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,311 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.ResultCode;
+import com.doublez.kc_forum.common.config.AsyncConfig;
+import com.doublez.kc_forum.common.exception.BusinessException;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.response.MessageResponse;
+import com.doublez.kc_forum.common.utiles.TransactionUtil;
+import com.doublez.kc_forum.model.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 站内信的服务端推送（SSE），代替客户端轮询未读数与最近会话。
+ * <p>
+ * 每个节点在内存中登记自己持有的连接；新消息与已读在事务提交后发布到 Redis 频道 msg:push，
+ * 所有节点都会收到，只有持有该用户连接的节点写出。连接空闲时不占用线程（异步 Servlet），
+ * 写出在独立的推送线程上进行，每个连接有一个有界队列：客户端读得太慢导致队列写满时直接断开，
+ * 客户端重连后重新拉取一次完整状态。单次写出超过 send-timeout-ms 的连接由定时任务从其他线程关闭，
+ * 避免少数卡住的客户端占满推送线程。定期发送心跳，及时发现断开的连接并防止被代理超时断开。
+ */
+@Slf4j
+@Component
+public class MessagePushService implements MessageListener {
+
+    public static final String PUSH_CHANNEL = "msg:push";
+    static final String EVENT_MESSAGE = "message";
+    static final String EVENT_UNREAD = "unread";
+    private static final PushEvent HEARTBEAT = new PushEvent(null, null);
+
+    /**
+     * 频道中的消息：推送给哪个用户、SSE 事件名与已序列化的数据
+     */
+    record PushEnvelope(Long userId, String event, String data) {}
+
+    /**
+     * 待写出的事件，name 为空时是心跳
+     */
+    record PushEvent(String name, String data) {}
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ConversationIndexService conversationIndexService;
+    @Autowired
+    private ForumMetrics metrics;
+    @Autowired
+    @Qualifier(AsyncConfig.MESSAGE_PUSH_EXECUTOR)
+    private Executor pushExecutor;
+
+    @Value("${kc.message.push.enabled:false}")
+    private boolean enabled;
+    // 连接最长存活时间，到期后由客户端自动重连
+    @Value("${kc.message.push.timeout-ms:1800000}")
+    private long timeoutMs;
+    @Value("${kc.message.push.max-connections:10000}")
+    private int maxConnections;
+    @Value("${kc.message.push.max-per-user:5}")
+    private int maxPerUser;
+    @Value("${kc.message.push.queue-capacity:32}")
+    private int queueCapacity;
+    @Value("${kc.message.push.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    private final ConcurrentHashMap<Long, Deque<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        metrics.bindMessagePush(connections);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 建立推送连接，连接建立后先推送一次当前未读数。
+     * 单个用户超过 max-per-user 个连接时关闭最早的一个
+     */
+    public SseEmitter subscribe(Long userId, long unreadCount) {
+        if (!enabled) {
+            throw new BusinessException(ResultCode.FAILED_MESSAGE_PUSH_UNAVAILABLE);
+        }
+        // 先占用一个连接名额，并发建立连接时不会超过上限
+        int current;
+        do {
+            current = connections.get();
+            if (current >= maxConnections) {
+                log.warn("推送连接数已达上限:{}, 拒绝用户id:{}的连接", maxConnections, userId);
+                metrics.recordPushDropped("limit");
+                throw new BusinessException(ResultCode.FAILED_MESSAGE_PUSH_UNAVAILABLE);
+            }
+        } while (!connections.compareAndSet(current, current + 1));
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        emitter.onCompletion(() -> discard(subscriber));
+        emitter.onTimeout(() -> discard(subscriber));
+        emitter.onError(e -> discard(subscriber));
+
+        Deque<Subscriber> userSubscribers = subscribers.compute(userId, (key, value) -> {
+            Deque<Subscriber> deque = value != null ? value : new ConcurrentLinkedDeque<>();
+            deque.add(subscriber);
+            return deque;
+        });
+        while (userSubscribers.size() > maxPerUser) {
+            Subscriber oldest = userSubscribers.pollFirst();
+            if (oldest == null) break;
+            oldest.close();
+        }
+        subscriber.offer(new PushEvent(EVENT_UNREAD, toJson(Map.of("unreadCount", unreadCount))));
+        return emitter;
+    }
+
+    /**
+     * 新消息写入后调用，事务提交后推送给接收者
+     */
+    public void onMessageCreated(Message message) {
+        if (!enabled) return;
+        TransactionUtil.afterCommit(() -> {
+            MessageResponse response = new MessageResponse();
+            BeanUtils.copyProperties(message, response);
+            publish(message.getReceiveUserId(), EVENT_MESSAGE, response);
+            publishUnread(message.getReceiveUserId());
+        });
+    }
+
+    /**
+     * 用户读取会话后调用，同步该用户其他页面上的未读数
+     */
+    public void onConversationRead(Long userId) {
+        if (!enabled) return;
+        TransactionUtil.afterCommit(() -> publishUnread(userId));
+    }
+
+    /**
+     * 收到 msg:push 频道的消息，写给本节点上该用户的连接
+     */
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message message, byte[] pattern) {
+        PushEnvelope envelope;
+        try {
+            envelope = objectMapper.readValue(message.getBody(), PushEnvelope.class);
+        } catch (Exception e) {
+            log.error("无法解析推送消息: {}", new String(message.getBody()), e);
+            return;
+        }
+        Deque<Subscriber> userSubscribers = subscribers.get(envelope.userId());
+        if (userSubscribers == null) return;
+        PushEvent event = new PushEvent(envelope.event(), envelope.data());
+        userSubscribers.forEach(subscriber -> subscriber.offer(event));
+    }
+
+    @Scheduled(fixedDelayString = "${kc.message.push.heartbeat-ms:25000}")
+    public void heartbeat() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> subscriber.offer(HEARTBEAT)));
+    }
+
+    /**
+     * 关闭单次写出超过 send-timeout-ms 仍未返回的连接。写出线程阻塞在客户端的 TCP 窗口上，
+     * 这里从其他线程结束异步请求，由容器关闭连接使写出失败返回，同时不再给该连接安排新的写出
+     */
+    @Scheduled(fixedDelayString = "${kc.message.push.send-timeout-ms:10000}")
+    public void evictStuckSenders() {
+        long now = System.currentTimeMillis();
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> {
+            long startedAt = subscriber.sendStartedAt;
+            if (startedAt != 0 && now - startedAt > sendTimeoutMs && discard(subscriber)) {
+                log.info("推送写出超时，断开用户id:{}的连接", subscriber.userId);
+                metrics.recordPushDropped("send_timeout");
+                subscriber.emitter.completeWithError(new TimeoutException("推送写出超时"));
+            }
+        }));
+    }
+
+    int connections() {
+        return connections.get();
+    }
+
+    private void publishUnread(Long userId) {
+        // 未开启会话索引时不推送未读数（避免每条消息一次 COUNT），由客户端根据 message 事件自行累加
+        if (!conversationIndexService.isEnabled()) return;
+        long unreadCount;
+        try {
+            unreadCount = conversationIndexService.unreadCount(userId);
+        } catch (Exception e) {
+            log.error("读取未读数失败，跳过推送, userId:{}", userId, e);
+            return;
+        }
+        publish(userId, EVENT_UNREAD, Map.of("unreadCount", unreadCount));
+    }
+
+    private void publish(Long userId, String event, Object data) {
+        try {
+            stringRedisTemplate.convertAndSend(PUSH_CHANNEL, toJson(new PushEnvelope(userId, event, toJson(data))));
+        } catch (Exception e) {
+            // 推送失败不影响消息本身，客户端重连或打开会话时会重新拉取
+            log.error("发布推送消息失败, userId:{}, event:{}", userId, event, e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException("推送消息序列化失败", e);
+        }
+    }
+
+    /**
+     * 移除连接，返回 false 表示已经被移除过
+     */
+    private boolean discard(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscribers.computeIfPresent(subscriber.userId, (key, deque) -> {
+            deque.remove(subscriber);
+            return deque.isEmpty() ? null : deque;
+        });
+        subscriber.queue.clear();
+        connections.decrementAndGet();
+        return true;
+    }
+
+    private final class Subscriber {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<PushEvent> queue;
+        // 是否已有写出任务在执行或排队，保证同一连接只有一个线程在写
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // 当前这次写出的开始时间，没有在写时为 0
+        private volatile long sendStartedAt;
+
+        private Subscriber(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        void offer(PushEvent event) {
+            if (closed.get()) return;
+            if (!queue.offer(event)) {
+                log.info("推送队列已满，断开用户id:{}的慢连接", userId);
+                metrics.recordPushDropped("queue_full");
+                close();
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!draining.compareAndSet(false, true)) return;
+            try {
+                pushExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                metrics.recordPushDropped("rejected");
+                close();
+            }
+        }
+
+        private void drain() {
+            try {
+                PushEvent event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    sendStartedAt = System.currentTimeMillis();
+                    emitter.send(event.name() == null
+                            ? SseEmitter.event().comment("")
+                            : SseEmitter.event().name(event.name()).data(event.data()));
+                    sendStartedAt = 0;
+                }
+            } catch (Exception e) {
+                // 连接已断开，由容器回调 onError/onCompletion，这里只移除登记
+                log.debug("推送写出失败, userId:{}", userId, e);
+                discard(this);
+            } finally {
+                sendStartedAt = 0;
+                draining.set(false);
+            }
+            if (!closed.get() && !queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        void close() {
+            if (discard(this)) {
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.doublez.kc_forum.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.doublez.kc_forum.common.Result;
 import com.doublez.kc_forum.common.ResultCode;
 import com.doublez.kc_forum.common.exception.ApplicationException;
 import com.doublez.kc_forum.common.exception.BusinessException;
 import com.doublez.kc_forum.common.exception.SystemException;
+import com.doublez.kc_forum.common.pojo.response.MessageCursorResponse;
+import com.doublez.kc_forum.common.pojo.response.MessageResponse;
 import com.doublez.kc_forum.common.pojo.response.RecentConversationsResponse;
 import com.doublez.kc_forum.mapper.MessageMapper;
 import com.doublez.kc_forum.model.Message;
@@ -16,10 +17,14 @@ import com.doublez.kc_forum.service.IUserService;
 import io.micrometer.common.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.annotations.Select;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -31,6 +36,12 @@ public class MessageServiceImpl implements IMessageService {
     @Autowired
     private IUserService userServiceImpl;
 
+    @Autowired
+    private ConversationIndexService conversationIndexService;
+
+    @Autowired
+    private MessagePushService messagePushService;
+
     @Override
     @Transactional
     public void create(Message message) {
@@ -51,12 +62,16 @@ public class MessageServiceImpl implements IMessageService {
             log.warn(ResultCode.FAILED_USER_NOT_EXISTS.toString());
             throw new BusinessException(ResultCode.FAILED_USER_NOT_EXISTS);
         }
-        //3. 插入message
+        //3. 插入message，时间精确到秒，与数据库中保存的一致，会话索引中使用同一个时间
+        message.setCreateTime(LocalDateTime.now().withNano(0));
         int insert = messageMapper.insert(message);
         if(insert != 1){
             log.error(ResultCode.FAILED_MESSAGE_INSERT.toString());
             throw new SystemException(ResultCode.FAILED_MESSAGE_INSERT);
         }
+        //4. 事务提交后更新双方的会话索引，再推送给接收者
+        conversationIndexService.onMessageCreated(message);
+        messagePushService.onMessageCreated(message);
     }
 
     @Override
@@ -65,9 +80,11 @@ public class MessageServiceImpl implements IMessageService {
             log.warn(ResultCode.FAILED_PARAMS_VALIDATE.toString());
             throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
         }
-        return messageMapper.selectCount(new LambdaQueryWrapper<Message>()
-            .eq(Message::getReceiveUserId, userId)
-            .eq(Message::getState, 0));
+        if (conversationIndexService.isEnabled()) {
+            return conversationIndexService.unreadCount(userId);
+        }
+        Long count = messageMapper.countUnread(userId);
+        return count != null ? count : 0L;
     }
 
     @Override
@@ -94,32 +111,120 @@ public class MessageServiceImpl implements IMessageService {
         queryWrapper.orderByAsc(Message::getCreateTime);
 
         List<Message> messages = messageMapper.selectList(queryWrapper);
-        //2. 更新消息状态
-        // 只有当查询到消息时才执行更新操作
-        if (!messages.isEmpty()) {
-            LambdaUpdateWrapper<Message> updateWrapper = new LambdaUpdateWrapper<>();
-
-            // 设置要更新的字段及其值
-            // 创建一个 Message 对象，只设置需要更新的字段
-            Message updateMessage = new Message();
-            updateMessage.setState((byte)1); // 将 state 设置为 1 (已读)
-            // 只更新当前用户的未读信息
-            updateWrapper.eq(Message::getReceiveUserId, receiveUserId)
-                    .eq(Message::getPostUserId, PostUserId)
-                    .eq(Message::getState, 0);
-            // 执行更新操作
-            // update(entity, updateWrapper) 方法会根据 updateWrapper 的条件更新 entity 中非空的字段
-            messageMapper.update(updateMessage, updateWrapper);
-        }
+        //2. 已读游标前进到最后一条消息，只写一行，不再逐行更新 state
+        long lastRead = markRead(receiveUserId, PostUserId);
+        applyReadState(messages, receiveUserId, lastRead, readCursor(PostUserId, receiveUserId));
 
         return messages;
     }
 
+    /**
+     * 会话历史的游标，格式为 "{创建时间epoch秒}_{消息id}"
+     */
+    record ConversationCursor(long createEpochSecond, long messageId) {
+
+        private static final String SEPARATOR = "_";
+
+        static ConversationCursor parse(String cursor) {
+            if (StringUtils.isBlank(cursor)) return null;
+            String[] parts = cursor.split(SEPARATOR);
+            if (parts.length != 2) {
+                throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
+            }
+            try {
+                return new ConversationCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            } catch (NumberFormatException e) {
+                throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
+            }
+        }
+
+        static ConversationCursor of(Message message) {
+            return new ConversationCursor(message.getCreateTime().toEpochSecond(ZoneOffset.UTC), message.getId());
+        }
+
+        String encode() {
+            return createEpochSecond + SEPARATOR + messageId;
+        }
+
+        LocalDateTime createTime() {
+            return LocalDateTime.ofEpochSecond(createEpochSecond, 0, ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * 游标分页查询两人的会话历史，按 (创建时间, id) 倒序，任意深度的分页代价都与第一页相同。
+     * 打开会话（第一页）时把已读游标前进到对方发来的最后一条消息。
+     * @param cursor 上一页返回的 nextCursor，第一页传 null
+     */
+    @Override
+    @Transactional
+    public MessageCursorResponse getConversationByCursor(Long userId, Long contactId, String cursor, int pageSize) {
+        if (userId == null || contactId == null || userId <= 0 || contactId <= 0) {
+            log.warn(ResultCode.FAILED_PARAMS_VALIDATE.toString());
+            throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
+        }
+        ConversationCursor before = ConversationCursor.parse(cursor);
+        List<Message> page = messageMapper.selectConversationBefore(userId, contactId,
+                before == null ? null : before.createTime(),
+                before == null ? null : before.messageId(),
+                pageSize + 1);
+        // 多取了一条用于判断是否还有下一页
+        String nextCursor = null;
+        if (page.size() > pageSize) {
+            page = page.subList(0, pageSize);
+            nextCursor = ConversationCursor.of(page.get(pageSize - 1)).encode();
+        }
+        long lastRead = before == null ? markRead(userId, contactId) : readCursor(userId, contactId);
+        applyReadState(page, userId, lastRead, readCursor(contactId, userId));
+
+        List<MessageResponse> records = new ArrayList<>(page.size());
+        for (Message message : page) {
+            MessageResponse messageResponse = new MessageResponse();
+            BeanUtils.copyProperties(message, messageResponse);
+            records.add(messageResponse);
+        }
+        return new MessageCursorResponse(records, nextCursor);
+    }
+
+    /**
+     * 把用户在该会话的已读游标前进到对方发来的最后一条消息，没有新消息时不写库
+     * @return 前进后的游标
+     */
+    private long markRead(Long userId, Long contactId) {
+        long lastRead = readCursor(userId, contactId);
+        Long lastReceived = messageMapper.selectLastReceivedId(userId, contactId);
+        if (lastReceived == null || lastReceived <= lastRead) {
+            return lastRead;
+        }
+        messageMapper.upsertReadCursor(userId, contactId, lastReceived);
+        conversationIndexService.onConversationRead(userId, contactId, lastReceived);
+        messagePushService.onConversationRead(userId);
+        return lastReceived;
+    }
+
+    private long readCursor(Long userId, Long contactId) {
+        Long lastRead = messageMapper.selectReadCursor(userId, contactId);
+        return lastRead != null ? lastRead : 0L;
+    }
+
+    /**
+     * 由双方的已读游标得出每条消息的 state（0未读 1已读）：收到的消息看自己的游标，发出的消息看对方的游标
+     */
+    private static void applyReadState(List<Message> messages, Long userId, long userLastRead, long contactLastRead) {
+        for (Message message : messages) {
+            long lastRead = userId.equals(message.getReceiveUserId()) ? userLastRead : contactLastRead;
+            message.setState((byte) (message.getId() != null && message.getId() <= lastRead ? 1 : 0));
+        }
+    }
+
     public List<RecentConversationsResponse> getRecentConversations(Long userId) {
         if(userId == null || userId < 1){
             log.warn(ResultCode.FAILED_PARAMS_VALIDATE.toString());
             throw new BusinessException(ResultCode.FAILED_PARAMS_VALIDATE);
         }
+        if (conversationIndexService.isEnabled()) {
+            return conversationIndexService.recentConversations(userId);
+        }
         // 调用 XML 中定义的查询方法
         return messageMapper.getRecentConversations(userId);
     }
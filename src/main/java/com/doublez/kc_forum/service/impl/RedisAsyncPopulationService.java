@@ -9,55 +9,39 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.core.*;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
 import java.time.ZoneOffset;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 import static com.doublez.kc_forum.common.config.AsyncConfig.REDIS_PERSISTENCE_EXECUTOR;
-import static com.doublez.kc_forum.service.impl.ArticleServiceImpl.*;
 @Slf4j
 @Service
 public class RedisAsyncPopulationService {
 
-    //回复贴
-    private static final String REPLY_FIELD_ID = "id";
-    private static final String REPLY_FIELD_ARTICLE_ID = "articleId";
-    private static final String REPLY_FIELD_POST_USER_ID = "postUserId";
-    private static final String REPLY_FIELD_REPLY_ID = "replyId";
-    private static final String REPLY_FIELD_REPLY_USER_ID = "replyUserId";
-    private static final String REPLY_FIELD_CONTENT = "content";
-    private static final String REPLY_FIELD_CREATE_TIME = "createTime";
-    private static final String REPLY_FIELD_LIKE_COUNT = "likeCount";
-    private static final String REPLY_FIELD_CHILDREN_COUNT = "childrenCount";//该回复下直接子回复的数量
-
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
     @Autowired
     private ObjectMapper objectMapper;
 
-    @Autowired
-    private RedisTemplate<String,Object> redisTemplate;
     @Autowired
     private ArticleReply articleReply;
+    @Autowired
+    private CacheBackfillBatcher cacheBackfillBatcher;
+    @Autowired
+    private CacheHashCodec cacheHashCodec;
+    @Autowired
+    private CounterWriteBehind counterWriteBehind;
 
-    @Async(REDIS_PERSISTENCE_EXECUTOR)
-    public void boardZsetFromDBToRedis(String boardArticlesZSetKey, List<Article> articlesFromDb) {
-        stringRedisTemplate.opsForZSet().add(boardArticlesZSetKey,
-                articlesFromDb.stream().map(
-                                article ->
-                                        new DefaultTypedTuple<>(article.getId().toString(),(double) article.getCreateTime().toEpochSecond(ZoneOffset.UTC)))
-                        .collect(Collectors.toSet()));
-    }
+    private static final Duration CACHE_TTL = Duration.ofHours(1);
 
     @Async(REDIS_PERSISTENCE_EXECUTOR)
     public void articleZsetFromDBToRedis(String topRepliesKey, List<ArticleReply> articleRepliesFromDb) {
@@ -78,105 +62,70 @@ public class RedisAsyncPopulationService {
     }
 
     /**
-     * 将文章对象的主要信息和计数缓存到 Redis Hash。
+     * 将文章对象的主要信息和计数缓存到 Redis Hash，交给 {@link CacheBackfillBatcher} 合并写入。
+     * 尚未回写的回复数先写回数据库，回填时使用 Redis 中的值
      * @param articles 文章对象
      */
-    @Async(REDIS_PERSISTENCE_EXECUTOR)
     public void cacheArticleList(List<Article> articles) {
         if (articles == null) return;
+        Map<Long, Long> pendingReplyCounts = counterWriteBehind.flushArticleReplyCounts(
+                articles.stream().filter(Objects::nonNull).map(Article::getId).filter(Objects::nonNull).toList());
 
-        redisTemplate.executePipelined(new SessionCallback<Object>() {
-            @Override
-            public Object execute(RedisOperations redisOperations) throws DataAccessException {
-                for (Article article : articles) {
-                    if(article == null || article.getId() == null){
-                        log.warn("文章数据为null");
-                        continue;
-                    }
-                    String articleKey = RedisKeyUtil.getArticleKey(article.getId());
-                    Map<String, Object> articleMap = new HashMap<>();
-                    articleMap.put(FIELD_ID, article.getId().toString());
-                    articleMap.put(FIELD_BOARD_ID, article.getBoardId().toString());
-                    articleMap.put(FIELD_USER_ID, article.getUserId().toString());
-                    articleMap.put(FIELD_TITLE, article.getTitle());
-                    articleMap.put(FIELD_IS_TOP, article.getIsTop() != null ? article.getIsTop().toString() : "0");
-                    // 使用ISO-8601格式的日期时间字符串，RedisTemplate中的Jackson应该能正确处理JavaTimeModule
-                    articleMap.put(FIELD_CREATE_TIME, article.getCreateTime()); // Jackson会序列化
-                    articleMap.put(FIELD_UPDATE_TIME, article.getUpdateTime()); // Jackson会序列化
-                    articleMap.put(FIELD_REPLY_COUNT, article.getReplyCount() != null ? article.getReplyCount() : 0);
-                    articleMap.put(FIELD_LIKE_COUNT, article.getLikeCount() != null ? article.getLikeCount(): 0);
-                    articleMap.put(FIELD_VISIT_COUNT, article.getVisitCount() != null ? article.getVisitCount() : 0);
-
-                    redisTemplate.opsForHash().putAll(articleKey, articleMap); // 存入Hash
-
-                    // 单独缓存文章内容
-                    if (StringUtils.hasText(article.getContent())) {
-                        String contentKey = RedisKeyUtil.getArticleContentKey(article.getId());
-                        stringRedisTemplate.opsForValue().set(contentKey, article.getContent(),1, TimeUnit.HOURS);
-                    }
-                    log.info("文章元数据已成功缓存，id:{}",article.getId());
-                }
-                return null;
+        for (Article article : articles) {
+            if(article == null || article.getId() == null){
+                log.warn("文章数据为null");
+                continue;
             }
-        });
+            Long pendingReplyCount = pendingReplyCounts.get(article.getId());
+            if (pendingReplyCount != null) {
+                article.setReplyCount(pendingReplyCount.intValue());
+            }
+            String articleKey = RedisKeyUtil.getArticleKey(article.getId());
+            cacheBackfillBatcher.enqueueHash(articleKey, cacheHashCodec.encodeArticle(article)); // 存入Hash
+
+            // 单独缓存文章内容
+            if (StringUtils.hasText(article.getContent())) {
+                String contentKey = RedisKeyUtil.getArticleContentKey(article.getId());
+                cacheBackfillBatcher.enqueueValue(contentKey, article.getContent(), CACHE_TTL);
+            }
+            log.debug("文章元数据加入回填队列，id:{}",article.getId());
+        }
     }
 
     /**
-     * 将文章回复贴的信息和计数缓存到 Redis Hash。
+     * 将文章回复贴的信息和计数缓存到 Redis Hash，交给 {@link CacheBackfillBatcher} 合并写入。
+     * 尚未回写的子回复数先写回数据库，回填时使用 Redis 中的值
      * @param replies 文章对象
      */
-    @Async(REDIS_PERSISTENCE_EXECUTOR)
     public void cacheArticleReplyList(List<ArticleReplyMetaCacheDTO> replies) {
         if (replies == null) return;
+        Map<Long, Long> pendingChildrenCounts = counterWriteBehind.flushReplyChildrenCounts(
+                replies.stream().filter(Objects::nonNull).map(ArticleReplyMetaCacheDTO::getId).filter(Objects::nonNull).toList());
 
-        redisTemplate.executePipelined(new SessionCallback<Object>() {
-            @Override
-            public Object execute(RedisOperations redisOperations) throws DataAccessException {
-                for (ArticleReplyMetaCacheDTO reply : replies) {
-                    if(reply == null || reply.getId() == null){
-                        log.warn("回复贴数据为null");
-                        continue;
-                    }
-                    String articleKey = RedisKeyUtil.getArticleReplyKey(reply.getId());
-                    Map<String, Object> articleReplyMap = new HashMap<>();
-                    articleReplyMap.put(REPLY_FIELD_ID, reply.getId().toString());
-                    articleReplyMap.put(REPLY_FIELD_ARTICLE_ID, reply.getArticleId().toString());
-                    articleReplyMap.put(REPLY_FIELD_POST_USER_ID, reply.getPostUserId().toString());
-                    articleReplyMap.put(REPLY_FIELD_REPLY_ID, reply.getReplyId() != null ? reply.getReplyId().toString() : "0");
-                    articleReplyMap.put(REPLY_FIELD_REPLY_USER_ID, reply.getReplyUserId().toString());
-                    articleReplyMap.put(REPLY_FIELD_CONTENT, reply.getContent());
-                    articleReplyMap.put(REPLY_FIELD_LIKE_COUNT, reply.getLikeCount() != null ? reply.getLikeCount() : 0);
-                    // 使用ISO-8601格式的日期时间字符串，RedisTemplate中的Jackson应该能正确处理JavaTimeModule
-                    articleReplyMap.put(REPLY_FIELD_CREATE_TIME, reply.getCreateTime()); // Jackson会序列化
-                    articleReplyMap.put(REPLY_FIELD_CHILDREN_COUNT,reply.getChildrenCount() != null ? reply.getChildrenCount() : 0);
-                    redisTemplate.opsForHash().putAll(articleKey, articleReplyMap); // 存入Hash
-
-                    log.info("回复数据已成功缓存，id:{}",reply.getId());
-                }
-                return null;
+        for (ArticleReplyMetaCacheDTO reply : replies) {
+            if(reply == null || reply.getId() == null){
+                log.warn("回复贴数据为null");
+                continue;
+            }
+            Long pendingChildrenCount = pendingChildrenCounts.get(reply.getId());
+            if (pendingChildrenCount != null) {
+                reply.setChildrenCount(pendingChildrenCount.intValue());
             }
-        });
+            String articleKey = RedisKeyUtil.getArticleReplyKey(reply.getId());
+            cacheBackfillBatcher.enqueueHash(articleKey, cacheHashCodec.encodeReply(reply)); // 存入Hash
+
+            log.debug("回复数据加入回填队列，id:{}",reply.getId());
+        }
     }
 
     /**
-     * 缓存用户
+     * 缓存用户，交给 {@link CacheBackfillBatcher} 合并写入
      * @param uar 用户实体
      */
-    @Async(REDIS_PERSISTENCE_EXECUTOR)
     public void cacheUser(UserArticleResponse uar ){
         try {
-            stringRedisTemplate.opsForValue().set(RedisKeyUtil.getUserResponseKey(uar.getId()), objectMapper.writeValueAsString(uar), 1, TimeUnit.HOURS); // 设置TTL
+            cacheBackfillBatcher.enqueueValue(RedisKeyUtil.getUserResponseKey(uar.getId()), objectMapper.writeValueAsString(uar), CACHE_TTL); // 设置TTL
         } catch (JsonProcessingException e) { log.error("序列化用户 {} 失败", uar.getId(), e); }
-        log.info("从数据库缓存了用户 {}", uar.getId());
-    }
-
-    /**
-     * 增加redis中的文章访问数量
-     * @param articleId 文章id
-     */
-    @Async(REDIS_PERSISTENCE_EXECUTOR)
-    public void incrVisit(Long articleId) {
-        String articleKey = RedisKeyUtil.getArticleKey(articleId);
-        stringRedisTemplate.opsForHash().increment(articleKey, FIELD_VISIT_COUNT, 1);
+        log.debug("用户 {} 加入回填队列", uar.getId());
     }
 }
@@ -1,62 +1,131 @@
 package com.doublez.kc_forum.service.impl;
 
-import com.doublez.kc_forum.common.utiles.JwtUtil;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.UUID;
 
+/**
+ * 刷新令牌。令牌格式为 {userId}.{会话id}.{secret}，每个用户一个令牌家族 Hash（refreshtoken:family:{userId}），
+ * 每次登录是其中一个会话字段，值为当前有效的 secret、过期时间与邮箱。
+ * <p>
+ * 轮换由 refresh_token_rotate.lua 一次完成校验、作废与签发，并发刷新只有一个能成功；
+ * 提交已轮换过的旧 secret 视为令牌被重复使用，该会话直接作废。退出所有设备只需删除整个 Hash。
+ * <p>
+ * 旧格式的令牌（refreshtoken:{uuid}）在过期前仍可刷新一次，之后换成新格式。
+ */
+@Slf4j
 @Service
 public class RefreshTokenService {
 
+    private static final String REFRESH_TOKEN_PREFIX = "refreshtoken:";
+    private static final String SEPARATOR = ".";
+    private static final String VALUE_SEPARATOR = "|";
+
     @Value("${jwt.refresh-token.expiration-ms}")
     private Long refreshTokenDurationMs;
 
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    @Qualifier("refreshTokenIssueScript")
+    private RedisScript<Long> refreshTokenIssueScript;
+    @Autowired
+    @Qualifier("refreshTokenRotateScript")
+    private RedisScript<List> refreshTokenRotateScript;
 
-    private static final String REFRESH_TOKEN_PREFIX = "refreshtoken:";
+    /**
+     * 一次成功的轮换
+     * @param userId 令牌所属用户
+     * @param email 登录时的邮箱，用于签发新的 Access Token
+     * @param refreshToken 新的刷新令牌
+     */
+    public record Rotation(Long userId, String email, String refreshToken) {}
 
     /**
-     * 为指定用户创建并存储一个新的 Refresh Token 到 Redis。
-     * 这里我们使用 JWT 作为 Refresh Token，但只验证其在 Redis 中的存在性。
-     *
-     * @param refreshTokenString 关联的用户UUID
-     * @return 生成的 Refresh Token 字符串
+     * 登录时为用户新增一个会话，返回该会话的刷新令牌
      */
-    public String createRefreshToken(String refreshTokenString) {
-        Map<String, Object> claims = new HashMap<>();
-        String redisKey = REFRESH_TOKEN_PREFIX + refreshTokenString;
-        stringRedisTemplate.opsForValue().set(redisKey, "", refreshTokenDurationMs, TimeUnit.MILLISECONDS);
-        return refreshTokenString;
+    public String issue(Long userId, String email) {
+        String sessionId = newSecret();
+        String secret = newSecret();
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.execute(refreshTokenIssueScript, List.of(RedisKeyUtil.getRefreshTokenFamilyKey(userId)),
+                sessionId, value(secret, now + refreshTokenDurationMs, email),
+                String.valueOf(now), String.valueOf(refreshTokenDurationMs));
+        return userId + SEPARATOR + sessionId + SEPARATOR + secret;
     }
 
     /**
-     * 验证 Refresh Token 是否在 Redis 中存在且有效。
+     * 校验刷新令牌并轮换为新令牌，一次 Redis 往返。
      *
-     * @param token 要验证的 Refresh Token 字符串
-     * @return 如果有效，返回包含用户名的 Optional；否则返回空 Optional。
+     * @param token 客户端提交的刷新令牌（新格式）
+     * @return 令牌无效、已过期或被重复使用时返回空 Optional
      */
-    public Optional<String> validateRefreshToken(String token) {
-        String redisKey = REFRESH_TOKEN_PREFIX + token;
-        String userCookie = stringRedisTemplate.opsForValue().get(redisKey);
-        return Optional.ofNullable(userCookie);
+    public Optional<Rotation> rotate(String token) {
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 3 || parts[1].isEmpty() || parts[2].isEmpty()) {
+            return Optional.empty();
+        }
+        Long userId;
+        try {
+            userId = Long.valueOf(parts[0]);
+        } catch (NumberFormatException e) {
+            log.warn("刷新令牌格式错误: {}", token);
+            return Optional.empty();
+        }
+        String secret = newSecret();
+        long now = System.currentTimeMillis();
+        List<?> result = stringRedisTemplate.execute(refreshTokenRotateScript, List.of(RedisKeyUtil.getRefreshTokenFamilyKey(userId)),
+                parts[1], parts[2], secret, String.valueOf(now), String.valueOf(now + refreshTokenDurationMs),
+                String.valueOf(refreshTokenDurationMs));
+        long status = result != null && !result.isEmpty() ? ((Number) result.get(0)).longValue() : 0;
+        if (status == 1) {
+            return Optional.of(new Rotation(userId, (String) result.get(1), userId + SEPARATOR + parts[1] + SEPARATOR + secret));
+        }
+        if (status == -1) {
+            log.warn("检测到刷新令牌被重复使用，已作废该会话. userId: {}, 会话: {}", userId, parts[1]);
+        }
+        return Optional.empty();
     }
+
     /**
-     * 从 Redis 中删除指定的 Refresh Token。
-     * 用于登出或 Refresh Token 旋转。
+     * 作废用户的所有刷新令牌（退出所有设备）
+     */
+    public void revokeAll(Long userId) {
+        stringRedisTemplate.delete(RedisKeyUtil.getRefreshTokenFamilyKey(userId));
+        log.info("已作废用户的所有刷新令牌, userId: {}", userId);
+    }
+
+    /**
+     * 旧格式的令牌不包含用户信息
+     */
+    public static boolean isLegacy(String token) {
+        return !token.contains(SEPARATOR);
+    }
+
+    /**
+     * 消费一个旧格式的令牌：DEL 的返回值即校验结果，并发请求只有一个能成功。
      *
-     * @param token 要删除的 Refresh Token 字符串
+     * @return 令牌存在且已被删除时返回 true
      */
-    public void deleteRefreshToken(String token) {
-        String redisKey = REFRESH_TOKEN_PREFIX + token;
-        stringRedisTemplate.delete(redisKey);
+    public boolean consumeLegacy(String token) {
+        return Boolean.TRUE.equals(stringRedisTemplate.delete(REFRESH_TOKEN_PREFIX + token));
+    }
+
+    private static String value(String secret, long expiresAtMillis, String email) {
+        return secret + VALUE_SEPARATOR + expiresAtMillis + VALUE_SEPARATOR + email;
+    }
+
+    private static String newSecret() {
+        return UUID.randomUUID().toString().replace("-", "");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,309 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.response.ArticleReplyMetaCacheDTO;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.common.utiles.ReplyTreeCodec;
+import com.doublez.kc_forum.mapper.ArticleReplyMapper;
+import com.doublez.kc_forum.model.ArticleReply;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 按层（广度优先）批量加载回复子树。
+ * <p>
+ * 每一层只发一次 pipeline：当前层所有节点的 HGETALL 加上它们子回复 ZSET 的 ZREVRANGE；
+ * 缓存未命中的元数据、子回复列表分别用一次 IN 查询回源数据库。
+ * 因此往返次数只与树的深度有关，与节点数无关。
+ * <p>
+ * 加载受三个预算约束：最大深度、最大节点数、每个节点最多展开的子回复数。
+ * <p>
+ * 开启 kc.reply.tree.materialized 后优先使用文章回复树的物化视图：一次 GET 拿到结构，
+ * 在内存中按同样的预算展开，再用一次 pipeline 取回所有节点的元数据，总共两次往返。
+ */
+@Slf4j
+@Service
+public class ReplyTreeLoader {
+
+    @Autowired
+    private ArticleReplyMapper articleReplyMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private CacheHashCodec cacheHashCodec;
+    @Autowired
+    private RedisAsyncPopulationService redisAsync;
+    @Autowired
+    private MaterializedReplyTreeService materializedReplyTree;
+    @Autowired
+    private ForumMetrics metrics;
+
+    @Value("${kc.reply.tree.max-depth:8}")
+    private int maxDepth;
+    @Value("${kc.reply.tree.max-nodes:500}")
+    private int maxNodes;
+    @Value("${kc.reply.tree.max-children:100}")
+    private int maxChildren;
+
+    /**
+     * 加载 rootReplyId 下的回复子树（不含根节点本身，不含用户信息）
+     * @param start 根节点直接子回复的分页起点（ZREVRANGE 下标）
+     * @param end 根节点直接子回复的分页终点（包含）
+     * @return 按先序排列的扁平列表：每个回复后面紧跟它的全部后代
+     */
+    public List<ArticleReplyMetaCacheDTO> loadSubtree(Long rootReplyId, long start, long end) {
+        if (materializedReplyTree.isEnabled()) {
+            List<ArticleReplyMetaCacheDTO> result = loadSubtreeFromMaterialized(rootReplyId, start, end);
+            if (result != null) return result;
+        }
+        Map<Long, ArticleReplyMetaCacheDTO> metas = new HashMap<>();
+        Map<Long, List<Long>> childrenByParent = new HashMap<>();
+
+        List<Long> level = List.of(rootReplyId);
+        int depth = 0;
+        int nodeCount = 0;
+        while (!level.isEmpty()) {
+            boolean isRoot = depth == 0;
+            boolean expand = depth < maxDepth && nodeCount < maxNodes;
+            // 根节点只需要子回复；其余节点需要元数据，已从数据库预加载的跳过
+            List<Long> metaIds = isRoot ? List.of() : level.stream().filter(id -> !metas.containsKey(id)).toList();
+            // 已知没有子回复的节点不再查询ZSET
+            List<Long> expandIds = !expand ? List.of() : level.stream()
+                    .filter(id -> isRoot || !metas.containsKey(id) || hasChildren(metas.get(id)))
+                    .toList();
+            long childStart = isRoot ? start : 0;
+            long childEnd = isRoot ? end : maxChildren - 1;
+
+            List<Object> results = pipelineLevel(metaIds, expandIds, childStart, childEnd);
+
+            // 1. 元数据
+            collectMetas(metaIds, results, metas);
+            if (!expand) break;
+
+            // 2. 子回复：ZSET为空但确实有子回复（或根节点）时回源数据库
+            Map<Long, List<Long>> levelChildren = new LinkedHashMap<>();
+            List<Long> missedChildrenParents = new ArrayList<>();
+            for (int i = 0; i < expandIds.size(); i++) {
+                Long parentId = expandIds.get(i);
+                List<Long> childIds = toIds(results.get(metaIds.size() + i));
+                if (!childIds.isEmpty()) {
+                    levelChildren.put(parentId, childIds);
+                } else if (isRoot || hasChildren(metas.get(parentId))) {
+                    missedChildrenParents.add(parentId);
+                }
+            }
+            metrics.recordCacheLookup(RedisKeyUtil.FAMILY_REPLY_CHILDREN, levelChildren.size(), missedChildrenParents.size());
+            if (!missedChildrenParents.isEmpty()) {
+                levelChildren.putAll(loadChildrenFromDB(missedChildrenParents, rootReplyId, start, end, metas));
+            }
+
+            // 3. 按层内顺序展开下一层，超出节点预算的部分截断
+            List<Long> next = new ArrayList<>();
+            for (Long parentId : level) {
+                List<Long> childIds = levelChildren.get(parentId);
+                if (childIds == null || (!isRoot && !metas.containsKey(parentId))) continue;
+                int remaining = maxNodes - nodeCount;
+                if (remaining <= 0) break;
+                List<Long> kept = childIds.size() > remaining ? childIds.subList(0, remaining) : childIds;
+                childrenByParent.put(parentId, kept);
+                next.addAll(kept);
+                nodeCount += kept.size();
+            }
+            level = next;
+            depth++;
+        }
+
+        List<ArticleReplyMetaCacheDTO> result = new ArrayList<>(nodeCount);
+        appendPreOrder(rootReplyId, childrenByParent, metas, result);
+        log.debug("回复子树加载完成, rootReplyId:{}, 层数:{}, 节点数:{}", rootReplyId, depth, result.size());
+        return result;
+    }
+
+    /**
+     * 基于物化视图加载子树
+     * @return 物化视图不可用时返回null
+     */
+    private List<ArticleReplyMetaCacheDTO> loadSubtreeFromMaterialized(Long rootReplyId, long start, long end) {
+        Long articleId = findArticleId(rootReplyId);
+        if (articleId == null) return null;
+        ReplyTreeCodec.Decoded tree = materializedReplyTree.load(articleId);
+        if (tree == null) return null;
+
+        Map<Long, List<Long>> allChildren = tree.childrenByParent();
+        Map<Long, List<Long>> childrenByParent = new HashMap<>();
+        List<Long> nodeIds = new ArrayList<>();
+        List<Long> level = List.of(rootReplyId);
+        int depth = 0;
+        while (!level.isEmpty() && depth < maxDepth && nodeIds.size() < maxNodes) {
+            List<Long> next = new ArrayList<>();
+            for (Long parentId : level) {
+                List<Long> childIds = allChildren.getOrDefault(parentId, List.of());
+                long from = depth == 0 ? start : 0;
+                long to = depth == 0 ? end : maxChildren - 1;
+                int remaining = maxNodes - nodeIds.size();
+                if (remaining <= 0) break;
+                int fromIndex = (int) Math.min(from, childIds.size());
+                int toIndex = (int) Math.min(Math.min(to + 1, childIds.size()), fromIndex + (long) remaining);
+                if (fromIndex >= toIndex) continue;
+                List<Long> kept = childIds.subList(fromIndex, toIndex);
+                childrenByParent.put(parentId, kept);
+                next.addAll(kept);
+                nodeIds.addAll(kept);
+            }
+            level = next;
+            depth++;
+        }
+
+        Map<Long, ArticleReplyMetaCacheDTO> metas = new HashMap<>();
+        collectMetas(nodeIds, pipelineLevel(nodeIds, List.of(), 0, 0), metas);
+        List<ArticleReplyMetaCacheDTO> result = new ArrayList<>(nodeIds.size());
+        appendPreOrder(rootReplyId, childrenByParent, metas, result);
+        log.debug("回复子树从物化视图加载完成, rootReplyId:{}, articleId:{}, 层数:{}, 节点数:{}",
+                rootReplyId, articleId, depth, result.size());
+        return result;
+    }
+
+    private Long findArticleId(Long replyId) {
+        ArticleReplyMetaCacheDTO cached = cacheHashCodec.decodeReply(redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection ->
+                connection.hashCommands().hGetAll(bytes(RedisKeyUtil.getArticleReplyKey(replyId)))));
+        if (cached != null && cached.getArticleId() != null) return cached.getArticleId();
+        ArticleReply reply = articleReplyMapper.selectOne(new LambdaQueryWrapper<ArticleReply>()
+                .select(ArticleReply::getArticleId)
+                .eq(ArticleReply::getId, replyId));
+        return reply == null ? null : reply.getArticleId();
+    }
+
+    /**
+     * 解析 pipeline 前 metaIds.size() 个 HGETALL 结果，未命中的一次 IN 查询回源数据库
+     */
+    private void collectMetas(List<Long> metaIds, List<Object> results, Map<Long, ArticleReplyMetaCacheDTO> metas) {
+        List<Long> missedMetaIds = new ArrayList<>();
+        for (int i = 0; i < metaIds.size(); i++) {
+            ArticleReplyMetaCacheDTO meta = cacheHashCodec.decodeReply(results.get(i));
+            if (meta != null) {
+                metas.put(metaIds.get(i), meta);
+            } else {
+                missedMetaIds.add(metaIds.get(i));
+            }
+        }
+        metrics.recordCacheLookup(RedisKeyUtil.FAMILY_REPLY, metaIds.size() - missedMetaIds.size(), missedMetaIds.size());
+        if (!missedMetaIds.isEmpty()) {
+            loadMetasFromDB(missedMetaIds, metas);
+        }
+    }
+
+    private static boolean hasChildren(ArticleReplyMetaCacheDTO meta) {
+        return meta != null && meta.getChildrenCount() != null && meta.getChildrenCount() > 0;
+    }
+
+    /**
+     * 一次往返：先 metaIds 的 HGETALL，再 expandIds 的 ZREVRANGE，结果保持原始字节，由调用方按各自的序列化方式解析
+     */
+    private List<Object> pipelineLevel(List<Long> metaIds, List<Long> expandIds, long childStart, long childEnd) {
+        if (metaIds.isEmpty() && expandIds.isEmpty()) return List.of();
+        return metrics.recordPipeline(ForumMetrics.PIPELINE_REPLY_TREE_LEVEL, metaIds.size() + expandIds.size(),
+                () -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long id : metaIds) {
+                connection.hashCommands().hGetAll(bytes(RedisKeyUtil.getArticleReplyKey(id)));
+            }
+            for (Long id : expandIds) {
+                connection.zSetCommands().zRevRange(bytes(RedisKeyUtil.getRepliesChildrenZsetKey(id)), childStart, childEnd);
+            }
+            return null;
+        }, RedisSerializer.byteArray()));
+    }
+
+    private static List<Long> toIds(Object rawMembers) {
+        if (!(rawMembers instanceof Collection<?> members) || members.isEmpty()) return List.of();
+        List<Long> ids = new ArrayList<>(members.size());
+        for (Object member : members) {
+            ids.add(Long.parseLong(new String((byte[]) member, StandardCharsets.UTF_8)));
+        }
+        return ids;
+    }
+
+    private void loadMetasFromDB(List<Long> replyIds, Map<Long, ArticleReplyMetaCacheDTO> metas) {
+        log.info("回复缓存未命中，从数据库批量查询，ID列表: {}", replyIds);
+        List<ArticleReply> dbReplies = articleReplyMapper.selectList(new LambdaQueryWrapper<ArticleReply>()
+                .in(ArticleReply::getId, replyIds)
+                .eq(ArticleReply::getDeleteState, 0));
+        List<ArticleReplyMetaCacheDTO> dbMetas = dbReplies.stream().map(ReplyTreeLoader::copyToMeta).toList();
+        dbMetas.forEach(meta -> metas.put(meta.getId(), meta));
+        redisAsync.cacheArticleReplyList(dbMetas);
+    }
+
+    /**
+     * 一次 IN 查询加载多个父回复的子回复，回填各自的ZSET与元数据缓存
+     * @return 每个父回复本次展开的子回复id（根节点按分页区间截取，其余节点取前 maxChildren 个）
+     */
+    private Map<Long, List<Long>> loadChildrenFromDB(List<Long> parentIds, Long rootReplyId, long start, long end,
+                                                     Map<Long, ArticleReplyMetaCacheDTO> metas) {
+        log.info("子回复ZSET未命中，从数据库批量查询，父回复ID列表: {}", parentIds);
+        List<ArticleReply> dbChildren = articleReplyMapper.selectList(new LambdaQueryWrapper<ArticleReply>()
+                .in(ArticleReply::getReplyId, parentIds)
+                .eq(ArticleReply::getDeleteState, 0)
+                .orderByDesc(ArticleReply::getCreateTime));
+        if (dbChildren.isEmpty()) return Map.of();
+
+        Map<Long, List<ArticleReply>> grouped = new LinkedHashMap<>();
+        for (ArticleReply child : dbChildren) {
+            grouped.computeIfAbsent(child.getReplyId(), k -> new ArrayList<>()).add(child);
+        }
+        List<ArticleReplyMetaCacheDTO> childMetas = new ArrayList<>(dbChildren.size());
+        Map<Long, List<Long>> result = new HashMap<>();
+        grouped.forEach((parentId, children) -> {
+            redisAsync.replyZsetFromDBToRedis(RedisKeyUtil.getRepliesChildrenZsetKey(parentId), children);
+            long from = parentId.equals(rootReplyId) ? start : 0;
+            long to = parentId.equals(rootReplyId) ? end : maxChildren - 1;
+            List<Long> ids = new ArrayList<>();
+            for (int i = (int) Math.min(from, children.size()); i <= to && i < children.size(); i++) {
+                ArticleReplyMetaCacheDTO meta = copyToMeta(children.get(i));
+                metas.put(meta.getId(), meta);
+                ids.add(meta.getId());
+            }
+            children.forEach(child -> childMetas.add(copyToMeta(child)));
+            result.put(parentId, ids);
+        });
+        redisAsync.cacheArticleReplyList(childMetas);
+        return result;
+    }
+
+    private static ArticleReplyMetaCacheDTO copyToMeta(ArticleReply reply) {
+        ArticleReplyMetaCacheDTO meta = new ArticleReplyMetaCacheDTO();
+        BeanUtils.copyProperties(reply, meta);
+        return meta;
+    }
+
+    private static void appendPreOrder(Long parentId, Map<Long, List<Long>> childrenByParent,
+                                       Map<Long, ArticleReplyMetaCacheDTO> metas, List<ArticleReplyMetaCacheDTO> out) {
+        List<Long> childIds = childrenByParent.get(parentId);
+        if (childIds == null) return;
+        for (Long childId : childIds) {
+            ArticleReplyMetaCacheDTO meta = metas.get(childId);
+            if (meta == null) {
+                // 缓存和数据库中都不存在（已删除），连同子树一起跳过
+                log.warn("回复ID: {} 未在缓存或数据库中找到，将跳过。", childId);
+                continue;
+            }
+            out.add(meta);
+            appendPreOrder(childId, childrenByParent, metas, out);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
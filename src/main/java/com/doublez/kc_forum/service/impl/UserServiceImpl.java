@@ -4,8 +4,10 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.doublez.kc_forum.common.Result;
 import com.doublez.kc_forum.common.ResultCode;
+import com.doublez.kc_forum.common.cache.SingleFlight;
 import com.doublez.kc_forum.common.exception.BusinessException;
 import com.doublez.kc_forum.common.exception.SystemException;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
 import com.doublez.kc_forum.common.pojo.request.RegisterRequest;
 import com.doublez.kc_forum.common.pojo.request.UserLoginRequest;
 import com.doublez.kc_forum.common.pojo.response.UserArticleResponse;
@@ -75,6 +77,12 @@ public class UserServiceImpl implements IUserService {
     @Autowired
     private RedisAsyncPopulationService redisAsync;
 
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private ForumMetrics metrics;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public String uploadAvatar(Long userId, MultipartFile file) {
@@ -222,8 +230,8 @@ public class UserServiceImpl implements IUserService {
         accessTokenClaims .put("Id", user.getId());
         String accessToken = JwtUtil.genToken(accessTokenClaims);
 
-        // --- 生成 Refresh Token (随机字符串) ---
-        String refreshTokenString = UUID.randomUUID().toString();
+        // --- 生成 Refresh Token ({userId}.{会话id}.{secret})，存入用户的令牌家族 ---
+        String refreshTokenString = refreshTokenService.issue(user.getId(), loginRequest.getEmail());
 
         //放入 认证的jwt
         loginResponse.setAuthorization(accessToken);
@@ -249,9 +257,6 @@ public class UserServiceImpl implements IUserService {
         // response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
 
         response.addCookie(refreshTokenCookie); // 添加 Cookie 到响应
-
-        //添加refreshToken到redis
-        refreshTokenService.createRefreshToken(refreshTokenString);
         return loginResponse;
     }
 
@@ -348,7 +353,8 @@ public class UserServiceImpl implements IUserService {
             log.error("用户 {} 更新密码失败",id);
             throw new SystemException(ResultCode.FAILED_MODIFY_USER);
         }
-
+        //修改密码后退出所有设备
+        refreshTokenService.revokeAll(id);
     }
     @Transactional
     @Override
@@ -368,6 +374,8 @@ public class UserServiceImpl implements IUserService {
             log.error("用户 {} 更新邮箱失败",id);
             throw new SystemException(ResultCode.FAILED_MODIFY_USER);
         }
+        //刷新令牌中记录了邮箱，修改后退出所有设备
+        refreshTokenService.revokeAll(id);
         return Result.success();
     }
 
@@ -382,13 +390,14 @@ public class UserServiceImpl implements IUserService {
         List<String> userKeys = userIds.stream().map(RedisKeyUtil::getUserResponseKey).toList();
 
         // 使用Pipeline的MGET获取用户JSON字符串
-        List<Object> userJsonListObjects = stringRedisTemplate.executePipelined(
+        List<Object> userJsonListObjects = metrics.recordPipeline(ForumMetrics.PIPELINE_USER, userKeys.size(),
+                () -> stringRedisTemplate.executePipelined(
                 (RedisCallback<Object>) connection -> {
                     for (String userKey : userKeys) {
                         connection.stringCommands().get(userKey.getBytes(StandardCharsets.UTF_8));
                     }
                     return null;
-                });
+                }));
 
 
         List<Long> missedUserIds = new ArrayList<>();
@@ -417,15 +426,20 @@ public class UserServiceImpl implements IUserService {
             }
         }
 
+        metrics.recordCacheLookup(RedisKeyUtil.FAMILY_USER, userIds.size() - missedUserIds.size(), missedUserIds.size());
         if (!missedUserIds.isEmpty()) {
             log.info("用户缓存未命中，ID列表: {}", missedUserIds);
 
-            Map<Long,User> dbUsers = selectUserInfoByIds(missedUserIds);
-            for (User dbUser : dbUsers.values()) {
-                UserArticleResponse uar = copyProperties(dbUser, UserArticleResponse.class);
-                userMap.put(dbUser.getId(), uar);
-                redisAsync.cacheUser(uar);
-            }
+            // 其他请求正在加载的用户直接等待其结果，其余用户一次批量回源
+            userMap.putAll(singleFlight.loadAll(SingleFlight.NS_USER, missedUserIds, ids -> {
+                Map<Long, UserArticleResponse> loaded = new HashMap<>();
+                for (User dbUser : selectUserInfoByIds(ids).values()) {
+                    UserArticleResponse uar = copyProperties(dbUser, UserArticleResponse.class);
+                    loaded.put(dbUser.getId(), uar);
+                    redisAsync.cacheUser(uar);
+                }
+                return loaded;
+            }));
         }
         return userMap;
     }
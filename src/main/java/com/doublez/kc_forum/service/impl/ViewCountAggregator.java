@@ -0,0 +1,204 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.config.RabbitMQConfig;
+import com.doublez.kc_forum.common.event.ArticleViewBatchEvent;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.mq.ForumEventPublisher;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.doublez.kc_forum.service.impl.ArticleServiceImpl.FIELD_VISIT_COUNT;
+
+/**
+ * 浏览量的本地聚合。
+ * <p>
+ * 请求线程只对每篇文章的计数器做一次无锁累加，不再同步发送 MQ 消息、也不再为每次浏览提交一个异步任务；
+ * 后台每隔 flush-interval-ms 把本周期的增量合并成：一次 pipeline（每篇文章一条 HINCRBY）+ 一条 {@link ArticleViewBatchEvent}。
+ * 独立访客模式下新访客的增量随同一条事件发送，只落库不写 Redis（展示以 HyperLogLog 为准）。
+ * <p>
+ * 背压：缓冲区最多容纳 max-articles 篇文章，满了之后新文章的浏览直接丢弃（已有文章继续合并）；
+ * MQ 发送失败的增量合并到下一周期重试，同样受 max-articles 限制。丢弃的浏览数计入 kc.visit.aggregate.dropped，
+ * 因此 MQ 或 Redis 故障不会拖慢页面渲染，最坏情况是丢失部分浏览量。
+ */
+@Slf4j
+@Component
+public class ViewCountAggregator {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ForumEventPublisher eventPublisher;
+    @Autowired
+    private ForumMetrics metrics;
+    @Autowired
+    private CounterDirtyTracker counterDirtyTracker;
+
+    private final CounterBuffer redisDeltas;
+    private final CounterBuffer eventDeltas;
+    private final CounterBuffer uniqueDeltas;
+    private final int maxArticles;
+    // 上一周期发送失败的增量，只由 flush 线程访问
+    private Map<Long, Long> unpublished = new HashMap<>();
+    private Map<Long, Long> unpublishedUnique = new HashMap<>();
+
+    public ViewCountAggregator(@Value("${kc.visit.aggregate.max-articles:10000}") int maxArticles) {
+        this.maxArticles = maxArticles;
+        this.redisDeltas = new CounterBuffer(maxArticles);
+        this.eventDeltas = new CounterBuffer(maxArticles);
+        this.uniqueDeltas = new CounterBuffer(maxArticles);
+    }
+
+    /**
+     * 记录一次浏览：Redis 访问数与数据库访问数都加一
+     */
+    public void recordView(Long articleId) {
+        if (!redisDeltas.add(articleId, 1)) {
+            metrics.recordViewsDropped("buffer", 1);
+            return;
+        }
+        if (!eventDeltas.add(articleId, 1)) {
+            metrics.recordViewsDropped("buffer", 1);
+        }
+    }
+
+    /**
+     * 记录一个新的独立访客（HyperLogLog 基数变化），只累加数据库的独立访客数
+     */
+    public void recordUniqueVisitor(Long articleId) {
+        if (!uniqueDeltas.add(articleId, 1)) {
+            metrics.recordViewsDropped("buffer", 1);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${kc.visit.aggregate.flush-interval-ms:1000}")
+    public void flush() {
+        flushRedis(redisDeltas.drain());
+
+        Map<Long, Long> counts = eventDeltas.drain();
+        if (!unpublished.isEmpty()) {
+            unpublished.forEach((articleId, delta) -> counts.merge(articleId, delta, Long::sum));
+            unpublished = new HashMap<>();
+        }
+        Map<Long, Long> uniqueCounts = uniqueDeltas.drain();
+        if (!unpublishedUnique.isEmpty()) {
+            unpublishedUnique.forEach((articleId, delta) -> uniqueCounts.merge(articleId, delta, Long::sum));
+            unpublishedUnique = new HashMap<>();
+        }
+        if (counts.isEmpty() && uniqueCounts.isEmpty()) return;
+        counterDirtyTracker.markAll(CounterDirtyTracker.TYPE_ARTICLE, counts.keySet());
+        ArticleViewBatchEvent event = new ArticleViewBatchEvent(counts, uniqueCounts.isEmpty() ? null : uniqueCounts, System.currentTimeMillis());
+        try {
+            eventPublisher.publish(ForumMetrics.QUEUE_VIEW, RabbitMQConfig.VIEW_ROUTING_KEY, event);
+            log.debug("已发送浏览量批量事件, 文章数:{}, 新增独立访客的文章数:{}", counts.size(), uniqueCounts.size());
+        } catch (Exception e) {
+            log.warn("浏览量批量事件发送失败，合并到下一周期, 文章数:{}", counts.size(), e);
+            retainUnpublished(counts, unpublished);
+            retainUnpublished(uniqueCounts, unpublishedUnique);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void flushRedis(Map<Long, Long> counts) {
+        if (counts.isEmpty()) return;
+        byte[] field = FIELD_VISIT_COUNT.getBytes(StandardCharsets.UTF_8);
+        try {
+            metrics.recordPipeline(ForumMetrics.PIPELINE_VIEW_COUNT, counts.size(), () -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                counts.forEach((articleId, delta) -> connection.hashCommands().hIncrBy(
+                        RedisKeyUtil.getArticleKey(articleId).getBytes(StandardCharsets.UTF_8), field, delta));
+                return null;
+            }));
+        } catch (Exception e) {
+            // Redis 中的访问数只用于展示，数据库以 MQ 事件为准，这里不重试
+            log.warn("浏览量写入Redis失败，丢弃本周期增量, 文章数:{}", counts.size(), e);
+            metrics.recordViewsDropped("redis", counts.values().stream().mapToLong(Long::longValue).sum());
+        }
+    }
+
+    private void retainUnpublished(Map<Long, Long> counts, Map<Long, Long> into) {
+        long dropped = 0;
+        Iterator<Map.Entry<Long, Long>> iterator = counts.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Long> entry = iterator.next();
+            if (into.size() >= maxArticles) {
+                dropped += entry.getValue();
+                continue;
+            }
+            into.put(entry.getKey(), entry.getValue());
+        }
+        if (dropped > 0) {
+            metrics.recordViewsDropped("publish", dropped);
+        }
+    }
+
+    /**
+     * 有界的无锁计数器表。
+     * <p>
+     * 累加使用 CAS；drain 用 getAndSet(0) 取走增量，并把已经空闲一个周期的计数器标记为 RETIRED 后移除。
+     * 累加时遇到 RETIRED 的计数器会重新插入一个新的，因此移除与累加并发时不会丢失计数。
+     */
+    static final class CounterBuffer {
+        private static final long RETIRED = Long.MIN_VALUE;
+
+        private final ConcurrentHashMap<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+        private final int maxKeys;
+
+        CounterBuffer(int maxKeys) {
+            this.maxKeys = maxKeys;
+        }
+
+        /**
+         * @return false 表示缓冲区已满且该key不在其中，本次增量被丢弃
+         */
+        boolean add(Long key, long delta) {
+            for (;;) {
+                AtomicLong counter = counters.get(key);
+                if (counter == null) {
+                    if (counters.size() >= maxKeys) return false;
+                    counter = counters.putIfAbsent(key, new AtomicLong(delta));
+                    if (counter == null) return true;
+                }
+                long current = counter.get();
+                if (current == RETIRED) {
+                    counters.remove(key, counter);
+                    continue;
+                }
+                if (counter.compareAndSet(current, current + delta)) return true;
+            }
+        }
+
+        /**
+         * 取走所有增量，只能由单个线程调用
+         */
+        Map<Long, Long> drain() {
+            Map<Long, Long> drained = new HashMap<>();
+            for (Map.Entry<Long, AtomicLong> entry : counters.entrySet()) {
+                AtomicLong counter = entry.getValue();
+                long value = counter.getAndSet(0);
+                if (value > 0) {
+                    drained.put(entry.getKey(), value);
+                } else if (counter.compareAndSet(0, RETIRED)) {
+                    counters.remove(entry.getKey(), counter);
+                }
+            }
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+-- 发帖时把文章加入板块ZSET，只更新已存在的Key，避免在缓存缺失时生成只有一篇文章的残缺ZSET
+-- KEYS[1]: 板块文章ZSET (board:articles:zset:{boardId})
+-- KEYS[2]: 正在重建的ZSET (board:articles:zset:{boardId}:building)
+-- ARGV[1]: 分数 (创建时间 epoch 秒)
+-- ARGV[2]: 文章id
+-- ARGV[3]: 空板块占位符
+-- 返回: 实际写入的Key数量
+
+local score = ARGV[1]
+local member = ARGV[2]
+local placeholder = ARGV[3]
+local updated = 0
+
+for _, key in ipairs(KEYS) do
+    if redis.call('EXISTS', key) == 1 then
+        -- 空板块占位符带有过期时间，有了真实文章后移除占位符并取消过期
+        if redis.call('ZREM', key, placeholder) == 1 and key == KEYS[1] then
+            redis.call('PERSIST', key)
+        end
+        redis.call('ZADD', key, score, member)
+        updated = updated + 1
+    end
+end
+
+return updated
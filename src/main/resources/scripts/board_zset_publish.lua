@@ -0,0 +1,25 @@
+-- 重建完成后用 RENAME 原子替换板块ZSET，只有仍持有租约的节点才能发布
+-- KEYS[1]: 重建租约 Key
+-- KEYS[2]: 正在重建的ZSET
+-- KEYS[3]: 板块文章ZSET
+-- ARGV[1]: 租约token
+-- ARGV[2]: 空板块占位符
+-- ARGV[3]: 空板块占位符的过期时间 (毫秒)
+-- 返回: 1 发布成功, 0 租约已丢失
+
+if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+    return 0
+end
+
+local placeholder = ARGV[2]
+if redis.call('ZCARD', KEYS[2]) > 1 then
+    redis.call('ZREM', KEYS[2], placeholder)
+end
+redis.call('RENAME', KEYS[2], KEYS[3])
+
+if redis.call('ZSCORE', KEYS[3], placeholder) then
+    redis.call('PEXPIRE', KEYS[3], ARGV[3])
+else
+    redis.call('PERSIST', KEYS[3])
+end
+return 1
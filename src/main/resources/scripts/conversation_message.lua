@@ -0,0 +1,62 @@
+-- 新消息：更新最后一条消息快照，以及双方的会话索引（索引不可用时跳过，正在重建时标记为 dirty）
+-- KEYS[1]: 发送者的会话 ZSET
+-- KEYS[2]: 发送者的索引状态
+-- KEYS[3]: 接收者的会话 ZSET
+-- KEYS[4]: 接收者的未读数 Hash
+-- KEYS[5]: 接收者的索引状态
+-- KEYS[6]: 两人最后一条消息的快照 Hash
+-- ARGV[1]: 发送者id
+-- ARGV[2]: 接收者id
+-- ARGV[3]: 消息id
+-- ARGV[4]: 消息时间 (毫秒时间戳)
+-- ARGV[5]: 消息内容
+-- ARGV[6]: 快照过期时间 (毫秒)
+-- ARGV[7]: dirty 标记的过期时间 (毫秒)
+
+-- 消息可能乱序提交，只保留id最大的一条
+local current = redis.call('HGET', KEYS[6], 'id')
+if not current or tonumber(current) < tonumber(ARGV[3]) then
+    redis.call('HSET', KEYS[6], 'id', ARGV[3], 'content', ARGV[5], 'time', ARGV[4])
+end
+redis.call('PEXPIRE', KEYS[6], ARGV[6])
+
+-- 返回索引剩余的过期时间，不可用时返回 nil
+local function ready(key)
+    local state = redis.call('GET', key)
+    if state == '1' then
+        return redis.call('PTTL', key)
+    end
+    -- 任何一次正在进行的重建（building:{token}）都作废
+    if state and string.sub(state, 1, 9) == 'building:' then
+        redis.call('SET', key, 'dirty', 'PX', ARGV[7])
+    end
+    return nil
+end
+
+local function touch(zsetKey, member)
+    local score = redis.call('ZSCORE', zsetKey, member)
+    if not score or tonumber(score) < tonumber(ARGV[4]) then
+        redis.call('ZADD', zsetKey, ARGV[4], member)
+    end
+end
+
+local applied = 0
+local ttl = ready(KEYS[2])
+if ttl then
+    touch(KEYS[1], ARGV[2])
+    -- 与索引状态同时过期，过期后整体重建
+    if ttl > 0 then redis.call('PEXPIRE', KEYS[1], ttl) end
+    applied = applied + 1
+end
+ttl = ready(KEYS[5])
+if ttl then
+    touch(KEYS[3], ARGV[1])
+    redis.call('HINCRBY', KEYS[4], ARGV[1], 1)
+    redis.call('HINCRBY', KEYS[4], '_total', 1)
+    if ttl > 0 then
+        redis.call('PEXPIRE', KEYS[3], ttl)
+        redis.call('PEXPIRE', KEYS[4], ttl)
+    end
+    applied = applied + 1
+end
+return applied
@@ -0,0 +1,29 @@
+-- 已读：清零与某个联系人的未读数（索引不可用时跳过，正在重建时标记为 dirty）
+-- KEYS[1]: 用户的未读数 Hash
+-- KEYS[2]: 用户的索引状态
+-- KEYS[3]: 两人最后一条消息的快照 Hash
+-- ARGV[1]: 联系人id
+-- ARGV[2]: 前进后的已读游标 (消息id)
+-- ARGV[3]: dirty 标记的过期时间 (毫秒)
+-- 返回: 清零前的未读数；游标之后已有计入索引的消息时返回 -1，索引失效
+
+local state = redis.call('GET', KEYS[2])
+if state == '1' then
+    -- 新消息脚本先更新快照再计入未读数，快照的id不大于游标说明计入的未读消息都在游标之内。
+    -- 否则无法区分游标之后的消息是否已经计入（也可能是用户自己发出的），让索引失效，下次读取重建
+    local last = redis.call('HGET', KEYS[3], 'id')
+    if not last or tonumber(last) > tonumber(ARGV[2]) then
+        redis.call('DEL', KEYS[2])
+        return -1
+    end
+    local unread = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')
+    if unread > 0 then
+        redis.call('HDEL', KEYS[1], ARGV[1])
+        redis.call('HINCRBY', KEYS[1], '_total', -unread)
+    end
+    return unread
+end
+if state and string.sub(state, 1, 9) == 'building:' then
+    redis.call('SET', KEYS[2], 'dirty', 'PX', ARGV[3])
+end
+return 0
@@ -0,0 +1,36 @@
+-- 从数据库重建用户的会话索引。开始重建前状态被置为 building:{token}，期间有新消息或已读时会变成 dirty，
+-- 之后开始的重建会换成它自己的 token，两种情况都放弃本次结果
+-- KEYS[1]: 用户的会话 ZSET
+-- KEYS[2]: 用户的未读数 Hash
+-- KEYS[3]: 用户的索引状态
+-- KEYS[4..]: 每个联系人与用户最后一条消息的快照 Hash，与 ARGV 中的联系人一一对应
+-- ARGV[1]: 索引过期时间 (毫秒)
+-- ARGV[2]: 本次重建的标记 building:{token}
+-- ARGV[3..]: 每个联系人 5 个值：联系人id, 最后消息时间 (毫秒时间戳), 未读数, 最后消息id, 最后消息内容
+-- 返回: 1 重建完成；0 重建期间有变更，索引保持不可用
+
+if redis.call('GET', KEYS[3]) ~= ARGV[2] then
+    return 0
+end
+redis.call('DEL', KEYS[1], KEYS[2])
+local total = 0
+for i = 3, #ARGV, 5 do
+    local contact = ARGV[i]
+    redis.call('ZADD', KEYS[1], ARGV[i + 1], contact)
+    local unread = tonumber(ARGV[i + 2])
+    if unread > 0 then
+        redis.call('HSET', KEYS[2], contact, unread)
+        total = total + unread
+    end
+    local last = KEYS[4 + (i - 3) / 5]
+    local current = redis.call('HGET', last, 'id')
+    if not current or tonumber(current) < tonumber(ARGV[i + 3]) then
+        redis.call('HSET', last, 'id', ARGV[i + 3], 'content', ARGV[i + 4], 'time', ARGV[i + 1])
+    end
+    redis.call('PEXPIRE', last, ARGV[1])
+end
+redis.call('HSET', KEYS[2], '_total', total)
+redis.call('PEXPIRE', KEYS[1], ARGV[1])
+redis.call('PEXPIRE', KEYS[2], ARGV[1])
+redis.call('SET', KEYS[3], '1', 'PX', ARGV[1])
+return 1
@@ -0,0 +1,11 @@
+-- 从计数脏集合中取出最后一次变更早于截止时间的目标id，并从集合中移除，多个节点同时对账时不会重复处理
+-- KEYS[1]: 脏集合 ZSET (counter:dirty:reconcile:{type})，score 为最后一次变更的毫秒时间戳
+-- ARGV[1]: 截止时间 (毫秒)
+-- ARGV[2]: 最多取出的数量
+-- 返回: 目标id列表
+
+local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+if #ids > 0 then
+    redis.call('ZREM', KEYS[1], unpack(ids))
+end
+return ids
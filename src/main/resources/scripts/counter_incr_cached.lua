@@ -0,0 +1,16 @@
+-- 计数 write-behind：只有目标的完整缓存存在时才在 Redis 中累加，并把目标加入待回写集合
+-- 缓存不存在（未加载、已过期，或只有零散字段）时不做任何修改，由调用方走数据库累加
+-- 完整缓存以 id 字段（legacy 格式）或 _b 字段（binary 格式）为准
+-- KEYS[1]: 目标 Hash (article:{id} / reply:{id})
+-- KEYS[2]: 待回写集合 SET (counter:dirty:flush:{type})
+-- ARGV[1]: 计数字段名
+-- ARGV[2]: 增量
+-- ARGV[3]: 目标id
+-- 返回: 累加后的值，缓存不存在时返回 false (nil)
+
+if redis.call('HEXISTS', KEYS[1], 'id') == 0 and redis.call('HEXISTS', KEYS[1], '_b') == 0 then
+    return false
+end
+local value = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])
+redis.call('SADD', KEYS[2], ARGV[3])
+return value
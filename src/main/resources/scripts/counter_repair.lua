@@ -0,0 +1,12 @@
+-- 修正 Hash 中的计数字段：只有当前值仍等于对账时读到的值才覆盖，避免覆盖对账期间发生的点赞/回复
+-- KEYS[1]: 计数所在的 Hash (article:{id} / reply:{id})
+-- ARGV[1]: 字段名
+-- ARGV[2]: 对账时读到的值
+-- ARGV[3]: 修正后的值
+-- 返回: 1 已修正，0 值已变化未修正
+
+if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then
+    redis.call('HSET', KEYS[1], ARGV[1], ARGV[3])
+    return 1
+end
+return 0
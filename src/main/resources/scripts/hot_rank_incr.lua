@@ -0,0 +1,29 @@
+-- 板块热门文章 ZSET 的增量更新（指数衰减）
+-- 分数 = Σ 权重 × 2^((事件时间 - 纪元起点) / 半衰期)，同一纪元内旧分数不用重算；
+-- 进入新纪元时按固定比例整体缩放最近一个仍存在的旧纪元 ZSET（中间空了几个纪元就缩放几次），之后在新 Key 上累加
+-- KEYS[1]: 当前纪元的 ZSET (board:articles:hot:{boardId}:{epoch})
+-- KEYS[2..]: 之前纪元的 ZSET，由近到远
+-- ARGV[1]: 上一纪元分数换算到当前纪元的系数 2^(-纪元长度 / 半衰期)
+-- ARGV[2]: ZSET 最多保留的成员数（max-size 加上余量），超出时淘汰分数最低的
+-- ARGV[3]: 过期时间（秒）
+-- ARGV[4..]: 文章id, 分数增量, 文章id, 分数增量...
+-- 返回: 更新后的成员数
+
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    local factor = tonumber(ARGV[1])
+    for i = 2, #KEYS do
+        if redis.call('EXISTS', KEYS[i]) == 1 then
+            redis.call('ZUNIONSTORE', KEYS[1], 1, KEYS[i], 'WEIGHTS', tostring(factor ^ (i - 1)))
+            break
+        end
+    end
+end
+for i = 4, #ARGV, 2 do
+    redis.call('ZINCRBY', KEYS[1], ARGV[i + 1], ARGV[i])
+end
+local excess = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[2])
+if excess > 0 then
+    redis.call('ZREMRANGEBYRANK', KEYS[1], 0, excess - 1)
+end
+redis.call('EXPIRE', KEYS[1], ARGV[3])
+return redis.call('ZCARD', KEYS[1])
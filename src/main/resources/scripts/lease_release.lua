@@ -0,0 +1,8 @@
+-- 释放租约：只有token一致时才删除，避免误删其他节点的租约
+-- KEYS[1]: 租约 Key
+-- ARGV[1]: 租约token
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,9 @@
+-- 续约：只有token一致时才延长过期时间
+-- KEYS[1]: 租约 Key
+-- ARGV[1]: 租约token
+-- ARGV[2]: 过期时间 (毫秒)
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+end
+return 0
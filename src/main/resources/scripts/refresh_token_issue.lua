@@ -0,0 +1,18 @@
+-- 登录时为用户新增一个会话，同时清理已过期的会话
+-- KEYS[1]: 用户的刷新令牌家族 Hash，field 为会话id，值为 secret|过期时间戳|email
+-- ARGV[1]: 会话id
+-- ARGV[2]: 会话值
+-- ARGV[3]: 当前时间戳 (毫秒)
+-- ARGV[4]: 过期时间 (毫秒)
+-- 返回: 用户当前的会话数
+
+local fields = redis.call('HGETALL', KEYS[1])
+for i = 1, #fields, 2 do
+    local expiresAt = tonumber(string.match(fields[i + 1], '^[^|]*|(%d+)|'))
+    if not expiresAt or expiresAt <= tonumber(ARGV[3]) then
+        redis.call('HDEL', KEYS[1], fields[i])
+    end
+end
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+redis.call('PEXPIRE', KEYS[1], ARGV[4])
+return redis.call('HLEN', KEYS[1])
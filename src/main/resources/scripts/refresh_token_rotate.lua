@@ -0,0 +1,27 @@
+-- 刷新令牌轮换：校验旧令牌、作废并签发新令牌在一次原子操作中完成
+-- KEYS[1]: 用户的刷新令牌家族 Hash，field 为会话id，值为 secret|过期时间戳|email
+-- ARGV[1]: 会话id
+-- ARGV[2]: 客户端提交的 secret
+-- ARGV[3]: 新的 secret
+-- ARGV[4]: 当前时间戳 (毫秒)
+-- ARGV[5]: 新的过期时间戳 (毫秒)
+-- ARGV[6]: 过期时间 (毫秒)
+-- 返回: {1, email} 轮换成功；{0} 会话不存在或已过期；{-1} 提交的是已轮换过的旧令牌，该会话已作废
+
+local value = redis.call('HGET', KEYS[1], ARGV[1])
+if not value then
+    return {0}
+end
+local secret, expiresAt, email = string.match(value, '^([^|]*)|(%d+)|(.*)$')
+if not secret or tonumber(expiresAt) <= tonumber(ARGV[4]) then
+    redis.call('HDEL', KEYS[1], ARGV[1])
+    return {0}
+end
+if secret ~= ARGV[2] then
+    -- 旧令牌被重复使用（被窃取或并发刷新），整个会话作废，所有持有者都需要重新登录
+    redis.call('HDEL', KEYS[1], ARGV[1])
+    return {-1}
+end
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[3] .. '|' .. ARGV[5] .. '|' .. email)
+redis.call('PEXPIRE', KEYS[1], ARGV[6])
+return {1, email}
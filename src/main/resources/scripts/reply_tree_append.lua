@@ -0,0 +1,9 @@
+-- 向文章回复树的物化视图追加一条记录，只在物化视图已存在时追加，不存在时等待下一次读取时全量构建
+-- KEYS[1]: 物化视图 Key (article:reply_tree:{articleId})
+-- ARGV[1]: 16字节的记录
+-- 返回: 追加后的长度，未追加时返回0
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return redis.call('APPEND', KEYS[1], ARGV[1])
+end
+return 0
@@ -0,0 +1,101 @@
+package com.doublez.kc_forum.common.cache;
+
+import com.doublez.kc_forum.model.Article;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ArticleLocalCacheTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ArticleLocalCache localCache;
+
+    @BeforeEach
+    void setUp() {
+        localCache = new ArticleLocalCache(stringRedisTemplate, 100, 60000, 100, 60000, 2);
+    }
+
+    private Article article(long id) {
+        Article article = new Article();
+        article.setId(id);
+        article.setBoardId(1L);
+        return article;
+    }
+
+    @Test
+    void getArticles_ReturnsOnlyPresentAndRecordsStats() {
+        localCache.putArticle(article(1L));
+
+        assertEquals(1, localCache.getArticles(List.of(1L, 2L)).size());
+        assertEquals(1, localCache.articleStats().hitCount());
+        assertEquals(1, localCache.articleStats().missCount());
+    }
+
+    @Test
+    void invalidateArticle_EvictsLocallyAndPublishes() {
+        localCache.putArticle(article(1L));
+
+        localCache.invalidateArticle(1L);
+
+        assertTrue(localCache.getArticles(List.of(1L)).isEmpty());
+        verify(stringRedisTemplate).convertAndSend(ArticleLocalCache.INVALIDATION_CHANNEL, "a:1");
+    }
+
+    @Test
+    void counterInvalidations_AreCoalescedIntoOneMessage() {
+        localCache.invalidateArticleCounters(1L);
+        localCache.invalidateArticleCounters(2L);
+        localCache.invalidateArticleCounters(1L);
+        verify(stringRedisTemplate, never()).convertAndSend(anyString(), anyString());
+
+        localCache.flushCounterInvalidations();
+        localCache.flushCounterInvalidations();
+
+        verify(stringRedisTemplate, times(1)).convertAndSend(eq(ArticleLocalCache.INVALIDATION_CHANNEL), anyString());
+    }
+
+    @Test
+    void counterInvalidations_PendingSetIsCapped() {
+        localCache.putArticle(article(3L));
+        localCache.invalidateArticleCounters(1L);
+        localCache.invalidateArticleCounters(2L);
+        localCache.invalidateArticleCounters(3L);
+
+        // 超出上限的文章仍在本地失效，只是不再广播
+        assertTrue(localCache.getArticles(List.of(3L)).isEmpty());
+        localCache.flushCounterInvalidations();
+        verify(stringRedisTemplate).convertAndSend(ArticleLocalCache.INVALIDATION_CHANNEL, "a:1,2");
+    }
+
+    @Test
+    void onMessage_EvictsArticlesAndBoardPages() {
+        localCache.putArticle(article(1L));
+        localCache.putArticle(article(2L));
+        localCache.putBoardPage(5L, 0, 9, new ArticleLocalCache.BoardPage(List.of(1L, 2L), 2));
+        localCache.putBoardPage(6L, 0, 9, new ArticleLocalCache.BoardPage(List.of(3L), 1));
+
+        localCache.onMessage(new DefaultMessage(ArticleLocalCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "a:1,2".getBytes(StandardCharsets.UTF_8)), null);
+        localCache.onMessage(new DefaultMessage(ArticleLocalCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "b:5".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertTrue(localCache.getArticles(List.of(1L, 2L)).isEmpty());
+        assertNull(localCache.getBoardPage(5L, 0, 9));
+        assertNotNull(localCache.getBoardPage(6L, 0, 9));
+    }
+}
@@ -0,0 +1,78 @@
+package com.doublez.kc_forum.common.cache;
+
+import com.doublez.kc_forum.common.ResultCode;
+import com.doublez.kc_forum.common.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight singleFlight = new SingleFlight(3000);
+
+    @Test
+    void load_ConcurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> leader = pool.submit(() -> singleFlight.load("test", 1L, () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(release);
+                return "value";
+            }));
+            assertTrue(loaderStarted.await(2, TimeUnit.SECONDS));
+            List<Future<String>> followers = List.of(
+                    pool.submit(() -> singleFlight.load("test", 1L, () -> { loads.incrementAndGet(); return "other"; })),
+                    pool.submit(() -> singleFlight.load("test", 1L, () -> { loads.incrementAndGet(); return "other"; })));
+            // 等待跟随者挂到同一个 future 上
+            while (singleFlight.coalescedCount("test") < 2) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertEquals("value", leader.get(2, TimeUnit.SECONDS));
+            for (Future<String> follower : followers) {
+                assertEquals("value", follower.get(2, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(1, singleFlight.loadCount("test"));
+            assertEquals(2, singleFlight.coalescedCount("test"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void load_PropagatesLoaderExceptionAndAllowsRetry() {
+        assertThrows(BusinessException.class, () -> singleFlight.load("test", 2L, () -> {
+            throw new BusinessException(ResultCode.FAILED_ARTICLE_NOT_EXISTS);
+        }));
+        assertEquals("ok", singleFlight.load("test", 2L, () -> "ok"));
+    }
+
+    @Test
+    void loadAll_SkipsNullValues() {
+        Map<Long, String> result = singleFlight.loadAll("test", List.of(1L, 2L, 3L),
+                ids -> ids.stream().filter(id -> id != 2L).collect(Collectors.toMap(id -> id, String::valueOf)));
+
+        assertEquals(Map.of(1L, "1", 3L, "3"), result);
+        assertEquals(1, singleFlight.loadCount("test"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
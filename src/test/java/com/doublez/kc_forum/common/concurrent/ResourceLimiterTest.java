@@ -0,0 +1,96 @@
+package com.doublez.kc_forum.common.concurrent;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceLimiterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ForumMetrics metrics = new ForumMetrics(registry);
+
+    @Test
+    void wrap_LimitsConcurrentTasksToPermits() throws Exception {
+        ResourceLimiter limiter = new ResourceLimiter("db", 2, metrics);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(pool.submit(limiter.wrap(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(5);
+                    running.decrementAndGet();
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, limiter.inUse());
+        assertEquals(16, registry.get("kc.resource.permit.wait").tag("name", "db").timer().count());
+    }
+
+    @Test
+    void wrap_ReleasesPermitWhenTaskFails() {
+        ResourceLimiter limiter = new ResourceLimiter("redis", 1, metrics);
+
+        assertThrows(IllegalStateException.class, () -> limiter.wrap(() -> {
+            throw new IllegalStateException("boom");
+        }).run());
+
+        assertEquals(0, limiter.inUse());
+    }
+
+    @Test
+    void inUse_ExposedAsGauge() throws Exception {
+        ResourceLimiter limiter = new ResourceLimiter("db", 3, metrics);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread worker = new Thread(limiter.wrap(() -> {
+            started.countDown();
+            await(release);
+        }));
+        worker.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1.0, registry.get("kc.resource.permits.used").tag("name", "db").gauge().value());
+        assertEquals(3.0, registry.get("kc.resource.permits.limit").tag("name", "db").gauge().value());
+
+        release.countDown();
+        worker.join();
+        assertEquals(0.0, registry.get("kc.resource.permits.used").tag("name", "db").gauge().value());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
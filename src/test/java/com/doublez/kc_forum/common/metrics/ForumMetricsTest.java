@@ -0,0 +1,32 @@
+package com.doublez.kc_forum.common.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForumMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ForumMetrics metrics = new ForumMetrics(registry);
+
+    @Test
+    void recordCacheLookup_CountsHitsAndMissesPerFamily() {
+        metrics.recordCacheLookup("article", 3, 1);
+        metrics.recordCacheLookup("article", 2, 0);
+        metrics.recordCacheLookup("user", 0, 4);
+
+        assertEquals(5, registry.get("kc.cache.l2.requests").tags("family", "article", "result", "hit").counter().count());
+        assertEquals(1, registry.get("kc.cache.l2.requests").tags("family", "article", "result", "miss").counter().count());
+        assertEquals(4, registry.get("kc.cache.l2.requests").tags("family", "user", "result", "miss").counter().count());
+    }
+
+    @Test
+    void recordPipeline_RecordsCommandCountAndReturnsResult() {
+        String result = metrics.recordPipeline(ForumMetrics.PIPELINE_USER, 7, () -> "ok");
+
+        assertEquals("ok", result);
+        assertEquals(7, registry.get("kc.redis.pipeline.commands").tag("operation", ForumMetrics.PIPELINE_USER).summary().totalAmount());
+        assertEquals(1, registry.get("kc.redis.pipeline.latency").tag("operation", ForumMetrics.PIPELINE_USER).timer().count());
+    }
+}
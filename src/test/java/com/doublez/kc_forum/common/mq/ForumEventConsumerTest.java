@@ -0,0 +1,257 @@
+package com.doublez.kc_forum.common.mq;
+
+import com.doublez.kc_forum.common.event.ArticleLikeEvent;
+import com.doublez.kc_forum.common.event.ArticleViewBatchEvent;
+import com.doublez.kc_forum.common.event.ArticleViewEvent;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.CounterDelta;
+import com.doublez.kc_forum.mapper.ArticleMapper;
+import com.doublez.kc_forum.mapper.ArticleReplyMapper;
+import com.doublez.kc_forum.mapper.LikesMapper;
+import com.doublez.kc_forum.model.Likes;
+import com.doublez.kc_forum.service.impl.CounterDirtyTracker;
+import com.doublez.kc_forum.service.impl.HotArticleRanking;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ForumEventConsumerTest {
+
+    @Mock
+    private LikesMapper likesMapper;
+    @Mock
+    private ArticleMapper articleMapper;
+    @Mock
+    private ArticleReplyMapper articleReplyMapper;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private Channel channel;
+    @Mock
+    private CounterDirtyTracker counterDirtyTracker;
+    @Mock
+    private HotArticleRanking hotArticleRanking;
+    @Spy
+    private MessageConverter jsonMessageConverter = new Jackson2JsonMessageConverter();
+
+    @Spy
+    private ForumMetrics metrics = new ForumMetrics(new SimpleMeterRegistry());
+
+    @InjectMocks
+    private ForumEventConsumer consumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        ReflectionTestUtils.setField(consumer, "viewFlushThreshold", 1000);
+    }
+
+    private ArticleLikeEvent event(long userId, long targetId, String type, boolean liked) {
+        return new ArticleLikeEvent(userId, targetId, type, System.currentTimeMillis(), liked);
+    }
+
+    private Message message(Object event, long tag) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(tag);
+        return jsonMessageConverter.toMessage(event, properties);
+    }
+
+    @Test
+    void collapseLikeEvents_CancelsPairsAndAggregatesDeltas() {
+        ForumEventConsumer.LikeBatch batch = ForumEventConsumer.collapseLikeEvents(List.of(
+                event(1, 100, "article", true),
+                event(1, 100, "article", false),   // 与上一条抵消
+                event(2, 100, "article", true),
+                event(3, 100, "article", true),
+                event(4, 100, "article", false),
+                event(5, 7, "reply", true)));
+
+        assertEquals(3, batch.toInsert().size());
+        assertEquals(1, batch.toDelete().size());
+        assertEquals(List.of(new CounterDelta(100L, 1L)), batch.articleDeltas());
+        assertEquals(List.of(new CounterDelta(7L, 1L)), batch.replyDeltas());
+    }
+
+    @Test
+    void collapseLikeEvents_NetZeroTargetProducesNoCounterUpdate() {
+        ForumEventConsumer.LikeBatch batch = ForumEventConsumer.collapseLikeEvents(List.of(
+                event(1, 100, "article", true),
+                event(2, 100, "article", false)));
+
+        assertEquals(1, batch.toInsert().size());
+        assertEquals(1, batch.toDelete().size());
+        assertTrue(batch.articleDeltas().isEmpty());
+    }
+
+    private static Likes like(long userId, long targetId, String type) {
+        Likes like = new Likes();
+        like.setUserId(userId);
+        like.setTargetId(targetId);
+        like.setTargetType(type);
+        return like;
+    }
+
+    @Test
+    void handleLikeEvents_PersistsBatchAndAcksMultiple() throws Exception {
+        when(likesMapper.selectExistingForUpdate(anyList())).thenReturn(List.of(like(3, 7, "reply")));
+        when(likesMapper.insertIgnoreBatch(anyList())).thenReturn(2);
+        when(likesMapper.deleteBatch(anyList())).thenReturn(1);
+
+        consumer.handleLikeEvents(List.of(
+                message(event(1, 100, "article", true), 11),
+                message(event(2, 100, "article", true), 12),
+                message(event(3, 7, "reply", false), 13)), channel);
+
+        verify(likesMapper).insertIgnoreBatch(anyList());
+        verify(likesMapper).deleteBatch(anyList());
+        verify(articleMapper).incrementLikeCountBatch(List.of(new CounterDelta(100L, 2L)));
+        verify(articleReplyMapper).incrementLikeCountBatch(List.of(new CounterDelta(7L, -1L)));
+        verify(hotArticleRanking).onLikes(List.of(new CounterDelta(100L, 2L)));
+        verify(channel).basicAck(13, true);
+    }
+
+    @Test
+    void persistLikeMessages_RedeliveredBatchDoesNotCountTwice() {
+        // 第一次处理已经落库但没来得及确认：点赞已存在，取消点赞的记录已删除
+        when(likesMapper.selectExistingForUpdate(anyList())).thenReturn(List.of(like(1, 100, "ARTICLE")));
+
+        consumer.persistLikeMessages(List.of(
+                message(event(1, 100, "article", true), 31),
+                message(event(2, 100, "article", false), 32)));
+
+        verify(likesMapper, never()).insertIgnoreBatch(anyList());
+        verify(likesMapper, never()).deleteBatch(anyList());
+        verify(articleMapper, never()).incrementLikeCountBatch(anyList());
+        verify(hotArticleRanking).onLikes(List.of());
+    }
+
+    @Test
+    void handleLikeEvents_ConcurrentRedeliveryRollsBackAndNacks() throws Exception {
+        // 查询时记录还不存在，插入前被同一批消息的另一次处理抢先插入
+        when(likesMapper.insertIgnoreBatch(anyList())).thenReturn(1);
+
+        consumer.handleLikeEvents(List.of(
+                message(event(1, 100, "article", true), 41),
+                message(event(2, 100, "article", true), 42)), channel);
+
+        verify(articleMapper, never()).incrementLikeCountBatch(anyList());
+        verify(hotArticleRanking, never()).onLikes(anyList());
+        verify(channel).basicNack(42, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void handleLikeEvents_DbFailureNacksWholeBatch() throws Exception {
+        when(likesMapper.insertIgnoreBatch(anyList())).thenThrow(new RuntimeException("db down"));
+
+        consumer.handleLikeEvents(List.of(
+                message(event(1, 100, "article", true), 21),
+                message(event(2, 100, "article", true), 22)), channel);
+
+        verify(channel).basicNack(22, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    private Message viewMessage(long articleId, long tag) {
+        return message(new ArticleViewEvent(articleId, System.currentTimeMillis()), tag);
+    }
+
+    @Test
+    void handleViewEvents_DoesNotAckBeforeFlush() throws Exception {
+        consumer.handleViewEvents(List.of(viewMessage(1, 1), viewMessage(1, 2)), channel);
+
+        verifyNoInteractions(articleMapper);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void flushViewCounts_MergesBatchesIntoOneUpdateThenAcksPerChannel() throws Exception {
+        Channel otherChannel = mock(Channel.class);
+        consumer.handleViewEvents(List.of(viewMessage(1, 1), viewMessage(2, 2)), channel);
+        consumer.handleViewEvents(List.of(viewMessage(1, 7)), otherChannel);
+        consumer.handleViewEvents(List.of(viewMessage(1, 3)), channel);
+
+        consumer.flushViewCounts();
+
+        verify(articleMapper, times(1)).incrementVisitCountBatch(argThat(deltas ->
+                deltas.size() == 2 && deltas.contains(new CounterDelta(1L, 3L)) && deltas.contains(new CounterDelta(2L, 1L))));
+        verify(channel).basicAck(3, true);
+        verify(otherChannel).basicAck(7, true);
+
+        // 已落库的批次不会被重复写入
+        consumer.flushViewCounts();
+        verify(articleMapper, times(1)).incrementVisitCountBatch(anyList());
+    }
+
+    @Test
+    void flushViewCounts_DbFailureNacksWithRequeue() throws Exception {
+        when(articleMapper.incrementVisitCountBatch(anyList())).thenThrow(new RuntimeException("db down"));
+        consumer.handleViewEvents(List.of(viewMessage(1, 4), viewMessage(1, 5)), channel);
+
+        consumer.flushViewCounts();
+
+        verify(channel).basicNack(5, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void handleViewEvents_FlushesInlineWhenThresholdReached() throws Exception {
+        ReflectionTestUtils.setField(consumer, "viewFlushThreshold", 2);
+
+        consumer.handleViewEvents(List.of(viewMessage(9, 1), viewMessage(9, 2)), channel);
+
+        verify(articleMapper).incrementVisitCountBatch(List.of(new CounterDelta(9L, 2L)));
+        verify(channel).basicAck(2, true);
+    }
+
+    @Test
+    void handleViewEvents_MergesProducerBatchEvents() throws Exception {
+        consumer.handleViewEvents(List.of(
+                message(new ArticleViewBatchEvent(Map.of(1L, 5L, 2L, 3L), null, System.currentTimeMillis()), 1),
+                viewMessage(1, 2)), channel);
+
+        consumer.flushViewCounts();
+
+        verify(articleMapper).incrementVisitCountBatch(argThat(deltas ->
+                deltas.size() == 2 && deltas.contains(new CounterDelta(1L, 6L)) && deltas.contains(new CounterDelta(2L, 3L))));
+        verify(channel).basicAck(2, true);
+    }
+
+    @Test
+    void handleViewEvents_PersistsUniqueVisitorsWithViewsInOneTransaction() throws Exception {
+        consumer.handleViewEvents(List.of(
+                message(new ArticleViewBatchEvent(Map.of(1L, 5L), Map.of(1L, 2L), System.currentTimeMillis()), 1)), channel);
+
+        consumer.flushViewCounts();
+
+        verify(transactionTemplate).execute(any());
+        verify(articleMapper).incrementVisitCountBatch(List.of(new CounterDelta(1L, 5L)));
+        verify(articleMapper).incrementUniqueVisitCountBatch(List.of(new CounterDelta(1L, 2L)));
+        verify(channel).basicAck(1, true);
+    }
+}
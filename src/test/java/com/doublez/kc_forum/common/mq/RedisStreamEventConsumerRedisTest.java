@@ -0,0 +1,136 @@
+package com.doublez.kc_forum.common.mq;
+
+import com.doublez.kc_forum.common.config.RabbitMQConfig;
+import com.doublez.kc_forum.common.event.ArticleLikeEvent;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 连接真实的 Redis 执行 XADD / XREADGROUP / XACK / XCLAIM，默认 redis://localhost:6379/15，
+ * 可用 -Dredis.uri 指定；Redis 不可达时跳过。测试会删除事件 Stream，不要指向生产库。
+ */
+@ExtendWith(MockitoExtension.class)
+class RedisStreamEventConsumerRedisTest {
+
+    private static final String LIKE_STREAM = RedisKeyUtil.getEventStreamKey(RabbitMQConfig.LIKE_ROUTING_KEY);
+    private static final String VIEW_STREAM = RedisKeyUtil.getEventStreamKey(RabbitMQConfig.VIEW_ROUTING_KEY);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate stringRedisTemplate;
+    private static boolean available;
+
+    @Mock
+    private ForumEventConsumer forumEventConsumer;
+
+    private RedisStreamEventConsumer consumer;
+    private RedisStreamEventTransport transport;
+    private String group;
+
+    @BeforeAll
+    static void connect() {
+        URI uri = URI.create(System.getProperty("redis.uri", "redis://localhost:6379/15"));
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(uri.getHost(), uri.getPort());
+        if (uri.getPath() != null && uri.getPath().length() > 1) {
+            configuration.setDatabase(Integer.parseInt(uri.getPath().substring(1)));
+        }
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.start();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        try {
+            available = "PONG".equals(stringRedisTemplate.execute((RedisCallback<String>) RedisConnection::ping));
+        } catch (Exception e) {
+            available = false;
+        }
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(available, "Redis 不可达，跳过");
+        stringRedisTemplate.delete(List.of(LIKE_STREAM, VIEW_STREAM));
+        group = "test-" + UUID.randomUUID();
+        transport = new RedisStreamEventTransport(stringRedisTemplate, new Jackson2JsonMessageConverter(), 10_000);
+
+        consumer = new RedisStreamEventConsumer();
+        ReflectionTestUtils.setField(consumer, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(consumer, "forumEventConsumer", forumEventConsumer);
+        ReflectionTestUtils.setField(consumer, "transport", EventTransport.REDIS_STREAM);
+        ReflectionTestUtils.setField(consumer, "group", group);
+        ReflectionTestUtils.setField(consumer, "consumerName", "test-consumer");
+        ReflectionTestUtils.setField(consumer, "batchSize", 100);
+        ReflectionTestUtils.setField(consumer, "blockMs", 100L);
+        ReflectionTestUtils.setField(consumer, "claimIdleMs", 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (consumer != null) consumer.stop();
+        if (available) stringRedisTemplate.delete(List.of(LIKE_STREAM, VIEW_STREAM));
+    }
+
+    private long pending() {
+        PendingMessagesSummary summary = stringRedisTemplate.opsForStream().pending(LIKE_STREAM, group);
+        return summary == null ? 0 : summary.getTotalPendingMessages();
+    }
+
+    private void awaitNoPending() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, pending());
+    }
+
+    @Test
+    void consumesBatchWithXReadGroupAndAcks() throws Exception {
+        transport.send(RabbitMQConfig.LIKE_ROUTING_KEY, new ArticleLikeEvent(1L, 100L, "article", 123L, true));
+        transport.send(RabbitMQConfig.LIKE_ROUTING_KEY, new ArticleLikeEvent(2L, 100L, "article", 124L, true));
+
+        consumer.start();
+
+        // 启动前写入的两条在一次 XREADGROUP 中读出，落库后 XACK，PEL 为空
+        verify(forumEventConsumer, timeout(5_000)).persistLikeMessages(argThat(messages -> messages.size() == 2));
+        awaitNoPending();
+    }
+
+    @Test
+    void failedBatchStaysPendingAndIsClaimedAgain() throws Exception {
+        ReflectionTestUtils.setField(consumer, "claimIdleMs", 300L);
+        doThrow(new RuntimeException("db down")).doNothing().when(forumEventConsumer).persistLikeMessages(anyList());
+        transport.send(RabbitMQConfig.LIKE_ROUTING_KEY, new ArticleLikeEvent(1L, 100L, "article", 123L, true));
+
+        consumer.start();
+
+        // 第一次失败不确认，空闲超过 claim-idle-ms 后被 XCLAIM 重新处理并确认
+        verify(forumEventConsumer, timeout(5_000).times(2)).persistLikeMessages(argThat(messages -> messages.size() == 1));
+        awaitNoPending();
+    }
+}
@@ -0,0 +1,106 @@
+package com.doublez.kc_forum.common.mq;
+
+import com.doublez.kc_forum.common.event.ArticleLikeEvent;
+import com.doublez.kc_forum.common.event.ArticleViewEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisStreamEventConsumerTest {
+
+    private static final String STREAM = "stream:event.like";
+    private static final String GROUP = "kc-forum-persistence";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private StreamOperations<String, Object, Object> streamOperations;
+    @Mock
+    private ForumEventConsumer forumEventConsumer;
+
+    @InjectMocks
+    private RedisStreamEventConsumer consumer;
+
+    private final MessageConverter converter = new Jackson2JsonMessageConverter();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(consumer, "group", GROUP);
+        lenient().when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+    }
+
+    private MapRecord<String, Object, Object> record(String id, Object event) {
+        Message message = converter.toMessage(event, new MessageProperties());
+        Map<Object, Object> fields = new HashMap<>();
+        fields.put(RedisStreamEventTransport.FIELD_TYPE, EventTransport.typeId(message));
+        fields.put(RedisStreamEventTransport.FIELD_BODY, new String(message.getBody(), StandardCharsets.UTF_8));
+        return StreamRecords.newRecord().in(STREAM).withId(RecordId.of(id)).ofMap(fields);
+    }
+
+    @Test
+    void toMessages_RoundTripsThroughJsonConverter() {
+        ArticleLikeEvent event = new ArticleLikeEvent(1L, 100L, "article", 123L, true);
+
+        List<Message> messages = RedisStreamEventConsumer.toMessages(List.of(record("1-0", event)));
+
+        assertEquals(event, converter.fromMessage(messages.get(0)));
+    }
+
+    @Test
+    void handleLikeRecords_AcksWholeBatchAfterPersist() {
+        ArticleLikeEvent event = new ArticleLikeEvent(1L, 100L, "article", 123L, true);
+
+        consumer.handleLikeRecords(STREAM, List.of(record("1-0", event), record("2-0", event)));
+
+        verify(forumEventConsumer).persistLikeMessages(argThat(messages -> messages.size() == 2));
+        verify(streamOperations).acknowledge(STREAM, GROUP, RecordId.of("1-0"), RecordId.of("2-0"));
+    }
+
+    @Test
+    void handleLikeRecords_FailureLeavesEntriesPending() {
+        doThrow(new RuntimeException("db down")).when(forumEventConsumer).persistLikeMessages(anyList());
+
+        consumer.handleLikeRecords(STREAM, List.of(record("1-0", new ArticleLikeEvent(1L, 100L, "article", 123L, true))));
+
+        verifyNoInteractions(streamOperations);
+    }
+
+    @Test
+    void handleViewRecords_AcksOnlyWhenFlushCommits() throws Exception {
+        consumer.handleViewRecords("stream:event.view", List.of(record("5-0", new ArticleViewEvent(1L, 123L))));
+
+        ArgumentCaptor<ForumEventConsumer.BatchAcknowledger> captor = ArgumentCaptor.forClass(ForumEventConsumer.BatchAcknowledger.class);
+        verify(forumEventConsumer).enqueueViewMessages(anyList(), captor.capture());
+        verifyNoInteractions(streamOperations);
+
+        captor.getValue().nack();
+        verifyNoInteractions(streamOperations);
+
+        captor.getValue().ack();
+        verify(streamOperations).acknowledge("stream:event.view", GROUP, RecordId.of("5-0"));
+    }
+}
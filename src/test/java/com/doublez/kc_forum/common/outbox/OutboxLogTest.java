@@ -0,0 +1,140 @@
+package com.doublez.kc_forum.common.outbox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxLogTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    private static byte[] body(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> bodies(List<OutboxRecord> records) {
+        return records.stream().map(r -> new String(r.body(), StandardCharsets.UTF_8)).toList();
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".seg")).count();
+        }
+    }
+
+    @Test
+    void append_ReadBackAndCommit() {
+        try (OutboxLog log = new OutboxLog(dir, SEGMENT_SIZE)) {
+            log.append("event.like", "type.A", body("a"));
+            log.append("event.view", null, body("b"));
+
+            List<OutboxRecord> records = log.read(log.checkpoint(), 10);
+            assertEquals(List.of("a", "b"), bodies(records));
+            assertEquals("event.like", records.get(0).routingKey());
+            assertEquals("type.A", records.get(0).typeId());
+            assertNull(records.get(1).typeId());
+
+            log.commit(records.get(0).nextOffset());
+            assertEquals(List.of("b"), bodies(log.read(log.checkpoint(), 10)));
+        }
+    }
+
+    @Test
+    void reopen_ReplaysRecordsAfterCheckpoint() {
+        try (OutboxLog log = new OutboxLog(dir, SEGMENT_SIZE)) {
+            log.append("k", "t", body("delivered"));
+            log.commit(log.read(0, 1).get(0).nextOffset());
+            log.append("k", "t", body("pending-1"));
+            log.append("k", "t", body("pending-2"));
+        }
+        try (OutboxLog log = new OutboxLog(dir, SEGMENT_SIZE)) {
+            assertEquals(List.of("pending-1", "pending-2"), bodies(log.read(log.checkpoint(), 10)));
+            // 恢复后继续追加在有效记录之后
+            log.append("k", "t", body("pending-3"));
+            assertEquals(3, log.read(log.checkpoint(), 10).size());
+        }
+    }
+
+    @Test
+    void reopen_IgnoresTornTailRecord() throws Exception {
+        long end;
+        try (OutboxLog log = new OutboxLog(dir, SEGMENT_SIZE)) {
+            log.append("k", "t", body("complete"));
+            end = log.append("k", "t", body("torn"));
+        }
+        // 模拟最后一条记录只写了一半：破坏消息体的最后一个字节
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(end - 1);
+            file.write('X');
+        }
+
+        try (OutboxLog log = new OutboxLog(dir, SEGMENT_SIZE)) {
+            assertEquals(List.of("complete"), bodies(log.read(log.checkpoint(), 10)));
+            log.append("k", "t", body("next"));
+            assertEquals(List.of("complete", "next"), bodies(log.read(log.checkpoint(), 10)));
+        }
+    }
+
+    @Test
+    void append_RollsSegmentsAndCommitDeletesDeliveredOnes() throws Exception {
+        byte[] payload = new byte[1000];
+        try (OutboxLog log = new OutboxLog(dir, SEGMENT_SIZE)) {
+            for (int i = 0; i < 10; i++) {
+                log.append("k", "t", payload);
+            }
+            assertTrue(segmentFiles() > 1);
+
+            List<OutboxRecord> records = log.read(log.checkpoint(), 100);
+            assertEquals(10, records.size());
+
+            log.commit(records.get(records.size() - 1).nextOffset());
+            assertEquals(1, segmentFiles());
+            assertTrue(log.read(log.checkpoint(), 100).isEmpty());
+        }
+        assertThrows(IllegalArgumentException.class, () -> {
+            try (OutboxLog log = new OutboxLog(dir, SEGMENT_SIZE)) {
+                log.append("k", "t", new byte[SEGMENT_SIZE]);
+            }
+        });
+    }
+
+    @Test
+    void append_ConcurrentWritersShareSyncs() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try (OutboxLog log = new OutboxLog(dir, 1 << 20)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 200; i++) log.append("k", "t", body("x"));
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(1600, log.appendCount());
+            assertTrue(log.syncCount() <= log.appendCount());
+            assertEquals(1600, log.read(log.checkpoint(), 10_000).size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.doublez.kc_forum.common.utiles;
+
+import com.doublez.kc_forum.common.exception.BusinessException;
+import com.doublez.kc_forum.common.pojo.AuthenticatedPrincipal;
+import io.jsonwebtoken.ExpiredJwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "dGhpcyBpcyBhIHRlc3Qgc2VjcmV0IGtleSBmb3IgdGVzdGluZyBwdXJwb3Nlcw==";
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        JwtUtil.init(SECRET, 3600000, 100);
+        token = JwtUtil.genToken(Map.of(JwtUtil.USER_ID, 1L, JwtUtil.EMAIL, "test@example.com"));
+    }
+
+    @Test
+    void authenticate_CachesVerifiedTokenUntilKeyChanges() {
+        AuthenticatedPrincipal first = JwtUtil.authenticate(token);
+
+        assertEquals(1L, first.userId());
+        assertEquals("test@example.com", first.email());
+        assertSame(first, JwtUtil.authenticate(token));
+
+        // 重新初始化（更换密钥）后旧的校验结果作废
+        JwtUtil.init(SECRET, 3600000, 100);
+        assertNotSame(first, JwtUtil.authenticate(token));
+    }
+
+    @Test
+    void authenticate_TamperedOrExpiredTokenIsNotServedFromCache() {
+        JwtUtil.authenticate(token);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertNull(JwtUtil.authenticate(tampered));
+
+        JwtUtil.init(SECRET, -1000, 100);
+        String expired = JwtUtil.genToken(Map.of(JwtUtil.USER_ID, 1L, JwtUtil.EMAIL, "test@example.com"));
+        assertThrows(ExpiredJwtException.class, () -> JwtUtil.authenticate(expired));
+        assertThrows(ExpiredJwtException.class, () -> JwtUtil.authenticate(expired));
+    }
+
+    @Test
+    void getUserId_ReadsPrincipalFromRequestAttributeBeforeHeader() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, new AuthenticatedPrincipal(7L, "a@b.com", Long.MAX_VALUE));
+
+        assertEquals(7L, JwtUtil.getUserId(request));
+
+        MockHttpServletRequest withHeader = new MockHttpServletRequest();
+        withHeader.addHeader("Authorization", "Bearer " + token);
+        assertEquals(1L, JwtUtil.getUserId(withHeader));
+        assertEquals("test@example.com", JwtUtil.getUserEmail(withHeader));
+
+        assertThrows(BusinessException.class, () -> JwtUtil.getUserId(new MockHttpServletRequest()));
+    }
+}
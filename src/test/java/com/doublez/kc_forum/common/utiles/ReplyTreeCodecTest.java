@@ -0,0 +1,59 @@
+package com.doublez.kc_forum.common.utiles;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplyTreeCodecTest {
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) out.writeBytes(part);
+        return out.toByteArray();
+    }
+
+    @Test
+    void decode_SnapshotThenAppendsBuildsChildrenNewestFirst() {
+        Map<Long, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put(1L, 0L);
+        snapshot.put(2L, 1L);
+        snapshot.put(3L, 1L);
+        byte[] blob = concat(ReplyTreeCodec.encodeSnapshot(snapshot),
+                ReplyTreeCodec.entry(4L, 2L),
+                ReplyTreeCodec.entry(5L, 1L));
+
+        ReplyTreeCodec.Decoded tree = ReplyTreeCodec.decode(blob);
+
+        assertTrue(tree.ready());
+        assertEquals(5, tree.entries());
+        Map<Long, List<Long>> children = tree.childrenByParent();
+        assertEquals(List.of(1L), children.get(0L));
+        assertEquals(List.of(5L, 3L, 2L), children.get(1L));
+        assertEquals(List.of(4L), children.get(2L));
+    }
+
+    @Test
+    void decode_TombstoneWinsOverLaterSnapshotEntry() {
+        // 构建占位期间先追加了删除记录，之后写入的快照仍包含该回复
+        byte[] blob = concat(ReplyTreeCodec.tombstone(2L),
+                ReplyTreeCodec.encodeSnapshot(Map.of(1L, 0L, 2L, 1L)));
+
+        ReplyTreeCodec.Decoded tree = ReplyTreeCodec.decode(blob);
+
+        assertEquals(Map.of(1L, 0L), tree.parentById());
+        assertEquals(1, tree.tombstones());
+    }
+
+    @Test
+    void decode_WithoutReadyMarkerIsNotReady() {
+        ReplyTreeCodec.Decoded tree = ReplyTreeCodec.decode(ReplyTreeCodec.entry(7L, 0L));
+
+        assertFalse(tree.ready());
+        assertEquals(Map.of(7L, 0L), tree.parentById());
+    }
+}
@@ -6,6 +6,7 @@ import com.doublez.kc_forum.common.Result;
 import com.doublez.kc_forum.common.ResultCode;
 import com.doublez.kc_forum.common.exception.BusinessException;
 import com.doublez.kc_forum.common.exception.SystemException;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
 import com.doublez.kc_forum.common.pojo.request.RegisterRequest;
 import com.doublez.kc_forum.common.pojo.request.UserLoginRequest;
 import com.doublez.kc_forum.common.pojo.response.UserLoginResponse;
@@ -17,11 +18,13 @@ import com.doublez.kc_forum.service.impl.EmailServiceImpl;
 import com.doublez.kc_forum.service.impl.RefreshTokenService;
 import com.doublez.kc_forum.service.impl.UserServiceImpl;
 import jakarta.servlet.http.HttpServletResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
@@ -44,6 +47,9 @@ class UserServiceTest {
     @Mock
     private HttpServletResponse response;
 
+    @Spy
+    private ForumMetrics metrics = new ForumMetrics(new SimpleMeterRegistry());
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -105,6 +111,7 @@ class UserServiceTest {
 
         // Mock user retrieval
         when(userMapper.selectOne(any(LambdaQueryWrapper.class))).thenReturn(mockUser);
+        when(refreshTokenService.issue(1L, "test@example.com")).thenReturn("1.session.secret");
 
         UserLoginResponse loginResponse = userService.login(request, response);
 
@@ -113,7 +120,7 @@ class UserServiceTest {
         assertNotNull(loginResponse.getAuthorization());
         
         // Verify refresh token creation
-        verify(refreshTokenService).createRefreshToken(anyString());
+        verify(refreshTokenService).issue(1L, "test@example.com");
         // Verify cookie added
         verify(response).addCookie(any());
     }
@@ -0,0 +1,144 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.ResultCode;
+import com.doublez.kc_forum.common.cache.ArticleLocalCache;
+import com.doublez.kc_forum.common.exception.BusinessException;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.response.ArticleMetaCacheDTO;
+import com.doublez.kc_forum.common.pojo.response.UserArticleResponse;
+import com.doublez.kc_forum.common.pojo.response.ViewArticleCursorResponse;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.mapper.ArticleMapper;
+import com.doublez.kc_forum.model.Article;
+import com.doublez.kc_forum.service.IUserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ArticleServiceImplCursorTest {
+
+    private static final Long BOARD_ID = 1L;
+    private static final String BOARD_KEY = RedisKeyUtil.getBoardArticlesZSetKey(BOARD_ID);
+
+    @Mock
+    private ArticleMapper articleMapper;
+    @Mock
+    private IUserService userServiceImpl;
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+    @Mock
+    private ArticleLocalCache articleLocalCache;
+    @Mock
+    private BoardZsetRebuildService boardZsetRebuildService;
+
+    @Spy
+    private ForumMetrics metrics = new ForumMetrics(new SimpleMeterRegistry());
+
+    @InjectMocks
+    private ArticleServiceImpl articleService;
+
+    @BeforeEach
+    void setUp() {
+        // 所有文章都命中L1，只验证游标逻辑
+        lenient().when(articleLocalCache.getArticles(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().collect(Collectors.toMap(Function.identity(), ArticleServiceImplCursorTest::article));
+        });
+        lenient().when(userServiceImpl.fetchAndCacheUsers(anyList())).thenReturn(Map.of(1L, new UserArticleResponse()));
+    }
+
+    private static Article article(Long id) {
+        Article article = new Article();
+        article.setId(id);
+        article.setBoardId(BOARD_ID);
+        article.setUserId(1L);
+        return article;
+    }
+
+    private static List<Long> ids(ViewArticleCursorResponse response) {
+        return response.getRecord().stream().map(ArticleMetaCacheDTO::getId).toList();
+    }
+
+    @Test
+    void cursorPage_FromRedisOrdersSameSecondMembersNumerically() {
+        // 99 秒内的成员在 ZSET 中按字典序倒序返回，"100" 被 LIMIT 截掉了
+        Set<ZSetOperations.TypedTuple<String>> range = new LinkedHashSet<>(List.of(
+                new DefaultTypedTuple<>("9", 99.0),
+                new DefaultTypedTuple<>("12", 99.0),
+                new DefaultTypedTuple<>("11", 99.0)));
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenReturn(List.of(6L, range, Set.of("10", "8", "3")));
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(zSetOperations.rangeByScore(BOARD_KEY, 99, 99)).thenReturn(Set.of("9", "11", "12", "100"));
+
+        ViewArticleCursorResponse first = articleService.getArticleCardsByCursor(BOARD_ID, "100_10", 2);
+        assertEquals(List.of(8L, 3L), ids(first));
+        assertEquals("100_3", first.getNextCursor());
+
+        ViewArticleCursorResponse second = articleService.getArticleCardsByCursor(BOARD_ID, "100_3", 2);
+        assertEquals(List.of(100L, 12L), ids(second));
+        assertEquals("99_12", second.getNextCursor());
+        verifyNoInteractions(articleMapper, boardZsetRebuildService);
+    }
+
+    @Test
+    void cursorPage_LastPageHasNoNextCursor() {
+        Set<ZSetOperations.TypedTuple<String>> range = new LinkedHashSet<>(List.of(
+                new DefaultTypedTuple<>("2", 50.0),
+                new DefaultTypedTuple<>("1", 40.0)));
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class))).thenReturn(List.of(2L, range));
+
+        ViewArticleCursorResponse response = articleService.getArticleCardsByCursor(BOARD_ID, null, 5);
+
+        assertEquals(List.of(2L, 1L), ids(response));
+        assertNull(response.getNextCursor());
+    }
+
+    @Test
+    void cursorPage_RedisMissUsesKeysetQueryInsteadOfWholeBoard() {
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class))).thenReturn(List.of(0L, Set.of(), Set.of()));
+        LocalDateTime time = LocalDateTime.ofEpochSecond(1000, 0, ZoneOffset.UTC);
+        List<Article> rows = new ArrayList<>();
+        for (long id = 9; id >= 7; id--) {
+            Article row = article(id);
+            row.setCreateTime(time);
+            rows.add(row);
+        }
+        when(articleMapper.selectBoardArticleIdsBefore(BOARD_ID, time, 10L, 3)).thenReturn(rows);
+
+        ViewArticleCursorResponse response = articleService.getArticleCardsByCursor(BOARD_ID, "1000_10", 2);
+
+        assertEquals(List.of(9L, 8L), ids(response));
+        assertEquals("1000_8", response.getNextCursor());
+        verify(boardZsetRebuildService).triggerRebuild(BOARD_ID);
+    }
+
+    @Test
+    void cursorPage_InvalidCursorRejected() {
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> articleService.getArticleCardsByCursor(BOARD_ID, "abc", 2));
+        assertEquals(ResultCode.FAILED_PARAMS_VALIDATE, e.getResultCode());
+    }
+}
@@ -0,0 +1,70 @@
+package com.doublez.kc_forum.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ArticleVisitServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ViewCountAggregator viewCountAggregator;
+
+    @InjectMocks
+    private ArticleVisitService articleVisitService;
+
+    @Test
+    void recordVisit_DefaultModeCountsEveryView() {
+        Long uniqueCount = articleVisitService.recordVisit(1L, 2L);
+
+        assertNull(uniqueCount);
+        verify(viewCountAggregator).recordView(1L);
+        verifyNoInteractions(stringRedisTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordVisit_UniqueModeCountsRawViewThroughAggregator() {
+        ReflectionTestUtils.setField(articleVisitService, "uniqueMode", true);
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(0L, 5L));
+
+        assertEquals(5L, articleVisitService.recordVisit(1L, 2L));
+        // 重复访客同样计入原始浏览次数，基数没有变化，不累加独立访客数
+        verify(viewCountAggregator).recordView(1L);
+        verify(viewCountAggregator, never()).recordUniqueVisitor(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordVisit_UniqueModeNewVisitorRecordsUniqueDelta() {
+        ReflectionTestUtils.setField(articleVisitService, "uniqueMode", true);
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(1L, 6L));
+
+        assertEquals(6L, articleVisitService.recordVisit(1L, 3L));
+        verify(viewCountAggregator).recordView(1L);
+        verify(viewCountAggregator).recordUniqueVisitor(1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordVisit_UniqueModeRedisFailureStillCountsView() {
+        ReflectionTestUtils.setField(articleVisitService, "uniqueMode", true);
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenThrow(new IllegalStateException("redis down"));
+
+        assertNull(articleVisitService.recordVisit(1L, 2L));
+        verify(viewCountAggregator).recordView(1L);
+    }
+}
@@ -0,0 +1,119 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.mapper.ArticleMapper;
+import com.doublez.kc_forum.model.Article;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BoardZsetRebuildServiceTest {
+
+    private static final Long BOARD_ID = 5L;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+    @Mock
+    private ArticleMapper articleMapper;
+    @Mock
+    private RedisScript<Long> boardZsetPublishScript;
+    @Mock
+    private RedisScript<Long> leaseRenewScript;
+    @Mock
+    private RedisScript<Long> leaseReleaseScript;
+
+    private BoardZsetRebuildService rebuildService;
+
+    @BeforeEach
+    void setUp() {
+        rebuildService = new BoardZsetRebuildService();
+        Executor directExecutor = Runnable::run;
+        ReflectionTestUtils.setField(rebuildService, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(rebuildService, "articleMapper", articleMapper);
+        ReflectionTestUtils.setField(rebuildService, "redisPersistenceExecutor", directExecutor);
+        ReflectionTestUtils.setField(rebuildService, "boardZsetPublishScript", boardZsetPublishScript);
+        ReflectionTestUtils.setField(rebuildService, "leaseRenewScript", leaseRenewScript);
+        ReflectionTestUtils.setField(rebuildService, "leaseReleaseScript", leaseReleaseScript);
+        ReflectionTestUtils.setField(rebuildService, "chunkSize", 2);
+        ReflectionTestUtils.setField(rebuildService, "leaseMs", 30000L);
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+    }
+
+    private static Article row(long id, LocalDateTime createTime) {
+        Article article = new Article();
+        article.setId(id);
+        article.setCreateTime(createTime);
+        return article;
+    }
+
+    @Test
+    void triggerRebuild_SkipsWhenLeaseHeldElsewhere() {
+        when(valueOperations.setIfAbsent(eq(RedisKeyUtil.getBoardArticlesRebuildLeaseKey(BOARD_ID)), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS)))
+                .thenReturn(false);
+
+        assertFalse(rebuildService.triggerRebuild(BOARD_ID));
+        verifyNoInteractions(articleMapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void triggerRebuild_StreamsKeysetChunksThenPublishes() {
+        LocalDateTime t = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any())).thenReturn(true);
+        when(articleMapper.selectBoardArticleIdsBefore(BOARD_ID, null, null, 2))
+                .thenReturn(List.of(row(5, t), row(4, t)));
+        when(articleMapper.selectBoardArticleIdsBefore(BOARD_ID, t, 4L, 2))
+                .thenReturn(List.of(row(3, t.minusDays(1))));
+        when(stringRedisTemplate.execute(eq(leaseRenewScript), anyList(), any(Object[].class))).thenReturn(1L);
+        when(stringRedisTemplate.execute(eq(boardZsetPublishScript), anyList(), any(Object[].class))).thenReturn(1L);
+
+        assertTrue(rebuildService.triggerRebuild(BOARD_ID));
+
+        // 每个分块一次 pipeline，最后一块不满时停止读取
+        verify(stringRedisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+        verify(articleMapper, times(2)).selectBoardArticleIdsBefore(anyLong(), any(), any(), anyInt());
+        verify(stringRedisTemplate).execute(eq(boardZsetPublishScript),
+                eq(List.of(RedisKeyUtil.getBoardArticlesRebuildLeaseKey(BOARD_ID),
+                        RedisKeyUtil.getBoardArticlesZSetBuildingKey(BOARD_ID),
+                        RedisKeyUtil.getBoardArticlesZSetKey(BOARD_ID))),
+                any(Object[].class));
+        verify(stringRedisTemplate).execute(eq(leaseReleaseScript), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void triggerRebuild_AbortsWithoutPublishingWhenLeaseLost() {
+        LocalDateTime t = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any())).thenReturn(true);
+        when(articleMapper.selectBoardArticleIdsBefore(BOARD_ID, null, null, 2))
+                .thenReturn(List.of(row(5, t), row(4, t)));
+        when(stringRedisTemplate.execute(eq(leaseRenewScript), anyList(), any(Object[].class))).thenReturn(0L);
+
+        rebuildService.triggerRebuild(BOARD_ID);
+
+        verify(stringRedisTemplate, never()).execute(eq(boardZsetPublishScript), anyList(), any(Object[].class));
+        verify(articleMapper, times(1)).selectBoardArticleIdsBefore(anyLong(), any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,108 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheBackfillBatcherTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private RedisOperations<String, String> pipelineOperations;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    @Spy
+    private ForumMetrics metrics = new ForumMetrics(registry);
+
+    @InjectMocks
+    private CacheBackfillBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        // 窗口足够长，由测试手动 flush
+        ReflectionTestUtils.setField(batcher, "windowMs", 60_000L);
+        ReflectionTestUtils.setField(batcher, "maxBatch", 500);
+        ReflectionTestUtils.setField(batcher, "maxPending", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.close();
+    }
+
+    private static Map<byte[], byte[]> hash(String id) {
+        return Map.of("id".getBytes(StandardCharsets.UTF_8), id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_CoalescesRepeatedKeysIntoOnePipeline() {
+        when(pipelineOperations.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            ((SessionCallback<Object>) invocation.getArgument(0)).execute(pipelineOperations);
+            return null;
+        });
+
+        batcher.enqueueValue("user:1", "v1", Duration.ofHours(1));
+        batcher.enqueueValue("user:1", "v2", Duration.ofHours(1));
+        batcher.enqueueValue("user:1", "v3", Duration.ofHours(1));
+        batcher.flush();
+
+        verify(stringRedisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(valueOperations).set("user:1", "v3", Duration.ofHours(1));
+        verifyNoMoreInteractions(valueOperations);
+        verifyNoInteractions(redisTemplate);
+        assertEquals(2.0, registry.get("kc.cache.backfill").tag("result", "coalesced").counter().count());
+        assertEquals(0, batcher.pendingSize());
+    }
+
+    @Test
+    void enqueue_DropsNewKeysWhenFull() {
+        batcher.enqueueHash("article:1", hash("1"));
+        batcher.enqueueHash("article:2", hash("2"));
+        batcher.enqueueHash("article:3", hash("3"));
+        // 已在队列中的 Key 仍然可以更新
+        batcher.enqueueHash("article:1", hash("1"));
+
+        assertEquals(2, batcher.pendingSize());
+        assertEquals(1.0, registry.get("kc.cache.backfill").tag("result", "dropped").counter().count());
+    }
+
+    @Test
+    void flush_FailureDropsBatchWithoutRetry() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenThrow(new RuntimeException("redis down"));
+
+        batcher.enqueueHash("article:1", hash("1"));
+        batcher.flush();
+
+        assertEquals(0, batcher.pendingSize());
+    }
+}
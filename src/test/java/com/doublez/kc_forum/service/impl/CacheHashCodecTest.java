@@ -0,0 +1,97 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.config.RedisConfig;
+import com.doublez.kc_forum.common.pojo.response.ArticleReplyMetaCacheDTO;
+import com.doublez.kc_forum.common.utiles.CacheRecordCodec;
+import com.doublez.kc_forum.model.Article;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheHashCodecTest {
+
+    private final Jackson2JsonRedisSerializer<Object> jackson = new Jackson2JsonRedisSerializer<>(RedisConfig.redisObjectMapper(), Object.class);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final CacheHashCodec legacyCodec = new CacheHashCodec(false, jackson, objectMapper);
+    private final CacheHashCodec binaryCodec = new CacheHashCodec(true, jackson, objectMapper);
+
+    private static byte[] b(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Article article() {
+        Article article = new Article();
+        article.setId(1024L);
+        article.setBoardId(3L);
+        article.setUserId(77L);
+        article.setTitle("标题 title");
+        article.setIsTop((byte) 1);
+        article.setCreateTime(LocalDateTime.of(2025, 5, 1, 12, 30, 15, 123_000_000));
+        article.setUpdateTime(null);
+        article.setReplyCount(42);
+        article.setLikeCount(128);
+        article.setVisitCount(4096);
+        return article;
+    }
+
+    @Test
+    void binaryArticle_RoundTripsWithCountersAsPlainIntegers() {
+        Map<byte[], byte[]> hash = binaryCodec.encodeArticle(article());
+
+        assertEquals(4, hash.size());
+        // 模拟 HINCRBY 后的计数字段
+        hash.put(b("likeCount"), b("129"));
+        Article decoded = binaryCodec.decodeArticle(hash);
+
+        Article expected = article();
+        expected.setLikeCount(129);
+        assertEquals(expected, decoded);
+    }
+
+    @Test
+    void binaryReply_TopLevelReplyIdStoredAsZero() {
+        ArticleReplyMetaCacheDTO reply = new ArticleReplyMetaCacheDTO();
+        reply.setId(2048L);
+        reply.setArticleId(1024L);
+        reply.setPostUserId(77L);
+        reply.setReplyUserId(88L);
+        reply.setContent("回复内容");
+        reply.setCreateTime(LocalDateTime.of(2025, 5, 1, 13, 0));
+        reply.setLikeCount(5);
+        reply.setChildrenCount(2);
+
+        ArticleReplyMetaCacheDTO decoded = binaryCodec.decodeReply(binaryCodec.encodeReply(reply));
+
+        reply.setReplyId(0L);
+        assertEquals(reply, decoded);
+    }
+
+    @Test
+    void decode_ReadsLegacyHashRegardlessOfWriteMode() {
+        Map<byte[], byte[]> legacyHash = legacyCodec.encodeArticle(article());
+
+        assertEquals(article(), binaryCodec.decodeArticle(legacyHash));
+        assertEquals(article(), legacyCodec.decodeArticle(binaryCodec.encodeArticle(article())));
+    }
+
+    @Test
+    void decode_IncompleteHashTreatedAsMiss() {
+        // 只剩计数字段（例如更新文章时删除了 _b，或计数先于缓存写入）
+        Map<byte[], byte[]> countersOnly = new LinkedHashMap<>();
+        countersOnly.put(b("visitCount"), b("7"));
+        Map<byte[], byte[]> corrupted = new LinkedHashMap<>();
+        corrupted.put(b(CacheRecordCodec.FIELD_BINARY), new byte[]{CacheRecordCodec.VERSION, 0, (byte) 0x80});
+
+        assertNull(binaryCodec.decodeArticle(countersOnly));
+        assertNull(binaryCodec.decodeArticle(corrupted));
+        assertNull(binaryCodec.decodeReply(Map.of()));
+    }
+}
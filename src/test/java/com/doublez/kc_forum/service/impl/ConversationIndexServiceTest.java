@@ -0,0 +1,165 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.response.RecentConversationsResponse;
+import com.doublez.kc_forum.common.pojo.response.UserArticleResponse;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.mapper.MessageMapper;
+import com.doublez.kc_forum.model.Message;
+import com.doublez.kc_forum.service.IUserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationIndexServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private MessageMapper messageMapper;
+    @Mock
+    private IUserService userServiceImpl;
+    @Mock
+    private RedisScript<Long> conversationMessageScript;
+    @Mock
+    private RedisScript<Long> conversationReadScript;
+    @Mock
+    private RedisScript<Long> conversationRebuildScript;
+    @Spy
+    private ForumMetrics metrics = new ForumMetrics(new SimpleMeterRegistry());
+
+    @InjectMocks
+    private ConversationIndexService indexService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(indexService, "enabled", true);
+        ReflectionTestUtils.setField(indexService, "ttlHours", 24L);
+        ReflectionTestUtils.setField(indexService, "conversationMessageScript", conversationMessageScript);
+        ReflectionTestUtils.setField(indexService, "conversationReadScript", conversationReadScript);
+        ReflectionTestUtils.setField(indexService, "conversationRebuildScript", conversationRebuildScript);
+    }
+
+    private static RecentConversationsResponse conversation(long id, long contactId, int unread) {
+        RecentConversationsResponse conversation = new RecentConversationsResponse();
+        conversation.setId(id);
+        conversation.setContactId(contactId);
+        conversation.setLastMessageContent("m" + id);
+        conversation.setLastMessageTimestamp(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(id));
+        conversation.setUnreadCount(unread);
+        return conversation;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recentConversations_ReadsIndexAndSnapshotsWhenReady() {
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenReturn(Arrays.asList("1",
+                                new LinkedHashSet<>(List.of(new DefaultTypedTuple<>("8", 2.0), new DefaultTypedTuple<>("9", 1.0))),
+                                Map.of("8", "3", "_total", "3")),
+                        List.of(Map.of("id", "20", "content", "hi", "time", "1700000000000"),
+                                Map.of("id", "10", "content", "yo", "time", "1600000000000")));
+        UserArticleResponse user = new UserArticleResponse();
+        user.setNickName("eight");
+        when(userServiceImpl.fetchAndCacheUsers(List.of(8L, 9L))).thenReturn(Map.of(8L, user));
+
+        List<RecentConversationsResponse> conversations = indexService.recentConversations(7L);
+
+        assertEquals(2, conversations.size());
+        assertEquals(8L, conversations.get(0).getContactId());
+        assertEquals(20L, conversations.get(0).getId());
+        assertEquals(3, conversations.get(0).getUnreadCount());
+        assertEquals("eight", conversations.get(0).getContactNickname());
+        assertEquals(0, conversations.get(1).getUnreadCount());
+        verifyNoInteractions(messageMapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void unreadCount_RebuildsFromDbWhenIndexMissing() {
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class))).thenReturn(Arrays.asList(null, null));
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        // 同一时间的两条消息，同一联系人出现两次
+        when(messageMapper.getRecentConversations(7L))
+                .thenReturn(List.of(conversation(5, 8, 2), conversation(6, 8, 2), conversation(3, 9, 1)));
+        List<Object[]> args = new ArrayList<>();
+        when(stringRedisTemplate.execute(eq(conversationRebuildScript), anyList(), any(Object[].class)))
+                .thenAnswer(invocation -> {
+                    args.add((Object[]) invocation.getRawArguments()[2]);
+                    return 1L;
+                });
+
+        assertEquals(3L, indexService.unreadCount(7L));
+
+        // 脚本只在标记仍是本次重建的 token 时写入
+        ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations).set(eq(RedisKeyUtil.getConversationReadyKey(7L)), token.capture(), anyLong(), any());
+        assertTrue(token.getValue().startsWith(ConversationIndexService.STATE_BUILDING_PREFIX));
+        // 过期时间 + token + 每个联系人 5 个值
+        assertEquals(2 + 2 * 5, args.get(0).length);
+        assertEquals(token.getValue(), args.get(0)[1]);
+        assertEquals("8", args.get(0)[2]);
+        assertEquals("6", args.get(0)[5]);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuild_UsesNewTokenEachTime() {
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(messageMapper.getRecentConversations(7L)).thenReturn(List.of());
+
+        indexService.rebuild(7L);
+        indexService.rebuild(7L);
+
+        ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations, times(2)).set(eq(RedisKeyUtil.getConversationReadyKey(7L)), token.capture(), anyLong(), any());
+        assertNotEquals(token.getAllValues().get(0), token.getAllValues().get(1));
+    }
+
+    @Test
+    void onConversationRead_PassesCursorAndSnapshotKey() {
+        indexService.onConversationRead(7L, 8L, 42L);
+
+        verify(stringRedisTemplate).execute(eq(conversationReadScript),
+                eq(List.of(RedisKeyUtil.getConversationUnreadKey(7L), RedisKeyUtil.getConversationReadyKey(7L),
+                        RedisKeyUtil.getConversationLastMessageKey(7L, 8L))),
+                eq("8"), eq("42"), anyString());
+    }
+
+    @Test
+    void onMessageCreated_InvalidatesBothIndexesWhenScriptFails() {
+        when(stringRedisTemplate.execute(eq(conversationMessageScript), anyList(), any(Object[].class)))
+                .thenThrow(new IllegalStateException("redis down"));
+        Message message = new Message();
+        message.setId(1L);
+        message.setPostUserId(7L);
+        message.setReceiveUserId(8L);
+        message.setContent("hi");
+
+        indexService.onMessageCreated(message);
+
+        verify(stringRedisTemplate).delete(List.of(RedisKeyUtil.getConversationReadyKey(7L), RedisKeyUtil.getConversationReadyKey(8L)));
+    }
+}
@@ -0,0 +1,133 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.doublez.kc_forum.common.cache.ArticleLocalCache;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.CounterValue;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.mapper.ArticleMapper;
+import com.doublez.kc_forum.mapper.ArticleReplyMapper;
+import com.doublez.kc_forum.mapper.LikesMapper;
+import com.doublez.kc_forum.model.Article;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CounterReconcilerTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ArticleMapper articleMapper;
+    @Mock
+    private ArticleReplyMapper articleReplyMapper;
+    @Mock
+    private LikesMapper likesMapper;
+    @Mock
+    private ArticleLocalCache articleLocalCache;
+    @Mock
+    private RedisScript<List> counterDirtyPopScript;
+    @Mock
+    private RedisScript<Long> counterRepairScript;
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    @Spy
+    private ForumMetrics metrics = new ForumMetrics(registry);
+
+    @InjectMocks
+    private CounterReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Article.class);
+        // 两个脚本类型擦除后相同，手动注入避免歧义
+        ReflectionTestUtils.setField(reconciler, "counterDirtyPopScript", counterDirtyPopScript);
+        ReflectionTestUtils.setField(reconciler, "counterRepairScript", counterRepairScript);
+        ReflectionTestUtils.setField(reconciler, "batchSize", 500);
+        ReflectionTestUtils.setField(reconciler, "maxBatchesPerRun", 20);
+        ReflectionTestUtils.setField(reconciler, "quietMs", 300000L);
+        lenient().when(counterRepairScript.getScriptAsString()).thenReturn("return 1");
+    }
+
+    private static Article article(long id, int likeCount, int replyCount, int visitCount) {
+        Article article = new Article();
+        article.setId(id);
+        article.setLikeCount(likeCount);
+        article.setReplyCount(replyCount);
+        article.setVisitCount(visitCount);
+        return article;
+    }
+
+    @Test
+    void reconcileArticles_RecountsDriftedRowsAndRepairsRedis() {
+        when(articleMapper.selectList(any())).thenReturn(List.of(article(1, 5, 2, 10), article(2, 3, 0, 4)));
+        when(likesMapper.countByTargets("article", List.of(1L, 2L)))
+                .thenReturn(List.of(new CounterValue(1L, 4L), new CounterValue(2L, 3L)));
+        when(articleReplyMapper.countRepliesByArticleIds(List.of(1L, 2L))).thenReturn(List.of(new CounterValue(1L, 2L)));
+        // 第一次 pipeline 为 HMGET(likeCount, replyCount, visitCount)，第二次为 CAS 修正
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(List.of(List.of("6", "2", "12"), List.of("3", "0", "2")))
+                .thenReturn(List.of(1L, 1L));
+
+        reconciler.reconcileArticles(List.of(1L, 2L));
+
+        // 文章1的 like_count 多计了1，文章2的 Redis 浏览数落后于数据库
+        verify(articleMapper).recountLikeCount(Set.of(1L));
+        verify(articleMapper, never()).recountReplyCount(any());
+        verify(stringRedisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+        verify(articleLocalCache).invalidateArticleCounters(1L);
+        verify(articleLocalCache).invalidateArticleCounters(2L);
+        assertEquals(3, registry.find("kc.counter.drift").summaries().stream().mapToLong(s -> s.count()).sum());
+    }
+
+    @Test
+    void reconcileArticles_SkipsMissingCacheAndConsistentCounters() {
+        when(articleMapper.selectList(any())).thenReturn(List.of(article(1, 4, 0, 10)));
+        when(likesMapper.countByTargets("article", List.of(1L))).thenReturn(List.of(new CounterValue(1L, 4L)));
+        when(articleReplyMapper.countRepliesByArticleIds(List.of(1L))).thenReturn(List.of());
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(List.of(Arrays.asList(null, null, null)));
+
+        reconciler.reconcileArticles(List.of(1L));
+
+        verify(articleMapper, never()).recountLikeCount(any());
+        verify(articleMapper, never()).recountReplyCount(any());
+        verify(stringRedisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        verifyNoInteractions(articleLocalCache);
+    }
+
+    @Test
+    void reconcileType_FailureRequeuesTargets() {
+        when(stringRedisTemplate.execute(eq(counterDirtyPopScript), anyList(), any(), any())).thenReturn(List.of("7", "8"));
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(articleMapper.selectList(any())).thenThrow(new RuntimeException("db down"));
+
+        assertEquals(0, reconciler.reconcileType("article"));
+
+        verify(zSetOperations).addIfAbsent(eq(RedisKeyUtil.getCounterReconcileDirtyKey("article")),
+                argThat((Set<ZSetOperations.TypedTuple<String>> tuples) -> tuples.size() == 2));
+    }
+}
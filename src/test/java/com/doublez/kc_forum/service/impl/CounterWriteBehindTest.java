@@ -0,0 +1,147 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.CounterValue;
+import com.doublez.kc_forum.mapper.ArticleMapper;
+import com.doublez.kc_forum.mapper.ArticleReplyMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CounterWriteBehindTest {
+
+    private static final String ARTICLE_FLUSH_KEY = "counter:dirty:flush:article";
+    private static final String REPLY_FLUSH_KEY = "counter:dirty:flush:reply";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ArticleMapper articleMapper;
+    @Mock
+    private ArticleReplyMapper articleReplyMapper;
+    @Mock
+    private CounterDirtyTracker counterDirtyTracker;
+    @Mock
+    private RedisScript<Long> counterIncrCachedScript;
+    @Mock
+    private SetOperations<String, String> setOperations;
+    @Spy
+    private ForumMetrics metrics = new ForumMetrics(new SimpleMeterRegistry());
+
+    @InjectMocks
+    private CounterWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(writeBehind, "enabled", true);
+        ReflectionTestUtils.setField(writeBehind, "batchSize", 500);
+        ReflectionTestUtils.setField(writeBehind, "reconcileEnabled", true);
+        lenient().when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        lenient().when(setOperations.pop(anyString(), anyLong())).thenReturn(List.of());
+    }
+
+    @Test
+    void increment_DisabledFallsBackWithoutTouchingRedis() {
+        ReflectionTestUtils.setField(writeBehind, "enabled", false);
+
+        assertFalse(writeBehind.incrementArticleReplyCount(1L, 1));
+
+        verifyNoInteractions(stringRedisTemplate);
+    }
+
+    @Test
+    void increment_ReturnsWhetherCacheWasPresent() {
+        when(stringRedisTemplate.execute(eq(counterIncrCachedScript),
+                eq(List.of("article:1", ARTICLE_FLUSH_KEY)), eq("replyCount"), eq("1"), eq("1")))
+                .thenReturn(6L);
+        when(stringRedisTemplate.execute(eq(counterIncrCachedScript),
+                eq(List.of("article:2", ARTICLE_FLUSH_KEY)), eq("replyCount"), eq("1"), eq("2")))
+                .thenReturn(null);
+
+        assertTrue(writeBehind.incrementArticleReplyCount(1L, 1));
+        assertFalse(writeBehind.incrementArticleReplyCount(2L, 1));
+    }
+
+    @Test
+    void flush_WritesAbsoluteValuesAndHandsEvictedToReconciler() {
+        when(setOperations.pop(ARTICLE_FLUSH_KEY, 500)).thenReturn(List.of("1", "2", "3"));
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList("12", null, "0"));
+
+        writeBehind.flush();
+
+        verify(articleMapper).setReplyCountBatch(List.of(new CounterValue(1L, 12L), new CounterValue(3L, 0L)));
+        verify(counterDirtyTracker).markAll("article", List.of(2L));
+        verify(articleReplyMapper, never()).setChildrenCountBatch(anyList());
+    }
+
+    @Test
+    void flush_FailureReturnsTargetsToDirtySet() {
+        when(setOperations.pop(REPLY_FLUSH_KEY, 500)).thenReturn(List.of("7"));
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of("3"));
+        doThrow(new RuntimeException("db down")).when(articleReplyMapper).setChildrenCountBatch(anyList());
+
+        writeBehind.flush();
+
+        verify(setOperations).add(REPLY_FLUSH_KEY, "7");
+    }
+
+    @Test
+    void init_FailsWhenReconcileDisabled() {
+        ReflectionTestUtils.setField(writeBehind, "reconcileEnabled", false);
+
+        assertThrows(IllegalStateException.class, writeBehind::init);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushArticleReplyCounts_WritesOnlyDirtyTargetsAndReturnsRedisValues() {
+        // 第一次 pipeline 为 SREM（只有 1 在待回写集合中），第二次为 HGET
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(List.of(1L, 0L))
+                .thenReturn(List.of("9"));
+
+        Map<Long, Long> pending = writeBehind.flushArticleReplyCounts(List.of(1L, 2L));
+
+        assertEquals(Map.of(1L, 9L), pending);
+        verify(articleMapper).setReplyCountBatch(List.of(new CounterValue(1L, 9L)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushReplyChildrenCounts_DbFailureKeepsRedisValueAndRequeues() {
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(List.of(1L))
+                .thenReturn(List.of("4"));
+        doThrow(new RuntimeException("db down")).when(articleReplyMapper).setChildrenCountBatch(anyList());
+
+        assertEquals(Map.of(7L, 4L), writeBehind.flushReplyChildrenCounts(List.of(7L)));
+        verify(setOperations).add(REPLY_FLUSH_KEY, "7");
+    }
+
+    @Test
+    void flushArticleReplyCounts_DisabledDoesNothing() {
+        ReflectionTestUtils.setField(writeBehind, "enabled", false);
+
+        assertTrue(writeBehind.flushArticleReplyCounts(List.of(1L)).isEmpty());
+        verifyNoInteractions(stringRedisTemplate);
+    }
+}
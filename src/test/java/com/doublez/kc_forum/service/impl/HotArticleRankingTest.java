@@ -0,0 +1,155 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.doublez.kc_forum.common.cache.ArticleLocalCache;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
+import com.doublez.kc_forum.mapper.ArticleMapper;
+import com.doublez.kc_forum.model.Article;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HotArticleRankingTest {
+
+    private static final long HOUR_MS = 3_600_000L;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ArticleMapper articleMapper;
+    @Mock
+    private ArticleLocalCache articleLocalCache;
+    @Mock
+    private RedisScript<Long> hotRankIncrScript;
+    @Spy
+    private ForumMetrics metrics = new ForumMetrics(new SimpleMeterRegistry());
+
+    @InjectMocks
+    private HotArticleRanking ranking;
+
+    // 每次 EVAL 的原始参数：script, returnType, numKeys, keysAndArgs
+    private final List<Object[]> evals = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Article.class);
+        ReflectionTestUtils.setField(ranking, "enabled", true);
+        ReflectionTestUtils.setField(ranking, "halfLifeHours", 24.0);
+        ReflectionTestUtils.setField(ranking, "epochHours", 72L);
+        ReflectionTestUtils.setField(ranking, "maxSize", 1000);
+        ReflectionTestUtils.setField(ranking, "trimMargin", 1000);
+        ReflectionTestUtils.setField(ranking, "viewWeight", 1.0);
+        ReflectionTestUtils.setField(ranking, "likeWeight", 5.0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void capturePipelinedEvals() {
+        when(hotRankIncrScript.getScriptAsString()).thenReturn("return 0");
+        RedisScriptingCommands scripting = mock(RedisScriptingCommands.class, invocation -> {
+            evals.add(invocation.getRawArguments());
+            return null;
+        });
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.scriptingCommands()).thenReturn(scripting);
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(connection);
+            return List.of();
+        });
+    }
+
+    private static List<String> args(Object[] eval) {
+        return Arrays.stream((byte[][]) eval[3]).map(bytes -> new String(bytes, StandardCharsets.UTF_8)).toList();
+    }
+
+    private static Article article(long id, long boardId) {
+        Article article = new Article();
+        article.setId(id);
+        article.setBoardId(boardId);
+        return article;
+    }
+
+    @Test
+    void apply_IncrementGrowsWithinEpochAndPreviousEpochIsRebased() {
+        capturePipelinedEvals();
+        long epoch = 100;
+        // 纪元开始后一个半衰期，增量翻倍
+        long now = epoch * 72 * HOUR_MS + 24 * HOUR_MS;
+
+        ranking.apply(Map.of(5L, Map.of(1L, 3.0)), now);
+
+        assertEquals(1, evals.size());
+        assertEquals(4, evals.get(0)[2]);
+        // 当前纪元 + 回看的 3 个旧纪元；保留 max-size + trim-margin 个成员
+        assertEquals(List.of(
+                RedisKeyUtil.getBoardArticlesHotZSetKey(5L, epoch),
+                RedisKeyUtil.getBoardArticlesHotZSetKey(5L, epoch - 1),
+                RedisKeyUtil.getBoardArticlesHotZSetKey(5L, epoch - 2),
+                RedisKeyUtil.getBoardArticlesHotZSetKey(5L, epoch - 3),
+                "0.125", "2000", String.valueOf(4 * 72 * 3600), "1", "6.0"), args(evals.get(0)));
+    }
+
+    @Test
+    void onViews_ResolvesBoardsFromL1ThenDbAndScriptsOncePerBoard() {
+        capturePipelinedEvals();
+        when(articleLocalCache.getArticles(anyCollection())).thenReturn(Map.of(1L, article(1L, 5L)));
+        when(articleMapper.selectList(any())).thenReturn(List.of(article(2L, 6L)));
+
+        ranking.onViews(Map.of(1L, 4L, 2L, 1L));
+
+        assertEquals(2, evals.size());
+        Set<String> keys = new HashSet<>();
+        evals.forEach(eval -> keys.add(args(eval).get(0)));
+        assertTrue(keys.stream().anyMatch(key -> key.startsWith("board:articles:hot:5:")));
+        assertTrue(keys.stream().anyMatch(key -> key.startsWith("board:articles:hot:6:")));
+        verify(articleMapper, times(1)).selectList(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void page_FallsBackToLatestNonEmptyEpoch() {
+        // 当前与上一纪元都没有更新，使用两个纪元之前的排行
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenReturn(Arrays.asList(0L, Set.of(), 0L, Set.of(), 2L, new LinkedHashSet<>(List.of("7", "3")), 0L, Set.of()));
+
+        HotArticleRanking.HotPage page = ranking.page(5L, 0, 9);
+
+        assertEquals(List.of(7L, 3L), page.articleIds());
+        assertEquals(2L, page.total());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void page_HidesTrimMarginBeyondMaxSize() {
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenReturn(Arrays.asList(1500L, 0L, 0L, 0L));
+
+        HotArticleRanking.HotPage page = ranking.page(5L, 1000, 1009);
+
+        assertTrue(page.articleIds().isEmpty());
+        assertEquals(1000L, page.total());
+    }
+}
@@ -1,8 +1,11 @@
 package com.doublez.kc_forum.service.impl;
 
+import com.doublez.kc_forum.common.cache.ArticleLocalCache;
 import com.doublez.kc_forum.common.config.RabbitMQConfig;
 import com.doublez.kc_forum.common.event.ArticleLikeEvent;
 import com.doublez.kc_forum.common.exception.BusinessException;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.mq.ForumEventPublisher;
 import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
 import com.doublez.kc_forum.mapper.LikesMapper;
 import com.doublez.kc_forum.model.Likes;
@@ -12,7 +15,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.SetOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -41,7 +43,13 @@ class LikesServiceImplTest {
     private RedisScript<List> unlikeScript;
 
     @Mock
-    private RabbitTemplate rabbitTemplate;
+    private ForumEventPublisher eventPublisher;
+
+    @Mock
+    private ArticleLocalCache articleLocalCache;
+
+    @Mock
+    private CounterDirtyTracker counterDirtyTracker;
 
     @Mock
     private SetOperations<String, String> setOperations;
@@ -59,7 +67,7 @@ class LikesServiceImplTest {
     @BeforeEach
     void setUp() {
         // Manually inject mocks to avoid ambiguity
-        likesService = new LikesServiceImpl(stringRedisTemplate, likeScript, unlikeScript, likesMapper, rabbitTemplate);
+        likesService = new LikesServiceImpl(stringRedisTemplate, likeScript, unlikeScript, likesMapper, eventPublisher, articleLocalCache, counterDirtyTracker);
         
         // Lenient stubbing for operations that might not be called in all tests
         lenient().when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
@@ -78,9 +86,11 @@ class LikesServiceImplTest {
 
         likesService.like(userId, articleId, targetType);
 
-        // Verify RabbitMQ message sent
-        verify(rabbitTemplate).convertAndSend(
-                eq(RabbitMQConfig.EXCHANGE_NAME),
+        // Verify L1 cache invalidated for the changed counter
+        verify(articleLocalCache).invalidateArticleCounters(articleId);
+        // Verify like event published
+        verify(eventPublisher).publish(
+                eq(ForumMetrics.QUEUE_LIKE),
                 eq(RabbitMQConfig.LIKE_ROUTING_KEY),
                 any(ArticleLikeEvent.class)
         );
@@ -98,8 +108,8 @@ class LikesServiceImplTest {
 
         assertThrows(BusinessException.class, () -> likesService.like(userId, articleId, targetType));
 
-        // Verify RabbitMQ message NOT sent
-        verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), any(Object.class));
+        // Verify like event NOT published
+        verify(eventPublisher, never()).publish(anyString(), anyString(), any());
     }
 
     @Test
@@ -114,9 +124,9 @@ class LikesServiceImplTest {
 
         likesService.unlike(userId, articleId, targetType);
 
-        // Verify RabbitMQ message sent
-        verify(rabbitTemplate).convertAndSend(
-                eq(RabbitMQConfig.EXCHANGE_NAME),
+        // Verify like event published
+        verify(eventPublisher).publish(
+                eq(ForumMetrics.QUEUE_LIKE),
                 eq(RabbitMQConfig.LIKE_ROUTING_KEY),
                 any(ArticleLikeEvent.class)
         );
@@ -0,0 +1,151 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.ResultCode;
+import com.doublez.kc_forum.common.exception.BusinessException;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.model.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessagePushServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ConversationIndexService conversationIndexService;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    @Spy
+    private ForumMetrics metrics = new ForumMetrics(new SimpleMeterRegistry());
+
+    @InjectMocks
+    private MessagePushService pushService;
+
+    // 写出任务先攒起来，由测试决定何时执行
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(pushService, "pushExecutor", (Executor) tasks::add);
+        ReflectionTestUtils.setField(pushService, "enabled", true);
+        ReflectionTestUtils.setField(pushService, "timeoutMs", 60000L);
+        ReflectionTestUtils.setField(pushService, "maxConnections", 10);
+        ReflectionTestUtils.setField(pushService, "maxPerUser", 2);
+        ReflectionTestUtils.setField(pushService, "queueCapacity", 2);
+        ReflectionTestUtils.setField(pushService, "sendTimeoutMs", 10000L);
+        pushService.init();
+    }
+
+    private void runTasks() {
+        List<Runnable> pending = new ArrayList<>(tasks);
+        tasks.clear();
+        pending.forEach(Runnable::run);
+    }
+
+    private static DefaultMessage envelope(String json) {
+        return new DefaultMessage(MessagePushService.PUSH_CHANNEL.getBytes(StandardCharsets.UTF_8), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void subscribe_Disabled_Unavailable() {
+        ReflectionTestUtils.setField(pushService, "enabled", false);
+
+        BusinessException e = assertThrows(BusinessException.class, () -> pushService.subscribe(7L, 0));
+        assertEquals(ResultCode.FAILED_MESSAGE_PUSH_UNAVAILABLE, e.getResultCode());
+    }
+
+    @Test
+    void onMessage_OnlyWakesConnectionsOfTargetUser() {
+        pushService.subscribe(7L, 0);
+        pushService.subscribe(8L, 0);
+        runTasks();
+
+        pushService.onMessage(envelope("{\"userId\":7,\"event\":\"message\",\"data\":\"{}\"}"), null);
+
+        assertEquals(1, tasks.size());
+        assertEquals(2, pushService.connections());
+    }
+
+    @Test
+    void slowConnectionIsClosedWhenQueueIsFull() {
+        pushService.subscribe(7L, 0);
+        // 写出任务一直没有执行，初始的未读数事件 + 一次心跳写满队列
+        pushService.heartbeat();
+        assertEquals(1, pushService.connections());
+
+        pushService.heartbeat();
+
+        assertEquals(0, pushService.connections());
+    }
+
+    @Test
+    void subscribe_OverMaxConnections_Unavailable() {
+        ReflectionTestUtils.setField(pushService, "maxConnections", 1);
+        pushService.subscribe(7L, 0);
+
+        BusinessException e = assertThrows(BusinessException.class, () -> pushService.subscribe(8L, 0));
+        assertEquals(ResultCode.FAILED_MESSAGE_PUSH_UNAVAILABLE, e.getResultCode());
+        assertEquals(1, pushService.connections());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictStuckSenders_ClosesConnectionWhoseSendExceededTimeout() {
+        pushService.subscribe(7L, 0);
+        pushService.subscribe(8L, 0);
+        Map<Long, Deque<Object>> subscribers = (Map<Long, Deque<Object>>) ReflectionTestUtils.getField(pushService, "subscribers");
+        // 用户 7 的写出已经阻塞了 11 秒
+        ReflectionTestUtils.setField(subscribers.get(7L).getFirst(), "sendStartedAt", System.currentTimeMillis() - 11000);
+
+        pushService.evictStuckSenders();
+
+        assertEquals(1, pushService.connections());
+        assertFalse(subscribers.containsKey(7L));
+    }
+
+    @Test
+    void subscribe_OverPerUserLimit_ClosesOldest() {
+        pushService.subscribe(7L, 0);
+        pushService.subscribe(7L, 0);
+        pushService.subscribe(7L, 0);
+
+        assertEquals(2, pushService.connections());
+    }
+
+    @Test
+    void onMessageCreated_PublishesToReceiverWithoutUnreadWhenIndexDisabled() {
+        Message message = new Message();
+        message.setId(1L);
+        message.setPostUserId(7L);
+        message.setReceiveUserId(8L);
+        message.setContent("hi");
+
+        pushService.onMessageCreated(message);
+
+        verify(stringRedisTemplate, times(1)).convertAndSend(eq(MessagePushService.PUSH_CHANNEL), anyString());
+        verify(conversationIndexService, never()).unreadCount(anyLong());
+    }
+}
@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.doublez.kc_forum.common.ResultCode;
 import com.doublez.kc_forum.common.exception.BusinessException;
 import com.doublez.kc_forum.common.exception.SystemException;
+import com.doublez.kc_forum.common.pojo.response.MessageCursorResponse;
 import com.doublez.kc_forum.common.pojo.response.RecentConversationsResponse;
 import com.doublez.kc_forum.mapper.MessageMapper;
 import com.doublez.kc_forum.model.Message;
@@ -20,6 +21,8 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -36,6 +39,12 @@ class MessageServiceImplTest {
     @Mock
     private IUserService userService;
 
+    @Mock
+    private ConversationIndexService conversationIndexService;
+
+    @Mock
+    private MessagePushService messagePushService;
+
     @InjectMocks
     private MessageServiceImpl messageService;
 
@@ -92,7 +101,7 @@ class MessageServiceImplTest {
 
     @Test
     void selectUnreadCount_Success() {
-        when(messageMapper.selectCount(any(LambdaQueryWrapper.class))).thenReturn(5L);
+        when(messageMapper.countUnread(1L)).thenReturn(5L);
         long count = messageService.selectUnreadCount(1L);
         assertEquals(5L, count);
     }
@@ -105,16 +114,65 @@ class MessageServiceImplTest {
         Message msg = new Message();
         msg.setId(100L);
         msg.setState((byte)0);
+
+        msg.setReceiveUserId(receiveUserId);
+        msg.setPostUserId(postUserId);
         messages.add(msg);
 
         when(messageMapper.selectList(any(LambdaQueryWrapper.class))).thenReturn(messages);
-        when(messageMapper.update(any(Message.class), any(LambdaUpdateWrapper.class))).thenReturn(1);
+        when(messageMapper.selectLastReceivedId(receiveUserId, postUserId)).thenReturn(100L);
 
         List<Message> result = messageService.selectAllMessageByPostUserID(receiveUserId, postUserId);
 
         assertEquals(1, result.size());
-        // Verify update was called to mark as read
-        verify(messageMapper).update(any(Message.class), any(LambdaUpdateWrapper.class));
+        // 只前进已读游标，不再逐行更新 state
+        verify(messageMapper).upsertReadCursor(receiveUserId, postUserId, 100L);
+        verify(messageMapper, never()).update(any(Message.class), any(LambdaUpdateWrapper.class));
+        assertEquals((byte) 1, result.get(0).getState());
+    }
+
+    private static Message message(long id, long postUserId, long receiveUserId, int second) {
+        Message message = new Message();
+        message.setId(id);
+        message.setPostUserId(postUserId);
+        message.setReceiveUserId(receiveUserId);
+        message.setCreateTime(LocalDateTime.of(2024, 1, 1, 0, 0, second));
+        return message;
+    }
+
+    @Test
+    void getConversationByCursor_FirstPage_MarksReadAndReturnsNextCursor() {
+        // 多取的一条说明还有下一页
+        when(messageMapper.selectConversationBefore(1L, 2L, null, null, 3))
+                .thenReturn(List.of(message(12, 2, 1, 30), message(11, 1, 2, 20), message(10, 2, 1, 10)));
+        when(messageMapper.selectReadCursor(1L, 2L)).thenReturn(5L);
+        when(messageMapper.selectReadCursor(2L, 1L)).thenReturn(8L);
+        when(messageMapper.selectLastReceivedId(1L, 2L)).thenReturn(12L);
+
+        MessageCursorResponse page = messageService.getConversationByCursor(1L, 2L, null, 2);
+
+        assertEquals(2, page.getRecord().size());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0, 20).toEpochSecond(ZoneOffset.UTC) + "_11", page.getNextCursor());
+        verify(messageMapper).upsertReadCursor(1L, 2L, 12L);
+        verify(conversationIndexService).onConversationRead(1L, 2L, 12L);
+        // 收到的消息已读，发出的消息 id 大于对方的游标，对方未读
+        assertEquals((byte) 1, page.getRecord().get(0).getState());
+        assertEquals((byte) 0, page.getRecord().get(1).getState());
+    }
+
+    @Test
+    void getConversationByCursor_LaterPage_DoesNotWrite() {
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 0, 0, 20);
+        String cursor = time.toEpochSecond(ZoneOffset.UTC) + "_11";
+        when(messageMapper.selectConversationBefore(1L, 2L, time, 11L, 3))
+                .thenReturn(List.of(message(10, 2, 1, 10)));
+
+        MessageCursorResponse page = messageService.getConversationByCursor(1L, 2L, cursor, 2);
+
+        assertEquals(1, page.getRecord().size());
+        assertNull(page.getNextCursor());
+        verify(messageMapper, never()).upsertReadCursor(anyLong(), anyLong(), anyLong());
+        assertThrows(BusinessException.class, () -> messageService.getConversationByCursor(1L, 2L, "bad", 2));
     }
 
     @Test
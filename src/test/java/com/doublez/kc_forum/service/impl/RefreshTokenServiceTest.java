@@ -1,5 +1,6 @@
 package com.doublez.kc_forum.service.impl;
 
+import com.doublez.kc_forum.common.utiles.RedisKeyUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -7,17 +8,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.lenient;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class RefreshTokenServiceTest {
@@ -26,7 +26,10 @@ class RefreshTokenServiceTest {
     private StringRedisTemplate stringRedisTemplate;
 
     @Mock
-    private ValueOperations<String, String> valueOperations;
+    private RedisScript<Long> refreshTokenIssueScript;
+
+    @Mock
+    private RedisScript<List> refreshTokenRotateScript;
 
     @InjectMocks
     private RefreshTokenService refreshTokenService;
@@ -34,45 +37,74 @@ class RefreshTokenServiceTest {
     @BeforeEach
     void setUp() {
         ReflectionTestUtils.setField(refreshTokenService, "refreshTokenDurationMs", 3600000L);
-        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        ReflectionTestUtils.setField(refreshTokenService, "refreshTokenIssueScript", refreshTokenIssueScript);
+        ReflectionTestUtils.setField(refreshTokenService, "refreshTokenRotateScript", refreshTokenRotateScript);
     }
 
     @Test
-    void createRefreshToken_Success() {
-        String token = "test-token";
-        
-        String result = refreshTokenService.createRefreshToken(token);
-
-        assertEquals(token, result);
-        verify(valueOperations).set(anyString(), eq(""), eq(3600000L), eq(TimeUnit.MILLISECONDS));
+    void issue_AddsSessionToUserFamily() {
+        List<Object[]> args = new ArrayList<>();
+        when(stringRedisTemplate.execute(eq(refreshTokenIssueScript), eq(List.of(RedisKeyUtil.getRefreshTokenFamilyKey(7L))), any(Object[].class)))
+                .thenAnswer(invocation -> {
+                    args.add((Object[]) invocation.getRawArguments()[2]);
+                    return 1L;
+                });
+
+        String token = refreshTokenService.issue(7L, "a@b.com");
+
+        String[] parts = token.split("\\.");
+        assertEquals(3, parts.length);
+        assertEquals("7", parts[0]);
+        assertEquals(parts[1], args.get(0)[0]);
+        assertTrue(((String) args.get(0)[1]).matches(parts[2] + "\\|\\d+\\|a@b\\.com"));
     }
 
     @Test
-    void validateRefreshToken_Success() {
-        String token = "test-token";
-        when(valueOperations.get(anyString())).thenReturn("");
+    @SuppressWarnings("unchecked")
+    void rotate_Success_KeepsSessionAndReplacesSecret() {
+        when(stringRedisTemplate.execute(eq(refreshTokenRotateScript), anyList(), any(Object[].class)))
+                .thenReturn(List.of(1L, "a@b.com"));
+
+        Optional<RefreshTokenService.Rotation> rotation = refreshTokenService.rotate("7.session.secret");
+
+        assertTrue(rotation.isPresent());
+        assertEquals(7L, rotation.get().userId());
+        assertEquals("a@b.com", rotation.get().email());
+        assertTrue(rotation.get().refreshToken().startsWith("7.session."));
+        assertNotEquals("7.session.secret", rotation.get().refreshToken());
+    }
 
-        Optional<String> result = refreshTokenService.validateRefreshToken(token);
+    @Test
+    @SuppressWarnings("unchecked")
+    void rotate_ReusedOrUnknownToken_Rejected() {
+        when(stringRedisTemplate.execute(eq(refreshTokenRotateScript), anyList(), any(Object[].class)))
+                .thenReturn(List.of(-1L), List.of(0L));
 
-        assertTrue(result.isPresent());
+        assertFalse(refreshTokenService.rotate("7.session.old-secret").isPresent());
+        assertFalse(refreshTokenService.rotate("7.session.secret").isPresent());
     }
 
     @Test
-    void validateRefreshToken_NotFound() {
-        String token = "test-token";
-        when(valueOperations.get(anyString())).thenReturn(null);
+    void rotate_MalformedToken_SkipsRedis() {
+        assertFalse(refreshTokenService.rotate("x.session.secret").isPresent());
+        assertFalse(refreshTokenService.rotate("7.session").isPresent());
+
+        verifyNoInteractions(stringRedisTemplate);
+    }
 
-        Optional<String> result = refreshTokenService.validateRefreshToken(token);
+    @Test
+    void consumeLegacy_OnlyFirstCallerSucceeds() {
+        when(stringRedisTemplate.delete("refreshtoken:test-token")).thenReturn(true, false);
 
-        assertFalse(result.isPresent());
+        assertTrue(RefreshTokenService.isLegacy("test-token"));
+        assertTrue(refreshTokenService.consumeLegacy("test-token"));
+        assertFalse(refreshTokenService.consumeLegacy("test-token"));
     }
 
     @Test
-    void deleteRefreshToken_Success() {
-        String token = "test-token";
-        
-        refreshTokenService.deleteRefreshToken(token);
+    void revokeAll_DeletesFamily() {
+        refreshTokenService.revokeAll(7L);
 
-        verify(stringRedisTemplate).delete(anyString());
+        verify(stringRedisTemplate).delete(RedisKeyUtil.getRefreshTokenFamilyKey(7L));
     }
 }
@@ -0,0 +1,157 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.pojo.response.ArticleReplyMetaCacheDTO;
+import com.doublez.kc_forum.common.utiles.ReplyTreeCodec;
+import com.doublez.kc_forum.mapper.ArticleReplyMapper;
+import com.doublez.kc_forum.model.ArticleReply;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplyTreeLoaderTest {
+
+    @Mock
+    private ArticleReplyMapper articleReplyMapper;
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+    @Mock
+    private RedisAsyncPopulationService redisAsync;
+    @Mock
+    private MaterializedReplyTreeService materializedReplyTree;
+    // 测试数据是字符串字段的旧格式Hash，值按字符串解析
+    @Spy
+    private CacheHashCodec cacheHashCodec = new CacheHashCodec(false, RedisSerializer.string(), new ObjectMapper());
+
+    @Spy
+    private ForumMetrics metrics = new ForumMetrics(new SimpleMeterRegistry());
+
+    @InjectMocks
+    private ReplyTreeLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(loader, "maxDepth", 8);
+        ReflectionTestUtils.setField(loader, "maxNodes", 500);
+        ReflectionTestUtils.setField(loader, "maxChildren", 100);
+    }
+
+    private static byte[] b(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<byte[], byte[]> hash(long id, long parentId, int childrenCount) {
+        Map<byte[], byte[]> hash = new LinkedHashMap<>();
+        hash.put(b("id"), b(id));
+        hash.put(b("replyId"), b(parentId));
+        hash.put(b("childrenCount"), b(childrenCount));
+        return hash;
+    }
+
+    private static Set<byte[]> members(long... ids) {
+        Set<byte[]> members = new LinkedHashSet<>();
+        for (long id : ids) members.add(b(id));
+        return members;
+    }
+
+    private static List<Long> ids(List<ArticleReplyMetaCacheDTO> replies) {
+        return replies.stream().map(ArticleReplyMetaCacheDTO::getId).toList();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loadSubtree_OnePipelinePerLevelInPreOrder() {
+        // 1 -> [2, 3], 2 -> [4]
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class)))
+                .thenReturn(new ArrayList<>(List.of(members(2, 3))))
+                .thenReturn(new ArrayList<>(List.of(hash(2, 1, 1), hash(3, 1, 0), members(4), members())))
+                .thenReturn(new ArrayList<>(List.of(hash(4, 2, 0), members())));
+
+        List<ArticleReplyMetaCacheDTO> tree = loader.loadSubtree(1L, 0, 9);
+
+        assertEquals(List.of(2L, 4L, 3L), ids(tree));
+        verify(stringRedisTemplate, times(3)).executePipelined(any(RedisCallback.class), any(RedisSerializer.class));
+        verifyNoInteractions(articleReplyMapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loadSubtree_NodeBudgetStopsExpansion() {
+        ReflectionTestUtils.setField(loader, "maxNodes", 2);
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class)))
+                .thenReturn(new ArrayList<>(List.of(members(2, 3))))
+                // 预算已用完，只取元数据，不再查询子回复
+                .thenReturn(new ArrayList<>(List.of(hash(2, 1, 1), hash(3, 1, 0))));
+
+        List<ArticleReplyMetaCacheDTO> tree = loader.loadSubtree(1L, 0, 9);
+
+        assertEquals(List.of(2L, 3L), ids(tree));
+        verify(stringRedisTemplate, times(2)).executePipelined(any(RedisCallback.class), any(RedisSerializer.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loadSubtree_MissingChildrenZsetFallsBackToOneBatchQuery() {
+        ArticleReply child = new ArticleReply();
+        child.setId(5L);
+        child.setReplyId(2L);
+        child.setChildrenCount(0);
+        child.setCreateTime(LocalDateTime.now());
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class)))
+                .thenReturn(new ArrayList<>(List.of(members(2))))
+                // 2 的 childrenCount 为 1，但子回复ZSET未缓存
+                .thenReturn(new ArrayList<>(List.of(hash(2, 1, 1), members())));
+        when(articleReplyMapper.selectList(any())).thenReturn(List.of(child));
+
+        List<ArticleReplyMetaCacheDTO> tree = loader.loadSubtree(1L, 0, 9);
+
+        assertEquals(List.of(2L, 5L), ids(tree));
+        verify(articleReplyMapper, times(1)).selectList(any());
+        verify(redisAsync).replyZsetFromDBToRedis(any(), eq(List.of(child)));
+        // 5 的元数据来自数据库，且没有子回复，不再发起第三次 pipeline
+        verify(stringRedisTemplate, times(2)).executePipelined(any(RedisCallback.class), any(RedisSerializer.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loadSubtree_MaterializedTreeNeedsOnlyOneMetaPipeline() {
+        Map<byte[], byte[]> root = hash(1, 0, 3);
+        root.put(b("articleId"), b(100));
+        when(redisTemplate.execute(any(RedisCallback.class))).thenReturn(root);
+        when(materializedReplyTree.isEnabled()).thenReturn(true);
+        // 1 -> [2, 3], 2 -> [4]
+        when(materializedReplyTree.load(100L)).thenReturn(ReplyTreeCodec.decode(
+                ReplyTreeCodec.encodeSnapshot(Map.of(1L, 0L, 2L, 1L, 3L, 1L, 4L, 2L))));
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class)))
+                .thenReturn(new ArrayList<>(List.of(hash(3, 1, 0), hash(2, 1, 1), hash(4, 2, 0))));
+
+        List<ArticleReplyMetaCacheDTO> tree = loader.loadSubtree(1L, 0, 9);
+
+        assertEquals(List.of(3L, 2L, 4L), ids(tree));
+        verify(stringRedisTemplate, times(1)).executePipelined(any(RedisCallback.class), any(RedisSerializer.class));
+        verifyNoInteractions(articleReplyMapper);
+    }
+}
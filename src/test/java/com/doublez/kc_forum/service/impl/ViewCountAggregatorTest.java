@@ -0,0 +1,141 @@
+package com.doublez.kc_forum.service.impl;
+
+import com.doublez.kc_forum.common.config.RabbitMQConfig;
+import com.doublez.kc_forum.common.event.ArticleViewBatchEvent;
+import com.doublez.kc_forum.common.metrics.ForumMetrics;
+import com.doublez.kc_forum.common.mq.ForumEventPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ConnectException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ViewCountAggregatorTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ForumEventPublisher eventPublisher;
+    @Mock
+    private CounterDirtyTracker counterDirtyTracker;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ViewCountAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new ViewCountAggregator(2);
+        ReflectionTestUtils.setField(aggregator, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(aggregator, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(aggregator, "metrics", new ForumMetrics(registry));
+        ReflectionTestUtils.setField(aggregator, "counterDirtyTracker", counterDirtyTracker);
+    }
+
+    private ArticleViewBatchEvent captureEvent() {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, atLeastOnce()).publish(eq(ForumMetrics.QUEUE_VIEW), eq(RabbitMQConfig.VIEW_ROUTING_KEY), captor.capture());
+        return (ArticleViewBatchEvent) captor.getValue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_MergesViewsIntoOnePipelineAndOneEvent() {
+        aggregator.recordView(1L);
+        aggregator.recordView(1L);
+        aggregator.recordView(2L);
+        aggregator.recordView(2L);
+
+        aggregator.flush();
+
+        verify(stringRedisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        assertEquals(Map.of(1L, 2L, 2L, 2L), captureEvent().getCounts());
+
+        // 没有新的浏览时不再发送
+        aggregator.flush();
+        verify(eventPublisher, times(1)).publish(any(), any(), any());
+    }
+
+    @Test
+    void flush_SendsUniqueVisitorsWithoutTouchingRedis() {
+        aggregator.recordUniqueVisitor(1L);
+        aggregator.recordUniqueVisitor(1L);
+
+        aggregator.flush();
+
+        // 独立访客数只落库，展示以 HyperLogLog 为准
+        verifyNoInteractions(stringRedisTemplate);
+        ArticleViewBatchEvent event = captureEvent();
+        assertTrue(event.getCounts().isEmpty());
+        assertEquals(Map.of(1L, 2L), event.getUniqueCounts());
+    }
+
+    @Test
+    void recordView_DropsNewArticlesWhenBufferFull() {
+        aggregator.recordView(1L);
+        aggregator.recordView(2L);
+        aggregator.recordView(3L);   // 超出容量，丢弃
+        aggregator.recordView(1L);   // 已有文章继续合并
+
+        aggregator.flush();
+
+        assertEquals(Map.of(1L, 2L, 2L, 1L), captureEvent().getCounts());
+        assertEquals(1, registry.get("kc.visit.aggregate.dropped").tag("stage", "buffer").counter().count());
+    }
+
+    @Test
+    void flush_PublishFailureCarriesCountsToNextFlush() {
+        doThrow(new AmqpConnectException(new ConnectException("broker down")))
+                .doNothing()
+                .when(eventPublisher).publish(eq(ForumMetrics.QUEUE_VIEW), eq(RabbitMQConfig.VIEW_ROUTING_KEY), any());
+        aggregator.recordView(1L);
+        aggregator.flush();
+
+        aggregator.recordView(1L);
+        aggregator.flush();
+
+        assertEquals(Map.of(1L, 2L), captureEvent().getCounts());
+    }
+
+    @Test
+    void counterBuffer_ConcurrentAddsAreNotLostAcrossDrains() throws Exception {
+        ViewCountAggregator.CounterBuffer buffer = new ViewCountAggregator.CounterBuffer(100);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        long total = 0;
+        try {
+            for (int t = 0; t < 4; t++) {
+                pool.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) buffer.add((long) (i % 3), 1);
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+                total += buffer.drain().values().stream().mapToLong(Long::longValue).sum();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        total += buffer.drain().values().stream().mapToLong(Long::longValue).sum();
+
+        assertEquals(200_000, total);
+        assertTrue(buffer.drain().isEmpty());
+    }
+}